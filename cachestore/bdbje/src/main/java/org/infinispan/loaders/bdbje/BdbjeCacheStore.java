@@ -24,6 +24,7 @@ package org.infinispan.loaders.bdbje;
 
 import com.sleepycat.bind.serial.StoredClassCatalog;
 import com.sleepycat.collections.CurrentTransaction;
+import com.sleepycat.collections.StoredIterator;
 import com.sleepycat.collections.StoredMap;
 import com.sleepycat.collections.StoredSortedMap;
 import com.sleepycat.je.Cursor;
@@ -42,6 +43,7 @@ import org.infinispan.loaders.AbstractCacheStore;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.modifications.Modification;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.transaction.xa.GlobalTransaction;
@@ -54,6 +56,7 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.HashSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -288,6 +291,14 @@ public class BdbjeCacheStore extends AbstractCacheStore {
       }
    }
 
+   /**
+    * Writes the batch as a single transaction, through {@link #applyModifications(java.util.List)}.
+    */
+   @Override
+   public void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      applyModifications(toModifications(toStore, toRemove));
+   }
+
    /**
     * Looks up the {@link Transaction SleepyCat transaction} associated with <code>tx</code>.  Creates a {@link
     * org.infinispan.loaders.bdbje.ModificationsTransactionWorker} instance from <code>mods</code>.  Then prepares the
@@ -474,6 +485,27 @@ public class BdbjeCacheStore extends AbstractCacheStore {
       }
    }
 
+   /**
+    * Walks through the database with a cursor, handing the entries over to the task as they are read.
+    */
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      if (maxEntries == 0) return;
+      Iterator<InternalCacheEntry> i = cacheMap.values().iterator();
+      try {
+         int processed = 0;
+         while (i.hasNext()) {
+            InternalCacheEntry entry = i.next();
+            if (entry.isExpired()) continue;
+            if (!task.processEntry(entry) || ++processed == maxEntries) return;
+         }
+      } catch (RuntimeException caught) {
+         throw convertToCacheLoaderException("error loading all entries", caught);
+      } finally {
+         StoredIterator.close(i);
+      }
+   }
+
    @Override
    public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
       try {
@@ -28,6 +28,7 @@ import java.io.ObjectOutput;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -63,6 +64,7 @@ import org.infinispan.loaders.AbstractCacheStore;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.cassandra.logging.Log;
 import org.infinispan.loaders.keymappers.TwoWayKey2StringMapper;
 import org.infinispan.loaders.keymappers.UnsupportedKeyTypeException;
@@ -228,10 +230,28 @@ public class CassandraCacheStore extends AbstractCacheStore {
 
    @Override
    public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
+      final Set<InternalCacheEntry> s = new HashSet<InternalCacheEntry>();
+      process(numEntries, new CacheLoaderTask() {
+         @Override
+         public boolean processEntry(InternalCacheEntry entry) {
+            s.add(entry);
+            return true;
+         }
+      });
+      return s;
+   }
+
+   /**
+    * Hands the entries over to the task slice by slice, as they are fetched from Cassandra.
+    */
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      if (maxEntries == 0) return;
+      int numEntries = maxEntries < 0 ? Integer.MAX_VALUE : maxEntries;
       Cassandra.Client cassandraClient = null;
       try {
          cassandraClient = dataSource.getConnection();
-         Set<InternalCacheEntry> s = new HashSet<InternalCacheEntry>();
+         int processed = 0;
          SlicePredicate slicePredicate = new SlicePredicate();
          slicePredicate.setSlice_range(new SliceRange(ByteBuffer.wrap(entryColumnPath.getColumn()),
                   ByteBufferUtil.EMPTY_BYTE_BUFFER, false, 1));
@@ -258,7 +278,8 @@ public class CassandraCacheStore extends AbstractCacheStore {
                   }
                   byte[] value = columns.get(0).getColumn().getValue();
                   InternalCacheEntry ice = unmarshall(value, key);
-                  s.add(ice);
+                  processed++;
+                  if (!task.processEntry(ice)) return;
                } else if (log.isDebugEnabled()) {
                   log.debugf("Skipping empty key %s", key);
                }
@@ -272,7 +293,7 @@ public class CassandraCacheStore extends AbstractCacheStore {
                // asked for. If we haven't reached the required quota yet,
                // assume we need to cycle again starting from
                // the last returned key (excluded)
-               sliceSize = Math.min(SLICE_SIZE, numEntries - s.size());
+               sliceSize = Math.min(SLICE_SIZE, numEntries - processed);
                if (sliceSize == 0) {
                   complete = true;
                } else {
@@ -281,7 +302,8 @@ public class CassandraCacheStore extends AbstractCacheStore {
             }
 
          }
-         return s;
+      } catch (CacheLoaderException e) {
+         throw e;
       } catch (Exception e) {
          throw new CacheLoaderException(e);
       } finally {
@@ -469,14 +491,19 @@ public class CassandraCacheStore extends AbstractCacheStore {
    /**
     * Writes to a stream the number of entries (long) then the entries themselves.
     */
-   public void toStream(ObjectOutput out) throws CacheLoaderException {
+   public void toStream(final ObjectOutput out) throws CacheLoaderException {
       try {
-         Set<InternalCacheEntry> loadAll = loadAll();
-         int count = 0;
-         for (InternalCacheEntry entry : loadAll) {
-            getMarshaller().objectToObjectStream(entry, out);
-            count++;
-         }
+         process(-1, new CacheLoaderTask() {
+            @Override
+            public boolean processEntry(InternalCacheEntry entry) throws CacheLoaderException {
+               try {
+                  getMarshaller().objectToObjectStream(entry, out);
+               } catch (IOException e) {
+                  throw new CacheLoaderException(e);
+               }
+               return true;
+            }
+         });
          getMarshaller().objectToObjectStream(null, out);
       } catch (IOException e) {
          throw new CacheLoaderException(e);
@@ -587,6 +614,14 @@ public class CassandraCacheStore extends AbstractCacheStore {
 
    }
 
+   /**
+    * Writes the batch as a single <code>batch_mutate</code> call, through {@link #applyModifications(java.util.List)}.
+    */
+   @Override
+   public void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      applyModifications(toModifications(toStore, toRemove));
+   }
+
    @Override
    public String toString() {
       return "CassandraCacheStore";
@@ -35,6 +35,7 @@ import java.util.Set;
 
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.loaders.jdbc.logging.Log;
@@ -197,6 +198,47 @@ public abstract class DataManipulationHelper {
       }
    }
 
+   /**
+    * Hands the stored entries over to the task as the rows are fetched, rather than collecting them all as {@link
+    * #loadAllSupport(boolean)} does, so that only a fetch size worth of rows is held in memory.
+    */
+   public final void processSupport(int maxEntries, CacheLoaderTask task, boolean filterExpired) throws CacheLoaderException {
+      if (maxEntries == 0) return;
+      Connection conn = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try {
+         String sql = filterExpired ? tableManipulation.getLoadNonExpiredAllRowsSql() : tableManipulation.getLoadAllRowsSql();
+         if (log.isTraceEnabled()) {
+            log.tracef("Running sql %s", sql);
+         }
+         conn = connectionFactory.getConnection();
+         ps = conn.prepareStatement(sql);
+         if (filterExpired) {
+            ps.setLong(1, System.currentTimeMillis());
+         }
+         rs = ps.executeQuery();
+         rs.setFetchSize(tableManipulation.getFetchSize());
+         Set<InternalCacheEntry> rowEntries = new HashSet<InternalCacheEntry>();
+         int processed = 0;
+         while (rs.next()) {
+            loadAllProcess(rs, rowEntries);
+            for (InternalCacheEntry entry : rowEntries) {
+               if (entry.isExpired()) continue;
+               if (!task.processEntry(entry) || ++processed == maxEntries) return;
+            }
+            rowEntries.clear();
+         }
+      } catch (SQLException e) {
+         log.sqlFailureFetchingAllStoredEntries(e);
+         throw new CacheLoaderException("SQL error while fetching all StoredEntries", e);
+      } finally {
+         JdbcUtil.safeClose(rs);
+         JdbcUtil.safeClose(ps);
+         connectionFactory.releaseConnection(conn);
+      }
+   }
+
    public Set<Object> loadAllKeysSupport(Set<Object> keysToExclude) throws CacheLoaderException {
       Connection conn = null;
       PreparedStatement ps = null;
@@ -74,6 +74,32 @@ public class JdbcUtil {
       }
    }
 
+   /**
+    * Rolls back the current transaction of a connection, logging rather than propagating any failure.
+    */
+   public static void safeRollback(Connection connection) {
+      if (connection != null) {
+         try {
+            connection.rollback();
+         } catch (SQLException e) {
+            log.sqlFailureUnexpected(e);
+         }
+      }
+   }
+
+   /**
+    * Puts a connection used for a transactional batch back in auto-commit mode, before it's released.
+    */
+   public static void safeRestoreAutoCommit(Connection connection) {
+      if (connection != null) {
+         try {
+            connection.setAutoCommit(true);
+         } catch (SQLException e) {
+            log.sqlFailureUnexpected(e);
+         }
+      }
+   }
+
    public static ByteBuffer marshall(StreamingMarshaller marshaller, Object bucket) throws CacheLoaderException, InterruptedException {
       try {
          return marshaller.objectToBuffer(bucket);
@@ -40,6 +40,7 @@ import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.io.ByteBuffer;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.bucket.Bucket;
 import org.infinispan.loaders.bucket.BucketBasedCacheStore;
@@ -286,6 +287,14 @@ public class JdbcBinaryCacheStore extends BucketBasedCacheStore {
       return dmHelper.loadAllKeysSupport(keysToExclude);
    }
 
+   /**
+    * Hands the entries over to the task as the rows are fetched from the database, without holding any lock.
+    */
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      dmHelper.processSupport(maxEntries, task, false);
+   }
+
    @Override
    protected Set<InternalCacheEntry> loadLockSafe(int maxEntries) throws CacheLoaderException {
       return dmHelper.loadSome(maxEntries);
@@ -27,6 +27,7 @@ import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.AbstractCacheStore;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.loaders.jdbc.binary.JdbcBinaryCacheStore;
@@ -39,6 +40,10 @@ import org.infinispan.util.logging.LogFactory;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -138,6 +143,14 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
       return set;
    }
 
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      CountingTask counting = new CountingTask(task);
+      binaryCacheStore.process(maxEntries, counting);
+      if (counting.stopped || counting.processed == maxEntries) return;
+      stringBasedCacheStore.process(maxEntries < 0 ? maxEntries : maxEntries - counting.processed, task);
+   }
+
    @Override
    public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
       Set<Object> fromBuckets = binaryCacheStore.loadAllKeys(keysToExclude);
@@ -164,6 +177,27 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
       return getCacheStore(key).remove(key);
    }
 
+   /**
+    * Splits the batch between the two underlying stores, so that each of them writes its share in one go.
+    */
+   @Override
+   public void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      List<InternalCacheEntry> binaryToStore = new ArrayList<InternalCacheEntry>();
+      List<InternalCacheEntry> stringToStore = new ArrayList<InternalCacheEntry>();
+      for (InternalCacheEntry ed : toStore) {
+         (getCacheStore(ed.getKey()) == stringBasedCacheStore ? stringToStore : binaryToStore).add(ed);
+      }
+      Set<Object> binaryToRemove = new HashSet<Object>();
+      Set<Object> stringToRemove = new HashSet<Object>();
+      for (Object key : toRemove) {
+         (getCacheStore(key) == stringBasedCacheStore ? stringToRemove : binaryToRemove).add(key);
+      }
+      if (!binaryToStore.isEmpty() || !binaryToRemove.isEmpty())
+         binaryCacheStore.writeBatch(binaryToStore, binaryToRemove);
+      if (!stringToStore.isEmpty() || !stringToRemove.isEmpty())
+         stringBasedCacheStore.writeBatch(stringToStore, stringToRemove);
+   }
+
    public void clear() throws CacheLoaderException {
       binaryCacheStore.clear();
       stringBasedCacheStore.clear();
@@ -188,4 +222,21 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
    public JdbcStringBasedCacheStore getStringBasedCacheStore() {
       return stringBasedCacheStore;
    }
+
+   private static class CountingTask implements CacheLoaderTask {
+      final CacheLoaderTask task;
+      int processed;
+      boolean stopped;
+
+      CountingTask(CacheLoaderTask task) {
+         this.task = task;
+      }
+
+      @Override
+      public boolean processEntry(InternalCacheEntry entry) throws CacheLoaderException {
+         processed++;
+         stopped = !task.processEntry(entry);
+         return !stopped;
+      }
+   }
 }
@@ -30,6 +30,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Set;
 
 import org.infinispan.Cache;
@@ -38,6 +39,7 @@ import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.io.ByteBuffer;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.LockSupportCacheStore;
 import org.infinispan.loaders.jdbc.DataManipulationHelper;
@@ -263,6 +265,76 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore<String> {
       }
    }
 
+   /**
+    * Writes the whole batch in a single database transaction.  The rows of all the keys in the batch are first deleted,
+    * then the entries to store are inserted, using JDBC batches of {@link TableManipulation#getBatchSize()} statements.
+    * This spares the per key select that {@link #storeLockSafe(InternalCacheEntry, String)} needs to choose between an
+    * insert and an update, as well as a commit per modification.
+    */
+   @Override
+   protected void writeBatchLockSafe(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      int batchSize = tableManipulation.getBatchSize();
+      Connection connection = null;
+      PreparedStatement delete = null;
+      PreparedStatement insert = null;
+      try {
+         connection = connectionFactory.getConnection();
+         connection.setAutoCommit(false);
+
+         String sql = tableManipulation.getDeleteRowSql();
+         if (log.isTraceEnabled()) {
+            log.tracef("Running sql '%s' on %d keys", sql, toStore.size() + toRemove.size());
+         }
+         delete = connection.prepareStatement(sql);
+         int count = 0;
+         for (InternalCacheEntry ed : toStore) {
+            delete.setString(1, getLockFromKey(ed.getKey()));
+            delete.addBatch();
+            if (++count % batchSize == 0) delete.executeBatch();
+         }
+         for (Object key : toRemove) {
+            delete.setString(1, getLockFromKey(key));
+            delete.addBatch();
+            if (++count % batchSize == 0) delete.executeBatch();
+         }
+         if (count % batchSize != 0) delete.executeBatch();
+
+         sql = tableManipulation.getInsertRowSql();
+         if (log.isTraceEnabled()) {
+            log.tracef("Running sql '%s' on %d entries", sql, toStore.size());
+         }
+         insert = connection.prepareStatement(sql);
+         count = 0;
+         for (InternalCacheEntry ed : toStore) {
+            if (ed.isExpired()) continue;
+            ByteBuffer byteBuffer = JdbcUtil.marshall(getMarshaller(), ed.toInternalCacheValue());
+            insert.setBinaryStream(1, byteBuffer.getStream(), byteBuffer.getLength());
+            insert.setLong(2, ed.getExpiryTime());
+            insert.setString(3, getLockFromKey(ed.getKey()));
+            insert.addBatch();
+            if (++count % batchSize == 0) insert.executeBatch();
+         }
+         if (count % batchSize != 0) insert.executeBatch();
+
+         connection.commit();
+      } catch (SQLException ex) {
+         JdbcUtil.safeRollback(connection);
+         log.sqlFailureWritingBatch(toStore.size() + toRemove.size(), ex);
+         throw new CacheLoaderException("Error while writing a batch of string keys to database", ex);
+      } catch (InterruptedException e) {
+         JdbcUtil.safeRollback(connection);
+         if (log.isTraceEnabled()) {
+            log.trace("Interrupted while marshalling to store");
+         }
+         Thread.currentThread().interrupt();
+      } finally {
+         JdbcUtil.safeClose(delete);
+         JdbcUtil.safeClose(insert);
+         JdbcUtil.safeRestoreAutoCommit(connection);
+         connectionFactory.releaseConnection(connection);
+      }
+   }
+
    @Override
    public void fromStreamLockSafe(ObjectInput objectInput) throws CacheLoaderException {
       dmHelper.fromStreamSupport(objectInput);
@@ -283,6 +355,14 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore<String> {
       return dmHelper.loadAllSupport(true);
    }
 
+   /**
+    * Hands the entries over to the task as the rows are fetched from the database, without holding any lock.
+    */
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      dmHelper.processSupport(maxEntries, task, true);
+   }
+
    @Override
    protected Set<InternalCacheEntry> loadLockSafe(int maxEntries) throws CacheLoaderException {
       return dmHelper.loadSome(maxEntries);
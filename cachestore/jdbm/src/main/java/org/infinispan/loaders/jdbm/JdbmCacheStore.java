@@ -53,6 +53,7 @@ import java.io.ObjectOutput;
 import java.text.SimpleDateFormat;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -481,6 +482,14 @@ public class JdbmCacheStore extends AbstractCacheStore {
       commit();
    }
 
+   /**
+    * Writes the batch as a single JDBM commit, through {@link #applyModifications(java.util.List)}.
+    */
+   @Override
+   public void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      applyModifications(toModifications(toStore, toRemove));
+   }
+
    @Override
    public String toString() {
       BTree et = expiryTree;
@@ -555,6 +555,18 @@ public interface Cache<K, V> extends ConcurrentMap<K, V>, Lifecycle, Listenable
     */
    NotifyingFuture<V> getAsync(K key);
 
+   /**
+    * Retrieves the values associated with several keys in a single invocation. When the cache is configured with
+    * distribution, keys that are neither owned locally nor present in L1 are grouped by the node that owns them and
+    * fetched with a single remote call per owner, all of these calls being issued in parallel. Entries retrieved this
+    * way are stored in L1, if enabled, just as they would be by {@link #get(Object)}.
+    *
+    * @param keys keys to retrieve
+    * @return a map containing each of the given keys that is mapped to a value in the cache, along with that value.
+    *         Keys that have no associated value are not present in the returned map.
+    */
+   Map<K, V> getAll(Set<?> keys);
+
    AdvancedCache<K, V> getAdvancedCache();
 
    /**
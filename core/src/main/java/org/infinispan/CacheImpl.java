@@ -27,6 +27,7 @@ import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
@@ -260,6 +261,18 @@ public class CacheImpl<K, V> extends CacheSupport<K, V> implements AdvancedCache
       return (V) invoker.invoke(ctx, command);
    }
 
+   public final Map<K, V> getAll(Set<?> keys) {
+      return getAll(keys, null, null);
+   }
+
+   @SuppressWarnings("unchecked")
+   final Map<K, V> getAll(Set<?> keys, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
+      for (Object key : keys) assertKeyNotNull(key);
+      InvocationContext ctx = getInvocationContextForRead(null, explicitFlags, explicitClassLoader);
+      GetAllCommand command = commandsFactory.buildGetAllCommand(keys, ctx.getFlags());
+      return (Map<K, V>) invoker.invoke(ctx, command);
+   }
+
    public final V remove(Object key) {
       return remove(key, null, null);
    }
@@ -25,7 +25,9 @@ package org.infinispan;
 
 import org.infinispan.util.concurrent.NotifyingFuture;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -47,6 +49,19 @@ public abstract class CacheSupport<K, V> implements Cache<K, V> {
       this.defaultMaxIdleTime = defaultMaxIdleTime;
    }
 
+   /**
+    * Retrieves the keys one at a time; implementations able to fetch several entries at once should override this.
+    */
+   @SuppressWarnings("unchecked")
+   public Map<K, V> getAll(Set<?> keys) {
+      Map<K, V> result = new HashMap<K, V>(keys.size() * 4 / 3 + 1);
+      for (Object key : keys) {
+         V value = get(key);
+         if (value != null) result.put((K) key, value);
+      }
+      return result;
+   }
+
    public final V put(K key, V value) {
       return put(key, value, defaultLifespan, MILLISECONDS, defaultMaxIdleTime, MILLISECONDS);
    }
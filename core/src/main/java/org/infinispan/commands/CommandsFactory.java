@@ -24,16 +24,21 @@ package org.infinispan.commands;
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.control.StateTransferControlCommand;
+import org.infinispan.commands.control.TotalOrderControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareCommand;
+import org.infinispan.commands.remote.WaitForGraphCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -56,6 +61,7 @@ import org.infinispan.distexec.mapreduce.Reducer;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.xa.DldGlobalTransaction;
 import org.infinispan.transaction.xa.GlobalTransaction;
 
 import javax.transaction.xa.Xid;
@@ -143,6 +149,13 @@ public interface CommandsFactory {
     */
    GetKeyValueCommand buildGetKeyValueCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a GetAllCommand
+    * @param keys keys to get
+    * @return a GetAllCommand
+    */
+   GetAllCommand buildGetAllCommand(Collection<?> keys, Set<Flag> flags);
+
    /**
     * Builds a KeySetCommand
     * @return a KeySetCommand
@@ -240,6 +253,49 @@ public interface CommandsFactory {
     */
    ClusteredGetCommand buildClusteredGetCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a ClusteredGetAllCommand, which is a remote lookup command for several keys owned by the same node
+    * @param keys keys to look up
+    * @return a ClusteredGetAllCommand
+    */
+   ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<?> keys, Set<Flag> flags);
+
+   /**
+    * Builds a WaitForGraphCommand, which carries the wait-for edges of the transactions blocked on this node
+    * @param edges the transactions each waiting transaction waits for
+    * @return a WaitForGraphCommand
+    */
+   WaitForGraphCommand buildWaitForGraphCommand(Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges);
+
+   /**
+    * Builds a TotalOrderPrepareCommand, which carries a transaction to the sequencer to have it committed in total order
+    * @param prepare the one phase prepare of the transaction
+    * @param epoch the epoch the originator is in, the only one the transaction may be sequenced in
+    * @return a TotalOrderPrepareCommand
+    */
+   TotalOrderPrepareCommand buildTotalOrderPrepareCommand(PrepareCommand prepare, long epoch);
+
+   /**
+    * Builds a TotalOrderPrepareCommand, which delivers a sequenced transaction to the members of the cluster
+    * @param prepare the one phase prepare of the transaction
+    * @param epoch the epoch the transaction was sequenced in
+    * @param seqno the place of the transaction in the order of the epoch, starting from 1
+    * @return a TotalOrderPrepareCommand
+    */
+   TotalOrderPrepareCommand buildTotalOrderPrepareCommand(PrepareCommand prepare, long epoch, long seqno);
+
+   /**
+    * Builds a TotalOrderControlCommand, which the sequencer uses to tell the members of the cluster which transactions
+    * they can apply
+    * @param type the type of the command
+    * @param epoch the epoch the command is about: the one to apply deliveries of, or the one to open
+    * @param seqno the last stable delivery, for a STABLE command
+    * @param lastDeliveries the last delivery to apply of every sealed epoch, for a CLOSE command
+    * @return a TotalOrderControlCommand
+    */
+   TotalOrderControlCommand buildTotalOrderControlCommand(TotalOrderControlCommand.Type type, long epoch, long seqno,
+                                                          Map<Long, Long> lastDeliveries);
+
    /**
     * Builds a LockControlCommand to control explicit remote locking
     * @param keys keys to lock
@@ -267,9 +323,12 @@ public interface CommandsFactory {
    /**
     * Builds a RehashControlCommand for coordinating a rehash event. This particular variation of RehashControlCommand
     * coordinates rehashing of nodes when a node join or leaves
+    *
+    * @param completedSegments the consistent hash segments whose state is complete once <code>state</code> has been
+    *                          applied, or <code>null</code> if the state isn't organized by segment
     */
    StateTransferControlCommand buildStateTransferCommand(StateTransferControlCommand.Type subtype, Address sender, int viewId,
-                                                  Collection<InternalCacheEntry> state);
+                                                  Collection<InternalCacheEntry> state, Collection<Integer> completedSegments);
 
    /**
     * Retrieves the cache name this CommandFactory is set up to construct commands for.
@@ -24,18 +24,23 @@ package org.infinispan.commands;
 
 import org.infinispan.Cache;
 import org.infinispan.commands.control.StateTransferControlCommand;
+import org.infinispan.commands.control.TotalOrderControlCommand;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.module.ModuleCommandInitializer;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareCommand;
+import org.infinispan.commands.remote.WaitForGraphCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -69,10 +74,12 @@ import org.infinispan.notifications.cachelistener.CacheNotifier;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.statetransfer.StateTransferManager;
 import org.infinispan.transaction.RemoteTransaction;
+import org.infinispan.transaction.TotalOrderManager;
 import org.infinispan.transaction.TransactionTable;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.transaction.xa.recovery.RecoveryManager;
+import org.infinispan.util.concurrent.locks.LockManager;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -112,6 +119,8 @@ public class CommandsFactoryImpl implements CommandsFactory {
    private Configuration configuration;
    private RecoveryManager recoveryManager;
    private StateTransferManager stateTransferManager;
+   private LockManager lockManager;
+   private TotalOrderManager totalOrderManager;
 
    private Map<Byte, ModuleCommandInitializer> moduleCommandInitializers;
 
@@ -120,7 +129,8 @@ public class CommandsFactoryImpl implements CommandsFactory {
                                  InterceptorChain interceptorChain, DistributionManager distributionManager,
                                  InvocationContextContainer icc, TransactionTable txTable, Configuration configuration,
                                  @ComponentName(KnownComponentNames.MODULE_COMMAND_INITIALIZERS) Map<Byte, ModuleCommandInitializer> moduleCommandInitializers,
-                                 RecoveryManager recoveryManager, StateTransferManager stateTransferManager) {
+                                 RecoveryManager recoveryManager, StateTransferManager stateTransferManager, LockManager lockManager,
+                                 TotalOrderManager totalOrderManager) {
       this.dataContainer = container;
       this.notifier = notifier;
       this.cache = cache;
@@ -132,6 +142,8 @@ public class CommandsFactoryImpl implements CommandsFactory {
       this.moduleCommandInitializers = moduleCommandInitializers;
       this.recoveryManager = recoveryManager;
       this.stateTransferManager = stateTransferManager;
+      this.lockManager = lockManager;
+      this.totalOrderManager = totalOrderManager;
    }
 
    @Start(priority = 1)
@@ -196,6 +208,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new GetKeyValueCommand(key, notifier, flags);
    }
 
+   public GetAllCommand buildGetAllCommand(Collection<?> keys, Set<Flag> flags) {
+      return new GetAllCommand(keys, notifier, flags);
+   }
+
    public PutMapCommand buildPutMapCommand(Map map, long lifespan, long maxIdleTimeMillis, Set<Flag> flags) {
       return new PutMapCommand(map, notifier, lifespan, maxIdleTimeMillis, flags);
    }
@@ -232,6 +248,27 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new ClusteredGetCommand(key, cacheName, flags);
    }
 
+   public ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<?> keys, Set<Flag> flags) {
+      return new ClusteredGetAllCommand(keys, cacheName, flags);
+   }
+
+   public WaitForGraphCommand buildWaitForGraphCommand(Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges) {
+      return new WaitForGraphCommand(cacheName, edges);
+   }
+
+   public TotalOrderPrepareCommand buildTotalOrderPrepareCommand(PrepareCommand prepare, long epoch) {
+      return new TotalOrderPrepareCommand(cacheName, prepare, epoch, 0);
+   }
+
+   public TotalOrderPrepareCommand buildTotalOrderPrepareCommand(PrepareCommand prepare, long epoch, long seqno) {
+      return new TotalOrderPrepareCommand(cacheName, prepare, epoch, seqno);
+   }
+
+   public TotalOrderControlCommand buildTotalOrderControlCommand(TotalOrderControlCommand.Type type, long epoch, long seqno,
+                                                                 Map<Long, Long> lastDeliveries) {
+      return new TotalOrderControlCommand(cacheName, type, epoch, seqno, lastDeliveries);
+   }
+
    /**
     * @param isRemote true if the command is deserialized and is executed remote.
     */
@@ -302,6 +339,19 @@ public class CommandsFactoryImpl implements CommandsFactory {
             ClusteredGetCommand clusteredGetCommand = (ClusteredGetCommand) c;
             clusteredGetCommand.initialize(icc, this, interceptorChain, distributionManager);
             break;
+         case ClusteredGetAllCommand.COMMAND_ID:
+            ClusteredGetAllCommand clusteredGetAllCommand = (ClusteredGetAllCommand) c;
+            clusteredGetAllCommand.initialize(icc, this, interceptorChain, distributionManager);
+            break;
+         case WaitForGraphCommand.COMMAND_ID:
+            ((WaitForGraphCommand) c).init(lockManager);
+            break;
+         case TotalOrderPrepareCommand.COMMAND_ID:
+            ((TotalOrderPrepareCommand) c).init(totalOrderManager);
+            break;
+         case TotalOrderControlCommand.COMMAND_ID:
+            ((TotalOrderControlCommand) c).init(totalOrderManager);
+            break;
          case LockControlCommand.COMMAND_ID:
             LockControlCommand lcc = (LockControlCommand) c;
             lcc.init(interceptorChain, icc, txTable);
@@ -374,8 +424,9 @@ public class CommandsFactoryImpl implements CommandsFactory {
    }
 
    public StateTransferControlCommand buildStateTransferCommand(StateTransferControlCommand.Type type, Address sender,
-                                                         int viewId, Collection<InternalCacheEntry> state) {
-      return new StateTransferControlCommand(cacheName, type, sender, viewId, state);
+                                                         int viewId, Collection<InternalCacheEntry> state,
+                                                         Collection<Integer> completedSegments) {
+      return new StateTransferControlCommand(cacheName, type, sender, viewId, state, completedSegments);
    }
 
    public String getCacheName() {
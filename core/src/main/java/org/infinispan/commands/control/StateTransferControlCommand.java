@@ -65,6 +65,8 @@ public class StateTransferControlCommand extends BaseRpcCommand {
    Address sender;
    int viewId;
    Collection<InternalCacheEntry> state;
+   // segments whose state is complete once this command's state has been applied
+   Collection<Integer> completedSegments;
 
    // cache components
    StateTransferManager stateTransferManager;
@@ -81,12 +83,14 @@ public class StateTransferControlCommand extends BaseRpcCommand {
       super(cacheName);
    }
 
-   public StateTransferControlCommand(String cacheName, Type type, Address sender, int viewId, Collection<InternalCacheEntry> state) {
+   public StateTransferControlCommand(String cacheName, Type type, Address sender, int viewId, Collection<InternalCacheEntry> state,
+                                      Collection<Integer> completedSegments) {
       super(cacheName);
       this.type = type;
       this.sender = sender;
       this.viewId = viewId;
       this.state = state;
+      this.completedSegments = completedSegments;
    }
 
    public StateTransferControlCommand(String cacheName, Type type, Address sender, int viewId) {
@@ -113,7 +117,7 @@ public class StateTransferControlCommand extends BaseRpcCommand {
                stateTransferManager.requestJoin(sender, viewId);
                return null;
             case APPLY_STATE:
-               stateTransferManager.applyState(state, sender, viewId);
+               stateTransferManager.applyState(state, completedSegments, sender, viewId);
                return null;
             case PUSH_COMPLETED:
                stateTransferManager.nodeCompletedPush(sender, viewId);
@@ -134,7 +138,7 @@ public class StateTransferControlCommand extends BaseRpcCommand {
    }
 
    public Object[] getParameters() {
-      return new Object[]{(byte) type.ordinal(), sender, viewId, state};
+      return new Object[]{(byte) type.ordinal(), sender, viewId, state, completedSegments};
    }
 
    @SuppressWarnings("unchecked")
@@ -144,6 +148,7 @@ public class StateTransferControlCommand extends BaseRpcCommand {
       sender = (Address) parameters[i++];
       viewId = (Integer) parameters[i++];
       state = (Collection<InternalCacheEntry>) parameters[i++];
+      completedSegments = (Collection<Integer>) parameters[i++];
    }
 
    @Override
@@ -154,6 +159,7 @@ public class StateTransferControlCommand extends BaseRpcCommand {
             ", sender=" + sender +
             ", viewId=" + viewId +
             ", state=" + (state == null ? "N/A" : state.size()) +
+            ", completedSegments=" + completedSegments +
             '}';
    }
 }
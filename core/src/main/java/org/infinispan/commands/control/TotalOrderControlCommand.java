@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.control;
+
+import org.infinispan.CacheException;
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.transaction.TotalOrderManager;
+
+import java.util.Map;
+
+/**
+ * A control command of the total order commit protocol, sent by the sequencer to the members of the cluster.
+ *
+ * @see TotalOrderManager
+ * @since 5.1
+ */
+public class TotalOrderControlCommand extends BaseRpcCommand {
+
+   public static final byte COMMAND_ID = 27;
+
+   public enum Type {
+      // every member has received the deliveries of an epoch up to a sequence number, they can be applied
+      STABLE,
+      // stop accepting deliveries for the epochs before a new one, and report how far they are known to be stable
+      SEAL,
+      // apply the deliveries of the sealed epochs up to the given sequence numbers, discard the others, and open a new epoch
+      CLOSE
+   }
+
+   private Type type;
+   private long epoch;
+   private long seqno;
+   private Map<Long, Long> lastDeliveries;
+
+   private TotalOrderManager totalOrderManager;
+
+   private TotalOrderControlCommand() {
+      super(null); // For command id uniqueness test
+   }
+
+   public TotalOrderControlCommand(String cacheName) {
+      super(cacheName);
+   }
+
+   public TotalOrderControlCommand(String cacheName, Type type, long epoch, long seqno, Map<Long, Long> lastDeliveries) {
+      super(cacheName);
+      this.type = type;
+      this.epoch = epoch;
+      this.seqno = seqno;
+      this.lastDeliveries = lastDeliveries;
+   }
+
+   public void init(TotalOrderManager totalOrderManager) {
+      this.totalOrderManager = totalOrderManager;
+   }
+
+   @Override
+   public Object perform(InvocationContext ctx) throws Throwable {
+      switch (type) {
+         case STABLE:
+            totalOrderManager.stable(epoch, seqno);
+            return null;
+         case SEAL:
+            return totalOrderManager.seal(epoch);
+         case CLOSE:
+            totalOrderManager.close(getOrigin(), lastDeliveries, epoch);
+            return null;
+      }
+      throw new CacheException("Unknown total order control command type " + type);
+   }
+
+   public Type getType() {
+      return type;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[]{(byte) type.ordinal(), epoch, seqno, lastDeliveries};
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] parameters) {
+      if (commandId != COMMAND_ID) throw new IllegalStateException("Unsupported command id:" + commandId);
+      int i = 0;
+      type = Type.values()[(Byte) parameters[i++]];
+      epoch = (Long) parameters[i++];
+      seqno = (Long) parameters[i++];
+      lastDeliveries = (Map<Long, Long>) parameters[i++];
+   }
+
+   @Override
+   public String toString() {
+      return "TotalOrderControlCommand{" +
+            "type=" + type +
+            ", epoch=" + epoch +
+            ", seqno=" + seqno +
+            ", lastDeliveries=" + lastDeliveries +
+            ", cacheName='" + cacheName + '\'' +
+            '}';
+   }
+}
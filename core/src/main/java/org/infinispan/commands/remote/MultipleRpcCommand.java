@@ -26,6 +26,7 @@ import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.tx.TransactionBoundaryCommand;
 import org.infinispan.context.InvocationContext;
+import org.infinispan.remoting.responses.ExceptionResponse;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -65,18 +66,29 @@ public class MultipleRpcCommand extends BaseRpcInvokingCommand {
    }
 
    /**
-    * Executes commands replicated to the current cache instance by other cache instances.
+    * Executes commands replicated to the current cache instance by other cache instances.  A command that fails does
+    * not prevent the following ones from being executed.
+    *
+    * @return the return value of each command, in order, with an {@link ExceptionResponse} in place of the return value
+    *         of a command that failed
     */
    public Object perform(InvocationContext ctx) throws Throwable {
       if (trace) log.tracef("Executing remotely originated commands: %d", commands.length);
-      for (ReplicableCommand command : commands) {
-         if (command instanceof TransactionBoundaryCommand) {
-            command.perform(null);
-         } else {
-            processVisitableCommand(command);
+      Object[] results = new Object[commands.length];
+      for (int i = 0; i < commands.length; i++) {
+         ReplicableCommand command = commands[i];
+         try {
+            if (command instanceof TransactionBoundaryCommand) {
+               results[i] = command.perform(null);
+            } else {
+               results[i] = processVisitableCommand(command);
+            }
+         } catch (Exception e) {
+            if (trace) log.tracef(e, "Failed executing remotely originated command %s", command);
+            results[i] = new ExceptionResponse(e);
          }
       }
-      return null;
+      return results;
    }
 
    public byte getCommandId() {
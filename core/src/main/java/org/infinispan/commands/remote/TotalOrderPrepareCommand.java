@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.transaction.TotalOrderManager;
+
+/**
+ * Carries the one phase prepare of a transaction committed in total order.  Sent by the originator of the transaction
+ * to the sequencer to have it ordered, and then by the sequencer to all the members of the epoch, numbered, to have it
+ * applied.
+ *
+ * @see TotalOrderManager
+ * @since 5.1
+ */
+public class TotalOrderPrepareCommand extends BaseRpcCommand {
+
+   public static final byte COMMAND_ID = 26;
+
+   private PrepareCommand prepare;
+
+   /**
+    * The epoch the originator asks the transaction to be sequenced in, or the one it was sequenced in.
+    */
+   private long epoch;
+
+   /**
+    * The place of the transaction in the order of its epoch, 0 while it is on its way to the sequencer.
+    */
+   private long seqno;
+
+   private TotalOrderManager totalOrderManager;
+
+   private TotalOrderPrepareCommand() {
+      super(null); // For command id uniqueness test
+   }
+
+   public TotalOrderPrepareCommand(String cacheName) {
+      super(cacheName);
+   }
+
+   public TotalOrderPrepareCommand(String cacheName, PrepareCommand prepare, long epoch, long seqno) {
+      super(cacheName);
+      this.prepare = prepare;
+      this.epoch = epoch;
+      this.seqno = seqno;
+   }
+
+   public void init(TotalOrderManager totalOrderManager) {
+      this.totalOrderManager = totalOrderManager;
+   }
+
+   @Override
+   public Object perform(InvocationContext ctx) throws Throwable {
+      if (isSequenced()) {
+         totalOrderManager.received(epoch, seqno, prepare);
+         return null;
+      } else {
+         return totalOrderManager.sequence(prepare, epoch);
+      }
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[]{prepare, epoch, seqno};
+   }
+
+   @Override
+   public void setParameters(int commandId, Object[] parameters) {
+      if (commandId != COMMAND_ID) throw new IllegalStateException("Unsupported command id:" + commandId);
+      prepare = (PrepareCommand) parameters[0];
+      epoch = (Long) parameters[1];
+      seqno = (Long) parameters[2];
+   }
+
+   public PrepareCommand getPrepare() {
+      return prepare;
+   }
+
+   public boolean isSequenced() {
+      return seqno > 0;
+   }
+
+   public long getEpoch() {
+      return epoch;
+   }
+
+   public long getSeqno() {
+      return seqno;
+   }
+
+   @Override
+   public String toString() {
+      return "TotalOrderPrepareCommand{" +
+            "prepare=" + prepare +
+            ", epoch=" + epoch +
+            ", seqno=" + seqno +
+            ", cacheName='" + cacheName + '\'' +
+            '}';
+   }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.context.InvocationContext;
+import org.infinispan.transaction.xa.DldGlobalTransaction;
+import org.infinispan.util.concurrent.locks.DeadlockDetectingLockManager;
+import org.infinispan.util.concurrent.locks.LockManager;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Carries the wait-for edges of the transactions blocked on the sender's locks, i.e. which transaction each of them
+ * waits for.  Broadcast periodically by the {@link DeadlockDetectingLockManager} of every node, so that all of them can
+ * detect the deadlocks spanning several nodes.
+ *
+ * @since 5.1
+ */
+public class WaitForGraphCommand extends BaseRpcCommand {
+
+   public static final byte COMMAND_ID = 17;
+
+   private Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges;
+
+   private LockManager lockManager;
+
+   private WaitForGraphCommand() {
+      super(null); // For command id uniqueness test
+   }
+
+   public WaitForGraphCommand(String cacheName) {
+      super(cacheName);
+   }
+
+   public WaitForGraphCommand(String cacheName, Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges) {
+      super(cacheName);
+      this.edges = edges;
+   }
+
+   public void init(LockManager lockManager) {
+      this.lockManager = lockManager;
+   }
+
+   @Override
+   public Object perform(InvocationContext ctx) throws Throwable {
+      // caches without deadlock detection have no use for these
+      if (lockManager instanceof DeadlockDetectingLockManager) {
+         ((DeadlockDetectingLockManager) lockManager).updateRemoteEdges(getOrigin(), edges);
+      }
+      return null;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[]{edges};
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] parameters) {
+      if (commandId != COMMAND_ID) throw new IllegalStateException("Unsupported command id:" + commandId);
+      edges = (Map<DldGlobalTransaction, Set<DldGlobalTransaction>>) parameters[0];
+   }
+
+   public Map<DldGlobalTransaction, Set<DldGlobalTransaction>> getEdges() {
+      return edges;
+   }
+
+   @Override
+   public String toString() {
+      return "WaitForGraphCommand{" +
+            "edges=" + edges +
+            ", cacheName='" + cacheName + '\'' +
+            '}';
+   }
+}
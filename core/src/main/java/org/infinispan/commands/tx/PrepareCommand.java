@@ -25,6 +25,7 @@ package org.infinispan.commands.tx;
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.Visitor;
 import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.RemoteTxInvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
@@ -39,6 +40,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -57,6 +59,7 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
 
    protected WriteCommand[] modifications;
    protected boolean onePhaseCommit;
+   protected Map<Object, EntryVersion> versionsSeen;
    protected CacheNotifier notifier;
    protected RecoveryManager recoveryManager;
    private transient boolean replayEntryWrapping  = false;
@@ -143,6 +146,18 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
       return modifications != null ? modifications.length : 0;
    }
 
+   /**
+    * @return the versions of the modified keys that the transaction read, which the owners of the keys compare with
+    *         the current ones to detect write skews, or null if the cache doesn't version its entries
+    */
+   public Map<Object, EntryVersion> getVersionsSeen() {
+      return versionsSeen;
+   }
+
+   public void setVersionsSeen(Map<Object, EntryVersion> versionsSeen) {
+      this.versionsSeen = versionsSeen;
+   }
+
    public byte getCommandId() {
       return COMMAND_ID;
    }
@@ -151,10 +166,11 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
    public Object[] getParameters() {
       int numMods = modifications == null ? 0 : modifications.length;
       int i = 0;
-      final int params = 3;
+      final int params = 4;
       Object[] retval = new Object[numMods + params];
       retval[i++] = globalTx;
       retval[i++] = onePhaseCommit;
+      retval[i++] = versionsSeen;
       retval[i++] = numMods;
       if (numMods > 0) System.arraycopy(modifications, 0, retval, params, numMods);
       return retval;
@@ -166,6 +182,7 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
       int i = 0;
       globalTx = (GlobalTransaction) args[i++];
       onePhaseCommit = (Boolean) args[i++];
+      versionsSeen = (Map<Object, EntryVersion>) args[i++];
       int numMods = (Integer) args[i++];
       if (numMods > 0) {
          modifications = new WriteCommand[numMods];
@@ -178,6 +195,7 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
       copy.globalTx = globalTx;
       copy.modifications = modifications == null ? null : modifications.clone();
       copy.onePhaseCommit = onePhaseCommit;
+      copy.versionsSeen = versionsSeen;
       return copy;
    }
 
@@ -187,6 +205,7 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
             "gtx=" + globalTx +
             ", modifications=" + (modifications == null ? null : Arrays.asList(modifications)) +
             ", onePhaseCommit=" + onePhaseCommit +
+            ", versionsSeen=" + versionsSeen +
             ", " + super.toString();
    }
 
@@ -26,10 +26,13 @@ import org.infinispan.CacheException;
 import org.infinispan.config.FluentConfiguration.*;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.distribution.RemoteReadStrategy;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
 import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.distribution.group.Grouper;
+import org.infinispan.eviction.DefaultEntrySizeCalculator;
+import org.infinispan.eviction.EntrySizeCalculator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.ComponentRegistry;
@@ -234,8 +237,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
 
    /**
-    * Time period that determines how often is lock acquisition attempted within maximum time allowed to acquire a
-    * particular lock
+    * Time period that determines how often deadlocks are looked for, and how often the nodes of a cluster exchange the
+    * wait-for edges of their transactions. Transactions waiting for a lock are not woken up in between
     *
     * @param eagerDeadlockSpinDuration
     * @deprecated Use {@link FluentConfiguration.DeadlockDetectionConfig#spinDuration(Long)} instead
@@ -315,10 +318,26 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.hash.rehashRpcTimeout;
    }
 
+   public RemoteReadStrategy getRemoteReadStrategy() {
+      return clustering.hash.remoteReadStrategy;
+   }
+
+   public long getRemoteReadStaggerDelay() {
+      return clustering.hash.remoteReadStaggerDelay;
+   }
+
    public boolean isWriteSkewCheck() {
       return locking.writeSkewCheck;
    }
 
+   public boolean isUseVersioning() {
+      return locking.useVersioning;
+   }
+
+   public boolean isUseCasLocks() {
+      return locking.useCasLocks;
+   }
+
    /**
     * This setting is only applicable in the case of REPEATABLE_READ. When write skew check is set to false, if the
     * writer at commit time discovers that the working entry and the underlying entry have different versions, the
@@ -567,7 +586,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
    }
 
    /**
-    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS' and 'NONE' (to disable eviction).
+    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS', 'TINY_LFU' and 'NONE' (to disable eviction).
     *
     * @param evictionStrategy
     * @deprecated Use {@link FluentConfiguration.EvictionConfig#strategy(org.infinispan.eviction.EvictionStrategy)} instead
@@ -578,7 +597,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
    }
 
    /**
-    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS' and 'NONE' (to disable eviction).
+    * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS', 'TINY_LFU' and 'NONE' (to disable eviction).
     *
     * @param eStrategy
     * @deprecated Use {@link FluentConfiguration.EvictionConfig#strategy(org.infinispan.eviction.EvictionStrategy)} instead
@@ -626,6 +645,21 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return eviction.maxEntries;
    }
 
+   /**
+    * Maximum estimated memory, in bytes, occupied by the entries of a cache instance. -1 means no limit.
+    */
+   public long getEvictionMaxMemory() {
+      return eviction.maxMemory;
+   }
+
+   /**
+    * Class name of the {@link org.infinispan.eviction.EntrySizeCalculator} used to estimate the memory occupied by
+    * each entry when eviction is bounded by memory.
+    */
+   public String getEvictionSizeCalculatorClass() {
+      return eviction.sizeCalculatorClass;
+   }
+
    /**
     * Maximum number of entries in a cache instance. If selected value is not a power of two the actual value will
     * default to the least power of two larger than selected value. -1 means no limit.
@@ -1150,6 +1184,22 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.sync.replTimeout;
    }
 
+   /**
+    * The longest, in milliseconds, that a remote command may be held back so that it is sent together with concurrent
+    * commands for the same recipients, taken from the &lt;sync /&gt; or &lt;async /&gt; element depending on the cache
+    * mode. 0 disables RPC batching.
+    */
+   public long getRpcBatchingLatency() {
+      return getCacheMode().isSynchronous() ? clustering.sync.batchingLatency : clustering.async.batchingLatency;
+   }
+
+   /**
+    * The maximum number of commands sent in a single batched remote call.
+    */
+   public int getRpcBatchingMaxCommands() {
+      return getCacheMode().isSynchronous() ? clustering.sync.batchingMaxCommands : clustering.async.batchingMaxCommands;
+   }
+
    public CacheMode getCacheMode() {
       return clustering.mode;
    }
@@ -1269,6 +1319,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.stateRetrieval.numRetries;
    }
 
+   public int getStateRetrievalChunkSize() {
+      return clustering.stateRetrieval.chunkSize;
+   }
+
    public int getStateRetrievalMaxNonProgressingLogWrites() {
       return clustering.stateRetrieval.maxNonProgressingLogWrites;
    }
@@ -1304,6 +1358,26 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.l1.onRehash;
    }
 
+   public int getL1MaxEntries() {
+      return clustering.l1.maxEntries;
+   }
+
+   public EvictionStrategy getL1EvictionStrategy() {
+      return clustering.l1.evictionStrategy;
+   }
+
+   public int getL1MaxRequestors() {
+      return clustering.l1.maxRequestors;
+   }
+
+   public long getL1InvalidationBatchingLatency() {
+      return clustering.l1.invalidationBatchingLatency;
+   }
+
+   public boolean isL1AsyncInvalidation() {
+      return clustering.l1.asyncInvalidation;
+   }
+
    public String getConsistentHashClass() {
       if (clustering.hash.consistentHashClass == null) {
          clustering.hash.consistentHashClass = globalConfiguration == null || globalConfiguration.hasTopologyInfo() ? TopologyAwareConsistentHash.class.getName() : DefaultConsistentHash.class.getName();
@@ -1364,6 +1438,17 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return transaction.isUseSynchronization();
    }
 
+   /**
+    * If enabled, transactions commit in a single step: the originator hands its prepare to the cluster coordinator,
+    * which orders it with all the other transactions and multicasts it to every node.  Each node then validates and
+    * applies the transactions in the same order, so no distributed locks are acquired and no two-phase commit is
+    * needed.  Only available for optimistic transactions on synchronously replicated caches, without recovery.
+    * Transactions that have not been applied when the view changes may be rolled back.
+    */
+   public boolean isTotalOrderCommit() {
+      return transaction.isTotalOrderCommit();
+   }
+
    // ------------------------------------------------------------------------------------------------------------
    //   HELPERS
    // ------------------------------------------------------------------------------------------------------------
@@ -1648,6 +1733,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "isUseSynchronizationForTransactions")
       protected Boolean useSynchronization = false;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "isTotalOrderCommit")
+      protected Boolean totalOrderCommit = false;
+
       @Dynamic
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEagerLockSingleNode")
       protected Boolean eagerLockSingleNode = false;
@@ -1770,6 +1858,25 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @Override
+      public TransactionConfig totalOrderCommit(Boolean totalOrderCommit) {
+         return setTotalOrderCommit(totalOrderCommit);
+      }
+
+      @XmlAttribute
+      public Boolean isTotalOrderCommit() {
+         return totalOrderCommit;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private TransactionConfig setTotalOrderCommit(Boolean totalOrderCommit) {
+         testImmutability("totalOrderCommit");
+         this.totalOrderCommit = totalOrderCommit;
+         return this;
+      }
+
       @XmlAttribute
       public Boolean isSyncRollbackPhase() {
          return syncRollbackPhase;
@@ -1929,6 +2036,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (lockingMode != null ? !lockingMode.equals(that.lockingMode) : that.lockingMode != null)
             return false;
+         if (totalOrderCommit != null ? !totalOrderCommit.equals(that.totalOrderCommit) : that.totalOrderCommit != null)
+            return false;
 
          return true;
       }
@@ -1941,6 +2050,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (syncRollbackPhase != null ? syncRollbackPhase.hashCode() : 0);
          result = 31 * result + (useEagerLocking != null ? useEagerLocking.hashCode() : 0);
          result = 31 * result + (cacheStopTimeout != null ? cacheStopTimeout.hashCode() : 0);
+         result = 31 * result + (totalOrderCommit != null ? totalOrderCommit.hashCode() : 0);
          return result;
       }
 
@@ -1984,9 +2094,15 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setWriteSkewCheck")
       protected Boolean writeSkewCheck = false;
 
+      @ConfigurationDocRef(bean = LockingConfig.class, targetElement = "useVersioning")
+      protected Boolean useVersioning = false;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseLockStriping")
       protected Boolean useLockStriping = false;
 
+      @ConfigurationDocRef(bean = LockingConfig.class, targetElement = "useCasLocks")
+      protected Boolean useCasLocks = false;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setConcurrencyLevel")
       protected Integer concurrencyLevel = 32;
 
@@ -2058,6 +2174,26 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
 
 
+      @XmlAttribute
+      public Boolean isUseVersioning() {
+         return useVersioning;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setUseVersioning(Boolean useVersioning) {
+         testImmutability("useVersioning");
+         this.useVersioning = useVersioning;
+      }
+
+      @Override
+      public LockingConfig useVersioning(Boolean useVersioning) {
+         setUseVersioning(useVersioning);
+         return this;
+      }
+
+
       @XmlAttribute
       public Boolean isUseLockStriping() {
          return useLockStriping;
@@ -2079,6 +2215,26 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
 
 
+      @XmlAttribute
+      public Boolean isUseCasLocks() {
+         return useCasLocks;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setUseCasLocks(Boolean useCasLocks) {
+         testImmutability("useCasLocks");
+         this.useCasLocks = useCasLocks;
+      }
+
+      @Override
+      public LockingConfig useCasLocks(Boolean useCasLocks) {
+         setUseCasLocks(useCasLocks);
+         return this;
+      }
+
+
       @XmlAttribute
       public Integer getConcurrencyLevel() {
          return concurrencyLevel;
@@ -2119,8 +2275,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (useLockStriping != null ? !useLockStriping.equals(that.useLockStriping) : that.useLockStriping != null)
             return false;
+         if (useCasLocks != null ? !useCasLocks.equals(that.useCasLocks) : that.useCasLocks != null)
+            return false;
          if (writeSkewCheck != null ? !writeSkewCheck.equals(that.writeSkewCheck) : that.writeSkewCheck != null)
             return false;
+         if (useVersioning != null ? !useVersioning.equals(that.useVersioning) : that.useVersioning != null)
+            return false;
 
          return true;
       }
@@ -2130,7 +2290,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          int result = lockAcquisitionTimeout != null ? lockAcquisitionTimeout.hashCode() : 0;
          result = 31 * result + (isolationLevel != null ? isolationLevel.hashCode() : 0);
          result = 31 * result + (writeSkewCheck != null ? writeSkewCheck.hashCode() : 0);
+         result = 31 * result + (useVersioning != null ? useVersioning.hashCode() : 0);
          result = 31 * result + (useLockStriping != null ? useLockStriping.hashCode() : 0);
+         result = 31 * result + (useCasLocks != null ? useCasLocks.hashCode() : 0);
          result = 31 * result + (concurrencyLevel != null ? concurrencyLevel.hashCode() : 0);
          return result;
       }
@@ -2457,6 +2619,14 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueClass")
       protected String replQueueClass = ReplicationQueueImpl.class.getName();
 
+      @ConfigurationDoc(desc = "The longest, in milliseconds, that a remote command may be held back so that it is sent " +
+            "in a single message together with concurrent commands for the same recipients. Commands are only held " +
+            "back while an earlier message to these recipients is still in flight. 0 disables batching.")
+      protected Long batchingLatency = 0L;
+
+      @ConfigurationDoc(desc = "The maximum number of commands sent in a single batched message.")
+      protected Integer batchingMaxCommands = 100;
+
       @XmlTransient
       private boolean unmarshalledFromXml = false;
 
@@ -2487,6 +2657,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (!Util.safeEquals(replQueueClass, asyncType.replQueueClass))
             return false;
+         if (batchingLatency != null ? !batchingLatency.equals(asyncType.batchingLatency) : asyncType.batchingLatency != null)
+            return false;
+         if (batchingMaxCommands != null ? !batchingMaxCommands.equals(asyncType.batchingMaxCommands) : asyncType.batchingMaxCommands != null)
+            return false;
 
          return true;
       }
@@ -2499,6 +2673,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (replQueueInterval != null ? replQueueInterval.hashCode() : 0);
          result = 31 * result + (asyncMarshalling != null ? asyncMarshalling.hashCode() : 0);
          result = 31 * result + (replQueueClass != null ? replQueueClass.hashCode() : 0);
+         result = 31 * result + (batchingLatency != null ? batchingLatency.hashCode() : 0);
+         result = 31 * result + (batchingMaxCommands != null ? batchingMaxCommands.hashCode() : 0);
          return result;
       }
 
@@ -2610,6 +2786,44 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Long getBatchingLatency() {
+         return batchingLatency;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setBatchingLatency(Long batchingLatency) {
+         testImmutability("batchingLatency");
+         this.batchingLatency = batchingLatency;
+      }
+
+      @Override
+      public AsyncConfig batchingLatency(Long batchingLatency) {
+         setBatchingLatency(batchingLatency);
+         return this;
+      }
+
+      @XmlAttribute
+      public Integer getBatchingMaxCommands() {
+         return batchingMaxCommands;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setBatchingMaxCommands(Integer batchingMaxCommands) {
+         testImmutability("batchingMaxCommands");
+         this.batchingMaxCommands = batchingMaxCommands;
+      }
+
+      @Override
+      public AsyncConfig batchingMaxCommands(Integer batchingMaxCommands) {
+         setBatchingMaxCommands(batchingMaxCommands);
+         return this;
+      }
+
 
       @Override
       public void willUnmarshall(Object parent) {
@@ -2765,6 +2979,16 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionThreadPolicy")
       protected EvictionThreadPolicy threadPolicy = EvictionThreadPolicy.DEFAULT;
 
+      @ConfigurationDoc(desc = "Maximum estimated memory, in bytes, occupied by the entries of a cache instance. " +
+            "Entries are evicted once either this or maxEntries is exceeded. The limit is enforced per segment of " +
+            "the data container, each segment evicting once its entries exceed its share of the limit. " +
+            "The LIRS and TINY_LFU strategies need maxEntries to be set as well. -1 means no limit.")
+      protected Long maxMemory = -1L;
+
+      @ConfigurationDoc(desc = "Fully qualified class name of the EntrySizeCalculator used to estimate the memory " +
+            "occupied by each entry when maxMemory is set.")
+      protected String sizeCalculatorClass = DefaultEntrySizeCalculator.class.getName();
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitEvictionType(this);
       }
@@ -2850,6 +3074,44 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Long getMaxMemory() {
+         return maxMemory;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setMaxMemory(Long maxMemory) {
+         testImmutability("maxMemory");
+         this.maxMemory = maxMemory;
+      }
+
+      @Override
+      public EvictionConfig maxMemory(Long maxMemory) {
+         setMaxMemory(maxMemory);
+         return this;
+      }
+
+      @XmlAttribute
+      public String getSizeCalculatorClass() {
+         return sizeCalculatorClass;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setSizeCalculatorClass(String sizeCalculatorClass) {
+         testImmutability("sizeCalculatorClass");
+         this.sizeCalculatorClass = sizeCalculatorClass;
+      }
+
+      @Override
+      public EvictionConfig sizeCalculatorClass(Class<? extends EntrySizeCalculator> sizeCalculatorClass) {
+         setSizeCalculatorClass(sizeCalculatorClass.getName());
+         return this;
+      }
+
       @Override
       protected EvictionType setConfiguration(Configuration config) {
          super.setConfiguration(config);
@@ -2864,6 +3126,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          EvictionType that = (EvictionType) o;
 
          if (maxEntries != null ? !maxEntries.equals(that.maxEntries) : that.maxEntries != null) return false;
+         if (maxMemory != null ? !maxMemory.equals(that.maxMemory) : that.maxMemory != null) return false;
+         if (sizeCalculatorClass != null ? !sizeCalculatorClass.equals(that.sizeCalculatorClass) : that.sizeCalculatorClass != null)
+            return false;
          if (strategy != that.strategy) return false;
          if (threadPolicy != that.threadPolicy) return false;
 
@@ -2875,6 +3140,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          int result = strategy != null ? strategy.hashCode() : 0;
          result = 31 * result + (threadPolicy != null ? threadPolicy.hashCode() : 0);
          result = 31 * result + (maxEntries != null ? maxEntries.hashCode() : 0);
+         result = 31 * result + (maxMemory != null ? maxMemory.hashCode() : 0);
+         result = 31 * result + (sizeCalculatorClass != null ? sizeCalculatorClass.hashCode() : 0);
          return result;
       }
    }
@@ -3016,6 +3283,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStateRetrievalMaxNonProgressingLogWrites")
       protected Integer maxNonProgressingLogWrites = 100;
 
+      @ConfigurationDocRef(bean = StateRetrievalConfig.class, targetElement = "chunkSize")
+      protected Integer chunkSize = 10000;
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitStateRetrievalType(this);
       }
@@ -3187,6 +3457,25 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Integer getChunkSize() {
+         return chunkSize;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setChunkSize(Integer chunkSize) {
+         testImmutability("chunkSize");
+         this.chunkSize = chunkSize;
+      }
+
+      @Override
+      public StateRetrievalConfig chunkSize(Integer chunkSize) {
+         setChunkSize(chunkSize);
+         return this;
+      }
+
       @Override
       public boolean equals(Object o) {
          if (this == o) return true;
@@ -3202,6 +3491,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          if (retryWaitTimeIncreaseFactor != null ? !retryWaitTimeIncreaseFactor.equals(that.retryWaitTimeIncreaseFactor) : that.retryWaitTimeIncreaseFactor != null)
             return false;
          if (numRetries != null ? !numRetries.equals(that.numRetries) : that.numRetries != null) return false;
+         if (chunkSize != null ? !chunkSize.equals(that.chunkSize) : that.chunkSize != null) return false;
 
          return true;
       }
@@ -3213,6 +3503,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (initialRetryWaitTime != null ? initialRetryWaitTime.hashCode() : 0);
          result = 31 * result + (retryWaitTimeIncreaseFactor != null ? retryWaitTimeIncreaseFactor.hashCode() : 0);
          result = 31 * result + (numRetries != null ? numRetries.hashCode() : 0);
+         result = 31 * result + (chunkSize != null ? chunkSize.hashCode() : 0);
          return result;
       }
    }
@@ -3237,6 +3528,14 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setSyncReplTimeout")
       protected Long replTimeout = 15000L;
 
+      @ConfigurationDoc(desc = "The longest, in milliseconds, that a remote command may be held back so that it is sent " +
+            "in a single message together with concurrent commands for the same recipients. Commands are only held " +
+            "back while an earlier message to these recipients is still in flight. 0 disables batching.")
+      protected Long batchingLatency = 0L;
+
+      @ConfigurationDoc(desc = "The maximum number of commands sent in a single batched message.")
+      protected Integer batchingMaxCommands = 100;
+
       @XmlTransient
       private boolean unmarshalledFromXml = false;
 
@@ -3263,6 +3562,44 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Long getBatchingLatency() {
+         return batchingLatency;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setBatchingLatency(Long batchingLatency) {
+         testImmutability("batchingLatency");
+         this.batchingLatency = batchingLatency;
+      }
+
+      @Override
+      public SyncConfig batchingLatency(Long batchingLatency) {
+         setBatchingLatency(batchingLatency);
+         return this;
+      }
+
+      @XmlAttribute
+      public Integer getBatchingMaxCommands() {
+         return batchingMaxCommands;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setBatchingMaxCommands(Integer batchingMaxCommands) {
+         testImmutability("batchingMaxCommands");
+         this.batchingMaxCommands = batchingMaxCommands;
+      }
+
+      @Override
+      public SyncConfig batchingMaxCommands(Integer batchingMaxCommands) {
+         setBatchingMaxCommands(batchingMaxCommands);
+         return this;
+      }
+
       @Override
       public boolean equals(Object o) {
          if (this == o) return true;
@@ -3272,13 +3609,20 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
          if (replTimeout != null ? !replTimeout.equals(syncType.replTimeout) : syncType.replTimeout != null)
             return false;
+         if (batchingLatency != null ? !batchingLatency.equals(syncType.batchingLatency) : syncType.batchingLatency != null)
+            return false;
+         if (batchingMaxCommands != null ? !batchingMaxCommands.equals(syncType.batchingMaxCommands) : syncType.batchingMaxCommands != null)
+            return false;
 
          return true;
       }
 
       @Override
       public int hashCode() {
-         return replTimeout != null ? replTimeout.hashCode() : 0;
+         int result = replTimeout != null ? replTimeout.hashCode() : 0;
+         result = 31 * result + (batchingLatency != null ? batchingLatency.hashCode() : 0);
+         result = 31 * result + (batchingMaxCommands != null ? batchingMaxCommands.hashCode() : 0);
+         return result;
       }
 
       @Override
@@ -3321,6 +3665,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setRehashEnabled")
       protected Boolean rehashEnabled = true;
+
+      @ConfigurationDocRef(bean = HashConfig.class, targetElement = "remoteReadStrategy")
+      protected RemoteReadStrategy remoteReadStrategy = RemoteReadStrategy.ALL;
+
+      @ConfigurationDocRef(bean = HashConfig.class, targetElement = "remoteReadStaggerDelay")
+      protected Long remoteReadStaggerDelay = 20L;
       
       @ConfigurationDocRef(bean = HashConfig.class, targetElement = "numVirtualNodes")
       protected Integer numVirtualNodes = 1;
@@ -3477,6 +3827,44 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          setRehashEnabled(rehashEnabled);
          return this;
       }
+
+      @XmlAttribute
+      public RemoteReadStrategy getRemoteReadStrategy() {
+         return remoteReadStrategy;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setRemoteReadStrategy(RemoteReadStrategy remoteReadStrategy) {
+         testImmutability("remoteReadStrategy");
+         this.remoteReadStrategy = remoteReadStrategy;
+      }
+
+      @Override
+      public HashConfig remoteReadStrategy(RemoteReadStrategy remoteReadStrategy) {
+         setRemoteReadStrategy(remoteReadStrategy);
+         return this;
+      }
+
+      @XmlAttribute
+      public Long getRemoteReadStaggerDelay() {
+         return remoteReadStaggerDelay;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setRemoteReadStaggerDelay(Long remoteReadStaggerDelay) {
+         testImmutability("remoteReadStaggerDelay");
+         this.remoteReadStaggerDelay = remoteReadStaggerDelay;
+      }
+
+      @Override
+      public HashConfig remoteReadStaggerDelay(Long remoteReadStaggerDelay) {
+         setRemoteReadStaggerDelay(remoteReadStaggerDelay);
+         return this;
+      }
       
       public GroupsConfiguration groups() {
          groups.setConfiguration(config);
@@ -3512,6 +3900,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (rehashWait != null ? !rehashWait.equals(hashType.rehashWait) : hashType.rehashWait != null) return false;
          if (rehashEnabled != hashType.rehashEnabled) return false;
+         if (remoteReadStrategy != hashType.remoteReadStrategy) return false;
+         if (remoteReadStaggerDelay != null ? !remoteReadStaggerDelay.equals(hashType.remoteReadStaggerDelay) : hashType.remoteReadStaggerDelay != null)
+            return false;
 
          return true;
       }
@@ -3526,6 +3917,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (rehashWait != null ? rehashWait.hashCode() : 0);
          result = 31 * result + (rehashRpcTimeout != null ? rehashRpcTimeout.hashCode() : 0);
          result = 31 * result + (rehashEnabled ? 0 : 1);
+         result = 31 * result + (remoteReadStrategy != null ? remoteReadStrategy.hashCode() : 0);
+         result = 31 * result + (remoteReadStaggerDelay != null ? remoteReadStaggerDelay.hashCode() : 0);
          return result;
       }
       
@@ -3539,6 +3932,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          dolly.rehashEnabled = rehashEnabled;
          dolly.rehashRpcTimeout = rehashRpcTimeout;
          dolly.rehashWait = rehashWait;
+         dolly.remoteReadStrategy = remoteReadStrategy;
+         dolly.remoteReadStaggerDelay = remoteReadStaggerDelay;
          dolly.groups = (GroupsConfiguration) groups.clone();
          return dolly;
       }
@@ -3570,6 +3965,21 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setL1InvalidationThreshold")
       protected Integer invalidationThreshold = 0;
+
+      @ConfigurationDocRef(bean = L1Config.class, targetElement = "maxEntries")
+      protected Integer maxEntries = -1;
+
+      @ConfigurationDocRef(bean = L1Config.class, targetElement = "evictionStrategy")
+      protected EvictionStrategy evictionStrategy = EvictionStrategy.LRU;
+
+      @ConfigurationDocRef(bean = L1Config.class, targetElement = "maxRequestors")
+      protected Integer maxRequestors = -1;
+
+      @ConfigurationDocRef(bean = L1Config.class, targetElement = "invalidationBatchingLatency")
+      protected Long invalidationBatchingLatency = 0L;
+
+      @ConfigurationDocRef(bean = L1Config.class, targetElement = "asyncInvalidation")
+      protected Boolean asyncInvalidation = false;
       
       public void accept(ConfigurationBeanVisitor v) {
          v.visitL1Type(this);
@@ -3650,6 +4060,101 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 	      return invalidationThreshold;
       }
 
+      @XmlAttribute
+      public Integer getMaxEntries() {
+         return maxEntries;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setMaxEntries(Integer maxEntries) {
+         testImmutability("maxEntries");
+         this.maxEntries = maxEntries;
+      }
+
+      @Override
+      public L1Config maxEntries(Integer maxEntries) {
+         setMaxEntries(maxEntries);
+         return this;
+      }
+
+      @XmlAttribute
+      public EvictionStrategy getEvictionStrategy() {
+         return evictionStrategy;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setEvictionStrategy(EvictionStrategy evictionStrategy) {
+         testImmutability("evictionStrategy");
+         this.evictionStrategy = evictionStrategy;
+      }
+
+      @Override
+      public L1Config evictionStrategy(EvictionStrategy evictionStrategy) {
+         setEvictionStrategy(evictionStrategy);
+         return this;
+      }
+
+      @XmlAttribute
+      public Integer getMaxRequestors() {
+         return maxRequestors;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setMaxRequestors(Integer maxRequestors) {
+         testImmutability("maxRequestors");
+         this.maxRequestors = maxRequestors;
+      }
+
+      @Override
+      public L1Config maxRequestors(Integer maxRequestors) {
+         setMaxRequestors(maxRequestors);
+         return this;
+      }
+
+      @XmlAttribute
+      public Long getInvalidationBatchingLatency() {
+         return invalidationBatchingLatency;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setInvalidationBatchingLatency(Long invalidationBatchingLatency) {
+         testImmutability("invalidationBatchingLatency");
+         this.invalidationBatchingLatency = invalidationBatchingLatency;
+      }
+
+      @Override
+      public L1Config invalidationBatchingLatency(Long invalidationBatchingLatency) {
+         setInvalidationBatchingLatency(invalidationBatchingLatency);
+         return this;
+      }
+
+      @XmlAttribute
+      public Boolean isAsyncInvalidation() {
+         return asyncInvalidation;
+      }
+
+      /**
+       * Needed for JAXB
+       */
+      private void setAsyncInvalidation(Boolean asyncInvalidation) {
+         testImmutability("asyncInvalidation");
+         this.asyncInvalidation = asyncInvalidation;
+      }
+
+      @Override
+      public L1Config asyncInvalidation(Boolean asyncInvalidation) {
+         setAsyncInvalidation(asyncInvalidation);
+         return this;
+      }
+
       @Override
       public L1Config disable() {
          return setEnabled(false);
@@ -3666,6 +4171,11 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          if (lifespan != null ? !lifespan.equals(l1Type.lifespan) : l1Type.lifespan != null) return false;
          if (onRehash != null ? !onRehash.equals(l1Type.onRehash) : l1Type.onRehash != null) return false;
          if (invalidationThreshold != null ? !invalidationThreshold.equals(l1Type.invalidationThreshold) : l1Type.invalidationThreshold != null) return false;
+         if (maxEntries != null ? !maxEntries.equals(l1Type.maxEntries) : l1Type.maxEntries != null) return false;
+         if (evictionStrategy != l1Type.evictionStrategy) return false;
+         if (maxRequestors != null ? !maxRequestors.equals(l1Type.maxRequestors) : l1Type.maxRequestors != null) return false;
+         if (invalidationBatchingLatency != null ? !invalidationBatchingLatency.equals(l1Type.invalidationBatchingLatency) : l1Type.invalidationBatchingLatency != null) return false;
+         if (asyncInvalidation != null ? !asyncInvalidation.equals(l1Type.asyncInvalidation) : l1Type.asyncInvalidation != null) return false;
          
          return true;
       }
@@ -3676,6 +4186,11 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (lifespan != null ? lifespan.hashCode() : 0);
          result = 31 * result + (onRehash != null ? onRehash.hashCode() : 0);
          result = 31 * result + (invalidationThreshold != null ? invalidationThreshold.hashCode() : 0);
+         result = 31 * result + (maxEntries != null ? maxEntries.hashCode() : 0);
+         result = 31 * result + (evictionStrategy != null ? evictionStrategy.hashCode() : 0);
+         result = 31 * result + (maxRequestors != null ? maxRequestors.hashCode() : 0);
+         result = 31 * result + (invalidationBatchingLatency != null ? invalidationBatchingLatency.hashCode() : 0);
+         result = 31 * result + (asyncInvalidation != null ? asyncInvalidation.hashCode() : 0);
          return result;
       }
    }
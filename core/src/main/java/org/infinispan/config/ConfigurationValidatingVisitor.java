@@ -27,6 +27,8 @@ import org.infinispan.config.GlobalConfiguration.TransportType;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheStoreConfig;
 import org.infinispan.loaders.decorators.SingletonStoreConfig;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.IsolationLevel;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -104,6 +106,34 @@ public class ConfigurationValidatingVisitor extends AbstractConfigurationBeanVis
       }
    }
 
+   @Override
+   public void visitLockingType(Configuration.LockingType lockingType) {
+      if (!lockingType.useVersioning) return;
+      if (lockingType.isolationLevel != IsolationLevel.REPEATABLE_READ || !lockingType.writeSkewCheck)
+         throw new ConfigurationException("Entry versioning requires REPEATABLE_READ isolation and writeSkewCheck to be enabled");
+      if (!cfg.isTransactionalCache() || cfg.getTransactionLockingMode() != LockingMode.OPTIMISTIC)
+         throw new ConfigurationException("Entry versioning can only be used by transactional caches with optimistic locking");
+      if (cfg.getCacheMode().isDistributed() && cfg.isL1CacheEnabled())
+         throw new ConfigurationException("Entry versioning cannot be used together with L1 caching, because L1 entries don't "
+                                                + "carry the version assigned by the owners. Disable L1 (clustering.l1.enabled)");
+   }
+
+   @Override
+   public void visitTransactionType(Configuration.TransactionType transactionType) {
+      if (!Boolean.TRUE.equals(transactionType.totalOrderCommit)) return;
+      if (cfg.getCacheMode() != Configuration.CacheMode.REPL_SYNC)
+         throw new ConfigurationException("Total order commit can only be used by REPL_SYNC caches");
+      if (!cfg.isTransactionalCache() || cfg.getTransactionLockingMode() != LockingMode.OPTIMISTIC || cfg.isUseEagerLocking())
+         throw new ConfigurationException("Total order commit can only be used by transactional caches with optimistic locking");
+      if (!cfg.isUseVersioning())
+         throw new ConfigurationException("Total order commit requires entry versioning, to validate transactions deterministically");
+      if (cfg.isTransactionRecoveryEnabled())
+         throw new ConfigurationException("Total order commit cannot be used together with transaction recovery");
+      if (!cfg.isUseSynchronizationForTransactions())
+         throw new ConfigurationException("Total order commit requires the cache to take part in transactions through a "
+                                                + "Synchronization (useSynchronization), because it can't vote in a two phase XA commit");
+   }
+
    @Override
    public void visitCacheLoaderManagerConfig(CacheLoaderManagerConfig cacheLoaderManagerConfig) {
       if (!evictionEnabled && cacheLoaderManagerConfig.isPassivation())
@@ -127,8 +157,8 @@ public class ConfigurationValidatingVisitor extends AbstractConfigurationBeanVis
    @Override
    public void visitEvictionType(EvictionType et) {
       evictionEnabled = et.strategy.isEnabled();
-      if (et.strategy.isEnabled() && et.maxEntries <= 0)
-         throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled");
+      if (et.strategy.isEnabled() && et.maxEntries <= 0 && et.maxMemory <= 0)
+         throw new ConfigurationException("Eviction maxEntries and maxMemory values cannot both be less than or equal to zero if eviction is enabled");
    }
 
    @Override
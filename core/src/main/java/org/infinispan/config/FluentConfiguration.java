@@ -24,9 +24,11 @@
 package org.infinispan.config;
 
 import org.infinispan.container.DataContainer;
+import org.infinispan.distribution.RemoteReadStrategy;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.group.Group;
 import org.infinispan.distribution.group.Grouper;
+import org.infinispan.eviction.EntrySizeCalculator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.interceptors.base.CommandInterceptor;
@@ -87,6 +89,17 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        */
       LockingConfig writeSkewCheck(Boolean writeSkewCheck);
 
+      /**
+       * If true, every entry carries a version that is incremented on each committed write, and the write skew check
+       * of optimistic transactions is performed by the owners of the written keys during prepare, by comparing the
+       * versions read by the transaction with the current ones. Requires REPEATABLE_READ, writeSkewCheck and
+       * optimistic locking. When all keys written by a transaction are owned by a single node, the transaction commits
+       * in the prepare round.
+       *
+       * @param useVersioning
+       */
+      LockingConfig useVersioning(Boolean useVersioning);
+
       /**
        * If true, a pool of shared locks is maintained for all entries that need to be locked.
        * Otherwise, a lock is created per entry in the cache. Lock striping helps control memory
@@ -96,6 +109,16 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        */
       LockingConfig useLockStriping(Boolean useLockStriping);
 
+      /**
+       * If true, and lock striping is not used, the lock of each entry is acquired with a compare-and-swap when it is
+       * free, and locks are kept for reuse after they are released instead of being created and discarded for every
+       * write. Requestors only block when the lock is held by someone else. This has not been benchmarked against the
+       * default per-entry locks, so it is disabled by default.
+       *
+       * @param useCasLocks
+       */
+      LockingConfig useCasLocks(Boolean useCasLocks);
+
       /**
        * Concurrency level for lock containers. Adjust this value according to the number of
        * concurrent threads interacting with Infinispan. Similar to the concurrencyLevel tuning
@@ -259,6 +282,11 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
 
       TransactionConfig useSynchronization(Boolean useSynchronization);
 
+      /**
+       * @see org.infinispan.config.Configuration#isTotalOrderCommit()
+       */
+      TransactionConfig totalOrderCommit(Boolean totalOrderCommit);
+
       /**
        * Configures whether the cache uses optimistic or pessimistic locking. If the cache is not transactional then
        * the locking mode is ignored.
@@ -300,8 +328,8 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
       DeadlockDetectionConfig disable();
 
       /**
-       * Time period that determines how often is lock acquisition attempted within maximum time
-       * allowed to acquire a particular lock
+       * Time period that determines how often deadlocks are looked for, and how often the nodes of
+       * a cluster exchange the wait-for edges of their transactions
        *
        * @param duration
        */
@@ -341,7 +369,7 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
     */
    public interface EvictionConfig extends FluentTypes {
       /**
-       * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS' and 'NONE' (to disable
+       * Eviction strategy. Available options are 'UNORDERED', 'FIFO', 'LRU', 'LIRS', 'TINY_LFU' and 'NONE' (to disable
        * eviction).
        *
        * @param strategy
@@ -363,6 +391,28 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param maxEntries
        */
       EvictionConfig maxEntries(Integer maxEntries);
+
+      /**
+       * Maximum estimated memory, in bytes, occupied by the entries of a cache instance. Entries
+       * are evicted once either this limit or the maximum number of entries is exceeded. Like the
+       * maximum number of entries, the limit is enforced per segment of the data container: each
+       * segment evicts once its entries exceed its share of maxMemory, the concurrency level rounded
+       * up to a power of two giving the number of segments. With a skewed key distribution eviction
+       * may hence start before the cache as a whole reaches the limit. When no
+       * maximum number of entries is configured, the number of entries is not bounded; the LIRS
+       * and TINY_LFU strategies however need one. -1 means no limit.
+       *
+       * @param maxMemory
+       */
+      EvictionConfig maxMemory(Long maxMemory);
+
+      /**
+       * Estimates the memory occupied by each entry when a maximum memory is configured. Defaults
+       * to {@link org.infinispan.eviction.DefaultEntrySizeCalculator}.
+       *
+       * @param sizeCalculatorClass
+       */
+      EvictionConfig sizeCalculatorClass(Class<? extends EntrySizeCalculator> sizeCalculatorClass);
    }
 
    /**
@@ -505,6 +555,24 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param replQueueClass
        */
       AsyncConfig replQueueClass(Class<? extends ReplicationQueue> replQueueClass);
+
+      /**
+       * The longest, in milliseconds, that a remote command may be held back so that it is sent in a
+       * single message together with concurrent commands for the same recipients. Commands are only
+       * held back while an earlier message to these recipients is still in flight, so an idle cache
+       * sends straight away. 0, the default, disables batching.
+       *
+       * @param batchingLatency
+       */
+      AsyncConfig batchingLatency(Long batchingLatency);
+
+      /**
+       * The maximum number of commands sent in a single batched message; reaching it sends the batch
+       * without waiting any longer.
+       *
+       * @param batchingMaxCommands
+       */
+      AsyncConfig batchingMaxCommands(Integer batchingMaxCommands);
    }
 
    /**
@@ -520,6 +588,24 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param replTimeout
        */
       SyncConfig replTimeout(Long replTimeout);
+
+      /**
+       * The longest, in milliseconds, that a remote command may be held back so that it is sent in a
+       * single message together with concurrent commands for the same recipients. Commands are only
+       * held back while an earlier message to these recipients is still in flight, so an idle cache
+       * sends straight away. 0, the default, disables batching.
+       *
+       * @param batchingLatency
+       */
+      SyncConfig batchingLatency(Long batchingLatency);
+
+      /**
+       * The maximum number of commands sent in a single batched message; reaching it sends the batch
+       * without waiting any longer.
+       *
+       * @param batchingMaxCommands
+       */
+      SyncConfig batchingMaxCommands(Integer batchingMaxCommands);
    }
 
    /**
@@ -564,6 +650,17 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        */
       StateRetrievalConfig numRetries(Integer numRetries);
 
+      /**
+       * The maximum number of entries sent to a joiner in a single state transfer message. The
+       * state is pushed chunk by chunk, straight from the data container and the cache store, so
+       * this bounds the memory used for state transfer on both sides. It applies both to the state
+       * transfer of replicated caches and to the rehash of distributed caches. A default of 10000
+       * is used.
+       *
+       * @param chunkSize
+       */
+      StateRetrievalConfig chunkSize(Integer chunkSize);
+
       /**
        * This is the maximum amount of time - in milliseconds - to wait for state from neighboring
        * caches, before throwing an exception and aborting startup.
@@ -629,6 +726,55 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * 
        */
       L1Config invalidationThreshold(Integer threshold);
+
+      /**
+       * Maximum number of entries kept in L1. If positive, L1 entries are kept apart from the
+       * entries owned by this node, in a container of their own, so that L1 entries never evict
+       * owned entries and don't count towards their eviction bound. If -1, the default, L1
+       * entries share the data container with the owned entries.
+       *
+       * @param maxEntries
+       */
+      L1Config maxEntries(Integer maxEntries);
+
+      /**
+       * Eviction strategy of the L1 entries, used when {@link #maxEntries(Integer)} is positive.
+       * {@link EvictionStrategy#TINY_LFU} keeps hot keys in L1 when many keys are read once.
+       * A default of {@link EvictionStrategy#LRU} is used.
+       *
+       * @param evictionStrategy
+       */
+      L1Config evictionStrategy(EvictionStrategy evictionStrategy);
+
+      /**
+       * Maximum number of keys for which an owner remembers which nodes have a copy of the key
+       * in L1. When the limit is reached, the least recently requested keys are forgotten, and
+       * their L1 copies are invalidated on the nodes that had them. If -1, the default, the
+       * number of keys is not bounded.
+       *
+       * @param maxRequestors
+       */
+      L1Config maxRequestors(Integer maxRequestors);
+
+      /**
+       * Maximum time, in milliseconds, for which an owner holds back the L1 invalidations bound
+       * for a node while a previous invalidation to that node is still in flight. Keys queued
+       * for the same node in the meantime are deduplicated and sent in a single invalidation
+       * command. If 0, the default, every write sends its own invalidation.
+       *
+       * @param invalidationBatchingLatency
+       */
+      L1Config invalidationBatchingLatency(Long invalidationBatchingLatency);
+
+      /**
+       * If true, writes don't wait for the L1 copies of the written keys to be invalidated.
+       * Invalidations are queued and sent asynchronously at most
+       * {@link #invalidationBatchingLatency(Long)} milliseconds later, so a reader may see a
+       * stale L1 copy for that long. Defaults to false.
+       *
+       * @param asyncInvalidation
+       */
+      L1Config asyncInvalidation(Boolean asyncInvalidation);
    }
 
    /**
@@ -674,6 +820,23 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param rehashEnabled
        */
       HashConfig rehashEnabled(Boolean rehashEnabled);
+
+      /**
+       * Decides which owners are asked for a key that has to be read from a remote node. By
+       * default all the owners are asked at once, see {@link RemoteReadStrategy} for the
+       * strategies that contact fewer owners.
+       *
+       * @param remoteReadStrategy
+       */
+      HashConfig remoteReadStrategy(RemoteReadStrategy remoteReadStrategy);
+
+      /**
+       * With the {@link RemoteReadStrategy#STAGGERED} strategy, the time in milliseconds to wait
+       * for an owner's answer before asking the next owner as well. A default of 20 is used.
+       *
+       * @param remoteReadStaggerDelay
+       */
+      HashConfig remoteReadStaggerDelay(Long remoteReadStaggerDelay);
       
       /**
        * Controls the number of virtual nodes per "real" node. You can read more about virtual nodes
@@ -999,6 +1162,10 @@ abstract class AbstractFluentConfigurationBean extends AbstractNamedCacheConfigu
       return transaction().useSynchronization(useSynchronization);
    }
 
+   public FluentConfiguration.TransactionConfig totalOrderCommit(Boolean totalOrderCommit) {
+      return transaction().totalOrderCommit(totalOrderCommit);
+   }
+
    public FluentConfiguration.RecoveryConfig recovery() {
       return transaction().recovery();
    }
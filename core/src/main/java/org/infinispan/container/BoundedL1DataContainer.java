@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.factories.annotations.Inject;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A data container for distributed caches that keeps the L1 entries, i.e. the entries of keys this node doesn't own,
+ * apart from the owned entries, in a container of their own with its own size bound and eviction strategy.  A burst
+ * of L1 entries therefore only evicts other L1 entries, never owned data, and the L1 entries don't count towards the
+ * eviction bound of the owned entries.
+ * <p/>
+ * An entry is stored in the owned container if the key is mapped to this node by the current consistent hash at the
+ * time it is written, and in the L1 container otherwise; writing a key to one container removes it from the other.
+ * Reads look the key up in both containers.  The entries evicted from the L1 container are neither passivated nor
+ * notified to the listeners, as the owners still have them.
+ *
+ * @since 5.1
+ */
+public class BoundedL1DataContainer implements DataContainer {
+
+   private final DataContainer ownedEntries;
+   private final DataContainer l1Entries;
+   private DistributionManager distributionManager;
+
+   public BoundedL1DataContainer(DataContainer ownedEntries, DataContainer l1Entries) {
+      this.ownedEntries = ownedEntries;
+      this.l1Entries = l1Entries;
+   }
+
+   @Inject
+   public void initialize(DistributionManager distributionManager, ComponentRegistry componentRegistry) {
+      this.distributionManager = distributionManager;
+      // the owned entries are evicted and passivated like in any other container
+      componentRegistry.wireDependencies(ownedEntries);
+   }
+
+   public DataContainer getOwnedEntries() {
+      return ownedEntries;
+   }
+
+   public DataContainer getL1Entries() {
+      return l1Entries;
+   }
+
+   public InternalCacheEntry get(Object k) {
+      InternalCacheEntry e = ownedEntries.get(k);
+      return e != null ? e : l1Entries.get(k);
+   }
+
+   public InternalCacheEntry peek(Object k) {
+      InternalCacheEntry e = ownedEntries.peek(k);
+      return e != null ? e : l1Entries.peek(k);
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      if (distributionManager.getLocality(k).isLocal()) {
+         ownedEntries.put(k, v, lifespan, maxIdle);
+         l1Entries.remove(k);
+      } else {
+         l1Entries.put(k, v, lifespan, maxIdle);
+         ownedEntries.remove(k);
+      }
+   }
+
+   public void put(Object k, Object v, EntryVersion version, long lifespan, long maxIdle) {
+      if (distributionManager.getLocality(k).isLocal()) {
+         ownedEntries.put(k, v, version, lifespan, maxIdle);
+         l1Entries.remove(k);
+      } else {
+         l1Entries.put(k, v, version, lifespan, maxIdle);
+         ownedEntries.remove(k);
+      }
+   }
+
+   public boolean containsKey(Object k) {
+      return ownedEntries.containsKey(k) || l1Entries.containsKey(k);
+   }
+
+   public InternalCacheEntry remove(Object k) {
+      InternalCacheEntry owned = ownedEntries.remove(k);
+      InternalCacheEntry l1 = l1Entries.remove(k);
+      return owned != null ? owned : l1;
+   }
+
+   public int size() {
+      return ownedEntries.size() + l1Entries.size();
+   }
+
+   public void clear() {
+      ownedEntries.clear();
+      l1Entries.clear();
+   }
+
+   public Set<Object> keySet() {
+      return new UnionSet<Object>(ownedEntries.keySet(), l1Entries.keySet());
+   }
+
+   public Collection<Object> values() {
+      return new UnionCollection<Object>(ownedEntries.values(), l1Entries.values());
+   }
+
+   public Set<InternalCacheEntry> entrySet() {
+      return new UnionSet<InternalCacheEntry>(ownedEntries.entrySet(), l1Entries.entrySet());
+   }
+
+   public void purgeExpired() {
+      ownedEntries.purgeExpired();
+      l1Entries.purgeExpired();
+   }
+
+   public Iterator<InternalCacheEntry> iterator() {
+      return new UnionIterator<InternalCacheEntry>(ownedEntries.iterator(), l1Entries.iterator());
+   }
+
+   /**
+    * An unmodifiable view of two disjoint collections.
+    */
+   private static class UnionCollection<E> extends AbstractCollection<E> {
+      final Collection<E> first;
+      final Collection<E> second;
+
+      UnionCollection(Collection<E> first, Collection<E> second) {
+         this.first = first;
+         this.second = second;
+      }
+
+      @Override
+      public Iterator<E> iterator() {
+         return new UnionIterator<E>(first.iterator(), second.iterator());
+      }
+
+      @Override
+      public boolean contains(Object o) {
+         return first.contains(o) || second.contains(o);
+      }
+
+      @Override
+      public int size() {
+         return first.size() + second.size();
+      }
+   }
+
+   /**
+    * An unmodifiable view of two disjoint sets.
+    */
+   private static class UnionSet<E> extends AbstractSet<E> {
+      final Set<E> first;
+      final Set<E> second;
+
+      UnionSet(Set<E> first, Set<E> second) {
+         this.first = first;
+         this.second = second;
+      }
+
+      @Override
+      public Iterator<E> iterator() {
+         return new UnionIterator<E>(first.iterator(), second.iterator());
+      }
+
+      @Override
+      public boolean contains(Object o) {
+         return first.contains(o) || second.contains(o);
+      }
+
+      @Override
+      public int size() {
+         return first.size() + second.size();
+      }
+   }
+
+   private static class UnionIterator<E> implements Iterator<E> {
+      final Iterator<E> first;
+      final Iterator<E> second;
+
+      UnionIterator(Iterator<E> first, Iterator<E> second) {
+         this.first = first;
+         this.second = second;
+      }
+
+      public boolean hasNext() {
+         return first.hasNext() || second.hasNext();
+      }
+
+      public E next() {
+         if (first.hasNext()) return first.next();
+         if (second.hasNext()) return second.next();
+         throw new NoSuchElementException();
+      }
+
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
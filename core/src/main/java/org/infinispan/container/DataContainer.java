@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.Set;
 
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
@@ -72,6 +73,17 @@ public interface DataContainer extends Iterable<InternalCacheEntry> {
     */
    void put(Object k, Object v, long lifespan, long maxIdle);
 
+   /**
+    * Puts an entry in the cache along with its version.  The entry is only made visible once both its value and its
+    * version are set, so readers never see the new value with the previous version or the other way round.
+    * @param k key under which to store entry
+    * @param v value to store
+    * @param version version of the entry
+    * @param lifespan lifespan in milliseconds.  -1 means immortal.
+    * @param maxIdle max idle time for which to store entry.  -1 means forever.
+    */
+   void put(Object k, Object v, EntryVersion version, long lifespan, long maxIdle);
+
    /**
     * Tests whether an entry exists in the container
     * @param k key to test
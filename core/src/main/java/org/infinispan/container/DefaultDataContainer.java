@@ -24,7 +24,10 @@ package org.infinispan.container;
 
 import net.jcip.annotations.ThreadSafe;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.CompactInternalEntryFactory;
 import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.eviction.EntrySizeCalculator;
 import org.infinispan.eviction.EvictionManager;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
@@ -34,6 +37,7 @@ import org.infinispan.util.Immutables;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Weigher;
 
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
@@ -59,19 +63,41 @@ import java.util.concurrent.ConcurrentMap;
 @ThreadSafe
 public class DefaultDataContainer implements DataContainer {
 
+   /**
+    * Name of the data container property that, when set to true, makes the container store its entries as {@link
+    * org.infinispan.container.entries.CompactCacheEntry} instances.
+    */
+   public static final String COMPACT_ENTRIES = "compactEntries";
+
    final ConcurrentMap<Object, InternalCacheEntry> entries;
    final InternalEntryFactory entryFactory;
    final DefaultEvictionListener evictionListener;
+   final ExpirationWheel expirationWheel;
    private EvictionManager evictionManager;
    private PassivationManager passivator;
 
    protected DefaultDataContainer(int concurrencyLevel) {
+      this(concurrencyLevel, new InternalEntryFactory());
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, InternalEntryFactory entryFactory) {
       entries = new ConcurrentHashMap<Object, InternalCacheEntry>(128, 0.75f,concurrencyLevel);
-      entryFactory = new InternalEntryFactory();
+      this.entryFactory = entryFactory;
       evictionListener = null;
+      expirationWheel = new ExpirationWheel(concurrencyLevel);
    }
 
    protected DefaultDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, maxEntries, -1, null, strategy, policy);
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, int maxEntries, long maxMemory, EntrySizeCalculator sizeCalculator,
+            EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, maxEntries, maxMemory, sizeCalculator, strategy, policy, new InternalEntryFactory());
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, int maxEntries, long maxMemory, EntrySizeCalculator sizeCalculator,
+            EvictionStrategy strategy, EvictionThreadPolicy policy, InternalEntryFactory entryFactory) {
 
       // translate eviction policy and strategy
       switch (policy) {
@@ -96,11 +122,17 @@ public class DefaultDataContainer implements DataContainer {
          case LIRS:
             eviction = Eviction.LIRS;
             break;
+         case TINY_LFU:
+            eviction = Eviction.TINY_LFU;
+            break;
          default:
             throw new IllegalArgumentException("No such eviction strategy " + strategy);
       }
-      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction, evictionListener);
-      entryFactory = new InternalEntryFactory();
+      Weigher<Object, InternalCacheEntry> weigher = sizeCalculator == null ? null : new EntryWeigher(sizeCalculator);
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction,
+            evictionListener, maxMemory, weigher);
+      this.entryFactory = entryFactory;
+      expirationWheel = new ExpirationWheel(concurrencyLevel);
    }
 
    @Inject
@@ -114,10 +146,37 @@ public class DefaultDataContainer implements DataContainer {
       return new DefaultDataContainer(concurrencyLevel, maxEntries, strategy, policy);
    }
 
+   /**
+    * Creates a data container bounded both by the number of entries and by the estimated memory occupied by them, as
+    * computed by the given size calculator.
+    */
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxMemory,
+            EntrySizeCalculator sizeCalculator, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      return new DefaultDataContainer(concurrencyLevel, maxEntries, maxMemory, sizeCalculator, strategy, policy);
+   }
+
+   /**
+    * Creates a bounded data container whose entries are created and updated by the given factory, e.g. a {@link
+    * CompactInternalEntryFactory}.
+    */
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxMemory,
+            EntrySizeCalculator sizeCalculator, EvictionStrategy strategy, EvictionThreadPolicy policy,
+            InternalEntryFactory entryFactory) {
+      return new DefaultDataContainer(concurrencyLevel, maxEntries, maxMemory, sizeCalculator, strategy, policy, entryFactory);
+   }
+
    public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
       return new DefaultDataContainer(concurrencyLevel);
    }
 
+   /**
+    * Creates an unbounded data container whose entries are created and updated by the given factory, e.g. a {@link
+    * CompactInternalEntryFactory}.
+    */
+   public static DataContainer unBoundedDataContainer(int concurrencyLevel, InternalEntryFactory entryFactory) {
+      return new DefaultDataContainer(concurrencyLevel, entryFactory);
+   }
+
    public InternalCacheEntry peek(Object key) {
       InternalCacheEntry e = entries.get(key);
       return e;
@@ -128,6 +187,7 @@ public class DefaultDataContainer implements DataContainer {
       if (e != null) {
          if (e.isExpired()) {
             entries.remove(k);
+            expirationWheel.unschedule(k);
             e = null;
          } else {
             e.touch();
@@ -138,7 +198,9 @@ public class DefaultDataContainer implements DataContainer {
 
    public void put(Object k, Object v, long lifespan, long maxIdle) {
       InternalCacheEntry e = entries.get(k);
+      boolean scheduled = false;
       if (e != null) {
+         scheduled = e.canExpire();
          e.setValue(v);
          InternalCacheEntry original = e;
          e = entryFactory.update(e, lifespan, maxIdle);
@@ -151,12 +213,27 @@ public class DefaultDataContainer implements DataContainer {
          e = entryFactory.createNewEntry(k, v, lifespan, maxIdle);
       }
       entries.put(k, e);
+      // immortal entries never need to go through the wheel, unless they replace an entry that could expire
+      if (scheduled || e.canExpire()) {
+         expirationWheel.schedule(e);
+      }
+   }
+
+   public void put(Object k, Object v, EntryVersion version, long lifespan, long maxIdle) {
+      // always a new instance, updating the current one in place would publish the value before the version
+      InternalCacheEntry e = entryFactory.createNewEntry(k, v, lifespan, maxIdle);
+      e.setVersion(version);
+      InternalCacheEntry previous = entries.put(k, e);
+      if ((previous != null && previous.canExpire()) || e.canExpire()) {
+         expirationWheel.schedule(e);
+      }
    }
 
    public boolean containsKey(Object k) {
       InternalCacheEntry ice = peek(k);
       if (ice != null && ice.isExpired()) {
          entries.remove(k);
+         expirationWheel.unschedule(k);
          ice = null;
       }
       return ice != null;
@@ -164,6 +241,9 @@ public class DefaultDataContainer implements DataContainer {
 
    public InternalCacheEntry remove(Object k) {
       InternalCacheEntry e = entries.remove(k);
+      if (e != null && e.canExpire()) {
+         expirationWheel.unschedule(k);
+      }
       return e == null || e.isExpired() ? null : e;
    }
 
@@ -173,6 +253,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public void clear() {
       entries.clear();
+      expirationWheel.clear();
    }
 
    public Set<Object> keySet() {
@@ -188,10 +269,13 @@ public class DefaultDataContainer implements DataContainer {
    }
 
    public void purgeExpired() {
-      for (Iterator<InternalCacheEntry> purgeCandidates = entries.values().iterator(); purgeCandidates.hasNext();) {
-         InternalCacheEntry e = purgeCandidates.next();
+      // only visit the entries that are due, rather than iterating over the whole container
+      for (InternalCacheEntry e : expirationWheel.advance(System.currentTimeMillis())) {
          if (e.isExpired()) {
-            purgeCandidates.remove();
+            entries.remove(e.getKey(), e);
+         } else {
+            // touched after its expiry time was checked
+            expirationWheel.scheduleIfAbsent(e);
          }
       }
    }
@@ -203,12 +287,31 @@ public class DefaultDataContainer implements DataContainer {
    private final class DefaultEvictionListener implements EvictionListener<Object, InternalCacheEntry> {
       @Override
       public void onEntryEviction(Map<Object, InternalCacheEntry> evicted) {
-         evictionManager.onEntryEviction(evicted);
+         for (Map.Entry<Object, InternalCacheEntry> e : evicted.entrySet()) {
+            if (e.getValue().canExpire()) {
+               expirationWheel.unschedule(e.getKey());
+            }
+         }
+         // containers that aren't wired as components, such as the L1 part of a BoundedL1DataContainer, evict silently
+         if (evictionManager != null) evictionManager.onEntryEviction(evicted);
       }
 
       @Override
       public void onEntryChosenForEviction(InternalCacheEntry internalCacheEntry) {
-         passivator.passivate(internalCacheEntry);
+         if (passivator != null) passivator.passivate(internalCacheEntry);
+      }
+   }
+
+   private static final class EntryWeigher implements Weigher<Object, InternalCacheEntry> {
+      private final EntrySizeCalculator sizeCalculator;
+
+      EntryWeigher(EntrySizeCalculator sizeCalculator) {
+         this.sizeCalculator = sizeCalculator;
+      }
+
+      @Override
+      public long weigh(Object key, InternalCacheEntry entry) {
+         return sizeCalculator.estimateSize(key, entry);
       }
    }
 
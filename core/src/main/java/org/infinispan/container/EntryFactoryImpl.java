@@ -25,12 +25,14 @@ package org.infinispan.container;
 
 import org.infinispan.config.Configuration;
 import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.ClusteredRepeatableReadEntry;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.MVCCEntry;
 import org.infinispan.container.entries.NullMarkerEntry;
 import org.infinispan.container.entries.NullMarkerEntryForRemoval;
 import org.infinispan.container.entries.ReadCommittedEntry;
 import org.infinispan.container.entries.RepeatableReadEntry;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
@@ -51,6 +53,7 @@ public class EntryFactoryImpl implements EntryFactory {
    private final boolean trace = log.isTraceEnabled();
    
    private boolean useRepeatableRead;
+   private boolean useVersioning;
    private DataContainer container;
    private boolean writeSkewCheck;
    private Configuration configuration;
@@ -67,6 +70,7 @@ public class EntryFactoryImpl implements EntryFactory {
    public void init() {
       useRepeatableRead = configuration.getIsolationLevel() == IsolationLevel.REPEATABLE_READ;
       writeSkewCheck = configuration.isWriteSkewCheck();
+      useVersioning = useRepeatableRead && configuration.isUseVersioning();
    }
 
    @Override
@@ -78,8 +82,8 @@ public class EntryFactoryImpl implements EntryFactory {
          // do not bother wrapping though if this is not in a tx.  repeatable read etc are all meaningless unless there is a tx.
          if (useRepeatableRead) {
             MVCCEntry mvccEntry = cacheEntry == null ?
-                  createWrappedEntry(key, null, false, false, -1) :
-                  createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan());
+                  createWrappedEntry(key, null, false, false, -1, null) :
+                  createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan(), versionOf(cacheEntry));
             if (mvccEntry != null) ctx.putLookedUpEntry(key, mvccEntry);
             return mvccEntry;
          } else if (cacheEntry != null) { // if not in transaction and repeatable read, or simply read committed (regardless of whether in TX or not), do not wrap
@@ -164,7 +168,7 @@ public class EntryFactoryImpl implements EntryFactory {
       MVCCEntry mvccEntry;
       if (trace) log.trace("Creating new entry.");
       notifier.notifyCacheEntryCreated(key, true, ctx);
-      mvccEntry = createWrappedEntry(key, null, true, false, -1);
+      mvccEntry = createWrappedEntry(key, null, true, false, -1, null);
       mvccEntry.setCreated(true);
       ctx.putLookedUpEntry(key, mvccEntry);
       notifier.notifyCacheEntryCreated(key, false, ctx);
@@ -177,13 +181,13 @@ public class EntryFactoryImpl implements EntryFactory {
    }
 
    private MVCCEntry wrapInternalCacheEntryForPut(InvocationContext ctx, Object key, InternalCacheEntry cacheEntry) {
-      MVCCEntry mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan());
+      MVCCEntry mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan(), cacheEntry.getVersion());
       ctx.putLookedUpEntry(key, mvccEntry);
       return mvccEntry;
    }
 
    private MVCCEntry wrapMvccEntryForRemove(InvocationContext ctx, Object key, CacheEntry cacheEntry) {
-      MVCCEntry mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, true, cacheEntry.getLifespan());
+      MVCCEntry mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, true, cacheEntry.getLifespan(), versionOf(cacheEntry));
       ctx.putLookedUpEntry(key, mvccEntry);
       return mvccEntry;
    }
@@ -204,11 +208,16 @@ public class EntryFactoryImpl implements EntryFactory {
       return mvccEntry;
    }
 
-   private  MVCCEntry createWrappedEntry(Object key, Object value, boolean isForInsert, boolean forRemoval, long lifespan) {
+   private EntryVersion versionOf(CacheEntry cacheEntry) {
+      return cacheEntry instanceof InternalCacheEntry ? ((InternalCacheEntry) cacheEntry).getVersion() : null;
+   }
+
+   private  MVCCEntry createWrappedEntry(Object key, Object value, boolean isForInsert, boolean forRemoval, long lifespan, EntryVersion version) {
       if (value == null && !isForInsert) return useRepeatableRead ?
             forRemoval ? new NullMarkerEntryForRemoval(key) : NullMarkerEntry.getInstance()
             : null;
 
+      if (useVersioning) return new ClusteredRepeatableReadEntry(key, value, lifespan, version);
       return useRepeatableRead ? new RepeatableReadEntry(key, value, lifespan) : new ReadCommittedEntry(key, value, lifespan);
    }
 }
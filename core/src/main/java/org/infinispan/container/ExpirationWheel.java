@@ -0,0 +1,284 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A hierarchical timing wheel tracking when the entries of a data container are due to expire, so that purging
+ * expired entries only visits the entries that are due rather than the whole container.
+ * <p/>
+ * The wheel has five levels of 64 buckets each. A bucket of the first level spans about a second (2<sup>10</sup>
+ * milliseconds), and a bucket of each further level spans a whole turn of the level below it, so the wheel covers
+ * about 34 years. Entries are placed in the lowest level able to hold their expiry time, and whenever a bucket comes
+ * due, its entries are either reported as expired, or cascaded down to a finer level.
+ * <p/>
+ * Scheduling and unscheduling an entry is O(1). Accessing an entry does not reschedule it, since that would put a
+ * lock on the read path: the expiry time of an entry is checked again when its bucket comes due, and entries that
+ * were touched meanwhile are simply rescheduled.
+ * <p/>
+ * The wheel is split into independently locked stripes, selected by the hash code of the key.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+final class ExpirationWheel {
+
+   private static final int BUCKET_BITS = 6;
+   private static final int BUCKETS = 1 << BUCKET_BITS;
+   private static final int BUCKET_MASK = BUCKETS - 1;
+   private static final int[] SHIFTS = {10, 16, 22, 28, 34};
+   private static final int MAX_STRIPES = 16;
+
+   private final Stripe[] stripes;
+
+   ExpirationWheel(int concurrencyLevel) {
+      int stripeCount = 1;
+      while (stripeCount < concurrencyLevel && stripeCount < MAX_STRIPES) {
+         stripeCount <<= 1;
+      }
+      long now = System.currentTimeMillis();
+      stripes = new Stripe[stripeCount];
+      for (int i = 0; i < stripes.length; i++) {
+         stripes[i] = new Stripe(now);
+      }
+   }
+
+   /**
+    * Schedules the expiration of the entry, replacing whatever was scheduled for its key before. Immortal entries are
+    * unscheduled.
+    */
+   void schedule(InternalCacheEntry entry) {
+      Stripe stripe = stripeFor(entry.getKey());
+      stripe.lock();
+      try {
+         stripe.schedule(entry, true);
+      } finally {
+         stripe.unlock();
+      }
+   }
+
+   /**
+    * Schedules the expiration of the entry, unless something is already scheduled for its key.
+    */
+   void scheduleIfAbsent(InternalCacheEntry entry) {
+      Stripe stripe = stripeFor(entry.getKey());
+      stripe.lock();
+      try {
+         stripe.schedule(entry, false);
+      } finally {
+         stripe.unlock();
+      }
+   }
+
+   void unschedule(Object key) {
+      Stripe stripe = stripeFor(key);
+      stripe.lock();
+      try {
+         stripe.unschedule(key);
+      } finally {
+         stripe.unlock();
+      }
+   }
+
+   void clear() {
+      for (Stripe stripe : stripes) {
+         stripe.lock();
+         try {
+            stripe.clear();
+         } finally {
+            stripe.unlock();
+         }
+      }
+   }
+
+   /**
+    * Advances the wheel to the given time and returns the entries whose expiry time has passed. These entries are no
+    * longer scheduled.
+    */
+   List<InternalCacheEntry> advance(long now) {
+      List<InternalCacheEntry> due = new ArrayList<InternalCacheEntry>();
+      for (Stripe stripe : stripes) {
+         stripe.lock();
+         try {
+            stripe.advance(now, due);
+         } finally {
+            stripe.unlock();
+         }
+      }
+      return due;
+   }
+
+   private Stripe stripeFor(Object key) {
+      int h = key.hashCode();
+      h ^= (h >>> 20) ^ (h >>> 12);
+      h ^= (h >>> 7) ^ (h >>> 4);
+      return stripes[h & (stripes.length - 1)];
+   }
+
+   private static final class Node {
+      InternalCacheEntry entry;
+      int level;
+      int index;
+      Node prev;
+      Node next;
+
+      Node(InternalCacheEntry entry) {
+         this.entry = entry;
+      }
+   }
+
+   private static final class Stripe extends ReentrantLock {
+      private static final long serialVersionUID = -5431473540380452426L;
+
+      private final Node[][] wheel = new Node[SHIFTS.length][BUCKETS];
+      private final Map<Object, Node> nodes = new HashMap<Object, Node>();
+      private long time;
+
+      Stripe(long time) {
+         this.time = time;
+      }
+
+      void schedule(InternalCacheEntry entry, boolean replace) {
+         Object key = entry.getKey();
+         Node node = nodes.get(key);
+         if (node != null && !replace) {
+            return;
+         }
+         long expiryTime = entry.canExpire() ? entry.getExpiryTime() : -1;
+         if (expiryTime < 0) {
+            if (node != null) {
+               unlink(node);
+               nodes.remove(key);
+            }
+            return;
+         }
+         if (node == null) {
+            node = new Node(entry);
+            nodes.put(key, node);
+         } else {
+            unlink(node);
+            node.entry = entry;
+         }
+         link(node, expiryTime);
+      }
+
+      void unschedule(Object key) {
+         Node node = nodes.remove(key);
+         if (node != null) {
+            unlink(node);
+         }
+      }
+
+      void clear() {
+         for (Node[] buckets : wheel) {
+            for (int i = 0; i < buckets.length; i++) {
+               buckets[i] = null;
+            }
+         }
+         nodes.clear();
+      }
+
+      void advance(long now, List<InternalCacheEntry> due) {
+         long previous = time;
+         if (now < previous) {
+            // the clock went backwards, wait for it to catch up
+            return;
+         }
+         time = now;
+         for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previous >>> SHIFTS[level];
+            long currentTicks = now >>> SHIFTS[level];
+            // the current bucket of the first level is always visited, since it may hold entries already due
+            if (level > 0 && currentTicks == previousTicks) {
+               break;
+            }
+            int steps = (int) Math.min(currentTicks - previousTicks + 1, BUCKETS);
+            for (long tick = previousTicks; tick < previousTicks + steps; tick++) {
+               expireBucket(level, (int) (tick & BUCKET_MASK), now, due);
+            }
+         }
+      }
+
+      private void expireBucket(int level, int index, long now, List<InternalCacheEntry> due) {
+         Node node = wheel[level][index];
+         wheel[level][index] = null;
+         while (node != null) {
+            Node next = node.next;
+            node.prev = null;
+            node.next = null;
+            InternalCacheEntry entry = node.entry;
+            long expiryTime = entry.canExpire() ? entry.getExpiryTime() : -1;
+            if (expiryTime < 0) {
+               nodes.remove(entry.getKey());
+            } else if (expiryTime <= now) {
+               nodes.remove(entry.getKey());
+               due.add(entry);
+            } else {
+               // not due yet, either touched since it was scheduled or only cascading down
+               link(node, expiryTime);
+            }
+            node = next;
+         }
+      }
+
+      private void link(Node node, long expiryTime) {
+         // entries already due go in the current bucket, which is visited on the next advance
+         long scheduled = Math.max(expiryTime, time);
+         long delta = scheduled - time;
+         int level = 0;
+         while (level < SHIFTS.length - 1 && delta >= 1L << (SHIFTS[level] + BUCKET_BITS)) {
+            level++;
+         }
+         int index = (int) ((scheduled >>> SHIFTS[level]) & BUCKET_MASK);
+         node.level = level;
+         node.index = index;
+         Node head = wheel[level][index];
+         node.next = head;
+         if (head != null) {
+            head.prev = node;
+         }
+         wheel[level][index] = node;
+      }
+
+      private void unlink(Node node) {
+         if (node.prev != null) {
+            node.prev.next = node.next;
+         } else if (wheel[node.level][node.index] == node) {
+            wheel[node.level][node.index] = node.next;
+         }
+         if (node.next != null) {
+            node.next.prev = node.prev;
+         }
+         node.prev = null;
+         node.next = null;
+      }
+   }
+}
@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.container.versioning.NumericVersion;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link RepeatableReadEntry} that remembers the version of the entry it was read from, so that the owners of the
+ * key can check for write skews when the transaction that read it is prepared.
+ *
+ * @since 5.1
+ */
+public class ClusteredRepeatableReadEntry extends RepeatableReadEntry {
+
+   private final EntryVersion versionSeen;
+
+   public ClusteredRepeatableReadEntry(Object key, Object value, long lifespan, EntryVersion versionSeen) {
+      super(key, value, lifespan);
+      this.versionSeen = versionSeen;
+   }
+
+   /**
+    * @return the version of the entry when it was read, or null if the key didn't exist
+    */
+   public EntryVersion getVersionSeen() {
+      return versionSeen;
+   }
+
+   /**
+    * Keys the transaction wrote after reading them from an existing entry are mapped to the version they were read
+    * with.  Keys the transaction created, because they didn't exist when it read or wrote them, are mapped to {@link
+    * NumericVersion#NON_EXISTING}, so that the owners check that they still don't exist.  Existing entries without a
+    * version, e.g. loaded from a cache store, are not validated.
+    *
+    * @param keys            the keys written by the transaction
+    * @param lookedUpEntries the entries looked up by the transaction
+    */
+   public static Map<Object, EntryVersion> collectVersionsSeen(Collection<Object> keys, Map<Object, CacheEntry> lookedUpEntries) {
+      Map<Object, EntryVersion> versionsSeen = new HashMap<Object, EntryVersion>();
+      for (Object key : keys) {
+         CacheEntry entry = lookedUpEntries.get(key);
+         if (entry instanceof ClusteredRepeatableReadEntry && entry.isChanged()) {
+            EntryVersion versionSeen = ((ClusteredRepeatableReadEntry) entry).getVersionSeen();
+            if (versionSeen != null) {
+               versionsSeen.put(key, versionSeen);
+            } else if (entry.isCreated()) {
+               versionsSeen.put(key, NumericVersion.NON_EXISTING);
+            }
+         }
+      }
+      return versionsSeen;
+   }
+}
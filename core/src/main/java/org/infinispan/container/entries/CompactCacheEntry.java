@@ -0,0 +1,271 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.marshall.AbstractExternalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Set;
+
+import static java.lang.Math.min;
+
+/**
+ * A memory efficient internal cache entry that can be immortal, mortal, transient or both, and that can switch
+ * between these without being replaced.
+ * <p/>
+ * Unlike the other {@link InternalCacheEntry} implementations it does not delegate to a separate {@link
+ * InternalCacheValue}, and it only keeps a single 64 bit timestamp: the last time the entry was used is kept as a 32
+ * bit offset from the time it was created, and lifespan and maxIdle are packed together in another long. Offsets and
+ * durations are exact up to 2<sup>30</sup> milliseconds (about 12 days); longer ones are kept with a precision of a
+ * second.
+ * <p/>
+ * Instances are created by {@link CompactInternalEntryFactory}.
+ *
+ * @since 5.1
+ */
+public class CompactCacheEntry extends AbstractInternalCacheEntry {
+
+   /**
+    * Encoded values with this bit set are expressed in seconds rather than milliseconds
+    */
+   private static final int SECONDS = 1 << 30;
+
+   private Object value;
+   private long created;
+   private int lastUsed;
+   /**
+    * Volatile so that it publishes the timestamps written before it by {@link #setExpiration(long, long)}, since the
+    * entry changes from immortal to mortal or transient in place, while other threads may be reading it.  Readers look
+    * at it before the timestamps.
+    */
+   private volatile long expiration;
+   private EntryVersion version;
+
+   CompactCacheEntry(Object key, Object value, long lifespan, long maxIdle) {
+      this(key, value, System.currentTimeMillis(), lifespan, -1, maxIdle);
+   }
+
+   CompactCacheEntry(Object key, Object value, long created, long lifespan, long lastUsed, long maxIdle) {
+      super(key);
+      this.value = value;
+      this.created = created;
+      this.lastUsed = encode(lastUsed < 0 ? 0 : lastUsed - created);
+      this.expiration = pack(lifespan, maxIdle);
+   }
+
+   public Object getValue() {
+      return value;
+   }
+
+   public Object setValue(Object value) {
+      Object old = this.value;
+      this.value = value;
+      return old;
+   }
+
+   public boolean isExpired() {
+      return ExpiryHelper.isExpiredTransientMortal(getMaxIdle(), getLastUsed(), getLifespan(), getCreated());
+   }
+
+   public boolean canExpire() {
+      return expiration != -1L;
+   }
+
+   public long getCreated() {
+      return getLifespan() > -1 ? created : -1;
+   }
+
+   public long getLastUsed() {
+      return getMaxIdle() > -1 ? created + decode(lastUsed) : -1;
+   }
+
+   public long getLifespan() {
+      return decode((int) (expiration >>> 32));
+   }
+
+   public long getMaxIdle() {
+      return decode((int) expiration);
+   }
+
+   public void setLifespan(long lifespan) {
+      setExpiration(lifespan, getMaxIdle());
+   }
+
+   public void setMaxIdle(long maxIdle) {
+      setExpiration(getLifespan(), maxIdle);
+   }
+
+   /**
+    * Sets both lifespan and maxIdle, resetting the timestamps if the entry was not subject to either of them before.
+    * The timestamps are written first, so a reader that sees the new lifespan or maxIdle also sees them.
+    */
+   void setExpiration(long lifespan, long maxIdle) {
+      if (lifespan > -1 && getLifespan() < 0 || maxIdle > -1 && getMaxIdle() < 0) {
+         created = System.currentTimeMillis();
+         lastUsed = 0;
+      }
+      expiration = pack(lifespan, maxIdle);
+   }
+
+   private static long pack(long lifespan, long maxIdle) {
+      return (long) encode(lifespan < 0 ? -1 : lifespan) << 32 | encode(maxIdle < 0 ? -1 : maxIdle) & 0xFFFFFFFFL;
+   }
+
+   public final long getExpiryTime() {
+      long expiration = this.expiration;
+      long lifespan = decode((int) (expiration >>> 32));
+      long maxIdle = decode((int) expiration);
+      long lset = lifespan > -1 ? created + lifespan : -1;
+      long muet = maxIdle > -1 ? created + decode(lastUsed) + maxIdle : -1;
+      if (lset == -1) return muet;
+      if (muet == -1) return lset;
+      return min(lset, muet);
+   }
+
+   public final void touch() {
+      if (getMaxIdle() > -1) {
+         lastUsed = encode(System.currentTimeMillis() - created);
+      }
+   }
+
+   public final void reincarnate() {
+      long lastUsedTime = created + decode(lastUsed);
+      created = System.currentTimeMillis();
+      lastUsed = encode(lastUsedTime - created);
+   }
+
+   public InternalCacheValue toInternalCacheValue() {
+      InternalCacheValue icv = InternalEntryFactory.createValue(value, getCreated(), getLifespan(), getLastUsed(), getMaxIdle());
+      ((ImmortalCacheValue) icv).version = version;
+      return icv;
+   }
+
+   public EntryVersion getVersion() {
+      return version;
+   }
+
+   public void setVersion(EntryVersion version) {
+      this.version = version;
+   }
+
+   /**
+    * Encodes a number of milliseconds into an int, in milliseconds if its absolute value is below 2<sup>30</sup>, in
+    * seconds otherwise.
+    */
+   static int encode(long millis) {
+      if (millis > -SECONDS && millis < SECONDS) {
+         return (int) millis;
+      }
+      int seconds = (int) min(Math.abs(millis) / 1000, SECONDS - 1) | SECONDS;
+      return millis < 0 ? -seconds : seconds;
+   }
+
+   static long decode(int encoded) {
+      int abs = Math.abs(encoded);
+      long millis = (abs & SECONDS) != 0 ? (abs & ~SECONDS) * 1000L : abs;
+      return encoded < 0 ? -millis : millis;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      CompactCacheEntry that = (CompactCacheEntry) o;
+
+      if (key != null ? !key.equals(that.key) : that.key != null) return false;
+      if (value != null ? !value.equals(that.value) : that.value != null) return false;
+      if (getCreated() != that.getCreated()) return false;
+      if (expiration != that.expiration) return false;
+
+      return true;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = key != null ? key.hashCode() : 0;
+      result = 31 * result + (value != null ? value.hashCode() : 0);
+      long created = getCreated();
+      result = 31 * result + (int) (created ^ (created >>> 32));
+      result = 31 * result + (int) (expiration ^ (expiration >>> 32));
+      return result;
+   }
+
+   @Override
+   public CompactCacheEntry clone() {
+      return (CompactCacheEntry) super.clone();
+   }
+
+   @Override
+   public String toString() {
+      return "CompactCacheEntry{" +
+            "key=" + key +
+            ", value=" + value +
+            ", created=" + getCreated() +
+            ", lifespan=" + getLifespan() +
+            ", lastUsed=" + getLastUsed() +
+            ", maxIdle=" + getMaxIdle() +
+            "}";
+   }
+
+   public static class Externalizer extends AbstractExternalizer<CompactCacheEntry> {
+      @Override
+      public void writeObject(ObjectOutput output, CompactCacheEntry entry) throws IOException {
+         output.writeObject(entry.key);
+         output.writeObject(entry.value);
+         output.writeLong(entry.created);
+         output.writeLong(entry.getLifespan()); // could be negative so should not use unsigned longs
+         output.writeLong(entry.created + decode(entry.lastUsed));
+         output.writeLong(entry.getMaxIdle()); // could be negative so should not use unsigned longs
+         output.writeObject(entry.version);
+      }
+
+      @Override
+      public CompactCacheEntry readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+         Object k = input.readObject();
+         Object v = input.readObject();
+         long created = input.readLong();
+         long lifespan = input.readLong();
+         long lastUsed = input.readLong();
+         long maxIdle = input.readLong();
+         CompactCacheEntry result = new CompactCacheEntry(k, v, created, lifespan, lastUsed, maxIdle);
+         result.version = (EntryVersion) input.readObject();
+         return result;
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.COMPACT_ENTRY;
+      }
+
+      @Override
+      public Set<Class<? extends CompactCacheEntry>> getTypeClasses() {
+         return Util.<Class<? extends CompactCacheEntry>>asSet(CompactCacheEntry.class);
+      }
+   }
+}
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+/**
+ * An {@link InternalEntryFactory} that creates {@link CompactCacheEntry} instances. Since a compact entry can be
+ * immortal, mortal, transient or both, {@link #update(InternalCacheEntry, long, long)} changes entries in place
+ * rather than creating a new entry whenever the kind of expiration changes.
+ *
+ * @since 5.1
+ */
+public class CompactInternalEntryFactory extends InternalEntryFactory {
+
+   @Override
+   public InternalCacheEntry createNewEntry(Object key, Object value, long lifespan, long maxIdle) {
+      return new CompactCacheEntry(key, value, lifespan, maxIdle);
+   }
+
+   /**
+    * Sets the lifespan and maxIdle of the given entry. Compact entries are always updated in place, other entries are
+    * converted to compact entries.
+    *
+    * @param ice      cache entry to work on
+    * @param lifespan lifespan to set
+    * @param maxIdle  max idle to set
+    * @return a cache entry
+    */
+   @Override
+   public InternalCacheEntry update(InternalCacheEntry ice, long lifespan, long maxIdle) {
+      if (ice instanceof CompactCacheEntry) {
+         ((CompactCacheEntry) ice).setExpiration(lifespan, maxIdle);
+         return ice;
+      }
+      CompactCacheEntry updated = new CompactCacheEntry(ice.getKey(), ice.getValue(), lifespan, maxIdle);
+      updated.setVersion(ice.getVersion());
+      return updated;
+   }
+}
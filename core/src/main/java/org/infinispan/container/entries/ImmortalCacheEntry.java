@@ -22,6 +22,7 @@
  */
 package org.infinispan.container.entries;
 
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -85,6 +86,14 @@ public class ImmortalCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.version;
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.version = version;
+   }
+
    public Object getValue() {
       return cacheValue.value;
    }
@@ -124,14 +133,17 @@ public class ImmortalCacheEntry extends AbstractInternalCacheEntry {
       @Override
       public void writeObject(ObjectOutput output, ImmortalCacheEntry ice) throws IOException {
          output.writeObject(ice.key);
-         output.writeObject(ice.cacheValue.value);      
+         output.writeObject(ice.cacheValue.value);
+         output.writeObject(ice.cacheValue.version);
       }
 
       @Override
       public ImmortalCacheEntry readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object k = input.readObject();
          Object v = input.readObject();
-         return new ImmortalCacheEntry(k, v);
+         ImmortalCacheEntry result = new ImmortalCacheEntry(k, v);
+         result.cacheValue.version = (EntryVersion) input.readObject();
+         return result;
       }
 
       @Override
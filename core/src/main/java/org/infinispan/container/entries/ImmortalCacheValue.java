@@ -27,6 +27,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.Set;
 
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -40,13 +41,26 @@ import org.infinispan.util.Util;
 public class ImmortalCacheValue implements InternalCacheValue, Cloneable {
 
    Object value;
+   EntryVersion version;
 
    ImmortalCacheValue(Object value) {
       this.value = value;
    }
 
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new ImmortalCacheEntry(key, value);
+      return withVersion(new ImmortalCacheEntry(key, value));
+   }
+
+   /**
+    * Gives the entry created from this value the version of this value.
+    */
+   final InternalCacheEntry withVersion(InternalCacheEntry entry) {
+      entry.setVersion(version);
+      return entry;
+   }
+
+   public final EntryVersion getVersion() {
+      return version;
    }
 
    public final Object setValue(Object value) {
@@ -120,12 +134,15 @@ public class ImmortalCacheValue implements InternalCacheValue, Cloneable {
       @Override
       public void writeObject(ObjectOutput output, ImmortalCacheValue icv) throws IOException {
          output.writeObject(icv.value);
+         output.writeObject(icv.version);
       }
 
       @Override
       public ImmortalCacheValue readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          Object v = input.readObject();
-         return new ImmortalCacheValue(v);
+         ImmortalCacheValue icv = new ImmortalCacheValue(v);
+         icv.version = (EntryVersion) input.readObject();
+         return icv;
       }
 
       @Override
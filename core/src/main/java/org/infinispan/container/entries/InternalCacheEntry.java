@@ -22,6 +22,8 @@
  */
 package org.infinispan.container.entries;
 
+import org.infinispan.container.versioning.EntryVersion;
+
 /**
  * Interface for internal cache entries that expose whether an entry has expired.
  *
@@ -96,5 +98,18 @@ public interface InternalCacheEntry extends CacheEntry, Cloneable {
     */
    InternalCacheValue toInternalCacheValue();
 
+   /**
+    * @return the version of the entry, or null if the cache doesn't version its entries
+    */
+   EntryVersion getVersion();
+
+   /**
+    * Sets the version of the entry, which is kept when the entry is converted to an {@link InternalCacheValue} or
+    * marshalled.
+    *
+    * @param version the new version
+    */
+   void setVersion(EntryVersion version);
+
    InternalCacheEntry clone();
 }
@@ -22,6 +22,8 @@
  */
 package org.infinispan.container.entries;
 
+import org.infinispan.container.versioning.EntryVersion;
+
 /**
  * A representation of an InternalCacheEntry that does not have a reference to the key.  This should be used if the key
  * is either not needed or available elsewhere as it is more efficient to marshall and unmarshall.  Probably most useful
@@ -47,6 +49,11 @@ public interface InternalCacheValue {
 
    InternalCacheEntry toInternalCacheEntry(Object key);
 
+   /**
+    * @return the version of the entry, or null if the cache doesn't version its entries
+    */
+   EntryVersion getVersion();
+
    /**
     * @return true if the entry has expired; false otherwise
     */
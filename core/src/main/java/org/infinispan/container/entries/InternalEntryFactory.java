@@ -89,6 +89,12 @@ public class InternalEntryFactory {
     * @return a cache entry
     */
    public InternalCacheEntry update(InternalCacheEntry ice, long lifespan, long maxIdle) {
+      InternalCacheEntry updated = updateExpiry(ice, lifespan, maxIdle);
+      if (updated != ice) updated.setVersion(ice.getVersion());
+      return updated;
+   }
+
+   private InternalCacheEntry updateExpiry(InternalCacheEntry ice, long lifespan, long maxIdle) {
       if (ice instanceof ImmortalCacheEntry) {
          if (lifespan < 0) {
             if (maxIdle < 0) {
@@ -23,6 +23,7 @@
 package org.infinispan.container.entries;
 
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.versioning.EntryVersion;
 
 /**
  * An entry that can be safely copied when updates are made, to provide MVCC semantics
@@ -46,4 +47,12 @@ public interface MVCCEntry extends CacheEntry {
     * @param placeholder if true, the entry is marked as a lock placeholder.  If false, the entry is un-marked as a placeholder.
     */
    void setLockPlaceholder(boolean placeholder);
+
+   /**
+    * Commits the entry like {@link #commit(DataContainer)}, storing it along with the given version.
+    *
+    * @param container  data container
+    * @param newVersion the version of the entry after this write, or null to store it without a version
+    */
+   void commit(DataContainer container, EntryVersion newVersion);
 }
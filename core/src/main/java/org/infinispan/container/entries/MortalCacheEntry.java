@@ -23,6 +23,7 @@
 package org.infinispan.container.entries;
 
 import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -102,6 +103,14 @@ public class MortalCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.version;
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.version = version;
+   }
+
    @Override
    public boolean equals(Object o) {
       if (this == o) return true;
@@ -139,6 +148,7 @@ public class MortalCacheEntry extends AbstractInternalCacheEntry {
          output.writeObject(mce.cacheValue.value);
          UnsignedNumeric.writeUnsignedLong(output, mce.cacheValue.created);
          output.writeLong(mce.cacheValue.lifespan); // could be negative so should not use unsigned longs
+         output.writeObject(mce.cacheValue.version);
       }
 
       @Override
@@ -147,7 +157,9 @@ public class MortalCacheEntry extends AbstractInternalCacheEntry {
          Object v = input.readObject();
          long created = UnsignedNumeric.readUnsignedLong(input);
          Long lifespan = input.readLong();
-         return new MortalCacheEntry(k, v, lifespan, created);
+         MortalCacheEntry result = new MortalCacheEntry(k, v, lifespan, created);
+         result.cacheValue.version = (EntryVersion) input.readObject();
+         return result;
       }
 
       @Override
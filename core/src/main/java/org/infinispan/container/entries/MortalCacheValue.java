@@ -28,6 +28,7 @@ import java.io.ObjectOutput;
 import java.util.Set;
 
 import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -79,7 +80,7 @@ public class MortalCacheValue extends ImmortalCacheValue {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new MortalCacheEntry(key, value, lifespan, created);
+      return withVersion(new MortalCacheEntry(key, value, lifespan, created));
    }
 
    @Override
@@ -124,6 +125,7 @@ public class MortalCacheValue extends ImmortalCacheValue {
          output.writeObject(mcv.value);
          UnsignedNumeric.writeUnsignedLong(output, mcv.created);
          output.writeLong(mcv.lifespan); // could be negative so should not use unsigned longs
+         output.writeObject(mcv.version);
       }
 
       @Override
@@ -131,7 +133,9 @@ public class MortalCacheValue extends ImmortalCacheValue {
          Object v = input.readObject();
          long created = UnsignedNumeric.readUnsignedLong(input);
          Long lifespan = input.readLong();
-         return new MortalCacheValue(v, created, lifespan);
+         MortalCacheValue result = new MortalCacheValue(v, created, lifespan);
+         result.version = (EntryVersion) input.readObject();
+         return result;
       }
 
       @Override
@@ -24,6 +24,7 @@ package org.infinispan.container.entries;
 
 import org.infinispan.atomic.AtomicHashMap;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -156,8 +157,12 @@ public class ReadCommittedEntry implements MVCCEntry {
          unsetFlag(LOCK_PLACEHOLDER);
    }
 
-   @SuppressWarnings("unchecked")
    public final void commit(DataContainer container) {
+      commit(container, null);
+   }
+
+   @SuppressWarnings("unchecked")
+   public final void commit(DataContainer container, EntryVersion newVersion) {
       // only do stuff if there are changes.
       if (isChanged()) {
          if (trace)
@@ -174,7 +179,10 @@ public class ReadCommittedEntry implements MVCCEntry {
          if (isRemoved()) {
             container.remove(key);
          } else if (value != null) {
-            container.put(key, value, lifespan, maxIdle);
+            if (newVersion == null)
+               container.put(key, value, lifespan, maxIdle);
+            else
+               container.put(key, value, newVersion, lifespan, maxIdle);
          }
          reset();
       }
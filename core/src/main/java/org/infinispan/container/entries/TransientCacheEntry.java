@@ -23,6 +23,7 @@
 package org.infinispan.container.entries;
 
 import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -102,6 +103,14 @@ public class TransientCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.version;
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.version = version;
+   }
+
    @Override
    public boolean equals(Object o) {
       if (this == o) return true;
@@ -141,6 +150,7 @@ public class TransientCacheEntry extends AbstractInternalCacheEntry {
          output.writeObject(tce.cacheValue.value);
          UnsignedNumeric.writeUnsignedLong(output, tce.cacheValue.lastUsed);
          output.writeLong(tce.cacheValue.maxIdle); // could be negative so should not use unsigned longs
+         output.writeObject(tce.cacheValue.version);
       }
 
       @Override
@@ -149,7 +159,9 @@ public class TransientCacheEntry extends AbstractInternalCacheEntry {
          Object v = input.readObject();
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientCacheEntry(k, v, maxIdle, lastUsed);
+         TransientCacheEntry result = new TransientCacheEntry(k, v, maxIdle, lastUsed);
+         result.cacheValue.version = (EntryVersion) input.readObject();
+         return result;
       }
 
       @Override
@@ -28,6 +28,7 @@ import java.io.ObjectOutput;
 import java.util.Set;
 
 import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -78,7 +79,7 @@ public class TransientCacheValue extends ImmortalCacheValue {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new TransientCacheEntry(key, value, maxIdle, lastUsed);
+      return withVersion(new TransientCacheEntry(key, value, maxIdle, lastUsed));
    }
 
    @Override
@@ -122,6 +123,7 @@ public class TransientCacheValue extends ImmortalCacheValue {
          output.writeObject(tcv.value);
          UnsignedNumeric.writeUnsignedLong(output, tcv.lastUsed);
          output.writeLong(tcv.maxIdle); // could be negative so should not use unsigned longs
+         output.writeObject(tcv.version);
       }
 
       @Override
@@ -129,7 +131,9 @@ public class TransientCacheValue extends ImmortalCacheValue {
          Object v = input.readObject();
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientCacheValue(v, maxIdle, lastUsed);
+         TransientCacheValue result = new TransientCacheValue(v, maxIdle, lastUsed);
+         result.version = (EntryVersion) input.readObject();
+         return result;
       }
 
       @Override
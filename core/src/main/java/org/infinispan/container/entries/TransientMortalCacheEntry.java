@@ -23,6 +23,7 @@
 package org.infinispan.container.entries;
 
 import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -101,6 +102,14 @@ public class TransientMortalCacheEntry extends AbstractInternalCacheEntry {
       return cacheValue;
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.version;
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.version = version;
+   }
+
    public long getLastUsed() {
       return cacheValue.lastUsed;
    }
@@ -166,6 +175,7 @@ public class TransientMortalCacheEntry extends AbstractInternalCacheEntry {
          output.writeLong(entry.cacheValue.lifespan); // could be negative so should not use unsigned longs
          UnsignedNumeric.writeUnsignedLong(output, entry.cacheValue.lastUsed);
          output.writeLong(entry.cacheValue.maxIdle); // could be negative so should not use unsigned longs
+         output.writeObject(entry.cacheValue.version);
       }
 
       @Override
@@ -176,7 +186,9 @@ public class TransientMortalCacheEntry extends AbstractInternalCacheEntry {
          Long lifespan = input.readLong();
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientMortalCacheEntry(k, v, maxIdle, lifespan, lastUsed, created);
+         TransientMortalCacheEntry result = new TransientMortalCacheEntry(k, v, maxIdle, lifespan, lastUsed, created);
+         result.cacheValue.version = (EntryVersion) input.readObject();
+         return result;
       }
 
       @Override
@@ -28,6 +28,7 @@ import java.io.ObjectOutput;
 import java.util.Set;
 
 import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.Util;
@@ -80,7 +81,7 @@ public class TransientMortalCacheValue extends MortalCacheValue {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new TransientMortalCacheEntry(key, value, maxIdle, lifespan, lastUsed, created);
+      return withVersion(new TransientMortalCacheEntry(key, value, maxIdle, lifespan, lastUsed, created));
    }
 
    @Override
@@ -126,6 +127,7 @@ public class TransientMortalCacheValue extends MortalCacheValue {
          output.writeLong(value.lifespan); // could be negative so should not use unsigned longs
          UnsignedNumeric.writeUnsignedLong(output, value.lastUsed);
          output.writeLong(value.maxIdle); // could be negative so should not use unsigned longs
+         output.writeObject(value.version);
       }
 
       @Override
@@ -135,7 +137,9 @@ public class TransientMortalCacheValue extends MortalCacheValue {
          Long lifespan = input.readLong();
          long lastUsed = UnsignedNumeric.readUnsignedLong(input);
          Long maxIdle = input.readLong();
-         return new TransientMortalCacheValue(v, created, lifespan, maxIdle, lastUsed);
+         TransientMortalCacheValue result = new TransientMortalCacheValue(v, created, lifespan, maxIdle, lastUsed);
+         result.version = (EntryVersion) input.readObject();
+         return result;
       }
 
       @Override
@@ -0,0 +1,760 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.offheap;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.CacheException;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.Immutables;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.infinispan.container.offheap.SlabAllocator.NULL;
+import static org.infinispan.factories.KnownComponentNames.CACHE_MARSHALLER;
+
+/**
+ * A {@link DataContainer} which keeps marshalled keys and values in direct memory, outside of the Java heap.
+ * <p />
+ * The container is split into segments, each guarded by its own lock and owning its own {@link SlabAllocator} and
+ * hash index.  Every entry is a single off-heap record holding the hash chain pointer, the LRU chain pointers, the
+ * expiration metadata and the marshalled key and value.  The heap footprint of the container is therefore limited to
+ * the bucket arrays of the hash index, irrespective of the number or size of the entries stored.
+ * <p />
+ * Keys are compared by their marshalled form, so keys that are equal must also marshall to the same bytes.  Entries
+ * handed out by this container are copies materialized from the off-heap record: {@link #get(Object)} updates the
+ * last used timestamp of the stored record, but changes made to a returned entry are not reflected in the container
+ * until it is {@link #put(Object, Object, long, long)} again.
+ * <p />
+ * When bounded, each segment evicts its least recently used entries once it holds more than its share of the
+ * configured maximum number of entries.  Only the LRU (or UNORDERED) eviction strategy and a bound on the number of
+ * entries are supported; other strategies and a bound on memory are rejected when the container is configured.
+ * Expired entries are removed lazily on access and by {@link #purgeExpired()}, exactly as with the {@link
+ * org.infinispan.container.DefaultDataContainer}.
+ * <p />
+ * This container is selected by configuring <tt>org.infinispan.container.offheap.OffHeapDataContainer</tt> as the
+ * data container class.  The size of the memory slabs may be tuned with the <tt>slabSize</tt> data container
+ * property, and is rounded up to a power of two.
+ *
+ * @see org.infinispan.factories.DataContainerFactory
+ * @since 5.1
+ */
+@ThreadSafe
+public class OffHeapDataContainer implements DataContainer {
+
+   public static final String SLAB_SIZE = "slabSize";
+
+   public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+   // record layout
+   private static final int NEXT = 0;
+   private static final int LRU_PREV = 8;
+   private static final int LRU_NEXT = 16;
+   private static final int HASH = 24;
+   private static final int KEY_LENGTH = 28;
+   private static final int VALUE_LENGTH = 32;
+   private static final int CREATED = 40;
+   private static final int LAST_USED = 48;
+   private static final int LIFESPAN = 56;
+   private static final int MAX_IDLE = 64;
+   private static final int HEADER_SIZE = 72;
+
+   private static final int INITIAL_SEGMENT_CAPACITY = 16;
+   private static final float LOAD_FACTOR = 0.75f;
+
+   final Segment[] segments;
+   final int segmentShift;
+   final int segmentMask;
+
+   private StreamingMarshaller marshaller;
+   private EvictionManager evictionManager;
+   private PassivationManager passivator;
+
+   protected OffHeapDataContainer(int concurrencyLevel, int maxEntries, int slabSize) {
+      if (maxEntries > 0) {
+         // at least two entries per segment
+         concurrencyLevel = Math.max(1, Math.min(maxEntries / 2, concurrencyLevel));
+      }
+      int sshift = 0;
+      int ssize = 1;
+      while (ssize < concurrencyLevel) {
+         ++sshift;
+         ssize <<= 1;
+      }
+      segmentShift = 32 - sshift;
+      segmentMask = ssize - 1;
+      segments = new Segment[ssize];
+
+      int segmentCapacity = -1;
+      if (maxEntries > 0) {
+         segmentCapacity = maxEntries / ssize;
+         if (segmentCapacity * ssize < maxEntries) ++segmentCapacity;
+      }
+      for (int i = 0; i < ssize; i++) segments[i] = new Segment(segmentCapacity, slabSize);
+   }
+
+   @Inject
+   public void initialize(@ComponentName(CACHE_MARSHALLER) StreamingMarshaller marshaller,
+                          EvictionManager evictionManager, PassivationManager passivator) {
+      this.marshaller = marshaller;
+      this.evictionManager = evictionManager;
+      this.passivator = passivator;
+   }
+
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, int slabSize) {
+      return new OffHeapDataContainer(concurrencyLevel, maxEntries, slabSize);
+   }
+
+   public static DataContainer unBoundedDataContainer(int concurrencyLevel, int slabSize) {
+      return new OffHeapDataContainer(concurrencyLevel, -1, slabSize);
+   }
+
+   public InternalCacheEntry peek(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(k.hashCode());
+      Segment s = segmentFor(hash);
+      Record record;
+      s.lock();
+      try {
+         long address = s.find(hash, key);
+         if (address == NULL) return null;
+         record = s.read(address, null);
+      } finally {
+         s.unlock();
+      }
+      return record.toEntry(k);
+   }
+
+   public InternalCacheEntry get(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(k.hashCode());
+      Segment s = segmentFor(hash);
+      Record record;
+      s.lock();
+      try {
+         long address = s.find(hash, key);
+         if (address == NULL) return null;
+         long now = System.currentTimeMillis();
+         if (s.isExpired(address, now)) {
+            s.removeRecord(address);
+            return null;
+         }
+         s.touch(address, now);
+         record = s.read(address, null);
+      } finally {
+         s.unlock();
+      }
+      return record.toEntry(k);
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      byte[] key = marshall(k);
+      byte[] value = marshall(v);
+      int hash = hash(k.hashCode());
+      Segment s = segmentFor(hash);
+      Map<Object, InternalCacheEntry> evicted = null;
+      s.lock();
+      try {
+         long now = System.currentTimeMillis();
+         long address = s.find(hash, key);
+         if (address != NULL) {
+            s.replace(address, hash, key, value, now, lifespan, maxIdle);
+         } else {
+            if (s.isFull()) evicted = evict(s);
+            s.insert(hash, key, value, now, lifespan, maxIdle);
+         }
+      } finally {
+         s.unlock();
+      }
+      if (evicted != null && evictionManager != null) evictionManager.onEntryEviction(evicted);
+   }
+
+   public boolean containsKey(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(k.hashCode());
+      Segment s = segmentFor(hash);
+      s.lock();
+      try {
+         long address = s.find(hash, key);
+         if (address == NULL) return false;
+         if (s.isExpired(address, System.currentTimeMillis())) {
+            s.removeRecord(address);
+            return false;
+         }
+         return true;
+      } finally {
+         s.unlock();
+      }
+   }
+
+   /**
+    * Not supported: the records don't keep a version, see {@link org.infinispan.factories.DataContainerFactory}.
+    */
+   public void put(Object k, Object v, EntryVersion version, long lifespan, long maxIdle) {
+      throw new UnsupportedOperationException("Entry versioning is not supported by " + getClass().getSimpleName());
+   }
+
+   public InternalCacheEntry remove(Object k) {
+      byte[] key = marshall(k);
+      int hash = hash(k.hashCode());
+      Segment s = segmentFor(hash);
+      Record record;
+      s.lock();
+      try {
+         long address = s.find(hash, key);
+         if (address == NULL) return null;
+         boolean expired = s.isExpired(address, System.currentTimeMillis());
+         record = expired ? null : s.read(address, null);
+         s.removeRecord(address);
+      } finally {
+         s.unlock();
+      }
+      return record == null ? null : record.toEntry(k);
+   }
+
+   public int size() {
+      long size = 0;
+      for (Segment s : segments) size += s.count;
+      return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+   }
+
+   public void clear() {
+      for (Segment s : segments) {
+         s.lock();
+         try {
+            s.clear();
+         } finally {
+            s.unlock();
+         }
+      }
+   }
+
+   public Set<Object> keySet() {
+      return new KeySet();
+   }
+
+   public Collection<Object> values() {
+      return new Values();
+   }
+
+   public Set<InternalCacheEntry> entrySet() {
+      return new EntrySet();
+   }
+
+   public void purgeExpired() {
+      for (Segment s : segments) {
+         s.lock();
+         try {
+            s.purgeExpired(System.currentTimeMillis());
+         } finally {
+            s.unlock();
+         }
+      }
+   }
+
+   public Iterator<InternalCacheEntry> iterator() {
+      return new EntryIterator();
+   }
+
+   /**
+    * @return number of off-heap bytes occupied by the records currently stored
+    */
+   public long getUsedMemory() {
+      long used = 0;
+      for (Segment s : segments) {
+         s.lock();
+         try {
+            used += s.memory.getUsedBytes();
+         } finally {
+            s.unlock();
+         }
+      }
+      return used;
+   }
+
+   /**
+    * @return number of off-heap bytes reserved by this container, including free chunks
+    */
+   public long getReservedMemory() {
+      long reserved = 0;
+      for (Segment s : segments) {
+         s.lock();
+         try {
+            reserved += s.memory.getReservedBytes();
+         } finally {
+            s.unlock();
+         }
+      }
+      return reserved;
+   }
+
+   /**
+    * Evicts the least recently used entries of a full segment, passivating each of them while still holding the
+    * segment lock, the same way {@link org.infinispan.util.concurrent.BoundedConcurrentHashMap} does.  Must be
+    * invoked with the segment lock held.
+    */
+   private Map<Object, InternalCacheEntry> evict(Segment s) {
+      Map<Object, InternalCacheEntry> evicted = new HashMap<Object, InternalCacheEntry>();
+      while (s.isFull()) {
+         long eldest = s.lruHead;
+         InternalCacheEntry ice = s.read(eldest, null).toEntry(null);
+         if (passivator != null) passivator.passivate(ice);
+         evicted.put(ice.getKey(), ice);
+         s.removeRecord(eldest);
+      }
+      return evicted;
+   }
+
+   private Segment segmentFor(int hash) {
+      return segments[hash >>> segmentShift & segmentMask];
+   }
+
+   private byte[] marshall(Object o) {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException(e);
+      } catch (IOException e) {
+         throw new CacheException("Unable to marshall " + o, e);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes) {
+      try {
+         return marshaller.objectFromByteBuffer(bytes);
+      } catch (Exception e) {
+         throw new CacheException("Unable to unmarshall entry stored off-heap", e);
+      }
+   }
+
+   /**
+    * Same supplemental hash function as used by {@link org.infinispan.util.concurrent.BoundedConcurrentHashMap}.
+    */
+   private static int hash(int h) {
+      h += h <<  15 ^ 0xffffcd7d;
+      h ^= h >>> 10;
+      h += h <<   3;
+      h ^= h >>>  6;
+      h += (h <<   2) + (h << 14);
+      return h ^ h >>> 16;
+   }
+
+   /**
+    * A heap copy of an off-heap record, taken while holding the segment lock so that unmarshalling can happen
+    * outside of it.
+    */
+   private final class Record {
+      final byte[] key;
+      final byte[] value;
+      final long created;
+      final long lastUsed;
+      final long lifespan;
+      final long maxIdle;
+
+      Record(byte[] key, byte[] value, long created, long lastUsed, long lifespan, long maxIdle) {
+         this.key = key;
+         this.value = value;
+         this.created = created;
+         this.lastUsed = lastUsed;
+         this.lifespan = lifespan;
+         this.maxIdle = maxIdle;
+      }
+
+      /**
+       * @param k the key object if already known, otherwise the key is unmarshalled
+       */
+      InternalCacheEntry toEntry(Object k) {
+         if (k == null) k = unmarshall(key);
+         return InternalEntryFactory.create(k, unmarshall(value), created, lifespan, lastUsed, maxIdle);
+      }
+   }
+
+   /**
+    * A segment of the container.  Every method requires the segment lock to be held, with the exception of reading
+    * {@link #count}.
+    */
+   final class Segment extends ReentrantLock {
+
+      private static final long serialVersionUID = -4133469347137612341L;
+
+      final SlabAllocator memory;
+      final int capacity;
+      volatile int count;
+      long[] table;
+      int threshold;
+      long lruHead = NULL;
+      long lruTail = NULL;
+
+      Segment(int capacity, int slabSize) {
+         this.capacity = capacity;
+         this.memory = new SlabAllocator(slabSize);
+         setTable(newTable(INITIAL_SEGMENT_CAPACITY));
+      }
+
+      boolean isFull() {
+         return capacity > 0 && count >= capacity;
+      }
+
+      long find(int hash, byte[] key) {
+         long[] tab = table;
+         long address = tab[hash & tab.length - 1];
+         while (address != NULL) {
+            if (memory.getInt(address, HASH) == hash && memory.getInt(address, KEY_LENGTH) == key.length
+                  && memory.bytesEqual(address, HEADER_SIZE, key)) {
+               return address;
+            }
+            address = memory.getLong(address, NEXT);
+         }
+         return NULL;
+      }
+
+      void insert(int hash, byte[] key, byte[] value, long now, long lifespan, long maxIdle) {
+         long address = memory.allocate(HEADER_SIZE + key.length + value.length);
+         write(address, hash, key, value, now, lifespan, maxIdle);
+         linkBucket(address, hash);
+         lruAppend(address);
+         if (++count > threshold) rehash();
+      }
+
+      void replace(long address, int hash, byte[] key, byte[] value, long now, long lifespan, long maxIdle) {
+         int oldSize = recordSize(address);
+         int newSize = HEADER_SIZE + key.length + value.length;
+         lruUnlink(address);
+         if (!SlabAllocator.fitsInPlace(oldSize, newSize)) {
+            unlinkBucket(address);
+            memory.free(address, oldSize);
+            address = memory.allocate(newSize);
+            write(address, hash, key, value, now, lifespan, maxIdle);
+            linkBucket(address, hash);
+         } else {
+            // the hash chain pointer is kept as is
+            write(address, hash, key, value, now, lifespan, maxIdle);
+         }
+         lruAppend(address);
+      }
+
+      void removeRecord(long address) {
+         unlinkBucket(address);
+         lruUnlink(address);
+         memory.free(address, recordSize(address));
+         count--;
+      }
+
+      void touch(long address, long now) {
+         memory.putLong(address, LAST_USED, now);
+         if (address != lruTail) {
+            lruUnlink(address);
+            lruAppend(address);
+         }
+      }
+
+      boolean isExpired(long address, long now) {
+         long lifespan = memory.getLong(address, LIFESPAN);
+         if (lifespan > -1 && now > memory.getLong(address, CREATED) + lifespan) return true;
+         long maxIdle = memory.getLong(address, MAX_IDLE);
+         return maxIdle > -1 && now > memory.getLong(address, LAST_USED) + maxIdle;
+      }
+
+      /**
+       * @param key the marshalled key if known by the caller, otherwise it is copied from the record
+       */
+      Record read(long address, byte[] key) {
+         int keyLength = memory.getInt(address, KEY_LENGTH);
+         if (key == null) {
+            key = new byte[keyLength];
+            memory.getBytes(address, HEADER_SIZE, key);
+         }
+         byte[] value = new byte[memory.getInt(address, VALUE_LENGTH)];
+         memory.getBytes(address, HEADER_SIZE + keyLength, value);
+         return new Record(key, value, memory.getLong(address, CREATED), memory.getLong(address, LAST_USED),
+                           memory.getLong(address, LIFESPAN), memory.getLong(address, MAX_IDLE));
+      }
+
+      void purgeExpired(long now) {
+         long address = lruHead;
+         while (address != NULL) {
+            long next = memory.getLong(address, LRU_NEXT);
+            if (isExpired(address, now)) removeRecord(address);
+            address = next;
+         }
+      }
+
+      void readAll(List<Record> records) {
+         for (long address = lruHead; address != NULL; address = memory.getLong(address, LRU_NEXT)) {
+            records.add(read(address, null));
+         }
+      }
+
+      void clear() {
+         memory.clear();
+         setTable(newTable(INITIAL_SEGMENT_CAPACITY));
+         lruHead = lruTail = NULL;
+         count = 0;
+      }
+
+      private void write(long address, int hash, byte[] key, byte[] value, long now, long lifespan, long maxIdle) {
+         memory.putInt(address, HASH, hash);
+         memory.putInt(address, KEY_LENGTH, key.length);
+         memory.putInt(address, VALUE_LENGTH, value.length);
+         memory.putLong(address, CREATED, now);
+         memory.putLong(address, LAST_USED, now);
+         memory.putLong(address, LIFESPAN, lifespan);
+         memory.putLong(address, MAX_IDLE, maxIdle);
+         memory.putBytes(address, HEADER_SIZE, key);
+         memory.putBytes(address, HEADER_SIZE + key.length, value);
+      }
+
+      private int recordSize(long address) {
+         return HEADER_SIZE + memory.getInt(address, KEY_LENGTH) + memory.getInt(address, VALUE_LENGTH);
+      }
+
+      private void linkBucket(long address, int hash) {
+         int index = hash & table.length - 1;
+         memory.putLong(address, NEXT, table[index]);
+         table[index] = address;
+      }
+
+      private void unlinkBucket(long address) {
+         int index = memory.getInt(address, HASH) & table.length - 1;
+         long next = memory.getLong(address, NEXT);
+         long current = table[index];
+         if (current == address) {
+            table[index] = next;
+            return;
+         }
+         while (current != NULL) {
+            long following = memory.getLong(current, NEXT);
+            if (following == address) {
+               memory.putLong(current, NEXT, next);
+               return;
+            }
+            current = following;
+         }
+      }
+
+      private void lruAppend(long address) {
+         memory.putLong(address, LRU_PREV, lruTail);
+         memory.putLong(address, LRU_NEXT, NULL);
+         if (lruTail == NULL) {
+            lruHead = address;
+         } else {
+            memory.putLong(lruTail, LRU_NEXT, address);
+         }
+         lruTail = address;
+      }
+
+      private void lruUnlink(long address) {
+         long prev = memory.getLong(address, LRU_PREV);
+         long next = memory.getLong(address, LRU_NEXT);
+         if (prev == NULL) {
+            lruHead = next;
+         } else {
+            memory.putLong(prev, LRU_NEXT, next);
+         }
+         if (next == NULL) {
+            lruTail = prev;
+         } else {
+            memory.putLong(next, LRU_PREV, prev);
+         }
+      }
+
+      private void rehash() {
+         long[] oldTable = table;
+         long[] newTable = newTable(oldTable.length << 1);
+         int mask = newTable.length - 1;
+         for (long head : oldTable) {
+            long address = head;
+            while (address != NULL) {
+               long next = memory.getLong(address, NEXT);
+               int index = memory.getInt(address, HASH) & mask;
+               memory.putLong(address, NEXT, newTable[index]);
+               newTable[index] = address;
+               address = next;
+            }
+         }
+         setTable(newTable);
+      }
+
+      private void setTable(long[] newTable) {
+         threshold = (int) (newTable.length * LOAD_FACTOR);
+         table = newTable;
+      }
+
+      private long[] newTable(int length) {
+         long[] tab = new long[length];
+         Arrays.fill(tab, NULL);
+         return tab;
+      }
+   }
+
+   /**
+    * Iterates over the container one segment at a time.  The records of a segment are copied out while holding its
+    * lock and unmarshalled lazily, so the iterator is weakly consistent and never holds more than a single segment's
+    * worth of entries on the heap.
+    */
+   private class EntryIterator implements Iterator<InternalCacheEntry> {
+      private int nextSegment;
+      private Iterator<Record> current = Collections.<Record>emptyList().iterator();
+
+      public boolean hasNext() {
+         while (!current.hasNext()) {
+            if (nextSegment >= segments.length) return false;
+            Segment s = segments[nextSegment++];
+            List<Record> records = new ArrayList<Record>(s.count);
+            s.lock();
+            try {
+               s.readAll(records);
+            } finally {
+               s.unlock();
+            }
+            current = records.iterator();
+         }
+         return true;
+      }
+
+      public InternalCacheEntry next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         return current.next().toEntry(null);
+      }
+
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private class KeySet extends AbstractSet<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getKey();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+         return peek(o) != null;
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   private class Values extends AbstractCollection<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getValue();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   private class EntrySet extends AbstractSet<InternalCacheEntry> {
+      @Override
+      public boolean contains(Object o) {
+         if (!(o instanceof Map.Entry)) {
+            return false;
+         }
+
+         @SuppressWarnings("rawtypes")
+         Map.Entry e = (Map.Entry) o;
+         InternalCacheEntry ice = peek(e.getKey());
+         if (ice == null) {
+            return false;
+         }
+         return ice.getValue().equals(e.getValue());
+      }
+
+      @Override
+      public Iterator<InternalCacheEntry> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<InternalCacheEntry>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public InternalCacheEntry next() {
+               return Immutables.immutableInternalCacheEntry(it.next());
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+}
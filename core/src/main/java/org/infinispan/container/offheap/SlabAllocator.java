@@ -0,0 +1,310 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.offheap;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A buddy allocator handing out chunks of direct memory.
+ * <p />
+ * Memory is reserved from the operating system in slabs of a fixed, power of two size, and handed out in power of two
+ * sized chunks.  A chunk is carved out by splitting the smallest free chunk large enough in halves, and a freed chunk
+ * is merged with its buddy, the other half of the chunk it was split from, as long as that buddy is free too.  So
+ * memory freed by chunks of one size can be reused by chunks of any other size, and a slab whose chunks have all been
+ * freed is released, apart from a single spare slab kept to absorb allocations that come and go at the boundary.
+ * Requests larger than the slab size are served by a dedicated slab, released as soon as the chunk is freed.
+ * <p />
+ * Free chunks are kept on a doubly linked free list per size, threaded through the chunks themselves.  Whether a chunk
+ * is free is recorded in a bitmap per slab, with a bit for every chunk a slab can be split into, which costs the heap
+ * a sixteenth of a bit per byte of slab.
+ * <p />
+ * An address is a <tt>long</tt> whose upper 32 bits hold the slab index and whose lower 32 bits hold the offset
+ * within that slab.  {@link #NULL} is never a valid address.
+ * <p />
+ * This class is not thread safe, callers are expected to guard access with a lock.
+ *
+ * @since 5.1
+ */
+@NotThreadSafe
+final class SlabAllocator {
+
+   static final long NULL = -1L;
+
+   /**
+    * Smallest chunk handed out is 32 bytes, since freed chunks need to hold the free list pointers.
+    */
+   private static final int MIN_CHUNK_SHIFT = 5;
+
+   // free chunk layout
+   private static final int NEXT_FREE = 0;
+   private static final int PREV_FREE = 8;
+
+   private final int slabShift;
+   private final int slabSize;
+   private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+   /**
+    * The free chunk bitmaps of the slabs, null for dedicated slabs and released slabs.  The chunk of size class
+    * <tt>k</tt> at offset <tt>o</tt> has bit <tt>(1 &lt;&lt; (slabShift - k)) + (o &gt;&gt; k)</tt>.
+    */
+   private final List<long[]> freeMaps = new ArrayList<long[]>();
+   /**
+    * Indexes of released slabs, reused by the next slabs reserved
+    */
+   private final List<Integer> releasedSlabs = new ArrayList<Integer>();
+   private final long[] freeLists = new long[32];
+   private ByteBuffer spareSlab;
+   private long usedBytes;
+
+   /**
+    * @param slabSize the size of the slabs, rounded up to a power of two
+    */
+   SlabAllocator(int slabSize) {
+      if (slabSize < 1 << MIN_CHUNK_SHIFT)
+         throw new IllegalArgumentException("Slab size has to be at least " + (1 << MIN_CHUNK_SHIFT) + " bytes");
+      if (slabSize > 1 << 30)
+         throw new IllegalArgumentException("Slab size has to be at most " + (1 << 30) + " bytes");
+      this.slabShift = sizeClass(slabSize);
+      this.slabSize = 1 << slabShift;
+      Arrays.fill(freeLists, NULL);
+   }
+
+   /**
+    * Allocates a chunk able to hold at least <tt>size</tt> bytes.
+    *
+    * @param size number of bytes requested
+    * @return the address of the chunk
+    */
+   long allocate(int size) {
+      int sizeClass = sizeClass(size);
+      int chunkSize = 1 << sizeClass;
+      usedBytes += chunkSize;
+      if (sizeClass > slabShift) {
+         return address(addSlab(ByteBuffer.allocateDirect(chunkSize), null), 0);
+      }
+
+      int free = sizeClass;
+      while (free <= slabShift && freeLists[free] == NULL) free++;
+      long address;
+      if (free > slabShift) {
+         ByteBuffer slab = spareSlab != null ? spareSlab : ByteBuffer.allocateDirect(slabSize);
+         spareSlab = null;
+         address = address(addSlab(slab, new long[((1 << (slabShift - MIN_CHUNK_SHIFT + 1)) + 63) >>> 6]), 0);
+         free = slabShift;
+      } else {
+         address = freeLists[free];
+         unlinkFree(address, free);
+      }
+      // split the chunk, keeping its first half and freeing the second one, until it has the requested size
+      while (free > sizeClass) {
+         free--;
+         linkFree(address + (1 << free), free);
+      }
+      return address;
+   }
+
+   /**
+    * Returns a chunk previously obtained through {@link #allocate(int)} to the allocator.
+    *
+    * @param address address of the chunk
+    * @param size    the size the chunk was allocated with
+    */
+   void free(long address, int size) {
+      int sizeClass = sizeClass(size);
+      usedBytes -= 1 << sizeClass;
+      if (sizeClass > slabShift) {
+         releaseSlab(slabIndex(address));
+         return;
+      }
+
+      // merge with the free buddies
+      while (sizeClass < slabShift) {
+         long buddy = address ^ (1L << sizeClass);
+         if (!isFree(buddy, sizeClass)) break;
+         unlinkFree(buddy, sizeClass);
+         address &= ~(1L << sizeClass);
+         sizeClass++;
+      }
+      if (sizeClass == slabShift) {
+         // the whole slab is free
+         int slab = slabIndex(address);
+         if (spareSlab == null) spareSlab = slabs.get(slab);
+         releaseSlab(slab);
+      } else {
+         linkFree(address, sizeClass);
+      }
+   }
+
+   /**
+    * @return true if a chunk allocated for <tt>oldSize</tt> bytes can be reused to hold <tt>newSize</tt> bytes
+    */
+   static boolean fitsInPlace(int oldSize, int newSize) {
+      return sizeClass(oldSize) == sizeClass(newSize);
+   }
+
+   /**
+    * Drops all slabs, which are reclaimed once they are garbage collected.  Any address previously handed out becomes
+    * invalid.
+    */
+   void clear() {
+      slabs.clear();
+      freeMaps.clear();
+      releasedSlabs.clear();
+      Arrays.fill(freeLists, NULL);
+      spareSlab = null;
+      usedBytes = 0;
+   }
+
+   /**
+    * @return number of bytes held by live chunks
+    */
+   long getUsedBytes() {
+      return usedBytes;
+   }
+
+   /**
+    * @return number of bytes reserved from the operating system, including the spare slab
+    */
+   long getReservedBytes() {
+      long reserved = spareSlab == null ? 0 : spareSlab.capacity();
+      for (ByteBuffer slab : slabs) {
+         if (slab != null) reserved += slab.capacity();
+      }
+      return reserved;
+   }
+
+   long getLong(long address, int offset) {
+      return slab(address).getLong(offset(address) + offset);
+   }
+
+   void putLong(long address, int offset, long value) {
+      slab(address).putLong(offset(address) + offset, value);
+   }
+
+   int getInt(long address, int offset) {
+      return slab(address).getInt(offset(address) + offset);
+   }
+
+   void putInt(long address, int offset, int value) {
+      slab(address).putInt(offset(address) + offset, value);
+   }
+
+   void getBytes(long address, int offset, byte[] dst) {
+      ByteBuffer slab = slab(address);
+      slab.position(offset(address) + offset);
+      slab.get(dst);
+   }
+
+   void putBytes(long address, int offset, byte[] src) {
+      ByteBuffer slab = slab(address);
+      slab.position(offset(address) + offset);
+      slab.put(src);
+   }
+
+   boolean bytesEqual(long address, int offset, byte[] expected) {
+      ByteBuffer slab = slab(address);
+      int start = offset(address) + offset;
+      for (int i = 0; i < expected.length; i++) {
+         if (slab.get(start + i) != expected[i]) return false;
+      }
+      return true;
+   }
+
+   private int addSlab(ByteBuffer slab, long[] freeMap) {
+      if (releasedSlabs.isEmpty()) {
+         slabs.add(slab);
+         freeMaps.add(freeMap);
+         return slabs.size() - 1;
+      }
+      int index = releasedSlabs.remove(releasedSlabs.size() - 1);
+      slabs.set(index, slab);
+      freeMaps.set(index, freeMap);
+      return index;
+   }
+
+   private void releaseSlab(int index) {
+      slabs.set(index, null);
+      freeMaps.set(index, null);
+      releasedSlabs.add(index);
+   }
+
+   private void linkFree(long address, int sizeClass) {
+      long head = freeLists[sizeClass];
+      putLong(address, NEXT_FREE, head);
+      putLong(address, PREV_FREE, NULL);
+      if (head != NULL) putLong(head, PREV_FREE, address);
+      freeLists[sizeClass] = address;
+      flipFreeBit(address, sizeClass);
+   }
+
+   private void unlinkFree(long address, int sizeClass) {
+      long next = getLong(address, NEXT_FREE);
+      long prev = getLong(address, PREV_FREE);
+      if (prev == NULL) {
+         freeLists[sizeClass] = next;
+      } else {
+         putLong(prev, NEXT_FREE, next);
+      }
+      if (next != NULL) putLong(next, PREV_FREE, prev);
+      flipFreeBit(address, sizeClass);
+   }
+
+   private boolean isFree(long address, int sizeClass) {
+      int bit = freeBit(address, sizeClass);
+      return (freeMaps.get(slabIndex(address))[bit >>> 6] & 1L << bit) != 0;
+   }
+
+   private void flipFreeBit(long address, int sizeClass) {
+      int bit = freeBit(address, sizeClass);
+      freeMaps.get(slabIndex(address))[bit >>> 6] ^= 1L << bit;
+   }
+
+   private int freeBit(long address, int sizeClass) {
+      return (1 << (slabShift - sizeClass)) + (offset(address) >>> sizeClass);
+   }
+
+   private ByteBuffer slab(long address) {
+      return slabs.get(slabIndex(address));
+   }
+
+   private static int slabIndex(long address) {
+      return (int) (address >>> 32);
+   }
+
+   private static int offset(long address) {
+      return (int) address;
+   }
+
+   private static long address(int slab, int offset) {
+      return ((long) slab << 32) | (offset & 0xFFFFFFFFL);
+   }
+
+   static int sizeClass(int size) {
+      int sizeClass = 32 - Integer.numberOfLeadingZeros(size - 1);
+      return sizeClass < MIN_CHUNK_SHIFT ? MIN_CHUNK_SHIFT : sizeClass;
+   }
+}
@@ -0,0 +1,39 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.versioning;
+
+/**
+ * The version of an entry, which changes every time the entry is written by a transaction.  Versions are compared for
+ * equality only: a transaction detects a write skew when the version of an entry it read is no longer the current one.
+ * <p/>
+ * Implementations must implement {@link #equals(Object)} and {@link #hashCode()}, and be marshallable.
+ *
+ * @since 5.1
+ */
+public interface EntryVersion {
+
+   /**
+    * @return the version that the entry gets when it is written next
+    */
+   EntryVersion increment();
+}
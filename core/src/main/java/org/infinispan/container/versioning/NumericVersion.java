@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.versioning;
+
+import org.infinispan.marshall.AbstractExternalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Set;
+
+/**
+ * An {@link EntryVersion} that counts the writes to an entry since the transaction that created it.
+ * <p/>
+ * Each owner increments the version it holds when it commits a write, so the owners of an entry agree on its version
+ * as long as they apply its writes in the same order, which the locks acquired at prepare guarantee.  The count starts
+ * again from 1 when an entry is removed and written again, but the version also names the transaction that created
+ * the entry, and transactions are unique cluster wide.  So an entry that was removed and created again never gets back
+ * a version it had before, and a transaction that read the entry before it was removed fails validation.
+ *
+ * @since 5.1
+ */
+public final class NumericVersion implements EntryVersion {
+
+   /**
+    * The first version of entries written outside of a transaction, which can't tell apart two incarnations of a key.
+    */
+   public static final NumericVersion FIRST = new NumericVersion(1);
+
+   /**
+    * Stands for the version of a key that doesn't exist.  Counts start from 1, so no entry ever has this version.
+    */
+   public static final NumericVersion NON_EXISTING = new NumericVersion(0);
+
+   private final Address creator;
+   private final long creatorId;
+   private final long version;
+
+   public NumericVersion(long version) {
+      this(null, 0, version);
+   }
+
+   public NumericVersion(Address creator, long creatorId, long version) {
+      this.creator = creator;
+      this.creatorId = creatorId;
+      this.version = version;
+   }
+
+   public long getVersion() {
+      return version;
+   }
+
+   /**
+    * @return the originator of the transaction that created the entry, or null if it was created outside of a
+    *         transaction
+    */
+   public Address getCreator() {
+      return creator;
+   }
+
+   /**
+    * @param previous the version of the entry before a write, or null if the entry didn't exist
+    * @param writer   the transaction that writes the entry, or null if it is written outside of a transaction
+    * @return the version of the entry after the write
+    */
+   public static EntryVersion next(EntryVersion previous, GlobalTransaction writer) {
+      if (previous != null) return previous.increment();
+      return writer == null ? FIRST : new NumericVersion(writer.getAddress(), writer.getId(), 1);
+   }
+
+   @Override
+   public NumericVersion increment() {
+      return new NumericVersion(creator, creatorId, version + 1);
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof NumericVersion)) return false;
+      NumericVersion that = (NumericVersion) o;
+      return version == that.version && creatorId == that.creatorId
+            && (creator != null ? creator.equals(that.creator) : that.creator == null);
+   }
+
+   @Override
+   public int hashCode() {
+      int result = (int) (version ^ (version >>> 32));
+      result = 31 * result + (int) (creatorId ^ (creatorId >>> 32));
+      result = 31 * result + (creator != null ? creator.hashCode() : 0);
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "NumericVersion{creator=" + creator + ":" + creatorId + ", version=" + version + "}";
+   }
+
+   public static class Externalizer extends AbstractExternalizer<NumericVersion> {
+      @Override
+      public void writeObject(ObjectOutput output, NumericVersion v) throws IOException {
+         output.writeObject(v.creator);
+         output.writeLong(v.creatorId);
+         output.writeLong(v.version);
+      }
+
+      @Override
+      public NumericVersion readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+         return new NumericVersion((Address) input.readObject(), input.readLong(), input.readLong());
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.NUMERIC_VERSION;
+      }
+
+      @Override
+      public Set<Class<? extends NumericVersion>> getTypeClasses() {
+         return Util.<Class<? extends NumericVersion>>asSet(NumericVersion.class);
+      }
+   }
+}
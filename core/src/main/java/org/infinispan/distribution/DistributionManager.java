@@ -110,6 +110,19 @@ public interface DistributionManager {
     */
    InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception;
 
+   /**
+    * Retrieves several cache entries from remote sources. Keys are grouped by owner and a single {@link
+    * org.infinispan.commands.remote.ClusteredGetAllCommand} is sent to each of these owners, all of them in parallel.
+    * Keys that cannot be resolved this way (e.g. because their location is in doubt during a rehash) are retrieved
+    * individually, as per {@link #retrieveFromRemoteSource(Object, org.infinispan.context.InvocationContext)}.
+    *
+    * @param keys keys to look up
+    * @param ctx
+    * @return a map of the keys that could be located to their internal cache entries
+    * @throws Exception if something bad happens
+    */
+   Map<Object, InternalCacheEntry> retrieveFromRemoteSource(Collection<Object> keys, InvocationContext ctx) throws Exception;
+
    /**
     * Retrieves the consistent hash instance currently in use, an instance of the configured ConsistentHash
     * class (which defaults to {@link org.infinispan.distribution.ch.DefaultConsistentHash}.
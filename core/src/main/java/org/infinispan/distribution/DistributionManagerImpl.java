@@ -23,6 +23,7 @@
 package org.infinispan.distribution;
 
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.container.entries.CacheEntry;
@@ -43,18 +44,29 @@ import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.statetransfer.StateTransferManager;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
 import org.rhq.helpers.pluginAnnotations.agent.Parameter;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The default distribution manager implementation
@@ -80,6 +92,8 @@ public class DistributionManagerImpl implements DistributionManager {
 
    private volatile ConsistentHash consistentHash;
 
+   private RemoteOwnerSelector ownerSelector;
+
    /**
     * Default constructor
     */
@@ -100,6 +114,7 @@ public class DistributionManagerImpl implements DistributionManager {
    @Start(priority = 20)
    private void start() throws Exception {
       if (trace) log.trace("starting distribution manager on " + getAddress());
+      ownerSelector = new RemoteOwnerSelector(getAddress(), configuration.getRemoteReadStrategy());
    }
 
    private int getReplCount() {
@@ -153,10 +168,15 @@ public class DistributionManagerImpl implements DistributionManager {
    public InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception {
       ClusteredGetCommand get = cf.buildClusteredGetCommand(key, ctx.getFlags());
 
-      List<Address> targets = locate(key);
+      // the consistent hash may return a shared, immutable list
+      List<Address> targets = new ArrayList<Address>(locate(key));
       targets.remove(getAddress());
       // if any of the recipients has left the cluster since the command was issued, just don't wait for its response
       targets.retainAll(rpcManager.getTransport().getMembers());
+      if (configuration.getRemoteReadStrategy() != RemoteReadStrategy.ALL && targets.size() > 1) {
+         ownerSelector.sort(targets);
+         return retrieveFromSelectedOwners(key, get, targets);
+      }
       ResponseFilter filter = new ClusteredGetResponseValidityFilter(targets);
       Map<Address, Response> responses = rpcManager.invokeRemotely(targets, get, ResponseMode.SYNCHRONOUS,
                                                                    configuration.getSyncReplTimeout(), false, filter);
@@ -173,6 +193,171 @@ public class DistributionManagerImpl implements DistributionManager {
       return null;
    }
 
+   /**
+    * Asks the owners of <code>key</code> one at a time, in the order of <code>targets</code>, moving on to the next
+    * owner when an owner fails or is not sure it owns the key. With the {@link RemoteReadStrategy#STAGGERED} strategy
+    * the next owner is also asked when the previous ones haven't answered within the stagger delay.
+    */
+   private InternalCacheEntry retrieveFromSelectedOwners(Object key, ClusteredGetCommand get, List<Address> targets) throws Exception {
+      long timeout = configuration.getSyncReplTimeout();
+      long deadline = System.currentTimeMillis() + timeout;
+      long staggerDelay = configuration.getRemoteReadStrategy() == RemoteReadStrategy.STAGGERED ?
+            configuration.getRemoteReadStaggerDelay() : timeout;
+
+      // the futures are queued in the order they complete
+      final BlockingQueue<Future<Map<Address, Response>>> completed = new LinkedBlockingQueue<Future<Map<Address, Response>>>();
+      Map<Future<Map<Address, Response>>, Address> pending = new HashMap<Future<Map<Address, Response>>, Address>();
+      Iterator<Address> nextTargets = targets.iterator();
+      try {
+         sendRemoteGet(get, nextTargets.next(), pending, completed, timeout);
+         while (!pending.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) break;
+            Future<Map<Address, Response>> future = completed.poll(Math.min(staggerDelay, remaining), TimeUnit.MILLISECONDS);
+            if (future == null) {
+               // no answer within the stagger delay, ask the next owner as well
+               if (nextTargets.hasNext()) sendRemoteGet(get, nextTargets.next(), pending, completed, timeout);
+               continue;
+            }
+
+            Address owner = pending.remove(future);
+            Response response;
+            try {
+               Map<Address, Response> responses = future.get();
+               // the owner doesn't send a response if it doesn't have the key
+               if (responses.isEmpty()) return null;
+               response = responses.get(owner);
+            } catch (ExecutionException e) {
+               if (trace) log.tracef(e.getCause(), "Remote get of key %s from %s failed", key, owner);
+               response = null;
+            }
+            if (response instanceof SuccessfulResponse) {
+               InternalCacheValue cacheValue = (InternalCacheValue) ((SuccessfulResponse) response).getResponseValue();
+               return cacheValue.toInternalCacheEntry(key);
+            }
+
+            if (trace) log.tracef("No conclusive answer for key %s from %s (%s)", key, owner, response);
+            if (nextTargets.hasNext()) sendRemoteGet(get, nextTargets.next(), pending, completed, timeout);
+         }
+         if (!pending.isEmpty())
+            throw new TimeoutException("Timed out waiting for a valid response for key " + key + " from " + targets);
+         // none of the owners was sure it owned the key
+         return null;
+      } finally {
+         // we don't need the answers of the owners we're still waiting for
+         for (Future<Map<Address, Response>> future : pending.keySet()) future.cancel(false);
+      }
+   }
+
+   private void sendRemoteGet(ClusteredGetCommand get, final Address owner, Map<Future<Map<Address, Response>>, Address> pending,
+                              final BlockingQueue<Future<Map<Address, Response>>> completed, long timeout) {
+      ownerSelector.requestSent(owner);
+      NotifyingFuture<Map<Address, Response>> future;
+      try {
+         future = rpcManager.invokeRemotelyAsync(Collections.singleton(owner), get, timeout);
+      } catch (RuntimeException e) {
+         ownerSelector.requestCompleted(owner);
+         throw e;
+      }
+      pending.put(future, owner);
+      future.attachListener(new FutureListener<Map<Address, Response>>() {
+         @Override
+         public void futureDone(Future<Map<Address, Response>> future) {
+            ownerSelector.requestCompleted(owner);
+            completed.add(future);
+         }
+      });
+   }
+
+   @SuppressWarnings("unchecked")
+   public Map<Object, InternalCacheEntry> retrieveFromRemoteSource(Collection<Object> keys, InvocationContext ctx) throws Exception {
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size() * 4 / 3 + 1);
+      Address self = getAddress();
+      List<Address> members = rpcManager.getTransport().getMembers();
+
+      // keys we cannot batch, or whose batched answer was not conclusive, are retrieved one by one
+      List<Object> retrieveIndividually = new LinkedList<Object>();
+      Map<Address, List<Object>> keysByOwner = new HashMap<Address, List<Object>>();
+      boolean selectOwner = configuration.getRemoteReadStrategy() != RemoteReadStrategy.ALL;
+      for (Map.Entry<Object, List<Address>> e : locateAll(keys).entrySet()) {
+         Address target = null;
+         if (selectOwner) {
+            List<Address> owners = new ArrayList<Address>(e.getValue());
+            owners.remove(self);
+            owners.retainAll(members);
+            ownerSelector.sort(owners);
+            if (!owners.isEmpty()) target = owners.get(0);
+         } else {
+            // if any of the owners has left the cluster since the command was issued, just don't ask it
+            for (Address owner : e.getValue()) {
+               if (!owner.equals(self) && members.contains(owner)) {
+                  target = owner;
+                  break;
+               }
+            }
+         }
+         if (target == null) {
+            retrieveIndividually.add(e.getKey());
+         } else {
+            List<Object> ownerKeys = keysByOwner.get(target);
+            if (ownerKeys == null) {
+               ownerKeys = new LinkedList<Object>();
+               keysByOwner.put(target, ownerKeys);
+            }
+            ownerKeys.add(e.getKey());
+         }
+      }
+
+      Map<Address, Future<Map<Address, Response>>> futures = new HashMap<Address, Future<Map<Address, Response>>>(keysByOwner.size() * 4 / 3 + 1);
+      for (Map.Entry<Address, List<Object>> e : keysByOwner.entrySet()) {
+         final Address owner = e.getKey();
+         ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(e.getValue(), ctx.getFlags());
+         ownerSelector.requestSent(owner);
+         NotifyingFuture<Map<Address, Response>> future;
+         try {
+            future = rpcManager.invokeRemotelyAsync(Collections.singleton(owner), get, configuration.getSyncReplTimeout());
+         } catch (RuntimeException ex) {
+            ownerSelector.requestCompleted(owner);
+            throw ex;
+         }
+         future.attachListener(new FutureListener<Map<Address, Response>>() {
+            @Override
+            public void futureDone(Future<Map<Address, Response>> future) {
+               ownerSelector.requestCompleted(owner);
+            }
+         });
+         futures.put(owner, future);
+      }
+
+      for (Map.Entry<Address, Future<Map<Address, Response>>> e : futures.entrySet()) {
+         Address owner = e.getKey();
+         List<Object> ownerKeys = keysByOwner.get(owner);
+         Response response = getResponse(e.getValue(), owner);
+         if (!(response instanceof SuccessfulResponse)) {
+            if (trace) log.tracef("No valid response from %s (%s), retrieving keys %s individually", owner, response, ownerKeys);
+            retrieveIndividually.addAll(ownerKeys);
+            continue;
+         }
+         Map<Object, InternalCacheValue> values = (Map<Object, InternalCacheValue>) ((SuccessfulResponse) response).getResponseValue();
+         for (Object key : ownerKeys) {
+            if (!values.containsKey(key)) continue;
+            InternalCacheValue cacheValue = values.get(key);
+            if (cacheValue == null) {
+               // location of the key is in doubt on the owner
+               retrieveIndividually.add(key);
+            } else {
+               result.put(key, cacheValue.toInternalCacheEntry(key));
+            }
+         }
+      }
+
+      for (Object key : retrieveIndividually) {
+         InternalCacheEntry ice = retrieveFromRemoteSource(key, ctx);
+         if (ice != null) result.put(key, ice);
+      }
+      return result;
+   }
+
    public ConsistentHash getConsistentHash() {
       return consistentHash;
    }
@@ -182,6 +367,7 @@ public class DistributionManagerImpl implements DistributionManager {
       ConsistentHash oldCH = consistentHash;
       cacheNotifier.notifyTopologyChanged(oldCH, newCH, true);
       this.consistentHash = newCH;
+      if (ownerSelector != null) ownerSelector.retainAll(newCH.getCaches());
       cacheNotifier.notifyTopologyChanged(oldCH, newCH, false);
       return oldCH;
    }
@@ -236,4 +422,18 @@ public class DistributionManagerImpl implements DistributionManager {
    public String toString() {
       return "DistributionManagerImpl[consistentHash=" + consistentHash + "]";
    }
+
+   /**
+    * @return the response of the given member, or null if the call failed for any reason other than a timeout
+    */
+   private static Response getResponse(Future<Map<Address, Response>> future, Address member) throws InterruptedException {
+      try {
+         Map<Address, Response> responses = future.get();
+         return responses == null ? null : responses.get(member);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof TimeoutException) throw (TimeoutException) e.getCause();
+         if (trace) log.tracef(e.getCause(), "Remote get from %s failed", member);
+         return null;
+      }
+   }
 }
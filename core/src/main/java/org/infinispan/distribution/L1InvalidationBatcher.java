@@ -0,0 +1,305 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.write.InvalidateCommand;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Merges the L1 invalidations bound for the same node into a single {@link InvalidateCommand}, sending each key only
+ * once however many writes touched it in the meantime.
+ * <p/>
+ * Invalidations are queued per target node, or in a single queue for the whole cluster when they are multicast.  In
+ * synchronous mode the keys for a node are sent straight away unless an earlier invalidation to that node is still in
+ * flight, in which case they are sent as soon as it completes or the batching latency expires, and each write waits
+ * until all its keys have been invalidated on all their targets.  In asynchronous mode writes don't wait at all: keys
+ * are sent at most the batching latency after they were queued, which bounds how long a stale L1 copy may be read.
+ *
+ * @since 5.1
+ */
+final class L1InvalidationBatcher {
+
+   private static final Log log = LogFactory.getLog(L1InvalidationBatcher.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final L1ManagerImpl l1Manager;
+   private final RpcManager rpcManager;
+   private final CommandsFactory commandsFactory;
+   private final ScheduledExecutorService scheduler;
+   private final long latency;
+   private final long timeout;
+   private final boolean async;
+   private final ConcurrentMap<Address, Destination> destinations = new ConcurrentHashMap<Address, Destination>();
+   private final Destination everyone = new Destination(null);
+
+   L1InvalidationBatcher(L1ManagerImpl l1Manager, RpcManager rpcManager, CommandsFactory commandsFactory,
+                         ScheduledExecutorService scheduler, long latency, long timeout, boolean async) {
+      this.l1Manager = l1Manager;
+      this.rpcManager = rpcManager;
+      this.commandsFactory = commandsFactory;
+      this.scheduler = scheduler;
+      this.latency = latency;
+      this.timeout = timeout;
+      this.async = async;
+   }
+
+   /**
+    * Queues the invalidation of the keys on the given nodes.
+    *
+    * @param targets the nodes to invalidate the keys on, or null to invalidate them on all the nodes of the cluster
+    * @return a future completed once the keys have been invalidated on all the targets, or straight away in
+    *         asynchronous mode
+    */
+   NotifyingFuture<Object> invalidate(Collection<Address> targets, Collection<Object> keys) {
+      Invalidation invalidation = new Invalidation(targets == null ? 1 : targets.size());
+      if (async) invalidation.future.set(null);
+
+      if (targets == null) {
+         enqueue(everyone, keys, invalidation);
+      } else {
+         for (Address target : targets) {
+            while (!enqueue(lookup(target), keys, invalidation)) {
+               // an idle destination was discarded since we looked it up, try again
+            }
+         }
+      }
+      return invalidation.future;
+   }
+
+   /**
+    * Sends all the queued invalidations without waiting for the ones in flight.
+    */
+   void flush() {
+      new Flush(everyone).run();
+      for (Destination destination : destinations.values()) {
+         new Flush(destination).run();
+      }
+   }
+
+   private Destination lookup(Address target) {
+      Destination destination = destinations.get(target);
+      if (destination == null) {
+         Destination probe = new Destination(target);
+         destination = destinations.putIfAbsent(target, probe);
+         if (destination == null) destination = probe;
+      }
+      return destination;
+   }
+
+   private boolean enqueue(Destination destination, Collection<Object> keys, Invalidation invalidation) {
+      Batch toSend = null;
+      synchronized (destination) {
+         if (destination.discarded) return false;
+         destination.keys.addAll(keys);
+         if (!async) destination.waiters.add(invalidation);
+         if (!async && destination.inFlight == 0) {
+            toSend = takeQueued(destination);
+         } else if (destination.flushTask == null) {
+            destination.flushTask = schedule(new Flush(destination), latency);
+         }
+      }
+      if (toSend != null) send(destination, toSend);
+      return true;
+   }
+
+   /**
+    * Must be called while holding the lock of the destination.
+    */
+   private Batch takeQueued(Destination destination) {
+      if (destination.flushTask != null) {
+         destination.flushTask.cancel(false);
+         destination.flushTask = null;
+      }
+      Batch batch = new Batch(destination.keys, destination.waiters);
+      destination.keys = new LinkedHashSet<Object>();
+      destination.waiters = new ArrayList<Invalidation>();
+      destination.inFlight++;
+      return batch;
+   }
+
+   private void completed(Destination destination) {
+      Batch toSend = null;
+      synchronized (destination) {
+         destination.inFlight--;
+         if (!async && !destination.keys.isEmpty()) {
+            toSend = takeQueued(destination);
+         } else if (destination.inFlight == 0 && destination.keys.isEmpty() && destination.target != null) {
+            destination.discarded = true;
+            destinations.remove(destination.target, destination);
+         }
+      }
+      if (toSend != null) send(destination, toSend);
+   }
+
+   private void send(final Destination destination, final Batch batch) {
+      InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, batch.keys);
+      Collection<Address> recipients = destination.target == null ? null : Collections.singleton(destination.target);
+      if (trace) log.tracef("Invalidating %d keys on %s", batch.keys.size(), destination);
+      l1Manager.recordInvalidationRpcs(1, batch.keys.size());
+
+      if (async) {
+         try {
+            rpcManager.invokeRemotely(recipients, ic, false);
+         } catch (Throwable t) {
+            log.failedAsyncL1Invalidation(batch.keys.size(), destination, t);
+         } finally {
+            completed(destination);
+         }
+         return;
+      }
+
+      final NotifyingFuture<Map<Address, Response>> future;
+      try {
+         future = rpcManager.invokeRemotelyAsync(recipients, ic, timeout);
+      } catch (Throwable t) {
+         try {
+            for (Invalidation invalidation : batch.waiters) invalidation.future.setException(t);
+         } finally {
+            completed(destination);
+         }
+         return;
+      }
+      future.attachListener(new FutureListener<Map<Address, Response>>() {
+         public void futureDone(Future<Map<Address, Response>> f) {
+            try {
+               Throwable failure = null;
+               try {
+                  future.get();
+               } catch (ExecutionException e) {
+                  failure = e.getCause();
+               } catch (Throwable t) {
+                  failure = t;
+               }
+               for (Invalidation invalidation : batch.waiters) {
+                  if (failure != null)
+                     invalidation.future.setException(failure);
+                  else
+                     invalidation.targetDone();
+               }
+            } finally {
+               completed(destination);
+            }
+         }
+      });
+   }
+
+   private ScheduledFuture<?> schedule(Runnable task, long delay) {
+      try {
+         return scheduler.schedule(task, delay, MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+         // shutting down, the queued keys are sent by flush()
+         return null;
+      }
+   }
+
+   private final class Flush implements Runnable {
+      private final Destination destination;
+
+      Flush(Destination destination) {
+         this.destination = destination;
+      }
+
+      public void run() {
+         Batch toSend;
+         synchronized (destination) {
+            if (destination.keys.isEmpty()) return;
+            toSend = takeQueued(destination);
+         }
+         send(destination, toSend);
+      }
+   }
+
+   /**
+    * The invalidation requested by a single write, completed once its keys have been invalidated on all its targets.
+    */
+   private static final class Invalidation {
+      final SettableNotifyingFuture<Object> future = new SettableNotifyingFuture<Object>();
+      final AtomicInteger pendingTargets;
+
+      Invalidation(int targets) {
+         pendingTargets = new AtomicInteger(targets);
+      }
+
+      void targetDone() {
+         if (pendingTargets.decrementAndGet() == 0) future.set(null);
+      }
+   }
+
+   private static final class Batch {
+      final Set<Object> keys;
+      final List<Invalidation> waiters;
+
+      Batch(Set<Object> keys, List<Invalidation> waiters) {
+         this.keys = keys;
+         this.waiters = waiters;
+      }
+   }
+
+   /**
+    * The keys queued for a node, or for the whole cluster if the target is null.  All fields but the target are
+    * guarded by the instance's lock.
+    */
+   private static final class Destination {
+      final Address target;
+      int inFlight;
+      boolean discarded;
+      Set<Object> keys = new LinkedHashSet<Object>();
+      List<Invalidation> waiters = new ArrayList<Invalidation>();
+      ScheduledFuture<?> flushTask;
+
+      Destination(Address target) {
+         this.target = target;
+      }
+
+      @Override
+      public String toString() {
+         return "Destination{target=" + (target == null ? "all" : target) + "}";
+      }
+   }
+}
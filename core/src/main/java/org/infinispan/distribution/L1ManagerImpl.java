@@ -22,43 +22,103 @@
  */
 package org.infinispan.distribution;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.config.Configuration;
+import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
 import org.infinispan.util.concurrent.ConcurrentHashSet;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DataType;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Parameter;
 
+import static org.infinispan.factories.KnownComponentNames.ASYNC_REPLICATION_QUEUE_EXECUTOR;
+
+@MBean(objectName = "L1Manager", description = "Keeps track of the L1 copies of the keys owned by this node and invalidates them on writes.")
 public class L1ManagerImpl implements L1Manager {
 	
 	private final Log log = LogFactory.getLog(L1ManagerImpl.class);
 	private final boolean trace = log.isTraceEnabled();
 	
+	private Configuration configuration;
 	private RpcManager rpcManager;
 	private CommandsFactory commandsFactory;
+	private ScheduledExecutorService scheduledExecutor;
 	private int threshold;
+	private L1InvalidationBatcher batcher;
+
+   private final AtomicLong invalidationRpcs = new AtomicLong(0);
+   private final AtomicLong invalidatedKeys = new AtomicLong(0);
+   private final AtomicLong reset = new AtomicLong(System.currentTimeMillis());
 
-	private final ConcurrentMap<Object, Collection<Address>> requestors;
+   @ManagedAttribute(description = "Enables or disables the gathering of statistics by this component", writable = true)
+   boolean statisticsEnabled = false;
+
+	private ConcurrentMap<Object, Collection<Address>> requestors;
 	
 	public L1ManagerImpl() {
 	   requestors = new ConcurrentHashMap<Object, Collection<Address>>();
    }
 	
    @Inject
-   public void init(Configuration configuration, RpcManager rpcManager, CommandsFactory commandsFactory) {
+   public void init(Configuration configuration, RpcManager rpcManager, CommandsFactory commandsFactory,
+                    @ComponentName(ASYNC_REPLICATION_QUEUE_EXECUTOR) ScheduledExecutorService scheduledExecutor) {
+   	this.configuration = configuration;
    	this.rpcManager = rpcManager;
+   	this.scheduledExecutor = scheduledExecutor;
    	this.commandsFactory = commandsFactory;
    	this.threshold = configuration.getL1InvalidationThreshold();
+   	int maxRequestors = configuration.getL1MaxRequestors();
+   	if (maxRequestors > 0) {
+   	   requestors = new BoundedConcurrentHashMap<Object, Collection<Address>>(maxRequestors,
+   	         configuration.getConcurrencyLevel(), Eviction.LRU, new RequestorsEvictionListener());
+   	}
+   }
+
+   @Start
+   private void start() {
+      statisticsEnabled = configuration.isExposeJmxStatistics();
+      if (configuration.getL1InvalidationBatchingLatency() > 0 || configuration.isL1AsyncInvalidation()) {
+         batcher = new L1InvalidationBatcher(this, rpcManager, commandsFactory, scheduledExecutor,
+               configuration.getL1InvalidationBatchingLatency(), configuration.getSyncReplTimeout(),
+               configuration.isL1AsyncInvalidation());
+      }
+   }
+
+   @Stop
+   private void stop() {
+      // don't leave any queued invalidation behind
+      if (batcher != null) batcher.flush();
    }
    
    public void addRequestor(Object key, Address origin) {
@@ -82,7 +142,7 @@ public class L1ManagerImpl implements L1Manager {
    public NotifyingNotifiableFuture<Object> flushCache(Collection<Object> keys, Object retval, Address origin) {
       if (trace) log.tracef("Invalidating L1 caches for keys %s", keys);
       
-      NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(retval, 2);
+      final NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(retval, 2);
       
       Collection<Address> invalidationAddresses = buildInvalidationAddressList(keys, origin);
       
@@ -94,11 +154,22 @@ public class L1ManagerImpl implements L1Manager {
 
          if (trace) log.tracef("There are %s nodes involved in invalidation. Threshold is: %s; using multicast: %s", nodes, threshold, multicast);
          
-         if (multicast) {
+         if (batcher != null) {
+            NotifyingFuture<Object> invalidated = batcher.invalidate(multicast ? null : invalidationAddresses, keys);
+            // the network future has to be set before the listener can call notifyDone()
+            future.setNetworkFuture(invalidated);
+            invalidated.attachListener(new FutureListener<Object>() {
+               public void futureDone(Future<Object> f) {
+                  future.notifyDone();
+               }
+            });
+         } else if (multicast) {
+            recordInvalidationRpcs(1, keys.size());
          	if (trace) log.tracef("Invalidating keys %s via multicast", keys);
          	InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, keys);
       		rpcManager.broadcastRpcCommandInFuture(ic, future);
          } else {
+            recordInvalidationRpcs(nodes, keys.size());
          	InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, keys);
          	
             // Ask the caches who have requested from us to remove
@@ -124,6 +195,87 @@ public class L1ManagerImpl implements L1Manager {
    	return addresses;
    }
    
+   /**
+    * Once we forget who requested a key, we can't invalidate their L1 copies when the key is written, so we invalidate
+    * them right away.
+    */
+   private final class RequestorsEvictionListener implements EvictionListener<Object, Collection<Address>> {
+      @Override
+      public void onEntryEviction(Map<Object, Collection<Address>> evicted) {
+         Collection<Address> addresses = new HashSet<Address>();
+         for (Collection<Address> as : evicted.values())
+            addresses.addAll(as);
+         if (addresses.isEmpty()) return;
+
+         Collection<Object> keys = new ArrayList<Object>(evicted.keySet());
+         if (trace) log.tracef("Forgetting the requestors of keys %s, invalidating them on %s", keys, addresses);
+         try {
+            InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, keys);
+            rpcManager.invokeRemotely(addresses, ic, false);
+         } catch (Exception e) {
+            log.failedInvalidatingEvictedRequestors(keys, e);
+         }
+      }
+
+      @Override
+      public void onEntryChosenForEviction(Collection<Address> requestors) {
+         // nothing to do before the eviction
+      }
+   }
+
+   /**
+    * Counts the invalidation commands sent, each to a single node or multicast to all of them.
+    */
+   void recordInvalidationRpcs(int rpcs, int keysPerRpc) {
+      if (statisticsEnabled) {
+         invalidationRpcs.addAndGet(rpcs);
+         invalidatedKeys.addAndGet((long) rpcs * keysPerRpc);
+      }
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset statistics")
+   public void resetStatistics() {
+      invalidationRpcs.set(0);
+      invalidatedKeys.set(0);
+      reset.set(System.currentTimeMillis());
+   }
+
+   @ManagedAttribute(description = "Number of L1 invalidation commands sent")
+   @Metric(displayName = "Number of L1 invalidation commands", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getInvalidationRpcs() {
+      if (!isStatisticsEnabled()) {
+         return -1;
+      }
+      return invalidationRpcs.get();
+   }
+
+   @ManagedAttribute(description = "Average number of L1 invalidation commands sent per second since the statistics were last reset")
+   @Metric(displayName = "L1 invalidation commands per second", displayType = DisplayType.SUMMARY)
+   public double getInvalidationRpcsPerSecond() {
+      if (!isStatisticsEnabled()) return 0;
+      long millis = System.currentTimeMillis() - reset.get();
+      return millis == 0 ? 0 : invalidationRpcs.get() * (double) TimeUnit.SECONDS.toMillis(1) / millis;
+   }
+
+   @ManagedAttribute(description = "Average number of keys invalidated by each L1 invalidation command")
+   @Metric(displayName = "Keys per L1 invalidation command", displayType = DisplayType.SUMMARY)
+   public double getAverageKeysPerInvalidationRpc() {
+      long rpcs = invalidationRpcs.get();
+      if (rpcs == 0 || !isStatisticsEnabled()) return 0;
+      return (double) invalidatedKeys.get() / rpcs;
+   }
+
+   @Metric(displayName = "Statistics enabled", dataType = DataType.TRAIT)
+   public boolean isStatisticsEnabled() {
+      return statisticsEnabled;
+   }
+
+   @Operation(displayName = "Enable/disable statistics")
+   public void setStatisticsEnabled(@Parameter(name = "enabled", description = "Whether statistics should be enabled or disabled (true/false)") boolean statisticsEnabled) {
+      this.statisticsEnabled = statisticsEnabled;
+   }
+
    private boolean isUseMulticast(int nodes) {
    	// User has requested unicast or multicast only
    	if (threshold == -1) return false;
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyAwareAddress;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Orders the owners of a key by preference for a remote read, according to a {@link RemoteReadStrategy}, and keeps
+ * track of the remote reads from this node that are still waiting for an answer from each owner.
+ *
+ * @since 5.1
+ */
+public class RemoteOwnerSelector {
+
+   private final Address self;
+   private final RemoteReadStrategy strategy;
+   private final ConcurrentMap<Address, AtomicInteger> outstanding = new ConcurrentHashMap<Address, AtomicInteger>();
+   private final Random random = new Random();
+
+   private final Comparator<Address> byDistance = new Comparator<Address>() {
+      @Override
+      public int compare(Address a1, Address a2) {
+         return distance(a1) - distance(a2);
+      }
+   };
+
+   private final Comparator<Address> byOutstanding = new Comparator<Address>() {
+      @Override
+      public int compare(Address a1, Address a2) {
+         return getOutstanding(a1) - getOutstanding(a2);
+      }
+   };
+
+   public RemoteOwnerSelector(Address self, RemoteReadStrategy strategy) {
+      this.self = self;
+      this.strategy = strategy;
+   }
+
+   /**
+    * Sorts <code>owners</code> in place, most preferred owner first. Owners that are equally preferred are shuffled, so
+    * that they share the load.
+    */
+   public void sort(List<Address> owners) {
+      if (owners.size() < 2) return;
+      Collections.shuffle(owners, random);
+      // the sort is stable, so it keeps the shuffled order of equally preferred owners
+      if (strategy == RemoteReadStrategy.LEAST_OUTSTANDING) {
+         Collections.sort(owners, byOutstanding);
+      } else {
+         Collections.sort(owners, byDistance);
+      }
+   }
+
+   /**
+    * Must be called before sending a remote read to <code>owner</code>, and followed by {@link
+    * #requestCompleted(Address)} once the read has been answered, has failed or has been abandoned.
+    */
+   public void requestSent(Address owner) {
+      AtomicInteger counter = outstanding.get(owner);
+      if (counter == null) {
+         counter = new AtomicInteger();
+         AtomicInteger existing = outstanding.putIfAbsent(owner, counter);
+         if (existing != null) counter = existing;
+      }
+      counter.incrementAndGet();
+   }
+
+   public void requestCompleted(Address owner) {
+      AtomicInteger counter = outstanding.get(owner);
+      if (counter != null) counter.decrementAndGet();
+   }
+
+   public int getOutstanding(Address owner) {
+      AtomicInteger counter = outstanding.get(owner);
+      return counter == null ? 0 : counter.get();
+   }
+
+   /**
+    * Forgets the nodes that are no longer members of the cluster.
+    */
+   public void retainAll(Collection<Address> members) {
+      outstanding.keySet().retainAll(members);
+   }
+
+   /**
+    * @return 0 if <code>owner</code> runs on the same machine as this node, 1 if it is in the same rack, 2 if it is in
+    *         the same site and 3 otherwise, or if the topology of the nodes is unknown
+    */
+   private int distance(Address owner) {
+      if (!(self instanceof TopologyAwareAddress) || !(owner instanceof TopologyAwareAddress)) return 3;
+      TopologyAwareAddress local = (TopologyAwareAddress) self;
+      TopologyAwareAddress remote = (TopologyAwareAddress) owner;
+      if (local.isSameMachine(remote)) return 0;
+      if (local.isSameRack(remote)) return 1;
+      if (local.isSameSite(remote)) return 2;
+      return 3;
+   }
+}
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+/**
+ * Decides which owners of a key a node asks when it has to read the key from a remote node.
+ *
+ * @see org.infinispan.config.FluentConfiguration.HashConfig#remoteReadStrategy(RemoteReadStrategy)
+ * @since 5.1
+ */
+public enum RemoteReadStrategy {
+   /**
+    * Ask all the owners at once and use the first valid response. This gives the lowest latency when an owner is
+    * slow, but multiplies the read traffic by the number of owners.
+    */
+   ALL,
+
+   /**
+    * Ask only the owner closest to this node in the cluster topology: on the same machine, then in the same rack, then
+    * in the same site. Owners at the same distance share the load. The other owners are only asked, one at a time, if
+    * the chosen owner fails or is not sure it still owns the key.
+    */
+   NEAREST,
+
+   /**
+    * Ask only the owner with the fewest remote reads from this node still waiting for an answer, so that reads move
+    * away from slow or overloaded owners. The other owners are only asked, one at a time, if the chosen owner fails or
+    * is not sure it still owns the key.
+    */
+   LEAST_OUTSTANDING,
+
+   /**
+    * Ask the nearest owner first, and if it hasn't answered after the configured stagger delay, ask the next one as
+    * well, and so on, using the first valid response. Most reads only reach one owner, but a slow owner only delays a
+    * read by the stagger delay.
+    */
+   STAGGERED
+}
@@ -171,6 +171,8 @@ public class ConsistentHashHelper {
          groupManager = wTemplate.groupManager;
       }
       ConsistentHash ch = constructConsistentHashInstance(template.getClass(), hf, numVirtualNodes, groupManager);
+      if (template instanceof SegmentedConsistentHash)
+         ((SegmentedConsistentHash) ch).setNumSegments(((SegmentedConsistentHash) template).getNumSegments());
       if (addresses != null && !addresses.isEmpty())  ch.setCaches(toSet(addresses));
       return ch;
    }
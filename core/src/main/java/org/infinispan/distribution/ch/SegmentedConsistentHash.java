@@ -0,0 +1,242 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.ch;
+
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Immutables;
+import org.infinispan.util.Util;
+import org.infinispan.util.hash.Hash;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * A wheel-based consistent hash that splits the hash space into a fixed number of equally sized segments and
+ * precomputes the owners of every segment, so that {@link #locate(Object, int)} is an array lookup that neither
+ * searches the wheel nor allocates.
+ * </p>
+ *
+ * <p>
+ * All the keys in a segment are owned by the nodes that the wheel assigns to the last position of the segment, so
+ * this hash maps keys differently than {@link DefaultConsistentHash} and all the nodes in the cluster must use the
+ * same class and the same number of segments. The owner table for a replication count is built the first time that
+ * replication count is requested and is never modified afterwards, so lookups don't need any locking. The returned
+ * lists are shared between lookups and are therefore immutable.
+ * </p>
+ *
+ * @since 5.1
+ */
+public class SegmentedConsistentHash extends AbstractWheelConsistentHash {
+
+   public static final int DEFAULT_NUM_SEGMENTS = 4096;
+
+   private static final List<Address>[][] NO_TABLES = newTables(0);
+
+   private int numSegments;
+   private int segmentSize;
+   // ownersTables[replCount][segment], replCount is capped to the number of caches
+   private volatile List<Address>[][] ownersTables = NO_TABLES;
+
+   public SegmentedConsistentHash() {
+      setNumSegments(DEFAULT_NUM_SEGMENTS);
+   }
+
+   public SegmentedConsistentHash(Hash hash) {
+      this();
+      setHashFunction(hash);
+   }
+
+   public void setNumSegments(Integer numSegments) {
+      if (numSegments < 1)
+         throw new IllegalArgumentException("The number of segments must be strictly positive: " + numSegments);
+      this.numSegments = numSegments;
+      // rounded up, so that the last segment ends at Integer.MAX_VALUE or before it
+      this.segmentSize = (int) ((Integer.MAX_VALUE + (long) numSegments) / numSegments);
+      ownersTables = NO_TABLES;
+   }
+
+   public int getNumSegments() {
+      return numSegments;
+   }
+
+   @Override
+   public void setCaches(Set<Address> newCaches) {
+      super.setCaches(newCaches);
+      ownersTables = NO_TABLES;
+   }
+
+   /**
+    * @return the segment the key belongs to, between 0 and {@link #getNumSegments()} - 1
+    */
+   public int getSegment(Object key) {
+      return getNormalizedHash(getGrouping(key)) / segmentSize;
+   }
+
+   @Override
+   public List<Address> locate(Object key, int replCount) {
+      return getOwnersTable(replCount)[getSegment(key)];
+   }
+
+   /**
+    * @return the owners of all the keys in the given segment
+    */
+   public List<Address> locateSegment(int segment, int replCount) {
+      return getOwnersTable(replCount)[segment];
+   }
+
+   /**
+    * @return <code>true</code> if both hashes split the hash space into the same segments, so that a segment of one
+    *         holds the same keys as the same segment of the other
+    */
+   public boolean hasSameSegments(SegmentedConsistentHash other) {
+      return numSegments == other.numSegments
+            && (hashFunction == null ? other.hashFunction == null
+                      : other.hashFunction != null && hashFunction.getClass() == other.hashFunction.getClass());
+   }
+
+   @Override
+   public boolean isKeyLocalToAddress(Address target, Object key, int replCount) {
+      List<Address> owners = locate(key, replCount);
+      for (int i = 0; i < owners.size(); i++) {
+         if (owners.get(i).equals(target)) return true;
+      }
+      return false;
+   }
+
+   private List<Address>[] getOwnersTable(int replCount) {
+      int actualReplCount = Math.min(replCount, caches.size());
+      List<Address>[][] tables = ownersTables;
+      if (actualReplCount < tables.length && tables[actualReplCount] != null)
+         return tables[actualReplCount];
+      return buildOwnersTable(actualReplCount);
+   }
+
+   private synchronized List<Address>[] buildOwnersTable(int replCount) {
+      List<Address>[][] tables = ownersTables;
+      if (replCount < tables.length && tables[replCount] != null)
+         return tables[replCount];
+
+      List<Address>[] table = newTable(numSegments);
+      List<Address> previous = null;
+      for (int segment = 0; segment < numSegments; segment++) {
+         int lastPosition = (int) Math.min((long) (segment + 1) * segmentSize - 1, Integer.MAX_VALUE);
+         List<Address> owners = locateOnWheel(lastPosition, replCount);
+         // neighbouring segments usually have the same owners, share the list between them
+         if (!owners.equals(previous))
+            previous = Immutables.immutableListConvert(owners);
+         table[segment] = previous;
+      }
+
+      List<Address>[][] newTables = newTables(Math.max(tables.length, replCount + 1));
+      System.arraycopy(tables, 0, newTables, 0, tables.length);
+      newTables[replCount] = table;
+      ownersTables = newTables;
+      if (trace) log.tracef("Built the owners table for %d owners and %d segments", replCount, numSegments);
+      return table;
+   }
+
+   private List<Address> locateOnWheel(int normalizedHash, int replCount) {
+      List<Address> owners = new ArrayList<Address>(replCount);
+      int startIndex = getPositionIndex(normalizedHash);
+      int i = startIndex;
+      while (owners.size() < replCount) {
+         Address a = positionValues[i];
+         // if virtual nodes are enabled we have to avoid duplicate addresses
+         if (!(isVirtualNodesEnabled() && owners.contains(a)))
+            owners.add(a);
+         if (++i == positionValues.length) i = 0;
+         if (i == startIndex) break;
+      }
+      return owners;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static List<Address>[] newTable(int size) {
+      return new List[size];
+   }
+
+   @SuppressWarnings("unchecked")
+   private static List<Address>[][] newTables(int size) {
+      return new List[size][];
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SegmentedConsistentHash that = (SegmentedConsistentHash) o;
+
+      if (hashFunction != null ? !hashFunction.equals(that.hashFunction) : that.hashFunction != null) return false;
+      if (numVirtualNodes != that.numVirtualNodes) return false;
+      if (numSegments != that.numSegments) return false;
+      if (caches != null ? !caches.equals(that.caches) : that.caches != null) return false;
+
+      return true;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = caches != null ? caches.hashCode() : 0;
+      result = 31 * result + hashFunction.hashCode();
+      result = 31 * result + numVirtualNodes;
+      result = 31 * result + numSegments;
+      return result;
+   }
+
+   public static class Externalizer extends AbstractWheelConsistentHash.Externalizer<SegmentedConsistentHash> {
+      @Override
+      protected SegmentedConsistentHash instance() {
+         return new SegmentedConsistentHash();
+      }
+
+      @Override
+      public void writeObject(ObjectOutput output, SegmentedConsistentHash ch) throws IOException {
+         super.writeObject(output, ch);
+         output.writeInt(ch.numSegments);
+      }
+
+      @Override
+      public SegmentedConsistentHash readObject(ObjectInput unmarshaller) throws IOException, ClassNotFoundException {
+         SegmentedConsistentHash ch = super.readObject(unmarshaller);
+         ch.setNumSegments(unmarshaller.readInt());
+         return ch;
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.SEGMENTED_CONSISTENT_HASH;
+      }
+
+      @Override
+      public Set<Class<? extends SegmentedConsistentHash>> getTypeClasses() {
+         return Util.<Class<? extends SegmentedConsistentHash>>asSet(SegmentedConsistentHash.class);
+      }
+   }
+}
@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.marshall.MarshalledValue;
+
+/**
+ * Default {@link EntrySizeCalculator}, which knows the sizes of <tt>byte[]</tt>, {@link String} and
+ * {@link MarshalledValue} keys and values.  Other objects are charged a fixed size, so caches holding large custom
+ * objects should either store them as binary or plug in their own calculator.
+ * <p />
+ * Sizes are estimates for a 64 bit JVM using compressed object pointers.
+ *
+ * @since 5.1
+ */
+public class DefaultEntrySizeCalculator implements EntrySizeCalculator {
+
+   /**
+    * Internal cache entry plus the data container's hash entry and eviction bookkeeping
+    */
+   static final int ENTRY_OVERHEAD = 112;
+
+   static final int OBJECT_HEADER = 16;
+
+   static final int STRING_OVERHEAD = 24;
+
+   static final int MARSHALLED_VALUE_OVERHEAD = 32;
+
+   /**
+    * Charged for objects whose size is unknown
+    */
+   static final int DEFAULT_OBJECT_SIZE = 64;
+
+   @Override
+   public long estimateSize(Object key, InternalCacheEntry entry) {
+      return ENTRY_OVERHEAD + sizeOf(key) + sizeOf(entry.getValue());
+   }
+
+   protected long sizeOf(Object o) {
+      if (o == null) {
+         return 0;
+      } else if (o instanceof byte[]) {
+         return align(OBJECT_HEADER + ((byte[]) o).length);
+      } else if (o instanceof String) {
+         return STRING_OVERHEAD + align(OBJECT_HEADER + 2L * ((String) o).length());
+      } else if (o instanceof MarshalledValue) {
+         return MARSHALLED_VALUE_OVERHEAD + align(OBJECT_HEADER + ((MarshalledValue) o).getSerialisedSize());
+      } else if (o instanceof Number || o instanceof Boolean || o instanceof Character) {
+         return align(OBJECT_HEADER + 8);
+      }
+      return DEFAULT_OBJECT_SIZE;
+   }
+
+   private static long align(long size) {
+      return (size + 7) & ~7L;
+   }
+}
@@ -0,0 +1,47 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.container.entries.InternalCacheEntry;
+
+/**
+ * Estimates the amount of memory occupied by a cache entry, in bytes.  Used by data containers which are bounded by
+ * memory rather than by the number of entries only.
+ * <p />
+ * Implementations are invoked on every write, while the container holds internal locks, so they must be cheap and
+ * must not block.  A no-arg constructor is required when configuring an implementation by class name.
+ *
+ * @see org.infinispan.config.FluentConfiguration.EvictionConfig#maxMemory(Long)
+ * @since 5.1
+ */
+@ThreadSafe
+public interface EntrySizeCalculator {
+
+   /**
+    * @param key   key of the entry
+    * @param entry the entry as stored in the data container
+    * @return estimated number of bytes occupied by the entry, including its key
+    */
+   long estimateSize(Object key, InternalCacheEntry entry);
+}
@@ -34,7 +34,12 @@ public enum EvictionStrategy {
    FIFO,
    LRU,
    LRU_OLD,
-   LIRS;
+   LIRS,
+   /**
+    * Window TinyLFU: LRU eviction with a frequency based admission filter, which protects frequently accessed entries
+    * from being flushed by scans.
+    */
+   TINY_LFU;
    
    public boolean isEnabled() {
       return this != NONE;
@@ -24,8 +24,13 @@ package org.infinispan.factories;
 
 import org.infinispan.config.ConfigurationException;
 import org.infinispan.config.parsing.XmlConfigHelper;
+import org.infinispan.container.BoundedL1DataContainer;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.entries.CompactInternalEntryFactory;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.container.offheap.OffHeapDataContainer;
+import org.infinispan.eviction.EntrySizeCalculator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.DefaultFactoryFor;
@@ -46,32 +51,82 @@ public class DataContainerFactory extends AbstractNamedCacheComponentFactory imp
    public <T> T construct(Class<T> componentType) {
       if (configuration.getDataContainer() != null) {
          return (T) configuration.getDataContainer();
-      } else if (DefaultDataContainer.class.getName().equals(configuration.getDataContainerClass())) {
+      }
+      DataContainer dataContainer = constructDataContainer();
+      if (configuration.getCacheMode().isDistributed() && configuration.isL1CacheEnabled()
+            && configuration.getL1MaxEntries() > 0) {
+         EvictionStrategy l1Strategy = configuration.getL1EvictionStrategy();
+         if (!l1Strategy.isEnabled())
+            throw new ConfigurationException("The L1 eviction strategy must be enabled when the L1 size is bounded");
+         DataContainer l1Container = DefaultDataContainer.boundedDataContainer(configuration.getConcurrencyLevel(),
+               configuration.getL1MaxEntries(), l1Strategy, EvictionThreadPolicy.DEFAULT);
+         dataContainer = new BoundedL1DataContainer(dataContainer, l1Container);
+      }
+      return (T) dataContainer;
+   }
+
+   private DataContainer constructDataContainer() {
+      if (DefaultDataContainer.class.getName().equals(configuration.getDataContainerClass())) {
          EvictionStrategy st = configuration.getEvictionStrategy();
          int level = configuration.getConcurrencyLevel();
+         boolean compactEntries = configuration.getDataContainerProperties().getBooleanProperty(
+               DefaultDataContainer.COMPACT_ENTRIES, false);
+         InternalEntryFactory entryFactory = compactEntries ? new CompactInternalEntryFactory() : new InternalEntryFactory();
         
          switch (st) {
             case NONE:         
-               return (T) DefaultDataContainer.unBoundedDataContainer(level);
+               return DefaultDataContainer.unBoundedDataContainer(level, entryFactory);
             case UNORDERED:   
             case LRU:
             case FIFO:
             case LIRS:
+            case TINY_LFU:
                int maxEntries = configuration.getEvictionMaxEntries();
+               long maxMemory = configuration.getEvictionMaxMemory();
+               EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
+               if (maxMemory > 0) {
+                  // without maxEntries the container is bounded by memory only, and grows as entries are added
+                  if (maxEntries <= 0 && (st == EvictionStrategy.LIRS || st == EvictionStrategy.TINY_LFU))
+                     throw new ConfigurationException("Eviction strategy " + st + " needs maxEntries to be set, "
+                           + "even when maxMemory is");
+                  EntrySizeCalculator sizeCalculator = (EntrySizeCalculator) Util.getInstance(
+                        configuration.getEvictionSizeCalculatorClass(), configuration.getClassLoader());
+                  return DefaultDataContainer.boundedDataContainer(level, maxEntries, maxMemory, sizeCalculator, st,
+                        policy, entryFactory);
+               }
                //handle case when < 0 value signifies unbounded container 
                if(maxEntries < 0) {
-                   return (T) DefaultDataContainer.unBoundedDataContainer(level);
+                   return DefaultDataContainer.unBoundedDataContainer(level, entryFactory);
                }
-               EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
-               return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, st, policy);
+               return DefaultDataContainer.boundedDataContainer(level, maxEntries, -1, null, st, policy, entryFactory);
             default:
                throw new ConfigurationException("Unknown eviction strategy "
                         + configuration.getEvictionStrategy());
          }
+      } else if (OffHeapDataContainer.class.getName().equals(configuration.getDataContainerClass())) {
+         // entries are rebuilt from their serialized form on every read, so a version set on them would be lost
+         if (configuration.isUseVersioning())
+            throw new ConfigurationException("Entry versioning is not supported by " + OffHeapDataContainer.class.getSimpleName());
+         int level = configuration.getConcurrencyLevel();
+         int slabSize = configuration.getDataContainerProperties().getIntProperty(
+               OffHeapDataContainer.SLAB_SIZE, OffHeapDataContainer.DEFAULT_SLAB_SIZE);
+         // the off-heap records only carry an LRU chain, and the container is only bounded by its number of entries
+         EvictionStrategy st = configuration.getEvictionStrategy();
+         if (st != EvictionStrategy.NONE && st != EvictionStrategy.UNORDERED && st != EvictionStrategy.LRU)
+            throw new ConfigurationException("Eviction strategy " + st + " is not supported by "
+                  + OffHeapDataContainer.class.getSimpleName() + ", only LRU is");
+         if (configuration.getEvictionMaxMemory() > 0)
+            throw new ConfigurationException("Eviction by memory is not supported by "
+                  + OffHeapDataContainer.class.getSimpleName() + ", bound it with maxEntries instead");
+         int maxEntries = configuration.getEvictionMaxEntries();
+         if (st.isEnabled() && maxEntries > 0) {
+            return OffHeapDataContainer.boundedDataContainer(level, maxEntries, slabSize);
+         }
+         return OffHeapDataContainer.unBoundedDataContainer(level, slabSize);
       } else {
          DataContainer dataContainer = DataContainer.class.cast(Util.getInstance(configuration.getDataContainerClass(), configuration.getClassLoader()));
          XmlConfigHelper.setValues(dataContainer, configuration.getDataContainerProperties(), false, true);
-         return (T) dataContainer;
+         return dataContainer;
       }
    }
 }
@@ -22,6 +22,7 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.EvictCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -93,6 +94,24 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
       return retval;
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      long t1 = System.currentTimeMillis();
+      Map<?, ?> retval = (Map<?, ?>) invokeNextInterceptor(ctx, command);
+      long t2 = System.currentTimeMillis();
+      int requested = command.getKeys().size();
+      if (requested > 0) {
+         int found = retval == null ? 0 : retval.size();
+         // split the elapsed time between hits and misses so that the averages stay per key
+         long hitTime = (t2 - t1) * found / requested;
+         hitTimes.getAndAdd(hitTime);
+         hits.getAndAdd(found);
+         missTimes.getAndAdd(t2 - t1 - hitTime);
+         misses.getAndAdd(requested - found);
+      }
+      return retval;
+   }
+
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
       Map data = command.getMap();
@@ -23,7 +23,9 @@
 package org.infinispan.interceptors;
 
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -55,17 +57,23 @@ import org.infinispan.remoting.transport.Address;
 import org.infinispan.statetransfer.StateTransferLock;
 import org.infinispan.remoting.transport.jgroups.SuspectException;
 import org.infinispan.util.Immutables;
+import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
+import org.infinispan.util.concurrent.FutureListener;
 import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.concurrent.locks.LockManager;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -144,6 +152,47 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       }
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         Map<Object, Object> returnValue = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+
+         // If L1 caching is enabled, this is a remote command, and we found values in our cache
+         // we store them so that we can later invalidate them
+         if (isL1CacheEnabled && !ctx.isOriginLocal()) {
+            for (Object key : returnValue.keySet()) l1Manager.addRequestor(key, ctx.getOrigin());
+         }
+
+         // keys that are neither local nor in L1 are fetched with a single request per owner
+         List<Object> remoteKeys = null;
+         for (Object key : command.getKeys()) {
+            if (!needsRemoteGet(ctx, key, !returnValue.containsKey(key))) continue;
+            DataLocality locality = dm.getLocality(key);
+            if (ctx.isOriginLocal() && !locality.isLocal() && isNotInL1(key)) {
+               if (remoteKeys == null) remoteKeys = new ArrayList<Object>();
+               remoteKeys.add(key);
+            } else if (locality.isUncertain()) {
+               // maybe we are still rehashing as a joiner? ISPN-258
+               Object value = realRemoteGet(ctx, key, false, false);
+               if (value != null) returnValue.put(key, value);
+            }
+         }
+
+         if (remoteKeys != null) {
+            if (trace) log.tracef("Doing a remote get for keys %s", remoteKeys);
+            Map<Object, InternalCacheEntry> entries = dm.retrieveFromRemoteSource(remoteKeys, ctx);
+            for (Map.Entry<Object, InternalCacheEntry> e : entries.entrySet()) {
+               returnValue.put(e.getKey(), storeRemotelyRetrievedEntry(ctx, e.getKey(), e.getValue(), true, false));
+            }
+         }
+         return returnValue;
+      } catch (SuspectException e) {
+         // retry
+         return visitGetAllCommand(ctx, command);
+      }
+   }
+
    private boolean needsRemoteGet(InvocationContext ctx, Object key, boolean retvalCheck) {
       final CacheEntry entry;
       return retvalCheck
@@ -190,34 +239,34 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       if (trace) log.tracef("Doing a remote get for key %s", key);
       // attempt a remote lookup
       InternalCacheEntry ice = dm.retrieveFromRemoteSource(key, ctx);
+      return ice == null ? null : storeRemotelyRetrievedEntry(ctx, key, ice, storeInL1, isWrite);
+   }
 
-      if (ice != null) {
-         if (storeInL1) {
-            if (isL1CacheEnabled) {
-               if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
-               long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
-               PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
-               lockAndWrap(ctx, key, ice);
-               invokeNextInterceptor(ctx, put);
-            } else {
-               CacheEntry ce = ctx.lookupEntry(key);
-               if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
-                  if (ce != null && ce.isChanged()) {
-                     ce.setValue(ice.getValue());
-                  } else {
-                     if (isWrite)
-                        lockAndWrap(ctx, key, ice);
-                     else
-                        ctx.putLookedUpEntry(key, ice);
-                  }
+   private Object storeRemotelyRetrievedEntry(InvocationContext ctx, Object key, InternalCacheEntry ice, boolean storeInL1, boolean isWrite) throws Throwable {
+      if (storeInL1) {
+         if (isL1CacheEnabled) {
+            if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
+            long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
+            PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
+            lockAndWrap(ctx, key, ice);
+            invokeNextInterceptor(ctx, put);
+         } else {
+            CacheEntry ce = ctx.lookupEntry(key);
+            if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
+               if (ce != null && ce.isChanged()) {
+                  ce.setValue(ice.getValue());
+               } else {
+                  if (isWrite)
+                     lockAndWrap(ctx, key, ice);
+                  else
+                     ctx.putLookedUpEntry(key, ice);
                }
             }
-         } else {
-            if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
          }
-         return ice.getValue();
+      } else {
+         if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
       }
-      return null;
+      return ice.getValue();
    }
 
    private void lockAndWrap(InvocationContext ctx, Object key, InternalCacheEntry ice) throws InterruptedException {
@@ -334,7 +383,7 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
    }
 
    private void sendCommitCommand(TxInvocationContext ctx, CommitCommand command, Collection<Address> preparedOn, int retries)
-         throws TimeoutException, InterruptedException {
+         throws Throwable {
       // we only send the commit command to the nodes that 
       Collection<Address> recipients = dm.getAffectedNodes(ctx.getAffectedKeys());
 
@@ -360,7 +409,7 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
                log.debugf("Need to resend prepares for %s to %s", command.getGlobalTransaction(), resendTo);
                // Make sure this is 1-Phase!!
                PrepareCommand pc = cf.buildPrepareCommand(command.getGlobalTransaction(), ctx.getModifications(), true);
-               rpcManager.invokeRemotely(resendTo, pc, true, true);
+               invokePrepare(resendTo, pc, true, true);
             }
          }
       } catch (RehashInProgressException e) {
@@ -411,7 +460,7 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
          if (isL1CacheEnabled && command.isOnePhaseCommit())
             f = l1Manager.flushCache(ctx.getLockedKeys(), null, null);
          // this method will return immediately if we're the only member (because exclude_self=true)
-         rpcManager.invokeRemotely(recipients, command, sync);
+         invokePrepare(recipients, command, sync, false);
          ((LocalTxInvocationContext) ctx).remoteLocksAcquired(recipients);
          if (f != null) f.get();
       }
@@ -481,7 +530,11 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
                      if (trace) log.tracef("Not performing invalidation! numCallRecipients=%s", numCallRecipients);
                   }
                if (!isSingleOwnerAndLocal(recipientGenerator)) {
-                  if (useFuture) {
+                  if (command instanceof PutMapCommand) {
+                     future = invokePutMapOnOwners((PutMapCommand) command, (MultipleKeysRecipientGenerator) recipientGenerator,
+                                                   returnValue, future, useFuture, sync);
+                     if (useFuture && future != null) return future;
+                  } else if (useFuture) {
                      if (future == null) future = new NotifyingFutureImpl(returnValue);
                      rpcManager.invokeRemotelyInFuture(rec, command, future);
                      return future;
@@ -514,6 +567,142 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       return returnValue;
    }
 
+   /**
+    * Sends every owner a PutMapCommand carrying only the entries it owns, rather than sending the whole map to the
+    * union of all the owners.
+    *
+    * @return the future to hand back to the caller if <tt>useFuture</tt> is set, the L1 invalidation future otherwise
+    */
+   private NotifyingNotifiableFuture<Object> invokePutMapOnOwners(PutMapCommand command, MultipleKeysRecipientGenerator recipientGenerator,
+                                                                 Object returnValue, final NotifyingNotifiableFuture<Object> l1Future,
+                                                                 boolean useFuture, boolean sync) throws Throwable {
+      Map<Address, Map<Object, Object>> mapsByOwner = splitByOwner(command.getMap(), recipientGenerator.getOwners());
+      Map<Address, PutMapCommand> commands = new HashMap<Address, PutMapCommand>(mapsByOwner.size() * 4 / 3 + 1);
+      for (Map.Entry<Address, Map<Object, Object>> e : mapsByOwner.entrySet()) {
+         commands.put(e.getKey(), cf.buildPutMapCommand(e.getValue(), command.getLifespanMillis(),
+                                                        command.getMaxIdleTimeMillis(), command.getFlags()));
+      }
+      if (trace) log.tracef("Invoking %s on %s owners, each with the entries it owns", command, commands.size());
+
+      if (!useFuture || commands.isEmpty()) {
+         invokeOnEach(commands, sync, false);
+         return l1Future;
+      }
+      NotifyingNotifiableFuture<Object> parts = new AggregatingNotifyingFutureImpl(returnValue, commands.size());
+      for (Map.Entry<Address, PutMapCommand> e : commands.entrySet()) {
+         rpcManager.invokeRemotelyInFuture(Collections.singleton(e.getKey()), e.getValue(), parts);
+      }
+      if (l1Future == null) return parts;
+      // the L1 invalidation future is waiting for the put to complete as well
+      l1Future.setNetworkFuture(parts);
+      parts.attachListener(new FutureListener<Object>() {
+         public void futureDone(Future<Object> future) {
+            l1Future.notifyDone();
+         }
+      });
+      return l1Future;
+   }
+
+   /**
+    * Sends a prepare to the given recipients. If the transaction contains PutMapCommands, each recipient gets a prepare
+    * of its own, in which these only carry the entries the recipient owns.
+    */
+   private void invokePrepare(Collection<Address> recipients, PrepareCommand command, boolean sync, boolean usePriorityQueue) throws Throwable {
+      Map<Address, PrepareCommand> prepares = recipients == null ? null : splitPrepareByOwner(command, recipients);
+      if (prepares == null) {
+         rpcManager.invokeRemotely(recipients, command, sync, usePriorityQueue);
+      } else {
+         if (trace) log.tracef("Invoking %s on %s, each with the PutMapCommand entries it owns", command, recipients);
+         invokeOnEach(prepares, sync, usePriorityQueue);
+      }
+   }
+
+   /**
+    * @return a prepare per recipient, or null if the modifications contain no PutMapCommand and need no splitting
+    */
+   private Map<Address, PrepareCommand> splitPrepareByOwner(PrepareCommand command, Collection<Address> recipients) {
+      WriteCommand[] modifications = command.getModifications();
+      boolean hasPutMap = false;
+      for (WriteCommand mod : modifications) {
+         if (mod instanceof PutMapCommand) {
+            hasPutMap = true;
+            break;
+         }
+      }
+      if (!hasPutMap) return null;
+
+      Map<Address, List<WriteCommand>> modificationsByOwner = new HashMap<Address, List<WriteCommand>>(recipients.size() * 4 / 3 + 1);
+      for (Address recipient : recipients) {
+         modificationsByOwner.put(recipient, new ArrayList<WriteCommand>(modifications.length));
+      }
+      for (WriteCommand mod : modifications) {
+         if (mod instanceof PutMapCommand) {
+            PutMapCommand putMap = (PutMapCommand) mod;
+            Map<Object, Object> map = putMap.getMap();
+            for (Map.Entry<Address, Map<Object, Object>> e : splitByOwner(map, dm.locateAll(map.keySet())).entrySet()) {
+               List<WriteCommand> ownerModifications = modificationsByOwner.get(e.getKey());
+               if (ownerModifications != null) {
+                  ownerModifications.add(cf.buildPutMapCommand(e.getValue(), putMap.getLifespanMillis(),
+                                                               putMap.getMaxIdleTimeMillis(), putMap.getFlags()));
+               }
+            }
+         } else {
+            for (List<WriteCommand> ownerModifications : modificationsByOwner.values()) ownerModifications.add(mod);
+         }
+      }
+
+      Map<Address, PrepareCommand> prepares = new HashMap<Address, PrepareCommand>(modificationsByOwner.size() * 4 / 3 + 1);
+      for (Map.Entry<Address, List<WriteCommand>> e : modificationsByOwner.entrySet()) {
+         PrepareCommand prepare = cf.buildPrepareCommand(command.getGlobalTransaction(), e.getValue(), command.isOnePhaseCommit());
+         prepare.setVersionsSeen(command.getVersionsSeen());
+         prepares.put(e.getKey(), prepare);
+      }
+      return prepares;
+   }
+
+   /**
+    * Groups the entries of a map by the remote nodes owning them. An entry appears in the map of each of its owners.
+    */
+   private Map<Address, Map<Object, Object>> splitByOwner(Map<Object, Object> map, Map<Object, List<Address>> owners) {
+      Address self = rpcManager.getAddress();
+      Map<Address, Map<Object, Object>> mapsByOwner = new HashMap<Address, Map<Object, Object>>();
+      for (Map.Entry<Object, Object> entry : map.entrySet()) {
+         for (Address owner : owners.get(entry.getKey())) {
+            if (owner.equals(self)) continue;
+            Map<Object, Object> ownerMap = mapsByOwner.get(owner);
+            if (ownerMap == null) {
+               ownerMap = new HashMap<Object, Object>();
+               mapsByOwner.put(owner, ownerMap);
+            }
+            ownerMap.put(entry.getKey(), entry.getValue());
+         }
+      }
+      return mapsByOwner;
+   }
+
+   /**
+    * Sends each command to its node. Synchronous calls to several nodes are all issued before waiting for any of them.
+    */
+   private void invokeOnEach(Map<Address, ? extends ReplicableCommand> commands, boolean sync, boolean usePriorityQueue) throws Throwable {
+      if (!sync || commands.size() == 1) {
+         for (Map.Entry<Address, ? extends ReplicableCommand> e : commands.entrySet()) {
+            rpcManager.invokeRemotely(Collections.singleton(e.getKey()), e.getValue(), sync, usePriorityQueue);
+         }
+      } else if (!commands.isEmpty()) {
+         List<Future<Map<Address, Response>>> futures = new ArrayList<Future<Map<Address, Response>>>(commands.size());
+         for (Map.Entry<Address, ? extends ReplicableCommand> e : commands.entrySet()) {
+            futures.add(rpcManager.invokeRemotelyAsync(Collections.singleton(e.getKey()), e.getValue(), configuration.getSyncReplTimeout()));
+         }
+         for (Future<Map<Address, Response>> future : futures) {
+            try {
+               future.get();
+            } catch (ExecutionException e) {
+               throw e.getCause();
+            }
+         }
+      }
+   }
+
    /**
     * If a single owner has been configured and the target for the key is the local address, it returns true.
     */
@@ -554,15 +743,21 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
 
       final Collection<Object> keys;
       List<Address> recipients = null;
+      Map<Object, List<Address>> owners = null;
 
       MultipleKeysRecipientGenerator(Collection<Object> keys) {
          this.keys = keys;
       }
 
+      Map<Object, List<Address>> getOwners() {
+         if (owners == null) owners = dm.locateAll(keys);
+         return owners;
+      }
+
       public List<Address> generateRecipients() {
          if (recipients == null) {
             Set<Address> addresses = new HashSet<Address>();
-            Map<Object, List<Address>> recipientsMap = dm.locateAll(keys);
+            Map<Object, List<Address>> recipientsMap = getOwners();
             for (List<Address> a : recipientsMap.values()) addresses.addAll(a);
             recipients = Immutables.immutableListConvert(addresses);
          }
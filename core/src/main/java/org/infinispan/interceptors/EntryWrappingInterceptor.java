@@ -25,6 +25,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.AbstractVisitor;
 import org.infinispan.commands.VisitableCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -106,6 +107,19 @@ public class EntryWrappingInterceptor extends CommandInterceptor {
       }
    }
 
+   @Override
+   public final Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         for (Object key : command.getKeys()) {
+            entryFactory.wrapEntryForReading(ctx, key);
+         }
+         return invokeNextInterceptor(ctx, command);
+      } finally {
+         //needed because entries might be added in L1
+         if (!ctx.isInTxScope()) commitContextEntries(ctx);
+      }
+   }
+
    @Override
    public final Object visitInvalidateCommand(InvocationContext ctx, InvalidateCommand command) throws Throwable {
       if (command.getKeys() != null) {
@@ -169,7 +183,7 @@ public class EntryWrappingInterceptor extends CommandInterceptor {
          Map.Entry<Object, CacheEntry> e = it.next();
          CacheEntry entry = e.getValue();
          if (entry != null && entry.isChanged()) {
-            cll.commitEntry(entry, ctx.hasFlag(Flag.SKIP_OWNERSHIP_CHECK));
+            cll.commitEntry(entry, ctx.hasFlag(Flag.SKIP_OWNERSHIP_CHECK), ctx);
             if (trace) log.tracef("Committed entry %s", entry);
          } else {
             if (trace) log.tracef("Entry for key %s is null or not changed(%s), not calling commitUpdate", e.getKey(), entry);
@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -49,6 +50,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -193,6 +196,40 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
       return processRetVal(retVal, ctx);
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      Set<MarshalledValue> marshalledKeys = null;
+      if (wrapKeys) {
+         marshalledKeys = new HashSet<MarshalledValue>();
+         Collection<?> rawKeys = command.getKeys();
+         List<Object> keys = new ArrayList<Object>(rawKeys.size());
+         for (Object key : rawKeys) {
+            if (isTypeExcluded(key.getClass())) {
+               keys.add(key);
+            } else {
+               MarshalledValue mv = createMarshalledValue(key, ctx);
+               compact(mv);
+               marshalledKeys.add(mv);
+               keys.add(mv);
+            }
+         }
+         command.setKeys(keys);
+      }
+      Map<Object, Object> retVal = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+      if (marshalledKeys != null) {
+         for (MarshalledValue mv : marshalledKeys) compact(mv);
+      }
+      if (retVal == null || !ctx.isOriginLocal()) return retVal;
+      Map<Object, Object> copy = new LinkedHashMap<Object, Object>(retVal.size() * 4 / 3 + 1);
+      for (Map.Entry<Object, Object> e : retVal.entrySet()) {
+         Object key = e.getKey();
+         if (key instanceof MarshalledValue) key = ((MarshalledValue) key).get();
+         copy.put(key, processRetVal(e.getValue(), ctx));
+      }
+      return copy;
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
@@ -152,7 +152,8 @@ public class ReplicationInterceptor extends BaseRpcInterceptor {
 
    @Override
    public Object visitRollbackCommand(TxInvocationContext ctx, RollbackCommand command) throws Throwable {
-      if (shouldInvokeRemoteTxCommand(ctx) && !configuration.isOnePhaseCommit()) {
+      // with total order the other nodes never hold a prepared transaction: they discard it when it fails validation
+      if (shouldInvokeRemoteTxCommand(ctx) && !configuration.isOnePhaseCommit() && !configuration.isTotalOrderCommit()) {
          rpcManager.broadcastRpcCommand(command, configuration.isSyncRollbackPhase(), true);
       }
       return invokeNextInterceptor(ctx, command);
@@ -26,8 +26,14 @@ package org.infinispan.interceptors.locking;
 import org.infinispan.config.Configuration;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.MVCCEntry;
+import org.infinispan.container.versioning.NumericVersion;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.transaction.xa.GlobalTransaction;
 
 /**
  * Abstractization for logic related to different clustering modes: replicated or distributed.
@@ -41,7 +47,11 @@ public interface ClusteringDependentLogic {
 
    boolean localNodeIsOwner(Object key);
 
-   void commitEntry(CacheEntry entry, boolean skipOwnershipCheck);
+   /**
+    * @param ctx the context of the invocation that changed the entry, whose transaction (if any) becomes the creator
+    *            of the entry when versioning is enabled and the entry didn't exist before
+    */
+   void commitEntry(CacheEntry entry, boolean skipOwnershipCheck, InvocationContext ctx);
 
    /**
     * This logic is used when a changing a key affects all the nodes in the cluster, e.g. int the replicated,
@@ -50,10 +60,12 @@ public interface ClusteringDependentLogic {
    public static final class AllNodesLogic implements ClusteringDependentLogic {
 
       private DataContainer dataContainer;
+      private Configuration configuration;
 
       @Inject
-      public void init(DataContainer dc) {
+      public void init(DataContainer dc, Configuration configuration) {
          this.dataContainer = dc;
+         this.configuration = configuration;
       }
 
       @Override
@@ -62,8 +74,22 @@ public interface ClusteringDependentLogic {
       }
 
       @Override
-      public void commitEntry(CacheEntry entry, boolean skipOwnershipCheck) {
-         entry.commit(dataContainer);
+      public void commitEntry(CacheEntry entry, boolean skipOwnershipCheck, InvocationContext ctx) {
+         if (configuration.isUseVersioning())
+            commitVersioned(entry, ctx);
+         else
+            entry.commit(dataContainer);
+      }
+
+      private void commitVersioned(CacheEntry entry, InvocationContext ctx) {
+         if (!(entry instanceof MVCCEntry)) {
+            entry.commit(dataContainer);
+            return;
+         }
+         // the new version is stored together with the value, so that no reader sees one without the other
+         InternalCacheEntry previous = dataContainer.peek(entry.getKey());
+         GlobalTransaction writer = ctx.isInTxScope() ? ((TxInvocationContext) ctx).getGlobalTransaction() : null;
+         ((MVCCEntry) entry).commit(dataContainer, NumericVersion.next(previous == null ? null : previous.getVersion(), writer));
       }
    }
 
@@ -86,20 +112,34 @@ public interface ClusteringDependentLogic {
       }
 
       @Override
-      public void commitEntry(CacheEntry entry, boolean skipOwnershipCheck) {
+      public void commitEntry(CacheEntry entry, boolean skipOwnershipCheck, InvocationContext ctx) {
          boolean doCommit = true;
          // ignore locality for removals, even if skipOwnershipCheck is not true
          if (!skipOwnershipCheck && !entry.isRemoved() && !localNodeIsOwner(entry.getKey())) {
+            // L1 can't be enabled together with versioning, see ConfigurationValidatingVisitor
             if (configuration.isL1CacheEnabled()) {
                dm.transformForL1(entry);
             } else {
                doCommit = false;
             }
          }
-         if (doCommit)
-            entry.commit(dataContainer);
-         else
+         if (!doCommit)
             entry.rollback();
+         else if (configuration.isUseVersioning())
+            commitVersioned(entry, ctx);
+         else
+            entry.commit(dataContainer);
+      }
+
+      private void commitVersioned(CacheEntry entry, InvocationContext ctx) {
+         if (!(entry instanceof MVCCEntry)) {
+            entry.commit(dataContainer);
+            return;
+         }
+         // the new version is stored together with the value, so that no reader sees one without the other
+         InternalCacheEntry previous = dataContainer.peek(entry.getKey());
+         GlobalTransaction writer = ctx.isInTxScope() ? ((TxInvocationContext) ctx).getGlobalTransaction() : null;
+         ((MVCCEntry) entry).commit(dataContainer, NumericVersion.next(previous == null ? null : previous.getVersion(), writer));
       }
    }
 }
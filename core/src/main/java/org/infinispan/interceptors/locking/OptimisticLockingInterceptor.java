@@ -33,10 +33,17 @@ import org.infinispan.commands.write.RemoveCommand;
 import org.infinispan.commands.write.ReplaceCommand;
 import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.container.EntryFactory;
+import org.infinispan.container.entries.ClusteredRepeatableReadEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.container.versioning.NumericVersion;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.transaction.WriteSkewException;
+
+import java.util.Map;
 
 /**
  * Locking interceptor to be used by optimistic transactional caches.
@@ -59,9 +66,11 @@ public class OptimisticLockingInterceptor extends AbstractTxLockingInterceptor {
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       try {
          abortIfRemoteTransactionInvalid(ctx, command);
+         if (configuration.isUseVersioning() && ctx.isOriginLocal()) command.setVersionsSeen(ClusteredRepeatableReadEntry.collectVersionsSeen(command.getAffectedKeys(), ctx.getLookedUpEntries()));
          for (WriteCommand wc : command.getModifications()) {
             wc.acceptVisitor(ctx, lockAquisitionVisitor);
          }
+         if (command.getVersionsSeen() != null) checkWriteSkew(command.getVersionsSeen());
          return invokeNextAndCommitIf1Pc(ctx, command);
       } catch (Throwable te) {
          lockManager.unlockAll(ctx);
@@ -69,6 +78,22 @@ public class OptimisticLockingInterceptor extends AbstractTxLockingInterceptor {
       }
    }
 
+   /**
+    * Must be called with the locks of the local keys held, so that the versions can't change until the commit.
+    */
+   private void checkWriteSkew(Map<Object, EntryVersion> versionsSeen) {
+      for (Map.Entry<Object, EntryVersion> e : versionsSeen.entrySet()) {
+         Object key = e.getKey();
+         if (!cll.localNodeIsOwner(key)) continue;
+         InternalCacheEntry current = dataContainer.peek(key);
+         EntryVersion currentVersion = current == null ? NumericVersion.NON_EXISTING : current.getVersion();
+         if (!e.getValue().equals(currentVersion)) {
+            if (trace) log.tracef("Write skew on key %s: read version %s, current version %s", key, e.getValue(), currentVersion);
+            throw new WriteSkewException("Detected write skew on key " + key, key);
+         }
+      }
+   }
+
    @Override
    public final Object visitEvictCommand(InvocationContext ctx, EvictCommand command) throws Throwable {
       // ensure keys are properly locked for evict commands
@@ -23,8 +23,11 @@
 package org.infinispan.loaders;
 
 import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.marshall.StreamingMarshaller;
 
+import java.util.Set;
+
 /**
  * An abstract {@link org.infinispan.loaders.CacheLoader} that holds common implementations for some methods
  *
@@ -45,6 +48,20 @@ public abstract class AbstractCacheLoader implements CacheLoader {
       return load(key) != null;
    }
 
+   /**
+    * {@inheritDoc} This implementation iterates over the set returned by {@link #loadAll()}, or {@link #load(int)}, so
+    * it still holds all the entries in memory.  Implementations able to read their entries one at a time should
+    * override it.
+    */
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      if (maxEntries == 0) return;
+      Set<InternalCacheEntry> entries = maxEntries < 0 ? loadAll() : load(maxEntries);
+      for (InternalCacheEntry entry : entries) {
+         if (!task.processEntry(entry)) break;
+      }
+   }
+
    @Override
    public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
       this.marshaller = m;
@@ -23,6 +23,7 @@
 package org.infinispan.loaders;
 
 import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.modifications.Modification;
 import org.infinispan.loaders.modifications.Remove;
 import org.infinispan.loaders.modifications.Store;
@@ -34,6 +35,8 @@ import org.infinispan.util.logging.LogFactory;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -160,6 +163,25 @@ public abstract class AbstractCacheStore extends AbstractCacheLoader implements
       }
    }
 
+   /**
+    * Applies the batch one modification at a time.  Stores that can group writes should override this.
+    */
+   public void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      for (InternalCacheEntry entry : toStore) store(entry);
+      removeAll(toRemove);
+   }
+
+   /**
+    * Turns a batch into the equivalent list of modifications, so that stores applying {@link
+    * #applyModifications(java.util.List)} atomically can write a batch the same way.
+    */
+   protected static List<Modification> toModifications(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) {
+      List<Modification> mods = new ArrayList<Modification>(toStore.size() + toRemove.size());
+      for (InternalCacheEntry entry : toStore) mods.add(new Store(entry));
+      for (Object key : toRemove) mods.add(new Remove(key));
+      return mods;
+   }
+
    protected final void safeClose(InputStream stream) throws CacheLoaderException {
       if (stream == null) return;
       try {
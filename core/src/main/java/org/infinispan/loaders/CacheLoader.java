@@ -74,6 +74,19 @@ public interface CacheLoader {
     */
    Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException;
 
+   /**
+    * Hands every entry in the loader, up to a maximum of <tt>maxEntries</tt> entries, to the given task, reading them
+    * as the task consumes them.  Unlike {@link #loadAll()} and {@link #load(int)}, implementations are expected not to
+    * hold the whole content of the loader in memory, so that arbitrarily large loaders can be walked through.  There
+    * is no guarantee as to the order of the entries, and expired entries are not passed to the task.  The task is
+    * invoked by the calling thread; see {@link ParallelCacheLoaderTask} to spread the work on several threads.
+    *
+    * @param maxEntries maximum number of entries to process, or a negative value to process all entries
+    * @param task       task to invoke for each entry; the iteration stops as soon as it returns <tt>false</tt>
+    * @throws CacheLoaderException in the event of problems reading from source, or if the task fails
+    */
+   void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException;
+
    /**
     * Loads a set of all keys, excluding a filter set.
     *
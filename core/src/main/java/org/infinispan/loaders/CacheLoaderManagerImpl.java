@@ -45,8 +45,10 @@ import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
-import java.util.Collections;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.infinispan.context.Flag.*;
@@ -61,6 +63,8 @@ public class CacheLoaderManagerImpl implements CacheLoaderManager {
    CacheLoader loader;
    InvocationContextContainer icc;
    private static final Log log = LogFactory.getLog(CacheLoaderManagerImpl.class);
+   private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+   private static final int PRELOAD_QUEUE_SIZE_PER_THREAD = 64;
 
    @Inject
    public void inject(AdvancedCache<Object, Object> cache,
@@ -138,7 +142,9 @@ public class CacheLoaderManagerImpl implements CacheLoaderManager {
    }
 
    /**
-    * Performs a preload on the cache based on the cache loader preload configs used when configuring the cache.
+    * Performs a preload on the cache based on the cache loader preload configs used when configuring the cache.  The
+    * loader is walked through with {@link CacheLoader#process(int, CacheLoaderTask)} and the entries are put in the cache
+    * by one thread per core, through a bounded queue, so the loader's content never has to be held in memory at once.
     */
    @Start(priority = 56)
    public void preload() {
@@ -150,51 +156,59 @@ public class CacheLoaderManagerImpl implements CacheLoaderManager {
                start = System.currentTimeMillis();
                log.debugf("Preloading transient state from cache loader %s", loader);
             }
-            Set<InternalCacheEntry> state;
-            try {
-               state = loadState();
-            } catch (CacheLoaderException e) {
-               throw new CacheException("Unable to preload!", e);
+            int maxEntries = -1;
+            if (configuration.getEvictionStrategy().isEnabled()) maxEntries = configuration.getEvictionMaxEntries();
+            if (maxEntries == 0) return;
+
+            final AdvancedCache<Object, Object> flaggedCache;
+            if (clmConfig.isShared() || !(loader instanceof ChainingCacheStore)) {
+               flaggedCache = cache.getAdvancedCache()
+                     .withFlags(SKIP_CACHE_STATUS_CHECK, CACHE_MODE_LOCAL, SKIP_CACHE_STORE, SKIP_REMOTE_LOOKUP, SKIP_INDEXING);
+            } else {
+               flaggedCache = cache.getAdvancedCache()
+                     .withFlags(SKIP_CACHE_STATUS_CHECK, CACHE_MODE_LOCAL, SKIP_REMOTE_LOOKUP, SKIP_INDEXING);
             }
+            final AtomicInteger preloaded = new AtomicInteger();
+            CacheLoaderTask task = new CacheLoaderTask() {
+               @Override
+               public boolean processEntry(InternalCacheEntry e) {
+                  flaggedCache.put(e.getKey(), e.getValue(), e.getLifespan(), MILLISECONDS, e.getMaxIdle(), MILLISECONDS);
+                  preloaded.incrementAndGet();
+                  return true;
+               }
+            };
 
-            for (InternalCacheEntry e : state) {
-               if (clmConfig.isShared() || !(loader instanceof ChainingCacheStore)) {
-                  cache.getAdvancedCache()
-                       .withFlags(SKIP_CACHE_STATUS_CHECK, CACHE_MODE_LOCAL, SKIP_CACHE_STORE, SKIP_REMOTE_LOOKUP, SKIP_INDEXING)
-                       .put(e.getKey(), e.getValue(), e.getLifespan(), MILLISECONDS, e.getMaxIdle(), MILLISECONDS);
-               } else {
-                  cache.getAdvancedCache()
-                       .withFlags(SKIP_CACHE_STATUS_CHECK, CACHE_MODE_LOCAL, SKIP_REMOTE_LOOKUP, SKIP_INDEXING)
-                       .put(e.getKey(), e.getValue(), e.getLifespan(), MILLISECONDS, e.getMaxIdle(), MILLISECONDS);
+            int consumers = Runtime.getRuntime().availableProcessors();
+            ExecutorService executor = Executors.newFixedThreadPool(consumers, new ThreadFactory() {
+               @Override
+               public Thread newThread(Runnable r) {
+                  Thread t = new Thread(r, cache.getName() + "-Preloader-" + THREAD_COUNTER.getAndIncrement());
+                  t.setDaemon(true);
+                  return t;
+               }
+            });
+            try {
+               ParallelCacheLoaderTask parallelTask = new ParallelCacheLoaderTask(task, executor, consumers,
+                                                                                  consumers * PRELOAD_QUEUE_SIZE_PER_THREAD);
+               try {
+                  loader.process(maxEntries, parallelTask);
+               } finally {
+                  parallelTask.awaitCompletion();
                }
+            } catch (CacheLoaderException e) {
+               throw new CacheException("Unable to preload!", e);
+            } finally {
+               executor.shutdown();
             }
 
             if (debugTiming) {
                long stop = System.currentTimeMillis();
-               log.debugf("Preloaded %s keys in %s milliseconds", state.size(), stop - start);
+               log.debugf("Preloaded %s keys in %s milliseconds", preloaded.get(), stop - start);
             }
          }
       }
    }
 
-   private Set<InternalCacheEntry> loadState() throws CacheLoaderException {
-      int ne = -1;
-      if (configuration.getEvictionStrategy().isEnabled()) ne = configuration.getEvictionMaxEntries();
-      Set<InternalCacheEntry> state;
-      switch (ne) {
-         case -1:
-            state = loader.loadAll();
-            break;
-         case 0:
-            state = Collections.emptySet();
-            break;
-         default:
-            state = loader.load(ne);
-            break;
-      }
-      return state;
-   }
-
    @Stop
    public void stop() {
       if (loader != null) {
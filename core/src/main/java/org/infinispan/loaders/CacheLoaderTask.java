@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+/**
+ * A callback handed to {@link CacheLoader#process(int, CacheLoaderTask)}, which invokes it once for every entry read
+ * from the loader.
+ *
+ * @since 5.1
+ */
+public interface CacheLoaderTask {
+
+   /**
+    * Processes an entry read from the loader.
+    *
+    * @param entry entry read from the loader, never expired
+    * @return <tt>true</tt> to carry on with the next entry, <tt>false</tt> to stop the iteration
+    * @throws CacheLoaderException to abort the iteration, the exception is propagated to the caller of {@link
+    *                              CacheLoader#process(int, CacheLoaderTask)}
+    */
+   boolean processEntry(InternalCacheEntry entry) throws CacheLoaderException;
+}
@@ -28,6 +28,7 @@ import org.infinispan.transaction.xa.GlobalTransaction;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -117,6 +118,19 @@ public interface CacheStore extends CacheLoader {
     */
    void removeAll(Set<Object> keys) throws CacheLoaderException;
 
+   /**
+    * Bulk write operation, storing some entries and removing some keys in one call.  A key never appears both in
+    * <tt>toStore</tt> and in <tt>toRemove</tt>.
+    * <p/>
+    * Implementations should apply the whole batch in as few round trips to the underlying storage as possible, e.g.
+    * within a single transaction, so that the cost of a commit is shared by all the modifications of the batch.
+    *
+    * @param toStore  entries to store
+    * @param toRemove keys to remove
+    * @throws CacheLoaderException in the event of problems writing to the store
+    */
+   void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException;
+
    /**
     * Purges expired entries from the store.
     *
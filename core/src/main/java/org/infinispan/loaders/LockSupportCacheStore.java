@@ -24,6 +24,9 @@ package org.infinispan.loaders;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.infinispan.Cache;
@@ -218,6 +221,26 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
       }
    }
 
+   /**
+    * Applies the batch while holding the write locks of all its keys, see {@link #writeBatchLockSafe(java.util.Collection,
+    * java.util.Set)}.
+    */
+   @Override
+   public final void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      if (trace) {
+         log.tracef("writeBatch(%d entries to store, %d keys to remove)", toStore.size(), toRemove.size());
+      }
+      List<Object> lockingKeys = new ArrayList<Object>(toStore.size() + toRemove.size());
+      for (InternalCacheEntry ed : toStore) lockingKeys.add(getLockFromKey(ed.getKey()));
+      for (Object key : toRemove) lockingKeys.add(getLockFromKey(key));
+      locks.acquireAllLocks(lockingKeys, true);
+      try {
+         writeBatchLockSafe(toStore, toRemove);
+      } finally {
+         locks.releaseAllLocks(lockingKeys);
+      }
+   }
+
    @Override
    public final void fromStream(ObjectInput objectInput) throws CacheLoaderException {
       try {
@@ -257,6 +280,18 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
 
    protected abstract void clearLockSafe() throws CacheLoaderException;
 
+   /**
+    * Applies a batch one modification at a time.  Stores able to group writes, e.g. in a single transaction, should
+    * override this.
+    */
+   protected void writeBatchLockSafe(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      for (InternalCacheEntry ed : toStore) {
+         if (ed.isExpired()) removeLockSafe(ed.getKey(), getLockFromKey(ed.getKey()));
+         else storeLockSafe(ed, getLockFromKey(ed.getKey()));
+      }
+      for (Object key : toRemove) removeLockSafe(key, getLockFromKey(key));
+   }
+
    protected abstract Set<InternalCacheEntry> loadAllLockSafe() throws CacheLoaderException;
 
    protected abstract Set<InternalCacheEntry> loadLockSafe(int maxEntries) throws CacheLoaderException;
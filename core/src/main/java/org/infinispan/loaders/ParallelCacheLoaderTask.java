@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A {@link CacheLoaderTask} that hands entries over to a number of consumers, each running the wrapped task, so that
+ * the entries read by {@link CacheLoader#process(int, CacheLoaderTask)} are processed in parallel.
+ * <p/>
+ * Entries are passed on through a bounded queue: the thread walking through the loader blocks whenever the consumers
+ * fall behind, so no more than <tt>queueCapacity</tt> entries, plus one per consumer, are ever held in memory.
+ * <p/>
+ * The wrapped task must be thread safe.  The consumers are submitted to the executor on construction; it must run them
+ * on other threads than the one walking through the loader.  Once the loader has been walked through, {@link
+ * #awaitCompletion()} must be called to let the consumers drain the queue and to surface any failure of the task.
+ *
+ * @since 5.1
+ */
+public class ParallelCacheLoaderTask implements CacheLoaderTask {
+
+   private static final Object END = new Object();
+
+   private final CacheLoaderTask task;
+   private final int consumers;
+   private final BlockingQueue<Object> queue;
+   private final CountDownLatch finished;
+   private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+   private volatile boolean stopped;
+
+   public ParallelCacheLoaderTask(CacheLoaderTask task, Executor executor, int consumers, int queueCapacity) {
+      if (consumers < 1) throw new IllegalArgumentException("At least one consumer is needed, not " + consumers);
+      this.task = task;
+      this.consumers = consumers;
+      this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+      this.finished = new CountDownLatch(consumers);
+      for (int i = 0; i < consumers; i++) executor.execute(new Consumer());
+   }
+
+   /**
+    * Queues the entry for one of the consumers, waiting for room in the queue if needed.
+    *
+    * @return <tt>false</tt> once the wrapped task failed or asked to stop, or if interrupted while waiting
+    */
+   @Override
+   public boolean processEntry(InternalCacheEntry entry) {
+      try {
+         while (!queue.offer(entry, 100, MILLISECONDS)) {
+            if (stopped) return false;
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         stopped = true;
+         return false;
+      }
+      return !stopped;
+   }
+
+   /**
+    * Waits for the consumers to process all the queued entries, then releases them.  If interrupted, entries not yet
+    * processed are discarded and the interrupt status is set again before returning.
+    *
+    * @throws CacheLoaderException if the wrapped task failed on any entry
+    */
+   public void awaitCompletion() throws CacheLoaderException {
+      boolean interrupted = false;
+      for (int i = 0; i < consumers && finished.getCount() > 0; ) {
+         try {
+            if (queue.offer(END, 100, MILLISECONDS)) i++;
+         } catch (InterruptedException e) {
+            interrupted = true;
+            stopped = true;
+         }
+      }
+      while (true) {
+         try {
+            finished.await();
+            break;
+         } catch (InterruptedException e) {
+            interrupted = true;
+            stopped = true;
+         }
+      }
+      if (interrupted) Thread.currentThread().interrupt();
+
+      Throwable t = failure.get();
+      if (t == null) return;
+      if (t instanceof CacheLoaderException) throw (CacheLoaderException) t;
+      if (t instanceof RuntimeException) throw (RuntimeException) t;
+      if (t instanceof Error) throw (Error) t;
+      throw new CacheLoaderException("Failure while processing entries", t);
+   }
+
+   private class Consumer implements Runnable {
+      @Override
+      public void run() {
+         try {
+            while (true) {
+               Object o = queue.take();
+               if (o == END) return;
+               // keep draining once stopped, so that the thread walking through the loader never blocks forever
+               if (stopped) continue;
+               try {
+                  if (!task.processEntry((InternalCacheEntry) o)) stopped = true;
+               } catch (Throwable t) {
+                  failure.compareAndSet(null, t);
+                  stopped = true;
+               }
+            }
+         } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+            stopped = true;
+            Thread.currentThread().interrupt();
+         } finally {
+            finished.countDown();
+         }
+      }
+   }
+}
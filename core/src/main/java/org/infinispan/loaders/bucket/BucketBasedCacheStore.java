@@ -24,6 +24,7 @@ package org.infinispan.loaders.bucket;
 
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.LockSupportCacheStore;
 
 import java.util.Collection;
@@ -197,6 +198,30 @@ public abstract class BucketBasedCacheStore extends LockSupportCacheStore<Intege
       return g.generate();
    }
 
+   /**
+    * Hands the entries over to the task bucket by bucket, as {@link #loopOverBuckets(BucketHandler)} reads them, so
+    * that no more than one bucket is held in memory.  No global lock is held meanwhile, so the task is free to write to
+    * this store; implementations of {@link #loopOverBuckets(BucketHandler)} must therefore read each bucket atomically.
+    */
+   @Override
+   public void process(final int maxEntries, final CacheLoaderTask task) throws CacheLoaderException {
+      if (maxEntries == 0) return;
+      loopOverBuckets(new BucketHandler() {
+         int processed;
+
+         @Override
+         public boolean handle(Bucket bucket) throws CacheLoaderException {
+            if (bucket != null) {
+               for (InternalCacheEntry entry : bucket.getStoredEntries()) {
+                  if (entry.isExpired()) continue;
+                  if (!task.processEntry(entry) || ++processed == maxEntries) return true;
+               }
+            }
+            return false;
+         }
+      });
+   }
+
    @Override
    protected Set<Object> loadAllKeysLockSafe(final Set<Object> keysToExclude) throws CacheLoaderException {
       CollectionGeneratingBucketHandler<Object> g = new CollectionGeneratingBucketHandler<Object>() {
@@ -41,6 +41,7 @@ import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockCont
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -75,7 +76,9 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * to define whether cache loader operations are to be asynchronous.  If not specified, a cache loader operation is
  * assumed synchronous and this decorator is not applied.
  * <p/>
- * Write operations affecting same key are now coalesced so that only the final state is actually stored.
+ * Write operations affecting same key are now coalesced so that only the final state is actually stored.  Each batch
+ * of coalesced modifications is then pushed to the underlying store with a single
+ * {@link CacheStore#writeBatch(java.util.Collection, java.util.Set)} call.
  * <p/>
  *
  * @author Manik Surtani
@@ -236,21 +239,27 @@ public class AsyncStore extends AbstractDelegatingStore {
       super.stop();
    }
 
+   /**
+    * Pushes a whole batch of coalesced modifications to the underlying store with a single
+    * {@link CacheStore#writeBatch(java.util.Collection, java.util.Set)} call.
+    */
    protected void applyModificationsSync(ConcurrentMap<Object, Modification> mods) throws CacheLoaderException {
-      Set<Map.Entry<Object, Modification>> entries = mods.entrySet();
-      for (Map.Entry<Object, Modification> entry : entries) {
+      List<InternalCacheEntry> toStore = new ArrayList<InternalCacheEntry>(mods.size());
+      Set<Object> toRemove = new HashSet<Object>();
+      for (Map.Entry<Object, Modification> entry : mods.entrySet()) {
          Modification mod = entry.getValue();
          switch (mod.getType()) {
             case STORE:
-               super.store(((Store) mod).getStoredEntry());
+               toStore.add(((Store) mod).getStoredEntry());
                break;
             case REMOVE:
-               super.remove(entry.getKey());
+               toRemove.add(entry.getKey());
                break;
             default:
                throw new IllegalArgumentException("Unexpected modification type " + mod.getType());
          }
       }
+      super.writeBatch(toStore, toRemove);
    }
    
    protected boolean applyClear() {
@@ -29,12 +29,14 @@ import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.CacheLoader;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.loaders.CacheStoreConfig;
 import org.infinispan.loaders.modifications.Modification;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -103,6 +105,10 @@ public class ChainingCacheStore implements CacheStore {
       for (CacheStore s : stores.keySet()) s.removeAll(keys);
    }
 
+   public void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      for (CacheStore s : stores.keySet()) s.writeBatch(toStore, toRemove);
+   }
+
    public void purgeExpired() throws CacheLoaderException {
       for (CacheStore s : stores.keySet()) s.purgeExpired();
    }
@@ -153,6 +159,18 @@ public class ChainingCacheStore implements CacheStore {
       return set;
    }
 
+   /**
+    * The same entries may be found in several of the chained stores, so this goes through {@link #loadAll()} or {@link
+    * #load(int)} to merge the content of the stores the same way they do.
+    */
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      if (maxEntries == 0) return;
+      for (InternalCacheEntry entry : maxEntries < 0 ? loadAll() : load(maxEntries)) {
+         if (!task.processEntry(entry)) break;
+      }
+   }
+
    @Override
    public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
       Set<Object> set = new HashSet<Object>();
@@ -30,7 +30,9 @@ import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.ObjectInput;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A decorator that makes the underlying store a {@link org.infinispan.loaders.CacheLoader}, i.e., suppressing all write
@@ -51,6 +53,11 @@ public class ReadOnlyStore extends AbstractDelegatingStore {
       if (log.isTraceEnabled()) log.trace("Ignoring store invocation"); 
    }
 
+   @Override
+   public void writeBatch(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) {
+      if (log.isTraceEnabled()) log.trace("Ignoring batch write invocation");
+   }
+
    @Override
    public void fromStream(ObjectInput inputStream) {
       if (log.isTraceEnabled()) log.trace("Ignoring writing contents of stream to store");
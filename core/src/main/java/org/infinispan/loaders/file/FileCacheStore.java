@@ -82,7 +82,15 @@ public class FileCacheStore extends BucketBasedCacheStore {
          File[] listFiles;
          if (root != null && (listFiles = root.listFiles()) != null) {
             for (File bucketFile : listFiles) {
-               Bucket bucket = loadBucket(bucketFile);
+               // buckets are rewritten in place, so read each one under its lock
+               Integer bucketKey = Integer.valueOf(bucketFile.getName());
+               Bucket bucket;
+               lockForReading(bucketKey);
+               try {
+                  bucket = loadBucket(bucketFile);
+               } finally {
+                  unlock(bucketKey);
+               }
                if (handler.handle(bucket)) {
                   break;
                }
@@ -0,0 +1,252 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import org.infinispan.util.Util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single append-only segment file of a {@link LogStructuredCacheStore}.  Every record starts with a fixed size
+ * header made of the key length, the entry length (or {@link #TOMBSTONE} for removals) and the expiry time of the
+ * entry, followed by the marshalled key and the marshalled entry.
+ * <p/>
+ * Appends are serialized by the store, whereas reads are positioned and may happen concurrently.  Once sealed, a
+ * segment never changes, so it may be memory mapped and read without any system call.  The segment also keeps track
+ * of how many of its bytes have been superseded, so that the store can decide when to compact it.
+ *
+ * @since 5.1
+ */
+final class LogSegment {
+
+   static final int HEADER_SIZE = 16;
+   static final int TOMBSTONE = -1;
+   static final String SUFFIX = ".log";
+
+   final int id;
+   final File file;
+   final FileChannel channel;
+   final AtomicLong deadBytes = new AtomicLong();
+   volatile long size;
+   private volatile MappedByteBuffer mapped;
+
+   LogSegment(File directory, int id) throws IOException {
+      this.id = id;
+      this.file = new File(directory, id + SUFFIX);
+      this.channel = new RandomAccessFile(file, "rw").getChannel();
+      this.size = channel.size();
+   }
+
+   /**
+    * @return the id of the segment stored in the given file, or -1 if the file is not a segment
+    */
+   static int idOf(File f) {
+      String name = f.getName();
+      if (!name.endsWith(SUFFIX)) return -1;
+      try {
+         return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   static ByteBuffer encode(byte[] key, byte[] entry, long expiryTime) {
+      ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + key.length + (entry == null ? 0 : entry.length));
+      record.putInt(key.length).putInt(entry == null ? TOMBSTONE : entry.length).putLong(expiryTime).put(key);
+      if (entry != null) record.put(entry);
+      record.flip();
+      return record;
+   }
+
+   static int recordLength(int keyLength, int entryLength) {
+      return HEADER_SIZE + keyLength + Math.max(entryLength, 0);
+   }
+
+   void write(ByteBuffer buffer, long position) throws IOException {
+      while (buffer.hasRemaining()) position += channel.write(buffer, position);
+   }
+
+   void read(ByteBuffer buffer, long position) throws IOException {
+      while (buffer.hasRemaining()) {
+         int read = channel.read(buffer, position);
+         if (read < 0) throw new EOFException("Unexpected end of " + file + " at offset " + position);
+         position += read;
+      }
+   }
+
+   /**
+    * Maps the segment into memory.  Must only be called once the segment is sealed.
+    *
+    * @return false if the segment is too large to be mapped
+    */
+   boolean map() throws IOException {
+      long s = size;
+      if (s > Integer.MAX_VALUE) return false;
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, s);
+      return true;
+   }
+
+   /**
+    * @return a stream over the given range of the mapped segment, or null if the segment is not mapped
+    */
+   InputStream mappedStream(long position, int length) {
+      MappedByteBuffer m = mapped;
+      if (m == null) return null;
+      ByteBuffer range = m.duplicate();
+      range.limit((int) position + length).position((int) position);
+      return new ByteBufferInputStream(range);
+   }
+
+   void retire(int length) {
+      deadBytes.addAndGet(length);
+   }
+
+   double deadRatio() {
+      long s = size;
+      return s == 0 ? 0 : (double) deadBytes.get() / s;
+   }
+
+   Scanner scan() throws IOException {
+      return new Scanner();
+   }
+
+   void close() {
+      // The mapping, if any, is released once garbage collected
+      mapped = null;
+      Util.close(channel);
+   }
+
+   boolean delete() {
+      close();
+      return file.delete();
+   }
+
+   /**
+    * Sequentially reads the record headers and keys of a segment, skipping over the entries.
+    */
+   final class Scanner {
+      private final DataInputStream in;
+      private final long limit;
+      long offset;
+      int keyLength;
+      int entryLength;
+      long expiryTime;
+      byte[] key;
+
+      private Scanner() throws IOException {
+         limit = size;
+         in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      }
+
+      /**
+       * Advances to the next record.
+       *
+       * @return false if the end of the segment has been reached
+       * @throws EOFException if the segment ends in the middle of a record
+       */
+      boolean next() throws IOException {
+         if (key != null) {
+            skipFully(Math.max(entryLength, 0));
+            offset += recordLength(keyLength, entryLength);
+            key = null;
+         }
+         if (offset >= limit) return false;
+         keyLength = in.readInt();
+         entryLength = in.readInt();
+         expiryTime = in.readLong();
+         if (keyLength < 0 || entryLength < TOMBSTONE)
+            throw new EOFException("Corrupt record header in " + file + " at offset " + offset);
+         key = new byte[keyLength];
+         in.readFully(key);
+         if (offset + recordLength(keyLength, entryLength) > limit)
+            throw new EOFException("Truncated record in " + file + " at offset " + offset);
+         return true;
+      }
+
+      private void skipFully(int n) throws IOException {
+         while (n > 0) {
+            int skipped = in.skipBytes(n);
+            if (skipped <= 0) throw new EOFException();
+            n -= skipped;
+         }
+      }
+
+      void close() {
+         Util.close(in);
+      }
+   }
+
+   private static final class ByteBufferInputStream extends InputStream {
+      private final ByteBuffer buffer;
+
+      ByteBufferInputStream(ByteBuffer buffer) {
+         this.buffer = buffer;
+      }
+
+      @Override
+      public int read() {
+         return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+         if (len == 0) return 0;
+         if (!buffer.hasRemaining()) return -1;
+         len = Math.min(len, buffer.remaining());
+         buffer.get(b, off, len);
+         return len;
+      }
+
+      @Override
+      public long skip(long n) {
+         int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+         buffer.position(buffer.position() + skipped);
+         return skipped;
+      }
+
+      @Override
+      public int available() {
+         return buffer.remaining();
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "LogSegment{" +
+            "file=" + file +
+            ", size=" + size +
+            ", deadBytes=" + deadBytes +
+            '}';
+   }
+}
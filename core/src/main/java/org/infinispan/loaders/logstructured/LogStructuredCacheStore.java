@@ -0,0 +1,615 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import org.infinispan.Cache;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.CacheLoaderTask;
+import org.infinispan.loaders.LockSupportCacheStore;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A log-structured, file based {@link org.infinispan.loaders.CacheStore}.  Rather than rewriting a bucket file on
+ * every modification like {@link org.infinispan.loaders.file.FileCacheStore} does, every store and remove is appended
+ * as a record to the currently active segment file (<tt>/{location}/cache name/segment_id.log</tt>), so writes are
+ * always sequential.  An in-memory index maps every key to the position of its latest record, so loading an entry is
+ * a single positioned read.
+ * <p/>
+ * Once the active segment reaches the configured maximum size it is sealed and a new one is started.  Records that
+ * are overwritten, removed or purged leave dead bytes behind in the sealed segments, and a background thread
+ * compacts a segment by copying its live records to the active segment once the proportion of dead bytes exceeds
+ * the configured threshold.  When the store starts, the index is rebuilt by replaying the segments in order.
+ * <p/>
+ * If <tt>memoryMappedReads</tt> is enabled, sealed segments are memory mapped and entries are unmarshalled straight
+ * from the mapped buffer, sparing a system call and a copy per load.  Only the active segment is then read through
+ * its file channel.
+ *
+ * @see LogStructuredCacheStoreConfig
+ * @since 5.1
+ */
+@CacheLoaderMetadata(configurationClass = LogStructuredCacheStoreConfig.class)
+public class LogStructuredCacheStore extends LockSupportCacheStore<Integer> {
+
+   private static final Log log = LogFactory.getLog(LogStructuredCacheStore.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final Object appendLock = new Object();
+   private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+   private final ConcurrentSkipListMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<Integer, LogSegment>();
+   private ConcurrentMap<Object, RecordPointer> index;
+   private LogStructuredCacheStoreConfig config;
+   private ExecutorService compactor;
+   private File root;
+   private volatile LogSegment active;
+   private int nextSegmentId;
+
+   /**
+    * @return root directory where all segments of this {@link org.infinispan.loaders.CacheStore CacheStore} are written.
+    */
+   public File getRoot() {
+      return root;
+   }
+
+   @Override
+   public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
+      super.init(config, cache, m);
+      this.config = (LogStructuredCacheStoreConfig) config;
+   }
+
+   @Override
+   public Class<? extends CacheLoaderConfig> getConfigurationClass() {
+      return LogStructuredCacheStoreConfig.class;
+   }
+
+   @Override
+   public void start() throws CacheLoaderException {
+      super.start();
+      String location = config.getLocation();
+      if (location == null || location.trim().length() == 0) {
+         location = "Infinispan-LogStructuredCacheStore"; // use relative path!
+      }
+      location += File.separator + cache.getName();
+      root = new File(location);
+      if (!root.exists()) {
+         if (!root.mkdirs()) {
+            log.problemsCreatingDirectory(root);
+         }
+      }
+      if (!root.exists()) {
+         throw new ConfigurationException("Directory " + root.getAbsolutePath() + " does not exist and cannot be created!");
+      }
+
+      index = new ConcurrentHashMap<Object, RecordPointer>(64, 0.75f, getConcurrencyLevel());
+      final String compactorName = (cache == null ? "" : cache.getName() + '-') + getClass().getSimpleName() + "-compactor";
+      compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, compactorName);
+            t.setDaemon(true);
+            return t;
+         }
+      });
+      compactionScheduled.set(false);
+      try {
+         replaySegments();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to open log segments in " + root, e);
+      }
+      scheduleCompaction();
+   }
+
+   @Override
+   public void stop() throws CacheLoaderException {
+      super.stop();
+      // Don't interrupt the compactor, interrupting a thread doing channel I/O closes the channel
+      compactor.shutdown();
+      try {
+         compactor.awaitTermination(config.getLockAcquistionTimeout(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      synchronized (appendLock) {
+         for (LogSegment s : segments.values()) s.close();
+         segments.clear();
+         index.clear();
+         active = null;
+      }
+   }
+
+   @Override
+   protected Integer getLockFromKey(Object key) {
+      return key.hashCode();
+   }
+
+   @Override
+   public boolean containsKey(Object key) throws CacheLoaderException {
+      RecordPointer p = index.get(key);
+      return p != null && !p.isExpired(System.currentTimeMillis());
+   }
+
+   @Override
+   protected InternalCacheEntry loadLockSafe(Object key, Integer lockingKey) throws CacheLoaderException {
+      RecordPointer p = index.get(key);
+      if (p == null || p.isExpired(System.currentTimeMillis())) return null;
+      InternalCacheEntry entry = readEntry(p);
+      return entry.isExpired() ? null : entry;
+   }
+
+   @Override
+   protected Set<InternalCacheEntry> loadAllLockSafe() throws CacheLoaderException {
+      return loadLockSafe(Integer.MAX_VALUE);
+   }
+
+   @Override
+   protected Set<InternalCacheEntry> loadLockSafe(int maxEntries) throws CacheLoaderException {
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      long now = System.currentTimeMillis();
+      for (RecordPointer p : index.values()) {
+         if (result.size() >= maxEntries) break;
+         if (p.isExpired(now)) continue;
+         InternalCacheEntry entry = readEntry(p);
+         if (!entry.isExpired()) result.add(entry);
+      }
+      return result;
+   }
+
+   /**
+    * Reads the entries one at a time, each under the read lock of its key, and hands them over to the task outside of
+    * any lock, so that the task may write to this store.  Entries written meanwhile may or may not be seen.
+    */
+   @Override
+   public void process(int maxEntries, CacheLoaderTask task) throws CacheLoaderException {
+      int processed = 0;
+      for (Object key : index.keySet()) {
+         if (processed == maxEntries) return;
+         Integer lockingKey = getLockFromKey(key);
+         InternalCacheEntry entry = null;
+         lockForReading(lockingKey);
+         try {
+            RecordPointer p = index.get(key);
+            if (p != null && !p.isExpired(System.currentTimeMillis())) entry = readEntry(p);
+         } finally {
+            unlock(lockingKey);
+         }
+         if (entry == null || entry.isExpired()) continue;
+         processed++;
+         if (!task.processEntry(entry)) return;
+      }
+   }
+
+   @Override
+   protected Set<Object> loadAllKeysLockSafe(Set<Object> keysToExclude) throws CacheLoaderException {
+      Set<Object> result = new HashSet<Object>();
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, RecordPointer> e : index.entrySet()) {
+         Object key = e.getKey();
+         if (!e.getValue().isExpired(now) && (keysToExclude == null || !keysToExclude.contains(key)))
+            result.add(key);
+      }
+      return result;
+   }
+
+   @Override
+   protected void storeLockSafe(InternalCacheEntry ed, Integer lockingKey) throws CacheLoaderException {
+      storeRecord(ed, config.isSyncWrites());
+   }
+
+   @Override
+   protected boolean removeLockSafe(Object key, Integer lockingKey) throws CacheLoaderException {
+      return removeRecord(key, config.isSyncWrites());
+   }
+
+   /**
+    * Appends the whole batch, then forces it to disk at most once, so that with <tt>syncWrites</tt> the cost of an
+    * fsync is shared by all the records of the batch.
+    */
+   @Override
+   protected void writeBatchLockSafe(Collection<InternalCacheEntry> toStore, Set<Object> toRemove) throws CacheLoaderException {
+      for (InternalCacheEntry entry : toStore) {
+         if (entry.isExpired()) removeRecord(entry.getKey(), false);
+         else storeRecord(entry, false);
+      }
+      for (Object key : toRemove) removeRecord(key, false);
+      if (config.isSyncWrites()) {
+         try {
+            syncActive();
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to sync the active log segment", e);
+         }
+      }
+   }
+
+   private void storeRecord(InternalCacheEntry ed, boolean sync) throws CacheLoaderException {
+      try {
+         byte[] key = marshaller.objectToByteBuffer(ed.getKey());
+         byte[] entry = marshaller.objectToByteBuffer(ed);
+         RecordPointer p = append(LogSegment.encode(key, entry, ed.getExpiryTime()), key.length, entry.length, ed.getExpiryTime(), sync);
+         retire(index.put(ed.getKey(), p));
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append entry " + ed, e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while marshalling entry " + ed, e);
+      }
+   }
+
+   private boolean removeRecord(Object key, boolean sync) throws CacheLoaderException {
+      RecordPointer p = index.get(key);
+      if (p == null) return false;
+      try {
+         appendTombstone(marshaller.objectToByteBuffer(key), sync);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append removal of " + key, e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while marshalling key " + key, e);
+      }
+      index.remove(key);
+      retire(p);
+      return true;
+   }
+
+   @Override
+   protected void clearLockSafe() throws CacheLoaderException {
+      synchronized (appendLock) {
+         for (LogSegment s : segments.values()) {
+            if (!s.delete()) log.problemsRemovingFile(s.file);
+         }
+         segments.clear();
+         index.clear();
+         try {
+            active = openSegment(nextSegmentId++);
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to create a new log segment in " + root, e);
+         }
+      }
+   }
+
+   @Override
+   protected void purgeInternal() throws CacheLoaderException {
+      if (trace) log.trace("purgeInternal()");
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, RecordPointer> e : index.entrySet()) {
+         if (!e.getValue().isExpired(now)) continue;
+         Object key = e.getKey();
+         Integer lockingKey = getLockFromKey(key);
+         lockForWriting(lockingKey);
+         try {
+            // No tombstone needed, the record carries its expiry time and is skipped when replayed
+            RecordPointer p = index.get(key);
+            if (p != null && p.isExpired(now) && index.remove(key, p)) retire(p);
+         } finally {
+            unlock(lockingKey);
+         }
+      }
+      scheduleCompaction();
+   }
+
+   /**
+    * Writes every live entry, followed by a null terminator.
+    */
+   @Override
+   protected void toStreamLockSafe(ObjectOutput oos) throws CacheLoaderException {
+      try {
+         long now = System.currentTimeMillis();
+         for (RecordPointer p : index.values()) {
+            if (p.isExpired(now)) continue;
+            InternalCacheEntry entry = readEntry(p);
+            if (!entry.isExpired()) marshaller.objectToObjectStream(entry, oos);
+         }
+         marshaller.objectToObjectStream(null, oos);
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O exception while generating stream", e);
+      }
+   }
+
+   /**
+    * Reads the entries written by {@link #toStreamLockSafe(java.io.ObjectOutput)} until the null terminator.
+    */
+   @Override
+   protected void fromStreamLockSafe(ObjectInput ois) throws CacheLoaderException {
+      try {
+         InternalCacheEntry entry;
+         while ((entry = (InternalCacheEntry) marshaller.objectFromObjectStream(ois)) != null) {
+            if (!entry.isExpired()) storeLockSafe(entry, null);
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O error", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      } catch (InterruptedException ie) {
+         if (trace) log.trace("Interrupted while reading from stream");
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private InternalCacheEntry readEntry(RecordPointer p) throws CacheLoaderException {
+      long position = p.offset + LogSegment.HEADER_SIZE + p.keyLength;
+      try {
+         InputStream mapped = p.segment.mappedStream(position, p.entryLength);
+         if (mapped != null) {
+            ObjectInput in = marshaller.startObjectInput(mapped, false);
+            try {
+               return (InternalCacheEntry) marshaller.objectFromObjectStream(in);
+            } finally {
+               marshaller.finishObjectInput(in);
+            }
+         }
+         ByteBuffer buffer = ByteBuffer.allocate(p.entryLength);
+         p.segment.read(buffer, position);
+         return (InternalCacheEntry) marshaller.objectFromByteBuffer(buffer.array());
+      } catch (IOException e) {
+         log.errorReadingFromFile(p.segment.file, e);
+         throw new CacheLoaderException("Error while reading from file", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while unmarshalling entry", e);
+      }
+   }
+
+   private RecordPointer append(ByteBuffer record, int keyLength, int entryLength, long expiryTime, boolean sync) throws IOException {
+      synchronized (appendLock) {
+         LogSegment s = active;
+         if (s == null) throw new IOException("Store is not started");
+         int length = record.remaining();
+         if (s.size > 0 && s.size + length > config.getMaxSegmentSize()) {
+            seal(s);
+            s = active = openSegment(nextSegmentId++);
+            scheduleCompaction();
+         }
+         long offset = s.size;
+         s.write(record, offset);
+         s.size = offset + length;
+         if (sync) s.channel.force(false);
+         return new RecordPointer(s, offset, keyLength, entryLength, expiryTime);
+      }
+   }
+
+   private void appendTombstone(byte[] key, boolean sync) throws IOException {
+      RecordPointer tombstone = append(LogSegment.encode(key, null, -1), key.length, LogSegment.TOMBSTONE, -1, sync);
+      // A tombstone never holds live data, it only shadows older records
+      retire(tombstone);
+   }
+
+   private static void retire(RecordPointer p) {
+      if (p != null) p.segment.retire(p.length());
+   }
+
+   private void syncActive() throws IOException {
+      synchronized (appendLock) {
+         if (active != null) active.channel.force(false);
+      }
+   }
+
+   private void seal(LogSegment s) throws IOException {
+      // Records appended without syncing, by batches or compaction, must be on disk before the segment is left behind
+      if (config.isSyncWrites()) s.channel.force(false);
+      if (config.isMemoryMappedReads() && !s.map())
+         log.debugf("%s is too large to be memory mapped, reading it through its channel", s);
+   }
+
+   private LogSegment openSegment(int id) throws IOException {
+      LogSegment s = new LogSegment(root, id);
+      segments.put(id, s);
+      return s;
+   }
+
+   /**
+    * Rebuilds the index by replaying every segment in order, so that later records shadow earlier ones.
+    */
+   private void replaySegments() throws IOException, CacheLoaderException {
+      List<Integer> ids = new ArrayList<Integer>();
+      File[] files = root.listFiles();
+      if (files != null) {
+         for (File f : files) {
+            int id = LogSegment.idOf(f);
+            if (id >= 0) ids.add(id);
+         }
+      }
+      Collections.sort(ids);
+      long now = System.currentTimeMillis();
+      LogSegment last = null;
+      for (Integer id : ids) {
+         last = openSegment(id);
+         replay(last, now);
+      }
+      synchronized (appendLock) {
+         nextSegmentId = last == null ? 0 : last.id + 1;
+         active = last != null && last.size < config.getMaxSegmentSize() ? last : openSegment(nextSegmentId++);
+         for (LogSegment s : segments.values()) {
+            if (s != active) seal(s);
+         }
+      }
+   }
+
+   private void replay(LogSegment s, long now) throws IOException, CacheLoaderException {
+      LogSegment.Scanner scanner = s.scan();
+      try {
+         while (scanner.next()) {
+            Object key = unmarshallKey(scanner.key);
+            RecordPointer p = new RecordPointer(s, scanner.offset, scanner.keyLength, scanner.entryLength, scanner.expiryTime);
+            if (p.isTombstone() || p.isExpired(now)) {
+               retire(index.remove(key));
+               retire(p);
+            } else {
+               retire(index.put(key, p));
+            }
+         }
+      } catch (EOFException e) {
+         log.truncatingLogSegment(s.file, scanner.offset);
+         s.channel.truncate(scanner.offset);
+         s.size = scanner.offset;
+      } finally {
+         scanner.close();
+      }
+   }
+
+   private Object unmarshallKey(byte[] key) throws CacheLoaderException {
+      try {
+         return marshaller.objectFromByteBuffer(key);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to unmarshall key", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      }
+   }
+
+   private void scheduleCompaction() {
+      if (!compactor.isShutdown() && compactionScheduled.compareAndSet(false, true)) {
+         try {
+            compactor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  compactionScheduled.set(false);
+                  compactSegments();
+               }
+            });
+         } catch (RejectedExecutionException e) {
+            // Stopping
+            compactionScheduled.set(false);
+         }
+      }
+   }
+
+   /**
+    * Compacts, oldest first, every sealed segment whose proportion of dead bytes exceeds the compaction threshold.
+    */
+   private void compactSegments() {
+      for (LogSegment s : segments.values()) {
+         if (compactor.isShutdown()) return;
+         if (s == active || s.deadRatio() < config.getCompactionThreshold()) continue;
+         try {
+            compact(s);
+         } catch (Exception e) {
+            // The segment may have been deleted by a concurrent clear or stop
+            if (segments.get(s.id) == s) log.problemsCompactingLogSegment(s.file, e);
+            return;
+         }
+      }
+   }
+
+   /**
+    * Copies the live records of a sealed segment to the active segment, then deletes it.  Each record is checked and
+    * moved while holding the write lock of its key, so readers either see the old or the new position, and no reader
+    * can be reading from the segment by the time it is deleted.
+    */
+   private void compact(LogSegment s) throws IOException, CacheLoaderException {
+      if (trace) log.tracef("Compacting %s", s);
+      // Records that no longer have a live entry must stay shadowed while an older segment may still hold their key
+      boolean olderSegmentExists = segments.firstKey() < s.id;
+      LogSegment.Scanner scanner = s.scan();
+      try {
+         while (scanner.next()) {
+            Object key = unmarshallKey(scanner.key);
+            Integer lockingKey = getLockFromKey(key);
+            lockForWriting(lockingKey);
+            try {
+               // Give up if the segment was cleared, or the store is stopping
+               if (segments.get(s.id) != s || compactor.isShutdown()) return;
+               RecordPointer p = index.get(key);
+               if (p != null) {
+                  if (p.segment == s && p.offset == scanner.offset) {
+                     ByteBuffer record = ByteBuffer.allocate(p.length());
+                     s.read(record, p.offset);
+                     record.flip();
+                     index.put(key, append(record, p.keyLength, p.entryLength, p.expiryTime, false));
+                  }
+               } else if (olderSegmentExists) {
+                  appendTombstone(scanner.key, false);
+               }
+            } finally {
+               unlock(lockingKey);
+            }
+         }
+      } finally {
+         scanner.close();
+      }
+      // The relocated records must be durable before their original copy goes away
+      if (config.isSyncWrites()) syncActive();
+      segments.remove(s.id, s);
+      if (!s.delete()) log.problemsRemovingFile(s.file);
+   }
+
+   /**
+    * Location of the latest record of a key.
+    */
+   private static final class RecordPointer {
+      final LogSegment segment;
+      final long offset;
+      final int keyLength;
+      final int entryLength;
+      final long expiryTime;
+
+      RecordPointer(LogSegment segment, long offset, int keyLength, int entryLength, long expiryTime) {
+         this.segment = segment;
+         this.offset = offset;
+         this.keyLength = keyLength;
+         this.entryLength = entryLength;
+         this.expiryTime = expiryTime;
+      }
+
+      int length() {
+         return LogSegment.recordLength(keyLength, entryLength);
+      }
+
+      boolean isTombstone() {
+         return entryLength == LogSegment.TOMBSTONE;
+      }
+
+      boolean isExpired(long now) {
+         return expiryTime > 0 && expiryTime <= now;
+      }
+   }
+}
@@ -0,0 +1,159 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import org.infinispan.loaders.LockSupportCacheStoreConfig;
+
+/**
+ * Configures {@link LogStructuredCacheStore}.  This allows you to tune a number of characteristics of the
+ * {@link LogStructuredCacheStore}.
+ * <p/>
+ *    <ul>
+ *       <li><tt>location</tt> - a location on disk where the store can write its segment files.  This defaults to
+ * <tt>Infinispan-LogStructuredCacheStore</tt> in the current working directory.</li>
+ *       <li><tt>maxSegmentSize</tt> - the size, in bytes, after which the active segment is sealed and a new one is
+ * started.  Smaller segments are compacted sooner and faster, but more files are kept open.  By default, this is set
+ * to <tt>16777216</tt> (16MB).</li>
+ *       <li><tt>compactionThreshold</tt> - the proportion of overwritten, removed or expired bytes in a sealed segment
+ * above which the segment gets compacted in the background.  By default, this is set to <tt>0.5</tt>.</li>
+ *       <li><tt>syncWrites</tt> - whether every append is forced to the underlying file system before returning.  By
+ * default, this is set to <tt>false</tt>.</li>
+ *       <li><tt>memoryMappedReads</tt> - whether sealed segments are memory mapped, so that loading an entry does not
+ * need a system call.  This trades address space, and the disk space of compacted segments until their mapping is
+ * garbage collected, for lower load latency.  By default, this is set to <tt>false</tt>.</li>
+ *       <li><tt>lockConcurrencyLevel</tt> and <tt>lockAcquistionTimeout</tt> - see
+ * {@link LockSupportCacheStoreConfig}.</li>
+ *    </ul>
+ *
+ * @since 5.1
+ */
+public class LogStructuredCacheStoreConfig extends LockSupportCacheStoreConfig {
+
+   private static final long serialVersionUID = -2862451930516263471L;
+
+   private String location = "Infinispan-LogStructuredCacheStore";
+   private long maxSegmentSize = 16 * 1024 * 1024;
+   private double compactionThreshold = 0.5;
+   private boolean syncWrites = false;
+   private boolean memoryMappedReads = false;
+
+   public LogStructuredCacheStoreConfig() {
+      setCacheLoaderClassName(LogStructuredCacheStore.class.getName());
+   }
+
+   public String getLocation() {
+      return location;
+   }
+
+   public void setLocation(String location) {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   public LogStructuredCacheStoreConfig location(String location) {
+      setLocation(location);
+      return this;
+   }
+
+   public long getMaxSegmentSize() {
+      return maxSegmentSize;
+   }
+
+   public void setMaxSegmentSize(long maxSegmentSize) {
+      testImmutability("maxSegmentSize");
+      this.maxSegmentSize = maxSegmentSize;
+   }
+
+   public LogStructuredCacheStoreConfig maxSegmentSize(long maxSegmentSize) {
+      setMaxSegmentSize(maxSegmentSize);
+      return this;
+   }
+
+   public double getCompactionThreshold() {
+      return compactionThreshold;
+   }
+
+   public void setCompactionThreshold(double compactionThreshold) {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   public LogStructuredCacheStoreConfig compactionThreshold(double compactionThreshold) {
+      setCompactionThreshold(compactionThreshold);
+      return this;
+   }
+
+   public boolean isSyncWrites() {
+      return syncWrites;
+   }
+
+   public void setSyncWrites(boolean syncWrites) {
+      testImmutability("syncWrites");
+      this.syncWrites = syncWrites;
+   }
+
+   public LogStructuredCacheStoreConfig syncWrites(boolean syncWrites) {
+      setSyncWrites(syncWrites);
+      return this;
+   }
+
+   public boolean isMemoryMappedReads() {
+      return memoryMappedReads;
+   }
+
+   public void setMemoryMappedReads(boolean memoryMappedReads) {
+      testImmutability("memoryMappedReads");
+      this.memoryMappedReads = memoryMappedReads;
+   }
+
+   public LogStructuredCacheStoreConfig memoryMappedReads(boolean memoryMappedReads) {
+      setMemoryMappedReads(memoryMappedReads);
+      return this;
+   }
+
+   // Method overrides below are used to make configuration more fluent.
+
+   @Override
+   public LogStructuredCacheStoreConfig purgeOnStartup(Boolean purgeOnStartup) {
+      super.purgeOnStartup(purgeOnStartup);
+      return this;
+   }
+
+   @Override
+   public LogStructuredCacheStoreConfig purgeSynchronously(Boolean purgeSynchronously) {
+      super.purgeSynchronously(purgeSynchronously);
+      return this;
+   }
+
+   @Override
+   public LogStructuredCacheStoreConfig fetchPersistentState(Boolean fetchPersistentState) {
+      super.fetchPersistentState(fetchPersistentState);
+      return this;
+   }
+
+   @Override
+   public LogStructuredCacheStoreConfig ignoreModifications(Boolean ignoreModifications) {
+      super.ignoreModifications(ignoreModifications);
+      return this;
+   }
+}
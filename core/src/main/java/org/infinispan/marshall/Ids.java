@@ -94,4 +94,10 @@ public interface Ids {
    int MURMURHASH_3 = 73;
 
    int CACHE_RPC_COMMAND = 74;
+
+   int COMPACT_ENTRY = 75;
+
+   int SEGMENTED_CONSISTENT_HASH = 76;
+
+   int NUMERIC_VERSION = 77;
 }
@@ -200,6 +200,14 @@ public class MarshalledValue {
       }
    }
 
+   /**
+    * Returns the size of the serialized form of the wrapped instance.  If the instance has not been serialized yet,
+    * this is a guess based on previous serializations.
+    */
+   public int getSerialisedSize() {
+      return serialisedSize;
+   }
+
    public byte[] getRaw() {
       byte[] rawValue = raw;
       if (rawValue == null){
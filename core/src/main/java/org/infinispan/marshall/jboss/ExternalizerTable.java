@@ -33,6 +33,7 @@ import org.infinispan.commands.RemoteCommandsFactory;
 import org.infinispan.config.AdvancedExternalizerConfig;
 import org.infinispan.config.ConfigurationException;
 import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.container.entries.CompactCacheEntry;
 import org.infinispan.container.entries.ImmortalCacheEntry;
 import org.infinispan.container.entries.ImmortalCacheValue;
 import org.infinispan.container.entries.MortalCacheEntry;
@@ -41,8 +42,10 @@ import org.infinispan.container.entries.TransientCacheEntry;
 import org.infinispan.container.entries.TransientCacheValue;
 import org.infinispan.container.entries.TransientMortalCacheEntry;
 import org.infinispan.container.entries.TransientMortalCacheValue;
+import org.infinispan.container.versioning.NumericVersion;
 import org.infinispan.distribution.RemoteTransactionLogDetails;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.distribution.ch.UnionConsistentHash;
 import org.infinispan.factories.GlobalComponentRegistry;
@@ -165,10 +168,12 @@ public class ExternalizerTable implements ObjectTable {
       internalExternalizers.add(new MortalCacheEntry.Externalizer());
       internalExternalizers.add(new TransientCacheEntry.Externalizer());
       internalExternalizers.add(new TransientMortalCacheEntry.Externalizer());
+      internalExternalizers.add(new CompactCacheEntry.Externalizer());
       internalExternalizers.add(new ImmortalCacheValue.Externalizer());
       internalExternalizers.add(new MortalCacheValue.Externalizer());
       internalExternalizers.add(new TransientCacheValue.Externalizer());
       internalExternalizers.add(new TransientMortalCacheValue.Externalizer());
+      internalExternalizers.add(new NumericVersion.Externalizer());
 
       internalExternalizers.add(new AtomicHashMap.Externalizer());
       internalExternalizers.add(new Bucket.Externalizer());
@@ -180,6 +185,7 @@ public class ExternalizerTable implements ObjectTable {
       internalExternalizers.add(new UnionConsistentHash.Externalizer());
       internalExternalizers.add(new JGroupsTopologyAwareAddress.Externalizer());
       internalExternalizers.add(new TopologyAwareConsistentHash.Externalizer());
+      internalExternalizers.add(new SegmentedConsistentHash.Externalizer());
       internalExternalizers.add(new ByteArrayKey.Externalizer());
 
       internalExternalizers.add(new RemoteTransactionLogDetails.Externalizer());
@@ -24,10 +24,14 @@ package org.infinispan.remoting;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.StateTransferControlCommand;
+import org.infinispan.commands.control.TotalOrderControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareCommand;
+import org.infinispan.commands.remote.WaitForGraphCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.config.GlobalConfiguration;
 import org.infinispan.factories.ComponentRegistry;
@@ -203,7 +207,8 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
             return JoinHandle.OK;
          else {
             // no point in enqueueing clustered GET commands - just ignore these and hope someone else in the cluster responds.
-            if (!(cmd instanceof ClusteredGetCommand))
+            // wait-for edges are resent periodically, so stale ones can be dropped as well.
+            if (!(cmd instanceof ClusteredGetCommand || cmd instanceof ClusteredGetAllCommand || cmd instanceof WaitForGraphCommand))
                return JoinHandle.QUEUE;
             else
                return JoinHandle.IGNORE;
@@ -236,14 +241,17 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
       // as in both cases a the caller needs the response.
       // RehashControlCommands are the mechanism used for joining the cluster,
       // so they need to go through immediately (they also ignore the processing lock).
+      // Total order commands must be applied in the order they were sent, and a joiner has to take part in sealing
+      // the epochs of the previous view before its state transfer can start, so they can't be queued either.
       boolean isRehashCommand = cmd instanceof StateTransferControlCommand;
+      boolean isTotalOrderCommand = cmd instanceof TotalOrderPrepareCommand || cmd instanceof TotalOrderControlCommand;
       boolean isClusteredGetCommand = cmd instanceof ClusteredGetCommand;
       boolean isDistributedExecuteCommand = cmd instanceof SingleRpcCommand && ((SingleRpcCommand)cmd).getCommand() instanceof DistributedExecuteCommand;
 
-      boolean needRetry = !(isRehashCommand || isDistributedExecuteCommand);
+      boolean needRetry = !(isRehashCommand || isTotalOrderCommand || isDistributedExecuteCommand);
       if (!needRetry) {
          try {
-            if (!isRehashCommand) {
+            if (!isRehashCommand && !isTotalOrderCommand) {
                waitForStart(cmd);
             }
             return handleWithWaitForBlocks(cmd);
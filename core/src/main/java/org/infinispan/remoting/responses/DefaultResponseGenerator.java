@@ -22,8 +22,11 @@
  */
 package org.infinispan.remoting.responses;
 
+import org.infinispan.commands.control.TotalOrderControlCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.remote.MultipleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -37,7 +40,18 @@ import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
 public class DefaultResponseGenerator implements ResponseGenerator {
    public Response getResponse(CacheRpcCommand command, Object returnValue) {
       if (returnValue == null) return null;
-      if (requiresResponse(command.getCommandId())) {
+      if (command.getCommandId() == MultipleRpcCommand.COMMAND_ID) {
+         // as with individual commands, only failures are worth sending back
+         Object[] results = (Object[]) returnValue;
+         Response[] responses = null;
+         for (int i = 0; i < results.length; i++) {
+            if (results[i] instanceof ExceptionResponse) {
+               if (responses == null) responses = new Response[results.length];
+               responses[i] = (ExceptionResponse) results[i];
+            }
+         }
+         return responses == null ? null : new SuccessfulResponse(responses);
+      } else if (requiresResponse(command.getCommandId())) {
          return new SuccessfulResponse(returnValue);
       } else {
          return null; // saves on serializing a response!
@@ -46,6 +60,7 @@ public class DefaultResponseGenerator implements ResponseGenerator {
 
    private boolean requiresResponse(byte commandId) {
       return commandId == ClusteredGetCommand.COMMAND_ID || commandId == GetInDoubtTransactionsCommand.COMMAND_ID
-            || commandId == GetInDoubtTxInfoCommand.COMMAND_ID || commandId == CompleteTransactionCommand.COMMAND_ID;
+            || commandId == GetInDoubtTxInfoCommand.COMMAND_ID || commandId == CompleteTransactionCommand.COMMAND_ID
+            || commandId == TotalOrderPrepareCommand.COMMAND_ID || commandId == TotalOrderControlCommand.COMMAND_ID;
    }
 }
@@ -25,6 +25,7 @@ package org.infinispan.remoting.responses;
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
 import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.distribution.DistributionManager;
@@ -51,18 +52,28 @@ public class DistributionResponseGenerator implements ResponseGenerator {
             return UnsureResponse.INSTANCE;
          return returnValue == null ? null : new SuccessfulResponse(returnValue);
       } else if (command instanceof SingleRpcCommand) {
-         SingleRpcCommand src = (SingleRpcCommand) command;
-         ReplicableCommand c = src.getCommand();
-
-         if (c instanceof WriteCommand) {
-            // check if this is successful.
-            if (((WriteCommand) c).isSuccessful())
-               return new SuccessfulResponse(returnValue);
-            else
-               return UnsuccessfulResponse.INSTANCE;
+         return getResponse(((SingleRpcCommand) command).getCommand(), returnValue);
+      } else if (command.getCommandId() == MultipleRpcCommand.COMMAND_ID) {
+         ReplicableCommand[] commands = ((MultipleRpcCommand) command).getCommands();
+         Object[] results = (Object[]) returnValue;
+         Response[] responses = new Response[results.length];
+         for (int i = 0; i < results.length; i++) {
+            responses[i] = results[i] instanceof ExceptionResponse ? (ExceptionResponse) results[i] : getResponse(commands[i], results[i]);
          }
+         return new SuccessfulResponse(responses);
       }
 
       return new SuccessfulResponse(returnValue);
    }
+
+   private Response getResponse(ReplicableCommand c, Object returnValue) {
+      if (c instanceof WriteCommand) {
+         // check if this is successful.
+         if (((WriteCommand) c).isSuccessful())
+            return new SuccessfulResponse(returnValue);
+         else
+            return UnsuccessfulResponse.INSTANCE;
+      }
+      return new SuccessfulResponse(returnValue);
+   }
 }
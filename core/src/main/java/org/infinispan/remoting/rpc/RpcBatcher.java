@@ -0,0 +1,354 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting.rpc;
+
+import org.infinispan.CacheException;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.MultipleRpcCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.remoting.RpcException;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Merges concurrent write commands bound for the same recipients into a single {@link MultipleRpcCommand}.
+ * <p/>
+ * A command is sent straight away unless an earlier message to the same recipients is still in flight: a synchronous
+ * message until all its responses have arrived, an asynchronous one for the batching latency after it was sent.
+ * Commands arriving in the meantime are queued, and sent together as soon as the message in flight completes, the
+ * batching latency expires or the maximum number of commands is reached, whichever comes first.  Batches therefore
+ * grow with the load, while a lightly loaded cache sends every command on its own without any added latency.
+ * <p/>
+ * Writes to the same key may be bound for different destinations, e.g. a synchronous write following an asynchronous
+ * one, or a put to the owners of a key followed by a putAll split per owner.  So before a command is sent or queued,
+ * the commands queued for any other destination sharing a recipient with it are sent, and no command overtakes an
+ * earlier one.
+ * <p/>
+ * The response of each recipient to a synchronous batch holds one response per command, and each caller only gets the
+ * responses to its own command.
+ *
+ * @since 5.1
+ */
+final class RpcBatcher {
+
+   private static final Log log = LogFactory.getLog(RpcBatcher.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final RpcManagerImpl rpcManager;
+   private final CommandsFactory commandsFactory;
+   private final ScheduledExecutorService scheduler;
+   private final long latency;
+   private final int maxCommands;
+   private final ResponseMode asyncResponseMode;
+   private final ConcurrentMap<Destination, Destination> destinations = new ConcurrentHashMap<Destination, Destination>();
+
+   RpcBatcher(RpcManagerImpl rpcManager, CommandsFactory commandsFactory, ScheduledExecutorService scheduler,
+              long latency, int maxCommands, ResponseMode asyncResponseMode) {
+      this.rpcManager = rpcManager;
+      this.commandsFactory = commandsFactory;
+      this.scheduler = scheduler;
+      this.latency = latency;
+      this.maxCommands = maxCommands;
+      this.asyncResponseMode = asyncResponseMode;
+   }
+
+   /**
+    * Only writes are batched, as they make up most of the traffic of a write-heavy cache.
+    */
+   static boolean isBatchable(ReplicableCommand command) {
+      return command instanceof WriteCommand;
+   }
+
+   /**
+    * Sends the command, possibly together with other commands for the same recipients.
+    *
+    * @return a future of the responses to this command, completed with an empty map for asynchronous calls once the
+    *         command has been sent
+    */
+   NotifyingFuture<Map<Address, Response>> submit(Collection<Address> recipients, ReplicableCommand command, boolean sync, long timeout) {
+      BatchedCommand batched = new BatchedCommand(command, timeout);
+      flushOverlapping(new Destination(recipients, sync));
+      while (true) {
+         Destination probe = new Destination(recipients, sync);
+         Destination destination = destinations.putIfAbsent(probe, probe);
+         if (destination == null) destination = probe;
+
+         List<BatchedCommand> toSend;
+         synchronized (destination) {
+            // an idle destination may have been discarded since we looked it up
+            if (destination.discarded) continue;
+            if (destination.inFlight == 0) {
+               destination.inFlight++;
+               toSend = Collections.singletonList(batched);
+            } else {
+               destination.queued.add(batched);
+               if (destination.queued.size() >= maxCommands) {
+                  toSend = takeQueued(destination);
+               } else {
+                  toSend = null;
+                  if (destination.queued.size() == 1)
+                     destination.flushTask = schedule(new Flush(destination), latency);
+               }
+            }
+         }
+         if (toSend != null) send(destination, toSend);
+         return batched.future;
+      }
+   }
+
+   /**
+    * Sends all the queued commands without waiting for the messages in flight.
+    */
+   void flush() {
+      for (Destination destination : destinations.values()) {
+         new Flush(destination).run();
+      }
+   }
+
+   /**
+    * Sends the commands queued for the other destinations sharing a recipient with the given one.
+    */
+   private void flushOverlapping(Destination destination) {
+      for (Destination other : destinations.values()) {
+         if (!other.equals(destination) && other.overlaps(destination)) new Flush(other).run();
+      }
+   }
+
+   /**
+    * Must be called while holding the lock of the destination.
+    */
+   private List<BatchedCommand> takeQueued(Destination destination) {
+      if (destination.flushTask != null) {
+         destination.flushTask.cancel(false);
+         destination.flushTask = null;
+      }
+      List<BatchedCommand> toSend = destination.queued;
+      destination.queued = new ArrayList<BatchedCommand>();
+      destination.inFlight++;
+      return toSend;
+   }
+
+   private void completed(Destination destination) {
+      List<BatchedCommand> toSend = null;
+      synchronized (destination) {
+         destination.inFlight--;
+         if (!destination.queued.isEmpty()) {
+            toSend = takeQueued(destination);
+         } else if (destination.inFlight == 0) {
+            destination.discarded = true;
+            destinations.remove(destination, destination);
+         }
+      }
+      if (toSend != null) send(destination, toSend);
+   }
+
+   private void send(final Destination destination, final List<BatchedCommand> batch) {
+      ReplicableCommand command;
+      long timeout = 0;
+      if (batch.size() == 1) {
+         command = batch.get(0).command;
+         timeout = batch.get(0).timeout;
+      } else {
+         List<ReplicableCommand> commands = new ArrayList<ReplicableCommand>(batch.size());
+         for (BatchedCommand batched : batch) {
+            commands.add(batched.command);
+            timeout = Math.max(timeout, batched.timeout);
+         }
+         command = commandsFactory.buildReplicateCommand(commands);
+      }
+      if (trace) log.tracef("Sending %d command(s) to %s", batch.size(), destination);
+
+      if (destination.sync) {
+         rpcManager.invokeRemotelyUnbatched(destination.recipients, command, timeout, false).attachListener(
+               new FutureListener<Map<Address, Response>>() {
+                  public void futureDone(Future<Map<Address, Response>> future) {
+                     try {
+                        dispatchResponses(batch, future);
+                     } finally {
+                        completed(destination);
+                     }
+                  }
+               });
+      } else {
+         try {
+            if (!(command instanceof CacheRpcCommand)) command = commandsFactory.buildSingleRpcCommand(command);
+            rpcManager.invokeRemotely(destination.recipients, command, asyncResponseMode, timeout);
+         } catch (Throwable t) {
+            log.failedReplicatingBatch(batch.size(), t);
+         }
+         for (BatchedCommand batched : batch) batched.future.set(Collections.<Address, Response>emptyMap());
+         // keep queueing behind this message for the batching latency
+         schedule(new Runnable() {
+            public void run() {
+               completed(destination);
+            }
+         }, latency);
+      }
+   }
+
+   private void dispatchResponses(List<BatchedCommand> batch, Future<Map<Address, Response>> future) {
+      Map<Address, Response> responses;
+      try {
+         responses = future.get();
+      } catch (ExecutionException e) {
+         for (BatchedCommand batched : batch) batched.future.setException(e.getCause());
+         return;
+      } catch (Throwable t) {
+         for (BatchedCommand batched : batch) batched.future.setException(t);
+         return;
+      }
+
+      if (batch.size() == 1) {
+         batch.get(0).future.set(responses);
+         return;
+      }
+      for (int i = 0; i < batch.size(); i++) {
+         Map<Address, Response> ownResponses = new HashMap<Address, Response>(responses.size() * 4 / 3 + 1);
+         Exception failure = null;
+         for (Map.Entry<Address, Response> e : responses.entrySet()) {
+            Response response = e.getValue();
+            if (response instanceof SuccessfulResponse && ((SuccessfulResponse) response).getResponseValue() instanceof Response[]) {
+               response = ((Response[]) ((SuccessfulResponse) response).getResponseValue())[i];
+               // as for a command sent on its own, application exceptions are thrown and RpcExceptions returned
+               if (response instanceof ExceptionResponse) {
+                  Exception exception = ((ExceptionResponse) response).getException();
+                  if (!(exception instanceof RpcException)) failure = exception;
+               }
+            }
+            if (response != null) ownResponses.put(e.getKey(), response);
+         }
+         SettableNotifyingFuture<Map<Address, Response>> own = batch.get(i).future;
+         if (failure == null)
+            own.set(ownResponses);
+         else
+            own.setException(failure instanceof CacheException ? failure : new CacheException(failure));
+      }
+   }
+
+   private ScheduledFuture<?> schedule(Runnable task, long delay) {
+      try {
+         return scheduler.schedule(task, delay, MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+         // shutting down, don't hold anything back
+         task.run();
+         return null;
+      }
+   }
+
+   private final class Flush implements Runnable {
+      private final Destination destination;
+
+      Flush(Destination destination) {
+         this.destination = destination;
+      }
+
+      public void run() {
+         List<BatchedCommand> toSend;
+         synchronized (destination) {
+            if (destination.queued.isEmpty()) return;
+            toSend = takeQueued(destination);
+         }
+         send(destination, toSend);
+      }
+   }
+
+   private static final class BatchedCommand {
+      final ReplicableCommand command;
+      final long timeout;
+      final SettableNotifyingFuture<Map<Address, Response>> future = new SettableNotifyingFuture<Map<Address, Response>>();
+
+      BatchedCommand(ReplicableCommand command, long timeout) {
+         this.command = command;
+         this.timeout = timeout;
+      }
+   }
+
+   /**
+    * The commands queued for a set of recipients.  All fields but the recipients and sync flag are guarded by the
+    * instance's lock.
+    */
+   private static final class Destination {
+      final Collection<Address> recipients;
+      final Set<Address> recipientSet;
+      final boolean sync;
+      int inFlight;
+      boolean discarded;
+      List<BatchedCommand> queued = new ArrayList<BatchedCommand>();
+      ScheduledFuture<?> flushTask;
+
+      Destination(Collection<Address> recipients, boolean sync) {
+         this.recipients = recipients;
+         this.recipientSet = recipients == null ? null : new HashSet<Address>(recipients);
+         this.sync = sync;
+      }
+
+      boolean overlaps(Destination other) {
+         return recipientSet == null || other.recipientSet == null || !Collections.disjoint(recipientSet, other.recipientSet);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof Destination)) return false;
+         Destination that = (Destination) o;
+         return sync == that.sync && (recipientSet == null ? that.recipientSet == null : recipientSet.equals(that.recipientSet));
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * (recipientSet == null ? 0 : recipientSet.hashCode()) + (sync ? 1 : 0);
+      }
+
+      @Override
+      public String toString() {
+         return "Destination{recipients=" + (recipients == null ? "all" : recipients) + ", sync=" + sync + "}";
+      }
+   }
+}
@@ -27,6 +27,7 @@ import org.infinispan.remoting.RpcException;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 
 import java.util.Collection;
@@ -106,8 +107,8 @@ public interface RpcManager {
 
    /**
     * The same as {@link #broadcastRpcCommand(org.infinispan.commands.ReplicableCommand, boolean)} except that the task
-    * is passed to the transport executor and a Future is returned.  The transport always deals with this
-    * synchronously.
+    * is sent without waiting for the responses and the future is completed once they have all arrived.  The transport
+    * always deals with this synchronously.
     *
     * @param rpc    command to execute remotely
     * @param future the future which will be passed back to the user
@@ -116,8 +117,8 @@ public interface RpcManager {
 
    /**
     * The same as {@link #broadcastRpcCommand(org.infinispan.commands.ReplicableCommand, boolean, boolean)} except that
-    * the task is passed to the transport executor and a Future is returned.  The transport always deals with this
-    * synchronously.
+    * the call is sent without waiting for the responses and the future is completed once they have all arrived.  The
+    * transport always deals with this synchronously.
     *
     * @param rpc              command to execute remotely
     * @param usePriorityQueue if true, a priority queue is used
@@ -149,8 +150,9 @@ public interface RpcManager {
 
    /**
     * The same as {@link #invokeRemotely(java.util.Collection, org.infinispan.commands.ReplicableCommand, boolean)}
-    * except that the task is passed to the transport executor and a Future is returned.  The transport always deals
-    * with this synchronously.
+    * except that the call is sent without waiting for the responses and the future is completed once they have all
+    * arrived, see {@link #invokeRemotelyAsync(java.util.Collection, org.infinispan.commands.ReplicableCommand, long)}.
+    * The transport always deals with this synchronously.
     *
     * @param recipients recipients to invoke remote call on
     * @param rpc        command to execute remotely
@@ -160,8 +162,9 @@ public interface RpcManager {
 
    /**
     * The same as {@link #invokeRemotely(java.util.Collection, org.infinispan.commands.ReplicableCommand, boolean)}
-    * except that the task is passed to the transport executor and a Future is returned.  The transport always deals
-    * with this synchronously.
+    * except that the call is sent without waiting for the responses and the future is completed once they have all
+    * arrived, see {@link #invokeRemotelyAsync(java.util.Collection, org.infinispan.commands.ReplicableCommand, long)}.
+    * The transport always deals with this synchronously.
     *
     * @param recipients       recipients to invoke remote call on
     * @param rpc              command to execute remotely
@@ -182,6 +185,51 @@ public interface RpcManager {
     */
    void invokeRemotelyInFuture(final Collection<Address> recipients, final ReplicableCommand rpc, final boolean usePriorityQueue, final NotifyingNotifiableFuture<Object> future, final long timeout);
 
+   /**
+    * Invokes a command synchronously on the given recipients without blocking the calling thread, or any other thread,
+    * until the responses arrive.  The returned future is completed by the transport as soon as the last response has
+    * been received, so nothing is parked on the call while it is in progress.  Failures, including timeouts and
+    * exceptions returned by the recipients, complete the future exceptionally with the exception {@link
+    * #invokeRemotely(java.util.Collection, org.infinispan.commands.ReplicableCommand, boolean, boolean)} would
+    * have thrown.
+    *
+    * @param recipients recipients to invoke remote call on, or null to broadcast the call
+    * @param rpc        command to execute remotely
+    * @param timeout    after which to give up (in millis)
+    * @return a future of the responses, keyed by the address of the node that sent them
+    */
+   NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout);
+
+   /**
+    * The same as {@link #invokeRemotelyAsync(java.util.Collection, org.infinispan.commands.ReplicableCommand, long)},
+    * but optionally subjects the call to the transport's flow control, so that a sender that produces messages faster
+    * than the recipients can process them is slowed down instead of filling up their queues.  Meant for bulk
+    * transfers, such as state transfer; calls on the path of a cache operation should not be throttled.
+    *
+    * @param recipients  recipients to invoke remote call on, or null to broadcast the call
+    * @param rpc         command to execute remotely
+    * @param timeout     after which to give up (in millis)
+    * @param flowControl if true, sending may block until the recipients have caught up
+    * @return a future of the responses, keyed by the address of the node that sent them
+    */
+   NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout,
+                                                               boolean flowControl);
+
+   /**
+    * The same as {@link #invokeRemotelyAsync(java.util.Collection, org.infinispan.commands.ReplicableCommand, long, boolean)},
+    * but lets the caller ask for the priority queue.  Such calls are never held back to be batched with other commands.
+    * Like all the calls that wait for responses, they are delivered out of band by the transport.
+    *
+    * @param recipients       recipients to invoke remote call on, or null to broadcast the call
+    * @param rpc              command to execute remotely
+    * @param timeout          after which to give up (in millis)
+    * @param usePriorityQueue if true, the call is sent on its own, right away
+    * @param flowControl      if true, sending may block until the recipients have caught up
+    * @return a future of the responses, keyed by the address of the node that sent them
+    */
+   NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout,
+                                                               boolean usePriorityQueue, boolean flowControl);
+
    /**
     * @return a reference to the underlying transport.
     */
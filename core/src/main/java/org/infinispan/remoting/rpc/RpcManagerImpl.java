@@ -40,7 +40,10 @@ import org.infinispan.remoting.RpcException;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
@@ -56,12 +59,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
-import static org.infinispan.factories.KnownComponentNames.ASYNC_TRANSPORT_EXECUTOR;
+import static org.infinispan.factories.KnownComponentNames.ASYNC_REPLICATION_QUEUE_EXECUTOR;
 import static org.infinispan.factories.KnownComponentNames.CACHE_MARSHALLER;
 
 /**
@@ -91,33 +94,48 @@ public class RpcManagerImpl implements RpcManager {
    private boolean stateTransferEnabled;
    private Configuration configuration;
    private ReplicationQueue replicationQueue;
-   private ExecutorService asyncExecutor;
    private CommandsFactory cf;
    private StreamingMarshaller marshaller;
+   private ScheduledExecutorService scheduledExecutor;
+   private RpcBatcher batcher;
 
 
    @Inject
    public void injectDependencies(Transport t, Configuration configuration, ReplicationQueue replicationQueue, CommandsFactory cf,
-                                  @ComponentName(ASYNC_TRANSPORT_EXECUTOR) ExecutorService e,
-                                  @ComponentName(CACHE_MARSHALLER) StreamingMarshaller marshaller) {
+                                  @ComponentName(CACHE_MARSHALLER) StreamingMarshaller marshaller,
+                                  @ComponentName(ASYNC_REPLICATION_QUEUE_EXECUTOR) ScheduledExecutorService scheduledExecutor) {
       this.t = t;
       this.configuration = configuration;
       this.replicationQueue = replicationQueue;
-      this.asyncExecutor = e;
       this.cf = cf;
       this.marshaller = marshaller;
+      this.scheduledExecutor = scheduledExecutor;
    }
 
    @Start(priority = 9)
    private void start() {
       stateTransferEnabled = configuration.isStateTransferEnabled();
       statisticsEnabled = configuration.isExposeJmxStatistics();
+      if (configuration.getRpcBatchingLatency() > 0) {
+         batcher = new RpcBatcher(this, cf, scheduledExecutor, configuration.getRpcBatchingLatency(),
+                                  configuration.getRpcBatchingMaxCommands(), ResponseMode.getAsyncResponseMode(configuration));
+      }
+   }
+
+   @Stop(priority = 9)
+   private void stop() {
+      // don't leave any batched command behind
+      if (batcher != null) batcher.flush();
    }
 
    private boolean useReplicationQueue(boolean sync) {
       return !sync && replicationQueue != null && replicationQueue.isEnabled();
    }
 
+   private boolean useBatching(ReplicableCommand rpc, boolean usePriorityQueue) {
+      return batcher != null && !usePriorityQueue && RpcBatcher.isBatchable(rpc);
+   }
+
    public final Map<Address, Response> invokeRemotely(Collection<Address> recipients, ReplicableCommand rpcCommand, ResponseMode mode, long timeout, boolean usePriorityQueue, ResponseFilter responseFilter) {
       List<Address> members = t.getMembers();
       if (members.size() < 2) {
@@ -127,27 +145,15 @@ public class RpcManagerImpl implements RpcManager {
       } else {
          long startTime = 0;
          if (statisticsEnabled) startTime = System.currentTimeMillis();
+         Map<Address, Response> result;
          try {
-            Map<Address, Response> result = t.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, stateTransferEnabled);
-            if (isStatisticsEnabled()) replicationCount.incrementAndGet();
-            return result;
-         } catch (CacheException e) {
-            if (log.isTraceEnabled()) {
-               log.trace("replication exception: ", e);
-            }
-
-            if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
-            throw e;
+            result = t.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, stateTransferEnabled);
          } catch (Throwable th) {
-            log.unexpectedErrorReplicating(th);
-            if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
-            throw new CacheException(th);
-         } finally {
-            if (statisticsEnabled) {
-               long timeTaken = System.currentTimeMillis() - startTime;
-               totalReplicationTime.getAndAdd(timeTaken);
-            }
+            throw replicationFailed(th, startTime);
          }
+         if (isStatisticsEnabled()) replicationCount.incrementAndGet();
+         recordReplicationTime(startTime);
+         return result;
       }
    }
 
@@ -193,6 +199,13 @@ public class RpcManagerImpl implements RpcManager {
       if (useReplicationQueue(sync)) {
          replicationQueue.add(rpc);
          return null;
+      } else if (useBatching(rpc, usePriorityQueue)) {
+         NotifyingFuture<Map<Address, Response>> future = batcher.submit(recipients, rpc, sync, timeout);
+         if (!sync) return Collections.emptyMap();
+         Map<Address, Response> rsps = waitForResponses(future);
+         if (trace) log.tracef("Response(s) to %s is %s", rpc, rsps);
+         checkResponses(rsps);
+         return rsps;
       } else {
          if (!(rpc instanceof CacheRpcCommand)) {
             rpc = cf.buildSingleRpcCommand(rpc);
@@ -212,28 +225,109 @@ public class RpcManagerImpl implements RpcManager {
       invokeRemotelyInFuture(recipients, rpc, usePriorityQueue, l, configuration.getSyncReplTimeout());
    }
 
+   @SuppressWarnings("unchecked")
    public final void invokeRemotelyInFuture(final Collection<Address> recipients, final ReplicableCommand rpc, final boolean usePriorityQueue, final NotifyingNotifiableFuture<Object> l, final long timeout) {
       if (trace) log.tracef("%s invoking in future call %s to recipient list %s", t.getAddress(), rpc, recipients);
-      final CountDownLatch futureSet = new CountDownLatch(1);
-      Callable<Object> c = new Callable<Object>() {
-         public Object call() throws Exception {
-            Object result = null;
+      NotifyingFuture<Map<Address, Response>> future = invokeRemotelyAsync(recipients, rpc, timeout, usePriorityQueue, false);
+      // the network future has to be set before the listener can call notifyDone()
+      l.setNetworkFuture((Future<Object>) (Future<?>) future);
+      future.attachListener(new FutureListener<Map<Address, Response>>() {
+         public void futureDone(Future<Map<Address, Response>> f) {
+            l.notifyDone();
+         }
+      });
+   }
+
+   public final NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout) {
+      return invokeRemotelyAsync(recipients, rpc, timeout, false);
+   }
+
+   public final NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout,
+                                                                            boolean flowControl) {
+      return invokeRemotelyAsync(recipients, rpc, timeout, false, flowControl);
+   }
+
+   public final NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout,
+                                                                            boolean usePriorityQueue, boolean flowControl) {
+      if (!flowControl && useBatching(rpc, usePriorityQueue)) return batcher.submit(recipients, rpc, true, timeout);
+      return invokeRemotelyUnbatched(recipients, rpc, timeout, flowControl);
+   }
+
+   /**
+    * Sends the command on its own, without giving the batcher a chance to merge it with other commands.
+    */
+   final NotifyingFuture<Map<Address, Response>> invokeRemotelyUnbatched(Collection<Address> recipients, ReplicableCommand rpc, long timeout,
+                                                                         boolean flowControl) {
+      if (trace) log.tracef("%s invoking asynchronously call %s to recipient list %s", t.getAddress(), rpc, recipients);
+      final SettableNotifyingFuture<Map<Address, Response>> result = new SettableNotifyingFuture<Map<Address, Response>>();
+      if (t.getMembers().size() < 2) {
+         if (log.isDebugEnabled())
+            log.debug("We're the only member in the cluster; Don't invoke remotely.");
+         result.set(Collections.<Address, Response>emptyMap());
+         return result;
+      }
+
+      if (!(rpc instanceof CacheRpcCommand)) {
+         rpc = cf.buildSingleRpcCommand(rpc);
+      }
+      final ReplicableCommand command = rpc;
+      final long startTime = statisticsEnabled ? System.currentTimeMillis() : 0;
+      final NotifyingFuture<Map<Address, Response>> rspsFuture;
+      try {
+         rspsFuture = t.invokeRemotelyAsync(recipients, command, timeout, flowControl);
+      } catch (Throwable th) {
+         result.setException(replicationFailed(th, startTime));
+         return result;
+      }
+
+      rspsFuture.attachListener(new FutureListener<Map<Address, Response>>() {
+         public void futureDone(Future<Map<Address, Response>> future) {
+            Map<Address, Response> rsps;
             try {
-               result = invokeRemotely(recipients, rpc, true, usePriorityQueue, timeout);           
-            } finally {
-               try {
-                  futureSet.await();
-               } catch (InterruptedException e) {
-                  Thread.currentThread().interrupt();
-               } finally {
-                  l.notifyDone();
-               }
+               rsps = future.get();
+            } catch (ExecutionException e) {
+               result.setException(replicationFailed(e.getCause(), startTime));
+               return;
+            } catch (Throwable th) {
+               result.setException(replicationFailed(th, startTime));
+               return;
+            }
+            if (isStatisticsEnabled()) replicationCount.incrementAndGet();
+            recordReplicationTime(startTime);
+            if (trace) log.tracef("Response(s) to %s is %s", command, rsps);
+            try {
+               checkResponses(rsps);
+               result.set(rsps);
+            } catch (RpcException e) {
+               result.setException(e);
             }
-            return result;
          }
-      };
-      l.setNetworkFuture(asyncExecutor.submit(c));
-      futureSet.countDown();      
+      });
+      return result;
+   }
+
+   /**
+    * Records a failed replication and returns the exception to report it with.
+    */
+   private CacheException replicationFailed(Throwable th, long startTime) {
+      CacheException e;
+      if (th instanceof CacheException) {
+         if (trace) log.trace("replication exception: ", th);
+         e = (CacheException) th;
+      } else {
+         log.unexpectedErrorReplicating(th);
+         e = new CacheException(th);
+      }
+      if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+      recordReplicationTime(startTime);
+      return e;
+   }
+
+   private void recordReplicationTime(long startTime) {
+      if (statisticsEnabled) {
+         long timeTaken = System.currentTimeMillis() - startTime;
+         totalReplicationTime.getAndAdd(timeTaken);
+      }
    }
 
    public Transport getTransport() {
@@ -244,6 +338,19 @@ public class RpcManagerImpl implements RpcManager {
       return sync ? ResponseMode.SYNCHRONOUS : ResponseMode.getAsyncResponseMode(configuration);
    }
 
+   private Map<Address, Response> waitForResponses(Future<Map<Address, Response>> future) {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException(e);
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+         throw new CacheException(cause);
+      }
+   }
+
    /**
     * Checks whether any of the responses are exceptions. If yes, re-throws them (as exceptions or runtime exceptions).
     */
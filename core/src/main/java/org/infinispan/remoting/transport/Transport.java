@@ -38,6 +38,7 @@ import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.rpc.ResponseFilter;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.statetransfer.StateTransferException;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.logging.Log;
 
 import java.util.Collection;
@@ -93,6 +94,29 @@ public interface Transport extends Lifecycle {
    Map<Address, Response> invokeRemotely(Collection<Address> recipients, ReplicableCommand rpcCommand, ResponseMode mode, long timeout,
                                  boolean usePriorityQueue, ResponseFilter responseFilter, boolean supportReplay) throws Exception;
 
+   /**
+    * Invokes an RPC call on other caches in the cluster and waits for all of their responses, like
+    * {@link #invokeRemotely(java.util.Collection, org.infinispan.commands.ReplicableCommand, org.infinispan.remoting.rpc.ResponseMode, long, boolean, org.infinispan.remoting.rpc.ResponseFilter, boolean)}
+    * with {@link ResponseMode#SYNCHRONOUS}, but without blocking any thread while the responses are outstanding.
+    * <p/>
+    * The returned future is completed by the transport itself, on the thread that delivers the last response or on
+    * the transport's timer thread if the timeout expires first. Failures that the synchronous call would have thrown,
+    * such as a {@link org.infinispan.util.concurrent.TimeoutException} or a
+    * {@link org.infinispan.remoting.transport.jgroups.SuspectException}, complete the future exceptionally.
+    * Replay of ignored requests is not supported.
+    *
+    * @param recipients a list of Addresses to invoke the call on.  If this is null, the call is broadcast to the entire
+    *                   cluster.
+    * @param rpcCommand the cache command to invoke
+    * @param timeout    a timeout after which the future is completed with a replication exception.
+    * @param flowControl if true, the messages are subject to the transport's flow control, and sending may block until
+    *                    the recipients have caught up.  May not be supported by all implementations.
+    * @return a future of the map of responses from each member contacted.
+    * @throws Exception if the call could not be sent at all.
+    */
+   NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                               long timeout, boolean flowControl) throws Exception;
+
    /**
     * @return true if the current Channel is the coordinator of the cluster.
     */
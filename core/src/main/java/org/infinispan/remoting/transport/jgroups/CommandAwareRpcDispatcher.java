@@ -32,12 +32,14 @@ import org.infinispan.remoting.responses.ExtendedResponse;
 import org.infinispan.remoting.responses.RequestIgnoredResponse;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.jgroups.Address;
 import org.jgroups.Channel;
 import org.jgroups.Message;
+import org.jgroups.SuspectedException;
 import org.jgroups.blocks.RequestOptions;
 import org.jgroups.blocks.ResponseMode;
 import org.jgroups.blocks.RpcDispatcher;
@@ -49,6 +51,7 @@ import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
 
 import java.io.NotSerializableException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -56,6 +59,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -119,6 +124,55 @@ public class CommandAwareRpcDispatcher extends RpcDispatcher {
       }
    }
 
+   /**
+    * Unicasts the command to each destination, waiting for all the responses as {@link ResponseMode#GET_ALL} does, but
+    * returns straight away. The returned future is completed by the thread delivering the last response, or by the
+    * transport's timer once the timeout expires, in which case the destinations that have not responded are reported
+    * as not received. As with {@link #invokeRemoteCommands}, the future's value is null if no destination returned
+    * anything.
+    * <p/>
+    * Unlike the other synchronous calls, the messages may be subject to flow control, in which case sending blocks
+    * while the destinations are out of credits.
+    */
+   public SettableNotifyingFuture<RspList<Object>> invokeRemoteCommandsAsync(Collection<Address> dests, ReplicableCommand command,
+                                                                            long timeout, boolean oob, boolean flowControl) throws Exception {
+      Set<Address> targets = new HashSet<Address>(dests == null ? channel.getView().getMembers() : dests);
+      targets.remove(channel.getAddress()); // just in case
+      if (trace) log.tracef("Sending %s asynchronously to addresses %s", command, targets);
+
+      ResponseCollator collator = new ResponseCollator(targets.size());
+      if (targets.isEmpty()) {
+         collator.set(null);
+         return collator;
+      }
+
+      Buffer buf;
+      try {
+         buf = req_marshaller.objectToBuffer(command);
+      } catch (Exception e) {
+         throw new RuntimeException("Failure to marshal argument(s)", e);
+      }
+      RequestOptions opts = new RequestOptions();
+      opts.setMode(ResponseMode.GET_ALL);
+      opts.setTimeout(timeout);
+
+      try {
+         for (Address dest : targets) {
+            Message msg = new Message(dest);
+            msg.setBuffer(buf);
+            if (oob) msg.setFlag(Message.OOB);
+            msg.setFlag(Message.DONT_BUNDLE);
+            if (!flowControl) msg.setFlag(Message.NO_FC);
+            collator.watchFuture(sendMessageWithFuture(msg, opts), dest);
+         }
+      } catch (Exception e) {
+         collator.cancel(true);
+         throw e;
+      }
+      collator.scheduleTimeout(timeout);
+      return collator;
+   }
+
    private boolean containsOnlyNulls(RspList<Object> l) {
       for (Rsp r : l.values()) {
          if (r.getValue() != null || !r.wasReceived() || r.wasSuspected()) return false;
@@ -428,5 +482,105 @@ public class CommandAwareRpcDispatcher extends RpcDispatcher {
       }
 
    }
-}
+   /**
+    * Collects the responses of {@link #invokeRemoteCommandsAsync} as the futures of the individual unicasts complete,
+    * and completes itself once every destination has responded or the timeout has expired.
+    */
+   private class ResponseCollator extends SettableNotifyingFuture<RspList<Object>> implements FutureListener<Object>, Runnable {
+      final Map<Future<Object>, SenderContainer> futures = new ConcurrentHashMap<Future<Object>, SenderContainer>(4);
+      final RspList<Object> retval = new RspList<Object>();
+      int expectedResponses;
+      volatile Future<?> timeoutTask;
 
+      ResponseCollator(int expectedResponses) {
+         this.expectedResponses = expectedResponses;
+      }
+
+      void watchFuture(NotifyingFuture<Object> f, Address address) {
+         futures.put(f, new SenderContainer(address));
+         f.setListener(this);
+      }
+
+      void scheduleTimeout(long timeout) {
+         Future<?> task = channel.getProtocolStack().getTransport().getTimer().schedule(this, timeout, MILLISECONDS);
+         timeoutTask = task;
+         // the last response may have arrived before the task was published, see finish()
+         if (isDone()) task.cancel(false);
+      }
+
+      @Override
+      public void futureDone(Future<Object> future) {
+         SenderContainer sc = futures.get(future);
+         Address sender = sc.address;
+         Rsp<Object> rsp;
+         try {
+            Object response = future.get();
+            if (trace) log.tracef("Received response: %s from %s", response, sender);
+            rsp = new Rsp<Object>(sender, response);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         } catch (CancellationException e) {
+            // we gave up on this sender
+            return;
+         } catch (ExecutionException e) {
+            if (e.getCause() instanceof SuspectedException)
+               rsp = new Rsp<Object>(sender, true);
+            else
+               rsp = new Rsp<Object>(sender, (Object) e.getCause());
+         }
+
+         synchronized (this) {
+            if (sc.processed || expectedResponses == 0) {
+               // JGroups may notify a listener twice, see FutureCollator
+               if (trace) log.tracef("Not processing callback; already processed callback for sender %s", sender);
+               return;
+            }
+            sc.processed = true;
+            retval.put(sender, rsp);
+            if (--expectedResponses > 0) return;
+         }
+         finish();
+      }
+
+      /**
+       * Invoked by the transport's timer once the timeout has expired.
+       */
+      @Override
+      public void run() {
+         synchronized (this) {
+            if (expectedResponses == 0) return;
+            for (SenderContainer sc : futures.values()) {
+               if (!sc.processed) {
+                  sc.processed = true;
+                  retval.put(sc.address, new Rsp<Object>(sc.address));
+               }
+            }
+            expectedResponses = 0;
+         }
+         if (trace) log.tracef("Timed out waiting for responses from %s", futures.values());
+         finish();
+      }
+
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+         if (!super.cancel(mayInterruptIfRunning)) return false;
+         cancelOutstanding();
+         return true;
+      }
+
+      private void finish() {
+         set(retval.isEmpty() || containsOnlyNulls(retval) ? null : retval);
+         // only once done, so that either this or scheduleTimeout() cancels the timeout task
+         cancelOutstanding();
+      }
+
+      private void cancelOutstanding() {
+         Future<?> task = timeoutTask;
+         if (task != null) task.cancel(false);
+         for (Future<Object> f : futures.keySet()) {
+            if (!f.isDone()) f.cancel(true);
+         }
+      }
+   }
+}
@@ -38,6 +38,9 @@ import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.FileLookupFactory;
 import org.infinispan.util.TypedProperties;
 import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -66,7 +69,9 @@ import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static org.infinispan.factories.KnownComponentNames.GLOBAL_MARSHALLER;
 
@@ -404,13 +409,60 @@ public class JGroupsTransport extends AbstractTransport implements MembershipLis
 
       if (mode.isAsynchronous()) return Collections.emptyMap();// async case
 
+      return parseResponses(rsps, responseFilter != null);
+   }
+
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                      long timeout, boolean flowControl) throws Exception {
+      final SettableNotifyingFuture<Map<Address, Response>> result;
+      if (recipients != null && recipients.isEmpty()) {
+         // don't send if dest list is empty
+         log.trace("Destination list is empty: no need to send message");
+         result = new SettableNotifyingFuture<Map<Address, Response>>();
+         result.set(Collections.<Address, Response>emptyMap());
+         return result;
+      }
+
+      if (trace) log.tracef("dests=%s, command=%s, timeout=%s, sending asynchronously", recipients, rpcCommand, timeout);
+
+      if (recipients != null && !getMembers().containsAll(recipients)) {
+         throw new SuspectException("One or more nodes have left the cluster while replicating command " + rpcCommand);
+      }
+
+      // synchronous calls always use the OOB thread pool on the receiving side
+      final SettableNotifyingFuture<RspList<Object>> rspsFuture = dispatcher.invokeRemoteCommandsAsync(
+            toJGroupsAddressVector(recipients), rpcCommand, timeout, true, flowControl);
+      result = new SettableNotifyingFuture<Map<Address, Response>>() {
+         @Override
+         public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!super.cancel(mayInterruptIfRunning)) return false;
+            rspsFuture.cancel(mayInterruptIfRunning);
+            return true;
+         }
+      };
+      rspsFuture.attachListener(new FutureListener<RspList<Object>>() {
+         @Override
+         public void futureDone(Future<RspList<Object>> future) {
+            try {
+               result.set(parseResponses(future.get(), false));
+            } catch (ExecutionException e) {
+               result.setException(e.getCause());
+            } catch (Throwable t) {
+               result.setException(t);
+            }
+         }
+      });
+      return result;
+   }
+
+   private Map<Address, Response> parseResponses(RspList<Object> rsps, boolean usedResponseFilter) throws Exception {
       // short-circuit no-return-value calls.
       if (rsps == null) return Collections.emptyMap();
       Map<Address, Response> retval = new HashMap<Address, Response>(rsps.size());
 
       boolean noValidResponses = true;
       for (Rsp<Object> rsp : rsps.values()) {
-         noValidResponses = parseResponseAndAddToResponseList(rsp.getValue(), retval, rsp.wasSuspected(), rsp.wasReceived(), fromJGroupsAddress(rsp.getSender()), responseFilter != null) && noValidResponses;
+         noValidResponses = parseResponseAndAddToResponseList(rsp.getValue(), retval, rsp.wasSuspected(), rsp.wasReceived(), fromJGroupsAddress(rsp.getSender()), usedResponseFilter) && noValidResponses;
       }
 
       if (noValidResponses) throw new TimeoutException("Timed out waiting for valid responses!");
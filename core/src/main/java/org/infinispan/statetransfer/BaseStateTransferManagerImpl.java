@@ -40,11 +40,12 @@ import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
 import org.infinispan.notifications.cachemanagerlistener.annotation.Merged;
 import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
 import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
+import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
-import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.ReclosableLatch;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -53,6 +54,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -229,7 +231,7 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
    }
 
    @Override
-   public void applyState(Collection<InternalCacheEntry> state,
+   public void applyState(Collection<InternalCacheEntry> state, Collection<Integer> completedSegments,
                           Address sender, int viewId) throws InterruptedException {
       waitForStateTransferToStart(viewId);
       if (viewId < newViewId) {
@@ -247,12 +249,27 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
          try {
             PutKeyValueCommand put = cf.buildPutKeyValueCommand(e.getKey(), e.getValue(), e.getLifespan(), e.getMaxIdle(), ctx.getFlags());
             interceptorChain.invoke(ctx, put);
+            if (configuration.isUseVersioning()) {
+               // keep the version of the previous owner, the put gave the entry a local one
+               dataContainer.put(e.getKey(), e.getValue(), e.getVersion(), e.getLifespan(), e.getMaxIdle());
+            }
          } catch (Exception ee) {
             log.problemApplyingStateForKey(ee.getMessage(), e.getKey());
          }
       }
 
       if(trace) log.tracef("After applying state data container has %d keys", dataContainer.size());
+
+      if (completedSegments != null && !completedSegments.isEmpty()) {
+         if (trace) log.tracef("Received all the keys of segments %s from %s", completedSegments, sender);
+         segmentsReceived(viewId, completedSegments);
+      }
+   }
+
+   /**
+    * Called once all the keys of the given consistent hash segments have been applied.
+    */
+   protected void segmentsReceived(int viewId, Collection<Integer> segments) {
    }
 
    private Collection<Object> keys(Collection<InternalCacheEntry> state) {
@@ -323,16 +340,17 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
 
    public abstract CacheStore getCacheStoreForStateTransfer();
 
-   public void pushStateToNode(NotifyingNotifiableFuture<Object> stateTransferFuture, int viewId, Address target, Collection<InternalCacheEntry> state) throws PendingStateTransferException {
+   public NotifyingFuture<Map<Address, Response>> pushStateToNodes(int viewId, Collection<Address> targets, Collection<InternalCacheEntry> state,
+                                                                   Collection<Integer> completedSegments) throws PendingStateTransferException {
       checkForPendingRehash(viewId);
 
-      log.debugf("Pushing to node %s %d keys", target, state.size());
-      log.tracef("Pushing to node %s keys: %s", target, keys(state));
+      log.debugf("Pushing to nodes %s %d keys", targets, state.size());
+      log.tracef("Pushing to nodes %s keys: %s", targets, keys(state));
 
-      final StateTransferControlCommand cmd = cf.buildStateTransferCommand(StateTransferControlCommand.Type.APPLY_STATE, getAddress(), viewId, state);
+      final StateTransferControlCommand cmd = cf.buildStateTransferCommand(StateTransferControlCommand.Type.APPLY_STATE,
+                                                                           getAddress(), viewId, state, completedSegments);
 
-      rpcManager.invokeRemotelyInFuture(Collections.singleton(target), cmd,
-                                        false, stateTransferFuture, configuration.getRehashRpcTimeout());
+      return rpcManager.invokeRemotelyAsync(targets, cmd, configuration.getRehashRpcTimeout(), true);
    }
 
    public boolean isLastViewId(int viewId) {
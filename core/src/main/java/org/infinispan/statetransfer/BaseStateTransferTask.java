@@ -24,17 +24,23 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
+import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
-import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
-import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Push state from the existing members of the cluster to the new members.
@@ -43,6 +49,11 @@ import java.util.concurrent.ExecutionException;
 public abstract class BaseStateTransferTask implements Callable {
    private static final Log log = LogFactory.getLog(BaseStateTransferTask.class);
 
+   /**
+    * The maximum number of state chunks that may wait for an acknowledgement at any time.
+    */
+   static final int MAX_CHUNKS_IN_FLIGHT = 4;
+
    protected final Configuration configuration;
    protected final BaseStateTransferManagerImpl stateTransferManager;
    protected final StateTransferLock stateTransferLock;
@@ -88,21 +99,137 @@ public abstract class BaseStateTransferTask implements Callable {
 
    protected void pushState(Map<Address, Collection<InternalCacheEntry>> states)
          throws InterruptedException, ExecutionException, PendingStateTransferException {
-      NotifyingNotifiableFuture<Object> stateTransferFuture = new AggregatingNotifyingFutureImpl(null, states.size());
+      StatePusher pusher = new StatePusher();
       for (Map.Entry<Address, Collection<InternalCacheEntry>> entry : states.entrySet()) {
-         final Address target = entry.getKey();
-         Collection<InternalCacheEntry> state = entry.getValue();
-         stateTransferManager.pushStateToNode(stateTransferFuture, newViewId, target, state);
+         for (InternalCacheEntry ice : entry.getValue()) {
+            pusher.push(entry.getKey(), ice);
+         }
       }
+      pusher.finish();
+   }
 
-      // wait to see if all servers received the new state
-      // TODO we might want to retry the state transfer operation if it failed on some of the nodes and the view hasn't changed
-      try {
-         stateTransferFuture.get();
-      } catch (ExecutionException e) {
-         log.errorTransferringState(e);
-         throw e;
+   /**
+    * @return the maximum number of entries in a state transfer message
+    */
+   protected int getChunkSize() {
+      return configuration.getStateRetrievalChunkSize();
+   }
+
+   /**
+    * Pushes state to the new owners in chunks of at most {@link #getChunkSize()} entries, and doesn't let more than
+    * {@link #MAX_CHUNKS_IN_FLIGHT} chunks wait for an acknowledgement, so that neither this node nor the receivers
+    * ever hold more than a few chunks of state, however large the state is. The chunks are also subject to the
+    * transport's flow control, so this node can't push faster than the receivers can take the state.
+    * <p/>
+    * Entries pushed to the same set of nodes share their chunks, so a chunk is marshalled once however many nodes it
+    * goes to. A chunk is only sent when the next entry for the same nodes arrives, or when the push is finished, so a
+    * segment completed after its last entry has been added is always announced in the same message as that entry.
+    * <p/>
+    * The chunks are sent asynchronously, so they may be applied out of order. A chunk that announces completed segments
+    * is therefore only sent once all the chunks sent earlier to any of its targets have been acknowledged, otherwise a
+    * receiver could consider a segment complete and serve its keys before an earlier chunk of the segment was applied.
+    */
+   protected class StatePusher {
+      private final int chunkSize = getChunkSize();
+      private final Map<Collection<Address>, Chunk> chunks = new HashMap<Collection<Address>, Chunk>();
+      private final LinkedList<InFlightChunk> inFlight = new LinkedList<InFlightChunk>();
+
+      public void push(Address target, InternalCacheEntry entry)
+            throws InterruptedException, ExecutionException, PendingStateTransferException {
+         push(Collections.singleton(target), entry);
+      }
+
+      public void push(Collection<Address> targets, InternalCacheEntry entry)
+            throws InterruptedException, ExecutionException, PendingStateTransferException {
+         Chunk chunk = chunks.get(targets);
+         if (chunk != null && chunk.entries.size() >= chunkSize) {
+            send(targets, chunk);
+            chunk = null;
+         }
+         if (chunk == null) {
+            chunk = new Chunk();
+            chunks.put(targets, chunk);
+         }
+         chunk.entries.add(entry);
+      }
+
+      /**
+       * Announces that all the entries of <code>segment</code> that <code>targets</code> should receive from this
+       * node have been passed to {@link #push(java.util.Collection, InternalCacheEntry)}.
+       */
+      public void segmentCompleted(Collection<Address> targets, int segment) {
+         Chunk chunk = chunks.get(targets);
+         if (chunk == null) {
+            chunk = new Chunk();
+            chunks.put(targets, chunk);
+         }
+         chunk.completedSegments.add(segment);
+      }
+
+      public void finish() throws InterruptedException, ExecutionException, PendingStateTransferException {
+         for (Map.Entry<Collection<Address>, Chunk> e : chunks.entrySet()) {
+            send(e.getKey(), e.getValue());
+         }
+         chunks.clear();
+         // wait to see if all servers received the new state
+         // TODO we might want to retry the state transfer operation if it failed on some of the nodes and the view hasn't changed
+         while (!inFlight.isEmpty()) {
+            waitForOldestChunk();
+         }
+         log.debugf("Node finished pushing data for rehash %d.", newViewId);
+      }
+
+      private void send(Collection<Address> targets, Chunk chunk)
+            throws InterruptedException, ExecutionException, PendingStateTransferException {
+         while (inFlight.size() >= MAX_CHUNKS_IN_FLIGHT) {
+            waitForOldestChunk();
+         }
+         Collection<Integer> completedSegments = null;
+         if (!chunk.completedSegments.isEmpty()) {
+            completedSegments = chunk.completedSegments;
+            waitForChunksSentTo(targets);
+         }
+         inFlight.add(new InFlightChunk(targets, stateTransferManager.pushStateToNodes(newViewId, targets, chunk.entries, completedSegments)));
+      }
+
+      private void waitForOldestChunk() throws InterruptedException, ExecutionException {
+         waitFor(inFlight.removeFirst());
+      }
+
+      private void waitForChunksSentTo(Collection<Address> targets) throws InterruptedException, ExecutionException {
+         for (Iterator<InFlightChunk> it = inFlight.iterator(); it.hasNext(); ) {
+            InFlightChunk sent = it.next();
+            if (!Collections.disjoint(sent.targets, targets)) {
+               it.remove();
+               waitFor(sent);
+            }
+         }
+      }
+
+      private void waitFor(InFlightChunk sent) throws InterruptedException, ExecutionException {
+         try {
+            sent.future.get();
+         } catch (ExecutionException e) {
+            log.errorTransferringState(e);
+            for (InFlightChunk c : inFlight) c.future.cancel(false);
+            inFlight.clear();
+            throw e;
+         }
       }
-      log.debugf("Node finished pushing data for rehash %d.", newViewId);
+   }
+
+   private static class InFlightChunk {
+      final Collection<Address> targets;
+      final Future<Map<Address, Response>> future;
+
+      InFlightChunk(Collection<Address> targets, Future<Map<Address, Response>> future) {
+         this.targets = targets;
+         this.future = future;
+      }
+   }
+
+   private static class Chunk {
+      final List<InternalCacheEntry> entries = new ArrayList<InternalCacheEntry>();
+      final List<Integer> completedSegments = new ArrayList<Integer>();
    }
 }
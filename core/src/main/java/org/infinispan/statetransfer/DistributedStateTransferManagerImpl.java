@@ -24,14 +24,18 @@ import org.infinispan.context.InvocationContext;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import static org.infinispan.context.Flag.CACHE_MODE_LOCAL;
 import static org.infinispan.context.Flag.SKIP_LOCKING;
@@ -51,6 +55,8 @@ public class DistributedStateTransferManagerImpl extends BaseStateTransferManage
    private static final Log log = LogFactory.getLog(DistributedStateTransferManagerImpl.class);
 
    private DistributionManager dm;
+   // segments whose state this node has fully received during the latest state transfer
+   private volatile ReceivedSegments receivedSegments = new ReceivedSegments(-1);
 
    /**
     * Default constructor
@@ -66,6 +72,7 @@ public class DistributedStateTransferManagerImpl extends BaseStateTransferManage
 
 
    protected BaseStateTransferTask createStateTransferTask(int viewId, List<Address> members, boolean initialView) {
+      receivedSegments = new ReceivedSegments(viewId);
       return new DistributedStateTransferTask(rpcManager, configuration, dataContainer,
             this, dm, stateTransferLock, cacheNotifier, viewId, members, chOld, chNew, initialView);
    }
@@ -98,9 +105,33 @@ public class DistributedStateTransferManagerImpl extends BaseStateTransferManage
       return cacheLoaderManager.getCacheStore();
    }
 
+   @Override
+   protected void segmentsReceived(int viewId, Collection<Integer> segments) {
+      ReceivedSegments received = receivedSegments;
+      // segments pushed for an older view don't say anything about the current state transfer
+      if (received.viewId == viewId) received.segments.addAll(segments);
+   }
+
    public boolean isLocationInDoubt(Object key) {
-      return isStateTransferInProgress() && !chOld.locate(key, configuration.getNumOwners()).contains(getAddress())
-            && chNew.locate(key, configuration.getNumOwners()).contains(getAddress());
+      if (!isStateTransferInProgress()) return false;
+
+      ConsistentHash chNew = this.chNew;
+      if (!chNew.isKeyLocalToAddress(getAddress(), key, configuration.getNumOwners())
+            || chOld.isKeyLocalToAddress(getAddress(), key, configuration.getNumOwners()))
+         return false;
+
+      // we can serve the key as soon as its whole segment has arrived, without waiting for the rest of the state
+      return !(chNew instanceof SegmentedConsistentHash
+                     && receivedSegments.segments.contains(((SegmentedConsistentHash) chNew).getSegment(key)));
+   }
+
+   private static class ReceivedSegments {
+      final int viewId;
+      final Set<Integer> segments = new ConcurrentHashSet<Integer>();
+
+      ReceivedSegments(int viewId) {
+         this.viewId = viewId;
+      }
    }
 }
 
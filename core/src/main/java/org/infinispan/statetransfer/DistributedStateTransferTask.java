@@ -24,6 +24,7 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
@@ -39,9 +40,7 @@ import org.infinispan.util.logging.LogFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Task which handles view changes (joins, merges or leaves) and rebalances keys using a push based approach.
@@ -58,6 +57,8 @@ import java.util.Map;
  * - For K2, the old CH is A,B and the new CH is B,C
  * - B (since it is the backup owner and A left) pushes K2 to C
  * </pre>
+ * When both CHs are {@link SegmentedConsistentHash}es with the same segments, the owners are compared per segment
+ * instead of per key, and the state is pushed one segment at a time.
  *
  * @author Bela Ban
  * @author Dan Berindei <dan@infinispan.org>
@@ -116,25 +117,30 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
 
             int numOwners = configuration.getNumOwners();
 
-            // Contains the state to be pushed to various servers. The state is a hashmap of keys and values
-            final Map<Address, Collection<InternalCacheEntry>> states = new HashMap<Address, Collection<InternalCacheEntry>>();
-
-            for (InternalCacheEntry ice : dataContainer) {
-               rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, states, keysToRemove);
-            }
-
             // Only fetch the data from the cache store if the cache store is not shared
             CacheStore cacheStore = stateTransferManager.getCacheStoreForStateTransfer();
-            if (cacheStore != null) {
-               for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-                  rebalance(key, null, numOwners, chOld, chNew, cacheStore, states, keysToRemove);
-               }
+            if (cacheStore == null && trace) log.trace("No cache store or cache store is shared, not rebalancing stored keys");
+
+            if (chOld instanceof SegmentedConsistentHash && chNew instanceof SegmentedConsistentHash
+                  && ((SegmentedConsistentHash) chNew).hasSameSegments((SegmentedConsistentHash) chOld)) {
+               rebalanceSegments((SegmentedConsistentHash) chOld, (SegmentedConsistentHash) chNew, numOwners,
+                                 cacheStore, keysToRemove);
             } else {
-               if (trace) log.trace("No cache store or cache store is shared, not rebalancing stored keys");
-            }
+               // The state is pushed to the new owners in chunks while we iterate
+               StatePusher pusher = new StatePusher();
 
-            // Now for each server S in states.keys(): push states.get(S) to S via RPC
-            pushState(states);
+               for (InternalCacheEntry ice : dataContainer) {
+                  rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, pusher, keysToRemove);
+               }
+
+               if (cacheStore != null) {
+                  for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
+                     rebalance(key, null, numOwners, chOld, chNew, cacheStore, pusher, keysToRemove);
+                  }
+               }
+
+               pusher.finish();
+            }
          } else {
             if (!initialView) log.trace("Rehash not enabled, so not pushing state");
          }
@@ -172,7 +178,99 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
 
 
    /**
-    * Computes the list of old and new servers for a given key K and value V. Adds (K, V) to the <code>states</code> map
+    * Rebalances segment by segment when both consistent hashes split the keys into the same segments. The old and new
+    * owners are compared once per segment instead of once per key, keys of the segments that didn't change owners are
+    * skipped as soon as their segment is known, and the state is pushed one segment at a time, so the new owners can
+    * start serving a segment as soon as all its keys have arrived, see
+    * {@link DistributedStateTransferManagerImpl#isLocationInDoubt(Object)}.
+    */
+   private void rebalanceSegments(SegmentedConsistentHash chOld, SegmentedConsistentHash chNew, int numOwners,
+                                  CacheStore cacheStore, List<Object> keysToRemove) throws Exception {
+      // 1. Decide what to do with each segment
+      int numSegments = chNew.getNumSegments();
+      SegmentRebalance[] segments = new SegmentRebalance[numSegments];
+      int changedSegments = 0;
+      for (int segment = 0; segment < numSegments; segment++) {
+         List<Address> oldOwners = chOld.locateSegment(segment, numOwners);
+         List<Address> newOwners = chNew.locateSegment(segment, numOwners);
+         if (oldOwners.equals(newOwners))
+            continue;
+
+         changedSegments++;
+         List<Address> targets = Collections.emptyList();
+         if (self.equals(getPushingOwner(oldOwners, chNew))) {
+            targets = new ArrayList<Address>(newOwners);
+            targets.removeAll(oldOwners);
+         }
+         boolean remove = !newOwners.contains(self);
+         if (!targets.isEmpty() || remove)
+            segments[segment] = new SegmentRebalance(targets, remove);
+      }
+      log.debugf("%d of %d segments changed owners in rehash %d", changedSegments, numSegments, newViewId);
+
+      // 2. Group the keys of the segments we have to push or drop
+      for (InternalCacheEntry ice : dataContainer) {
+         SegmentRebalance sr = segments[chNew.getSegment(ice.getKey())];
+         if (sr == null) continue;
+         if (!sr.targets.isEmpty()) sr.entries.add(ice);
+         if (sr.remove) keysToRemove.add(ice.getKey());
+      }
+      if (cacheStore != null) {
+         for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
+            SegmentRebalance sr = segments[chNew.getSegment(key)];
+            if (sr == null) continue;
+            if (!sr.targets.isEmpty()) sr.storedKeys.add(key);
+            if (sr.remove) keysToRemove.add(key);
+         }
+      }
+
+      // 3. Push the segments one at a time, announcing each one once all its keys have been pushed
+      StatePusher pusher = new StatePusher();
+      for (int segment = 0; segment < numSegments; segment++) {
+         SegmentRebalance sr = segments[segment];
+         if (sr == null || sr.targets.isEmpty()) continue;
+
+         if (trace) log.tracef("Pushing segment %d with %d keys in memory and %d stored keys to %s",
+                               segment, sr.entries.size(), sr.storedKeys.size(), sr.targets);
+         for (InternalCacheEntry ice : sr.entries) {
+            pusher.push(sr.targets, ice);
+         }
+         for (Object key : sr.storedKeys) {
+            InternalCacheEntry ice = loadFromCacheStore(cacheStore, key);
+            if (ice != null) pusher.push(sr.targets, ice);
+         }
+         pusher.segmentCompleted(sr.targets, segment);
+         // the entries are referenced by the pusher's chunks now, don't keep them here as well
+         segments[segment] = null;
+      }
+      pusher.finish();
+   }
+
+   /**
+    * The pushing owner is the last node in the old owner list that's also in the new CH.
+    * It will only be null if all the old owners left the cluster.
+    */
+   private Address getPushingOwner(List<Address> oldOwners, ConsistentHash chNew) {
+      for (int i = oldOwners.size() - 1; i >= 0; i--) {
+         Address server = oldOwners.get(i);
+         if (chNew.getCaches().contains(server)) {
+            return server;
+         }
+      }
+      return null;
+   }
+
+   private InternalCacheEntry loadFromCacheStore(CacheStore cacheStore, Object key) {
+      try {
+         return cacheStore.load(key);
+      } catch (CacheLoaderException e) {
+         log.failedLoadingValueFromCacheStore(key);
+         return null;
+      }
+   }
+
+   /**
+    * Computes the list of old and new servers for a given key K and value V. Pushes (K, V) through the <code>pusher</code>
     * if K should be pushed to other servers. Adds K to the <code>keysToRemove</code> list if this node is no longer an
     * owner for K.
     *
@@ -182,11 +280,11 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
     * @param chOld        The old (current) consistent hash
     * @param chNew        The new consistent hash
     * @param cacheStore   If the value is <code>null</code>, try to load it from this cache store
-    * @param states       The result hashmap. Keys are servers, values are states (hashmaps) to be pushed to them
+    * @param pusher       The pusher that sends the state to the new owners
     * @param keysToRemove A list that the keys that we need to remove will be added to
     */
    private void rebalance(Object key, InternalCacheEntry value, int numOwners, ConsistentHash chOld, ConsistentHash chNew,
-                            CacheStore cacheStore, Map<Address, Collection<InternalCacheEntry>> states, List<Object> keysToRemove) {
+                            CacheStore cacheStore, StatePusher pusher, List<Object> keysToRemove) throws Exception {
       // 1. Get the old and new servers for key K
       List<Address> oldOwners = chOld.locate(key, numOwners);
       List<Address> newOwners = chNew.locate(key, numOwners);
@@ -196,15 +294,7 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
          return;
 
       // 3. The pushing server is the last node in the old owner list that's also in the new CH
-      // It will only be null if all the old owners left the cluster
-      Address pushingOwner = null;
-      for (int i = oldOwners.size() - 1; i >= 0; i--) {
-         Address server = oldOwners.get(i);
-         if (chNew.getCaches().contains(server)) {
-            pushingOwner = server;
-            break;
-         }
-      }
+      Address pushingOwner = getPushingOwner(oldOwners, chNew);
 
       if (trace) log.tracef("Rebalancing key %s from %s to %s, pushing owner is %s",
             key, oldOwners, newOwners, pushingOwner);
@@ -212,22 +302,14 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
       // 4. Push K to all the new servers which are *not* in the old servers list
       if (self.equals(pushingOwner)) {
          if (value == null) {
-            try {
-               value = cacheStore.load(key);
-            } catch (CacheLoaderException e) {
-               log.failedLoadingValueFromCacheStore(key);
-            }
+            value = loadFromCacheStore(cacheStore, key);
          }
 
-         for (Address server : newOwners) {
-            if (!oldOwners.contains(server)) { // server doesn't have K
-               Collection<InternalCacheEntry> map = states.get(server);
-               if (map == null) {
-                  map = new ArrayList<InternalCacheEntry>();
-                  states.put(server, map);
+         if (value != null) {
+            for (Address server : newOwners) {
+               if (!oldOwners.contains(server)) { // server doesn't have K
+                  pusher.push(server, value);
                }
-               if (value != null)
-                  map.add(value);
             }
          }
       }
@@ -238,4 +320,15 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
       }
    }
 
+   private static class SegmentRebalance {
+      final List<Address> targets;
+      final boolean remove;
+      final List<InternalCacheEntry> entries = new ArrayList<InternalCacheEntry>();
+      final List<Object> storedKeys = new ArrayList<Object>();
+
+      SegmentRebalance(List<Address> targets, boolean remove) {
+         this.targets = targets;
+         this.remove = remove;
+      }
+   }
 }
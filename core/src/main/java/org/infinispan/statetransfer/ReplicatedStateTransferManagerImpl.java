@@ -20,9 +20,11 @@ package org.infinispan.statetransfer;
 
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.TotalOrderManager;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -38,6 +40,8 @@ import java.util.List;
 public class ReplicatedStateTransferManagerImpl extends BaseStateTransferManagerImpl {
    private static final Log log = LogFactory.getLog(ReplicatedStateTransferManagerImpl.class);
 
+   private TotalOrderManager totalOrderManager;
+
    /**
     * Default constructor
     */
@@ -45,9 +49,14 @@ public class ReplicatedStateTransferManagerImpl extends BaseStateTransferManager
       super();
    }
 
+   @Inject
+   public void injectTotalOrderManager(TotalOrderManager totalOrderManager) {
+      this.totalOrderManager = totalOrderManager;
+   }
+
    protected ReplicatedStateTransferTask createStateTransferTask(int viewId, List<Address> members, boolean initialView) {
       return new ReplicatedStateTransferTask(rpcManager, configuration, dataContainer,
-            this, stateTransferLock, cacheNotifier, viewId, members, chOld, chNew, initialView);
+            this, stateTransferLock, cacheNotifier, totalOrderManager, viewId, members, chOld, chNew, initialView);
    }
 
    protected ConsistentHash createConsistentHash(List<Address> members) {
@@ -24,23 +24,22 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderTask;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
 import org.infinispan.remoting.MembershipArithmetic;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.jgroups.SuspectException;
-import org.infinispan.util.ReadOnlyDataContainerBackedKeySet;
+import org.infinispan.transaction.TotalOrderManager;
 import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Task which pushes keys to new nodes during join.
@@ -64,13 +63,16 @@ public class ReplicatedStateTransferTask extends BaseStateTransferTask {
    private static final Log log = LogFactory.getLog(ReplicatedStateTransferTask.class);
 
    private final ReplicatedStateTransferManagerImpl stateTransferManager;
+   private final TotalOrderManager totalOrderManager;
 
    public ReplicatedStateTransferTask(RpcManager rpcManager, Configuration configuration, DataContainer dataContainer,
                                       ReplicatedStateTransferManagerImpl stateTransferManager, StateTransferLock stateTransferLock,
-                                      CacheNotifier cacheNotifier, int newViewId, Collection<Address> members,
+                                      CacheNotifier cacheNotifier, TotalOrderManager totalOrderManager,
+                                      int newViewId, Collection<Address> members,
                                       ConsistentHash chOld, ConsistentHash chNew, boolean initialView) {
       super(stateTransferManager, rpcManager, stateTransferLock, cacheNotifier, configuration, dataContainer, members, newViewId, chNew, chOld, initialView);
       this.stateTransferManager = stateTransferManager;
+      this.totalOrderManager = totalOrderManager;
    }
 
 
@@ -89,6 +91,9 @@ public class ReplicatedStateTransferTask extends BaseStateTransferTask {
          // Don't need to log anything, all transactions will be blocked
          //distributionManager.getTransactionLogger().enable();
          stateTransferLock.blockNewTransactions();
+         // transactions committed in total order aren't blocked by the lock, but the sequencer waits for this state
+         // transfer to end before sequencing any in the new view: only those of the older views must be applied first
+         totalOrderManager.awaitEpoch(newViewId);
 
          Set<Address> joiners = MembershipArithmetic.getMembersJoined(chOld.getCaches(), chNew.getCaches());
          if (joiners.isEmpty()) {
@@ -97,30 +102,21 @@ public class ReplicatedStateTransferTask extends BaseStateTransferTask {
             log.tracef("Replicating: chOld = %s, chNew = %s", chOld, chNew);
 
             if (configuration.isStateTransferEnabled() && !initialView) {
-               // Contains the state to be pushed to various servers. The state is a hashmap of keys and values
-               final Collection<InternalCacheEntry> state = new ArrayList<InternalCacheEntry>();
-
+               // The state is streamed to all the joiners at once, so every chunk is marshalled and sent only once
+               StatePusher pusher = new StatePusher();
                for (InternalCacheEntry ice : dataContainer) {
-                  replicate(ice.getKey(), ice, chOld, chNew, null, state);
+                  replicate(ice.getKey(), ice, joiners, pusher);
                }
 
                // Only fetch the data from the cache store if the cache store is not shared
                CacheStore cacheStore = stateTransferManager.getCacheStoreForStateTransfer();
                if (cacheStore != null) {
-                  for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-                     replicate(key, null, chOld, chNew, cacheStore, state);
-                  }
+                  replicateStoredEntries(cacheStore, joiners, pusher);
                } else {
                   if (trace) log.trace("No cache store or cache store is shared, not replicating stored keys");
                }
 
-               // Now for each joiner S : push state to S via RPC
-               // TODO We are sending the same stuff to all the joiners, we should use multicast instead
-               final Map<Address, Collection<InternalCacheEntry>> states = new HashMap<Address, Collection<InternalCacheEntry>>();
-               for (Address joiner : joiners) {
-                  states.put(joiner, state);
-               }
-               pushState(states);
+               pusher.finish();
             } else {
                if (!initialView) log.trace("State transfer not enabled, so not pushing state");
             }
@@ -146,27 +142,53 @@ public class ReplicatedStateTransferTask extends BaseStateTransferTask {
                log.errorUnblockingTransactions(e);
             }
             stateTransferManager.endStateTransfer();
+            totalOrderManager.stateTransferCompleted(newViewId);
          }
       }
       log.debugf("Node %s completed rehash for view %d in %s!", self, newViewId,
             Util.prettyPrintTime(System.currentTimeMillis() - start));
    }
 
+   /**
+    * Streams the entries of the cache store that are not in the data container through the <code>pusher</code>,
+    * without loading the whole store in memory first.
+    */
+   private void replicateStoredEntries(CacheStore cacheStore, final Collection<Address> joiners, final StatePusher pusher)
+         throws InterruptedException, ExecutionException, PendingStateTransferException, CacheLoaderException {
+      try {
+         cacheStore.process(-1, new CacheLoaderTask() {
+            @Override
+            public boolean processEntry(InternalCacheEntry entry) throws CacheLoaderException {
+               // the data container has the most recent value of this key, and it's been pushed already
+               if (dataContainer.containsKey(entry.getKey())) return true;
+               try {
+                  replicate(entry.getKey(), entry, joiners, pusher);
+               } catch (Exception e) {
+                  throw new CacheLoaderException(e);
+               }
+               return true;
+            }
+         });
+      } catch (CacheLoaderException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+         if (cause instanceof ExecutionException) throw (ExecutionException) cause;
+         if (cause instanceof PendingStateTransferException) throw (PendingStateTransferException) cause;
+         throw e;
+      }
+   }
 
    /**
-    * Computes the list of old and new servers for a given key K and value V. Adds (K, V) to the <code>states</code> map
-    * if K should be pushed to other servers. Adds K to the <code>keysToRemove</code> list if this node is no longer an
-    * owner for K.
+    * Pushes the entry for key K through the <code>pusher</code> to all the joiners, if this node is the pushing owner
+    * of K, i.e. its primary owner in the old consistent hash.
     *
-    * @param key          The key
-    * @param value        The value; <code>null</code> if the value is not in the data container
-    * @param chOld        The old (current) consistent hash
-    * @param chNew        The new consistent hash
-    * @param cacheStore   If the value is <code>null</code>, try to load it from this cache store
-    * @param state       The result collection of entries to be pushed to the joiners
+    * @param key     The key
+    * @param value   The entry to push
+    * @param joiners The nodes that joined in this view
+    * @param pusher  The pusher that sends the state to the joiners
     */
-   private void replicate(Object key, InternalCacheEntry value, ConsistentHash chOld, ConsistentHash chNew,
-                          CacheStore cacheStore, Collection<InternalCacheEntry> state) {
+   private void replicate(Object key, InternalCacheEntry value, Collection<Address> joiners, StatePusher pusher)
+         throws InterruptedException, ExecutionException, PendingStateTransferException {
       // 1. Get the old primary owner for key K
       // That node will be the "pushing owner" for key K
       List<Address> oldOwners = chOld.locate(key, 1);
@@ -177,16 +199,7 @@ public class ReplicatedStateTransferTask extends BaseStateTransferTask {
 
       // 2. Push K to all the new nodes
       if (self.equals(pushingOwner)) {
-         if (value == null) {
-            try {
-               value = cacheStore.load(key);
-            } catch (CacheLoaderException e) {
-               log.failedLoadingValueFromCacheStore(key);
-            }
-         }
-
-         if (value != null)
-            state.add(value);
+         pusher.push(joiners, value);
       }
    }
 
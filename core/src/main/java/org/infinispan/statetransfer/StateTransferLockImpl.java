@@ -64,6 +64,9 @@ public class StateTransferLockImpl implements StateTransferLock {
 
    private long lockTimeout;
    private boolean eagerLockingEnabled;
+   // transactions committed in total order are applied by a single thread in the order the sequencer has set, and the
+   // state transfer waits for them itself, so they must never be rejected or delayed here
+   private boolean totalOrderCommit;
 
    public StateTransferLockImpl() {
    }
@@ -71,6 +74,7 @@ public class StateTransferLockImpl implements StateTransferLock {
    @Inject
    public void injectDependencies(Configuration config) {
       this.lockTimeout = config.getRehashWaitTime();
+      this.totalOrderCommit = config.isTotalOrderCommit();
    }
 
    @Override
@@ -85,7 +89,7 @@ public class StateTransferLockImpl implements StateTransferLock {
 
    @Override
    public void releaseForCommand(TxInvocationContext ctx, PrepareCommand command) {
-      if (!ctx.hasFlag(Flag.SKIP_LOCKING))
+      if (!ctx.hasFlag(Flag.SKIP_LOCKING) && !totalOrderCommit)
          releaseLockForTx();
    }
 
@@ -117,7 +121,7 @@ public class StateTransferLockImpl implements StateTransferLock {
 
    @Override
    public boolean acquireForCommand(TxInvocationContext ctx, PrepareCommand command) throws InterruptedException, TimeoutException {
-      if (ctx.hasFlag(Flag.SKIP_LOCKING))
+      if (ctx.hasFlag(Flag.SKIP_LOCKING) || totalOrderCommit)
          return true;
 
       return acquireLockForTx(ctx);
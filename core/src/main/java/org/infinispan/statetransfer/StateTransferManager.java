@@ -57,7 +57,13 @@ public interface StateTransferManager {
 
    public void waitForStateTransferToComplete() throws InterruptedException;
 
-   void applyState(Collection<InternalCacheEntry> state, Address sender, int viewId) throws InterruptedException;
+   /**
+    * Applies state pushed by another node.
+    *
+    * @param completedSegments consistent hash segments whose state is complete once <code>state</code> has been
+    *                          applied, may be <code>null</code>
+    */
+   void applyState(Collection<InternalCacheEntry> state, Collection<Integer> completedSegments, Address sender, int viewId) throws InterruptedException;
 
    void nodeCompletedPush(Address sender, int viewId);
 
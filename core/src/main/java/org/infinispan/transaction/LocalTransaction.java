@@ -59,6 +59,8 @@ public abstract class LocalTransaction extends AbstractCacheTransaction {
    /** mark as volatile as this might be set from the tx thread code on view change*/
    private volatile boolean isMarkedForRollback;
 
+   private volatile boolean committedInPrepare;
+
    private final Transaction transaction;
 
    public LocalTransaction(Transaction transaction, GlobalTransaction tx) {
@@ -112,6 +114,17 @@ public abstract class LocalTransaction extends AbstractCacheTransaction {
       return isMarkedForRollback;
    }
 
+   /**
+    * Marks the transaction as committed by a one phase prepare, so that a later commit request has nothing to do.
+    */
+   public void markCommittedInPrepare() {
+      committedInPrepare = true;
+   }
+
+   public final boolean isCommittedInPrepare() {
+      return committedInPrepare;
+   }
+
    public Transaction getTransaction() {
       return transaction;
    }
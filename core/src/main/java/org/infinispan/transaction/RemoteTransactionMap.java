@@ -0,0 +1,267 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction;
+
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.xa.GlobalTransaction;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The {@link RemoteTransaction}s of a {@link TransactionTable}, partitioned by the node they originate on.
+ * <p/>
+ * Every originator gets its own concurrent map, so the transactions of a node that left the cluster can be found
+ * without going through the transactions of all the other nodes, and so that the remote transactions of different
+ * originators do not contend with each other.  Lookups and updates are as cheap as with a single map, apart from an
+ * extra lookup of the originator's partition.  Iterators are weakly consistent, like those of {@link
+ * ConcurrentHashMap}.
+ * <p/>
+ * A partition is only dropped once it is empty, and it is retired under a lock that every insertion into it shares, so
+ * an insertion racing with the removal of its partition is never lost: it either lands before the partition is
+ * checked for emptiness, which then keeps it, or finds the partition retired and retries against a fresh one.
+ *
+ * @since 5.1
+ */
+public class RemoteTransactionMap extends AbstractMap<GlobalTransaction, RemoteTransaction>
+      implements ConcurrentMap<GlobalTransaction, RemoteTransaction> {
+
+   /**
+    * Stands for the originator of transactions without an address, which a {@link ConcurrentHashMap} can't hold.
+    */
+   private static final Object NO_ADDRESS = new Object();
+
+   private final ConcurrentMap<Object, Partition> partitions = new ConcurrentHashMap<Object, Partition>();
+
+   private final EntrySet entrySet = new EntrySet();
+
+   /**
+    * @return the ids of the transactions originating on the given node, as a live view
+    */
+   public Set<GlobalTransaction> getTransactionsOriginatedBy(Address originator) {
+      Partition partition = partitions.get(partitionKey(originator));
+      return partition == null ? Collections.<GlobalTransaction>emptySet() : partition.keySet();
+   }
+
+   /**
+    * Drops the partition of the given node, provided none of its transactions is left.  To be called once the
+    * transactions of a node that left the cluster have been cleaned up.
+    */
+   public void removeOriginatorIfEmpty(Address originator) {
+      Object key = partitionKey(originator);
+      Partition partition = partitions.get(key);
+      if (partition == null) return;
+      Lock retirementLock = partition.retirementLock.writeLock();
+      retirementLock.lock();
+      try {
+         if (partition.isEmpty()) {
+            partition.retired = true;
+            partitions.remove(key, partition);
+         }
+      } finally {
+         retirementLock.unlock();
+      }
+   }
+
+   @Override
+   public RemoteTransaction get(Object key) {
+      ConcurrentMap<GlobalTransaction, RemoteTransaction> partition = getPartition(key);
+      return partition == null ? null : partition.get(key);
+   }
+
+   @Override
+   public boolean containsKey(Object key) {
+      ConcurrentMap<GlobalTransaction, RemoteTransaction> partition = getPartition(key);
+      return partition != null && partition.containsKey(key);
+   }
+
+   @Override
+   public RemoteTransaction put(GlobalTransaction key, RemoteTransaction value) {
+      Partition partition = lockLivePartition(key);
+      try {
+         return partition.put(key, value);
+      } finally {
+         partition.retirementLock.readLock().unlock();
+      }
+   }
+
+   @Override
+   public RemoteTransaction putIfAbsent(GlobalTransaction key, RemoteTransaction value) {
+      Partition partition = lockLivePartition(key);
+      try {
+         return partition.putIfAbsent(key, value);
+      } finally {
+         partition.retirementLock.readLock().unlock();
+      }
+   }
+
+   @Override
+   public RemoteTransaction remove(Object key) {
+      ConcurrentMap<GlobalTransaction, RemoteTransaction> partition = getPartition(key);
+      return partition == null ? null : partition.remove(key);
+   }
+
+   @Override
+   public boolean remove(Object key, Object value) {
+      ConcurrentMap<GlobalTransaction, RemoteTransaction> partition = getPartition(key);
+      return partition != null && partition.remove(key, value);
+   }
+
+   @Override
+   public boolean replace(GlobalTransaction key, RemoteTransaction oldValue, RemoteTransaction newValue) {
+      ConcurrentMap<GlobalTransaction, RemoteTransaction> partition = getPartition(key);
+      return partition != null && partition.replace(key, oldValue, newValue);
+   }
+
+   @Override
+   public RemoteTransaction replace(GlobalTransaction key, RemoteTransaction value) {
+      ConcurrentMap<GlobalTransaction, RemoteTransaction> partition = getPartition(key);
+      return partition == null ? null : partition.replace(key, value);
+   }
+
+   @Override
+   public int size() {
+      int size = 0;
+      for (Partition partition : partitions.values()) size += partition.size();
+      return size;
+   }
+
+   @Override
+   public boolean isEmpty() {
+      for (Partition partition : partitions.values()) {
+         if (!partition.isEmpty()) return false;
+      }
+      return true;
+   }
+
+   @Override
+   public void clear() {
+      partitions.clear();
+   }
+
+   @Override
+   public Set<Entry<GlobalTransaction, RemoteTransaction>> entrySet() {
+      return entrySet;
+   }
+
+   private Partition getPartition(Object key) {
+      if (!(key instanceof GlobalTransaction)) return null;
+      return partitions.get(partitionKey(((GlobalTransaction) key).getAddress()));
+   }
+
+   /**
+    * Finds or creates the partition of the given transaction's originator and returns it with its retirement lock held
+    * for reading, so that it can't be retired before the caller has inserted into it and released the lock.
+    */
+   private Partition lockLivePartition(GlobalTransaction key) {
+      Object partitionKey = partitionKey(key.getAddress());
+      while (true) {
+         Partition partition = partitions.get(partitionKey);
+         if (partition == null) {
+            partition = new Partition();
+            Partition existing = partitions.putIfAbsent(partitionKey, partition);
+            if (existing != null) partition = existing;
+         }
+         Lock retirementLock = partition.retirementLock.readLock();
+         retirementLock.lock();
+         if (!partition.retired) return partition;
+         // retired between the lookup and the locking, and already unmapped
+         retirementLock.unlock();
+      }
+   }
+
+   private static Object partitionKey(Address originator) {
+      return originator == null ? NO_ADDRESS : originator;
+   }
+
+   private static class Partition extends ConcurrentHashMap<GlobalTransaction, RemoteTransaction> {
+      final ReadWriteLock retirementLock = new ReentrantReadWriteLock();
+      boolean retired; // guarded by retirementLock
+   }
+
+   private class EntrySet extends AbstractSet<Entry<GlobalTransaction, RemoteTransaction>> {
+
+      @Override
+      public Iterator<Entry<GlobalTransaction, RemoteTransaction>> iterator() {
+         return new EntryIterator(partitions.values().iterator());
+      }
+
+      @Override
+      public int size() {
+         return RemoteTransactionMap.this.size();
+      }
+
+      @Override
+      public boolean isEmpty() {
+         return RemoteTransactionMap.this.isEmpty();
+      }
+
+      @Override
+      public void clear() {
+         RemoteTransactionMap.this.clear();
+      }
+   }
+
+   private static class EntryIterator implements Iterator<Entry<GlobalTransaction, RemoteTransaction>> {
+
+      private final Iterator<Partition> partitionIterator;
+      private Iterator<Entry<GlobalTransaction, RemoteTransaction>> current = Collections.<Entry<GlobalTransaction, RemoteTransaction>>emptySet().iterator();
+      private Iterator<Entry<GlobalTransaction, RemoteTransaction>> last;
+
+      EntryIterator(Iterator<Partition> partitionIterator) {
+         this.partitionIterator = partitionIterator;
+      }
+
+      @Override
+      public boolean hasNext() {
+         while (!current.hasNext()) {
+            if (!partitionIterator.hasNext()) return false;
+            current = partitionIterator.next().entrySet().iterator();
+         }
+         return true;
+      }
+
+      @Override
+      public Entry<GlobalTransaction, RemoteTransaction> next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         last = current;
+         return current.next();
+      }
+
+      @Override
+      public void remove() {
+         if (last == null) throw new IllegalStateException();
+         last.remove();
+         last = null;
+      }
+   }
+}
@@ -0,0 +1,716 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction;
+
+import org.infinispan.CacheException;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.control.TotalOrderControlCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.tx.RollbackCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
+import org.infinispan.notifications.cachemanagerlistener.annotation.Merged;
+import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
+import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.Transport;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commits the transactions of a replicated cache in a single total order, agreed by all the nodes.
+ * <p/>
+ * The originator of a transaction sends its one phase prepare to the cluster coordinator, which acts as the
+ * sequencer.  The sequencer numbers the transactions within an <i>epoch</i> and sends them to all the members of the
+ * epoch, which buffer them.  Once every member has acknowledged a delivery the sequencer declares it stable, and only
+ * then do the members apply it, one transaction at a time and in the order of the numbers, on a thread of their own.
+ * Each node validates the versions the transaction has read and either commits or discards it, reaching the same
+ * outcome as all the others without exchanging any vote and without acquiring any distributed lock.
+ * <p/>
+ * An epoch belongs to a single sequencer and a single view.  When the view changes, or when a delivery could not be
+ * acknowledged by all the members, the coordinator opens a new epoch: it first <i>seals</i> the older epochs on all
+ * the members, so that they accept no more deliveries for them, and collects how far each member knows them to be
+ * stable.  It then <i>closes</i> them, telling every member to apply the deliveries of the older epochs up to the
+ * furthest stable point any member has reported, and to discard the rest.  A delivery that some member has applied is
+ * stable, so every member of its epoch has it and applies it as well; a discarded delivery is applied by no member.
+ * <p/>
+ * The originator waits until the transaction is applied locally, and the local outcome is the outcome of the
+ * transaction.  Transactions sent to the sequencer in an epoch that is closed before they are applied are rolled back.
+ * The sequencer only starts sequencing in a new view once the state transfer of that view has completed, and the
+ * state transfer waits for the older epochs to be closed before pushing state, so joiners receive the state of all the
+ * transactions applied before they joined.
+ *
+ * @see org.infinispan.config.Configuration#isTotalOrderCommit()
+ * @since 5.1
+ */
+public class TotalOrderManager {
+
+   private static final Log log = LogFactory.getLog(TotalOrderManager.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   /**
+    * How many closed epochs a node remembers, to tell a new sequencer how far it has applied them.
+    */
+   private static final int CLOSED_EPOCHS_KEPT = 16;
+   private static final long SEAL_RETRY_DELAY = 500;
+
+   private final ConcurrentMap<GlobalTransaction, Outcome> pendingOutcomes = new ConcurrentHashMap<GlobalTransaction, Outcome>();
+
+   // The sequencer state, only used on the coordinator, by the sequencer thread
+   private volatile ExecutorService sequencerExecutor;
+   private final ConcurrentLinkedQueue<Request> requests = new ConcurrentLinkedQueue<Request>();
+   private volatile long sequencingEpoch = -1;
+   private volatile int stateTransferCompletedViewId = -1;
+   private List<Address> epochMembers = Collections.emptyList();
+   private long lastSequenced;
+   private long lastStable;
+
+   // The delivery state, used on every node, guarded by this
+   private volatile ExecutorService deliveryExecutor;
+   /**
+    * The epoch whose deliveries are being applied, -1 before this node has opened its first epoch.
+    */
+   private long deliveryEpoch = -1;
+   private Address sequencer;
+   private long applied;
+   /**
+    * No deliveries are accepted any more for the epochs before this one.
+    */
+   private long sealedBelow = -1;
+   private boolean deliveryScheduled;
+   private final SortedMap<Long, EpochDeliveries> received = new TreeMap<Long, EpochDeliveries>();
+   private final SortedMap<Long, Closing> closings = new TreeMap<Long, Closing>();
+   private final Map<Long, Long> closedEpochs = new LinkedHashMap<Long, Long>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+         return size() > CLOSED_EPOCHS_KEPT;
+      }
+   };
+
+   private final ViewListener listener = new ViewListener();
+   private final Runnable sequencerTask = new Runnable() {
+      @Override
+      public void run() {
+         try {
+            sequencePending();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   };
+   private final Runnable openEpochTask = new Runnable() {
+      @Override
+      public void run() {
+         try {
+            openEpoch();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   };
+   private final Runnable deliveryTask = new Runnable() {
+      @Override
+      public void run() {
+         PrepareCommand prepare;
+         while ((prepare = nextDelivery()) != null) {
+            apply(prepare);
+         }
+      }
+   };
+
+   private RpcManager rpcManager;
+   private CommandsFactory commandsFactory;
+   private Configuration configuration;
+   private CacheManagerNotifier notifier;
+   private volatile boolean running;
+
+   @Inject
+   public void init(RpcManager rpcManager, CommandsFactory commandsFactory, Configuration configuration,
+                    CacheManagerNotifier notifier) {
+      this.rpcManager = rpcManager;
+      this.commandsFactory = commandsFactory;
+      this.configuration = configuration;
+      this.notifier = notifier;
+   }
+
+   @Start
+   public void start() {
+      if (!configuration.isTotalOrderCommit()) return;
+      // only caches committing in total order need the threads
+      sequencerExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TotalOrderSequencer"));
+      deliveryExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TotalOrderDelivery"));
+      running = true;
+      notifier.addListener(listener);
+      // the view may have been installed before this cache was started
+      submit(sequencerExecutor, openEpochTask);
+   }
+
+   @Stop
+   public void stop() {
+      running = false;
+      notifier.removeListener(listener);
+      if (sequencerExecutor != null) sequencerExecutor.shutdownNow();
+      if (deliveryExecutor != null) deliveryExecutor.shutdownNow();
+   }
+
+   /**
+    * Commits a local transaction in total order.  Returns once the transaction has been applied on this node.
+    *
+    * @param prepare the one phase prepare of the transaction, with the versions it has seen
+    * @throws TimeoutException if the transaction was not applied within the replication timeout, in which case its
+    *                          outcome is unknown
+    * @throws Throwable        the reason the transaction was not committed, if it was rolled back
+    */
+   public void commit(PrepareCommand prepare) throws Throwable {
+      GlobalTransaction gtx = prepare.getGlobalTransaction();
+      Address target;
+      Outcome outcome;
+      synchronized (this) {
+         if (deliveryEpoch < 0)
+            throw new CacheException("Cannot commit " + gtx + ", this node has not joined a total order epoch yet");
+         target = sequencer;
+         // registered before sequencing, as the delivery may well overtake the sequencer's response
+         outcome = new Outcome(deliveryEpoch);
+         pendingOutcomes.put(gtx, outcome);
+      }
+      try {
+         if (target.equals(rpcManager.getAddress())) {
+            if (!sequence(prepare, outcome.epoch))
+               throw new CacheException("Transaction " + gtx + " was not accepted by the sequencer");
+         } else {
+            requestSequencing(target, prepare, outcome.epoch);
+         }
+         if (!outcome.latch.await(configuration.getSyncReplTimeout(), TimeUnit.MILLISECONDS))
+            throw new TimeoutException("Transaction " + gtx + " was not applied within " + configuration.getSyncReplTimeout() + " milliseconds");
+         if (outcome.failure != null) throw outcome.failure;
+      } finally {
+         pendingOutcomes.remove(gtx);
+      }
+   }
+
+   private void requestSequencing(Address target, PrepareCommand prepare, long epoch) {
+      GlobalTransaction gtx = prepare.getGlobalTransaction();
+      if (trace) log.tracef("Sending %s to the sequencer %s in epoch %d", gtx, target, epoch);
+      TotalOrderPrepareCommand request = commandsFactory.buildTotalOrderPrepareCommand(prepare, epoch);
+      Response response;
+      try {
+         Map<Address, Response> responses = rpcManager.invokeRemotely(Collections.singleton(target), request,
+                                                                      ResponseMode.SYNCHRONOUS, configuration.getSyncReplTimeout(), true);
+         response = responses == null ? null : responses.get(target);
+      } catch (Exception e) {
+         // the sequencer may have sequenced it anyway, the closing of the epoch will tell
+         if (trace) log.tracef(e, "Failed sending %s to the sequencer %s", gtx, target);
+         return;
+      }
+      if (response instanceof SuccessfulResponse && Boolean.FALSE.equals(((SuccessfulResponse) response).getResponseValue()))
+         throw new CacheException("Transaction " + gtx + " was not accepted by the sequencer " + target);
+   }
+
+   /**
+    * Queues a transaction to be sequenced in the given epoch.  Only the coordinator acts as the sequencer.
+    *
+    * @return false if the transaction will not be sequenced, because this node is not the sequencer of that epoch
+    */
+   public boolean sequence(PrepareCommand prepare, long epoch) {
+      if (!running || epoch != sequencingEpoch || !rpcManager.getTransport().isCoordinator()) {
+         if (trace) log.tracef("Rejecting %s of epoch %d, the sequencing epoch is %d", prepare.getGlobalTransaction(), epoch, sequencingEpoch);
+         return false;
+      }
+      requests.add(new Request(prepare, epoch));
+      submit(sequencerExecutor, sequencerTask);
+      return true;
+   }
+
+   /**
+    * Called once the state transfer of a view has completed, so that the sequencer can start sequencing in it.
+    */
+   public void stateTransferCompleted(int viewId) {
+      if (!running) return;
+      if (viewId > stateTransferCompletedViewId) stateTransferCompletedViewId = viewId;
+      submit(sequencerExecutor, sequencerTask);
+   }
+
+   /**
+    * Waits until this node has closed the epochs of the views before the given one, i.e. applied all the transactions
+    * the state transferred in that view must include.
+    */
+   public void awaitEpoch(int viewId) throws InterruptedException {
+      if (!configuration.isTotalOrderCommit()) return;
+      long firstEpoch = firstEpochOf(viewId);
+      long deadline = System.currentTimeMillis() + configuration.getRehashWaitTime();
+      synchronized (this) {
+         long remaining;
+         while (deliveryEpoch < firstEpoch && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            wait(remaining);
+         }
+         if (deliveryEpoch < firstEpoch) log.timedOutWaitingForTotalOrderEpoch(viewId);
+      }
+   }
+
+   private void sequencePending() throws InterruptedException {
+      long current = sequencingEpoch;
+      if (current < 0 || stateTransferCompletedViewId < viewIdOf(current)) return;
+
+      List<NotifyingFuture<Map<Address, Response>>> deliveries = new ArrayList<NotifyingFuture<Map<Address, Response>>>();
+      long stable = lastStable;
+      Throwable failure = null;
+      try {
+         Request request;
+         while ((request = requests.poll()) != null) {
+            if (request.epoch != current) {
+               // the originator will roll it back when it opens the next epoch
+               if (trace) log.tracef("Dropping %s of closed epoch %d", request.prepare.getGlobalTransaction(), request.epoch);
+               continue;
+            }
+            long seqno = lastSequenced + 1;
+            if (trace) log.tracef("Sequencing %s as %d in epoch %d", request.prepare.getGlobalTransaction(), seqno, current);
+            // buffered locally first: a delivery can't become stable unless the sequencer has it as well
+            received(current, seqno, copyForDelivery(request.prepare));
+            lastSequenced = seqno;
+            TotalOrderPrepareCommand delivery = commandsFactory.buildTotalOrderPrepareCommand(request.prepare, current, seqno);
+            deliveries.add(epochMembers.isEmpty() ? null :
+                                 rpcManager.invokeRemotelyAsync(epochMembers, delivery, configuration.getSyncReplTimeout(), true, false));
+         }
+         for (NotifyingFuture<Map<Address, Response>> delivery : deliveries) {
+            if (delivery != null) checkReceived(delivery.get());
+            stable++;
+         }
+      } catch (ExecutionException e) {
+         failure = e.getCause();
+      } catch (RuntimeException e) {
+         failure = e;
+      } finally {
+         if (stable > lastStable) {
+            lastStable = stable;
+            stable(current, stable);
+            if (!epochMembers.isEmpty()) {
+               TotalOrderControlCommand cmd = commandsFactory.buildTotalOrderControlCommand(
+                     TotalOrderControlCommand.Type.STABLE, current, stable, null);
+               rpcManager.invokeRemotely(epochMembers, cmd, ResponseMode.ASYNCHRONOUS, configuration.getSyncReplTimeout(), true);
+            }
+         }
+      }
+      if (failure != null) {
+         log.failedTotalOrderMulticast(current, failure);
+         openEpoch();
+      }
+   }
+
+   private void checkReceived(Map<Address, Response> responses) {
+      if (responses == null) return;
+      for (Map.Entry<Address, Response> e : responses.entrySet()) {
+         // members that don't run the cache are only ignored by the transport
+         if (e.getValue() instanceof ExceptionResponse)
+            throw new CacheException("Member " + e.getKey() + " did not receive the delivery", ((ExceptionResponse) e.getValue()).getException());
+      }
+   }
+
+   /**
+    * Seals the epochs of the previous sequencer, or the failed epoch of this one, and opens a new epoch with this node
+    * as the sequencer, if it is the coordinator.
+    */
+   @SuppressWarnings("unchecked")
+   private void openEpoch() throws InterruptedException {
+      Transport transport = rpcManager.getTransport();
+      int viewId = transport.getViewId();
+      // requests of the older epochs are rejected from now on
+      long lastEpoch = sequencingEpoch;
+      sequencingEpoch = -1;
+      if (!transport.isCoordinator()) {
+         requests.clear();
+         return;
+      }
+      long newEpoch = Math.max(firstEpochOf(viewId), Math.max(lastEpoch, currentEpoch()) + 1);
+      Address self = transport.getAddress();
+      List<Address> others = new ArrayList<Address>(transport.getMembers());
+      others.remove(self);
+      if (trace) log.tracef("Opening total order epoch %d in view %d with members %s", newEpoch, viewId, others);
+
+      Map<Long, Long> lastDeliveries = new HashMap<Long, Long>(seal(newEpoch));
+      if (!others.isEmpty()) {
+         TotalOrderControlCommand sealCmd = commandsFactory.buildTotalOrderControlCommand(
+               TotalOrderControlCommand.Type.SEAL, newEpoch, 0, null);
+         while (true) {
+            try {
+               Map<Address, Response> responses = rpcManager.invokeRemotely(others, sealCmd, ResponseMode.SYNCHRONOUS,
+                                                                            configuration.getRehashRpcTimeout(), true);
+               for (Response response : responses.values()) {
+                  if (response instanceof SuccessfulResponse)
+                     merge(lastDeliveries, (Map<Long, Long>) ((SuccessfulResponse) response).getResponseValue());
+               }
+               break;
+            } catch (Exception e) {
+               if (!running || transport.getViewId() != viewId) {
+                  // the next view opens its own epoch
+                  if (trace) log.tracef(e, "View %d was replaced while sealing the total order epochs", viewId);
+                  return;
+               }
+               log.failedSealingTotalOrderEpochs(viewId, e);
+            }
+            Thread.sleep(SEAL_RETRY_DELAY);
+         }
+      }
+
+      epochMembers = others;
+      lastSequenced = 0;
+      lastStable = 0;
+      sequencingEpoch = newEpoch;
+      if (!others.isEmpty()) {
+         TotalOrderControlCommand closeCmd = commandsFactory.buildTotalOrderControlCommand(
+               TotalOrderControlCommand.Type.CLOSE, newEpoch, 0, lastDeliveries);
+         try {
+            rpcManager.invokeRemotely(others, closeCmd, ResponseMode.SYNCHRONOUS, configuration.getRehashRpcTimeout(), true);
+         } catch (Exception e) {
+            // a member that missed it rejects the deliveries of the new epoch, which then gets replaced
+            log.debugf(e, "Failed opening total order epoch %d on all the members", newEpoch);
+         }
+      }
+      close(self, lastDeliveries, newEpoch);
+   }
+
+   private static void merge(Map<Long, Long> lastDeliveries, Map<Long, Long> reported) {
+      for (Map.Entry<Long, Long> e : reported.entrySet()) {
+         Long last = lastDeliveries.get(e.getKey());
+         if (last == null || last < e.getValue()) lastDeliveries.put(e.getKey(), e.getValue());
+      }
+   }
+
+   /**
+    * Buffers a sequenced transaction until it becomes stable.
+    *
+    * @throws CacheException if the epoch is sealed, or hasn't been opened on this node
+    */
+   public synchronized void received(long epoch, long seqno, PrepareCommand prepare) {
+      if (!acceptsDeliveries(epoch))
+         throw new CacheException("Cannot accept delivery " + seqno + " of total order epoch " + epoch + ", the current epoch is " + deliveryEpoch);
+      if (epoch == deliveryEpoch && seqno <= applied) return;
+      deliveries(epoch).prepares.put(seqno, prepare);
+   }
+
+   /**
+    * Marks the deliveries of an epoch up to the given sequence number as received by all the members.
+    */
+   public synchronized void stable(long epoch, long seqno) {
+      if (!acceptsDeliveries(epoch)) {
+         if (trace) log.tracef("Ignoring stability of delivery %d of sealed total order epoch %d", seqno, epoch);
+         return;
+      }
+      EpochDeliveries deliveries = deliveries(epoch);
+      if (seqno > deliveries.stable) {
+         deliveries.stable = seqno;
+         scheduleDelivery();
+      }
+   }
+
+   /**
+    * Stops accepting deliveries for the epochs before the given one.
+    *
+    * @return the last delivery this node knows to be stable, or has applied, for every epoch before the new one
+    */
+   public synchronized Map<Long, Long> seal(long newEpoch) {
+      if (newEpoch > sealedBelow) sealedBelow = newEpoch;
+      Map<Long, Long> lastDeliveries = new HashMap<Long, Long>(closedEpochs);
+      if (deliveryEpoch >= 0 && deliveryEpoch < newEpoch) lastDeliveries.put(deliveryEpoch, applied);
+      for (Map.Entry<Long, EpochDeliveries> e : received.headMap(newEpoch).entrySet()) {
+         merge(lastDeliveries, Collections.singletonMap(e.getKey(), e.getValue().stable));
+      }
+      if (trace) log.tracef("Sealed the total order epochs before %d, last deliveries are %s", newEpoch, lastDeliveries);
+      return lastDeliveries;
+   }
+
+   /**
+    * Applies the deliveries of the sealed epochs up to the given sequence numbers, discards the others, and opens a new
+    * epoch with the given sequencer.
+    */
+   public synchronized void close(Address sequencer, Map<Long, Long> lastDeliveries, long newEpoch) {
+      if (newEpoch <= deliveryEpoch || closings.containsKey(newEpoch)) {
+         if (trace) log.tracef("Ignoring the closing of the total order epochs before %d, the current epoch is %d", newEpoch, deliveryEpoch);
+         return;
+      }
+      if (newEpoch > sealedBelow) sealedBelow = newEpoch;
+      closings.put(newEpoch, new Closing(sequencer, lastDeliveries));
+      scheduleDelivery();
+   }
+
+   private boolean acceptsDeliveries(long epoch) {
+      return epoch >= sealedBelow && (epoch == deliveryEpoch || closings.containsKey(epoch));
+   }
+
+   private EpochDeliveries deliveries(long epoch) {
+      EpochDeliveries deliveries = received.get(epoch);
+      if (deliveries == null) {
+         deliveries = new EpochDeliveries();
+         received.put(epoch, deliveries);
+      }
+      return deliveries;
+   }
+
+   private synchronized long currentEpoch() {
+      return deliveryEpoch;
+   }
+
+   private void scheduleDelivery() {
+      if (!deliveryScheduled) {
+         deliveryScheduled = true;
+         submit(deliveryExecutor, deliveryTask);
+      }
+   }
+
+   /**
+    * @return the next transaction to apply, or null if there is none until the next stability or closing
+    */
+   private synchronized PrepareCommand nextDelivery() {
+      while (true) {
+         Closing closing = null;
+         long closingEpoch = -1;
+         while (!closings.isEmpty()) {
+            closingEpoch = closings.firstKey();
+            if (closingEpoch > deliveryEpoch) {
+               closing = closings.get(closingEpoch);
+               break;
+            }
+            closings.remove(closingEpoch);
+         }
+
+         EpochDeliveries deliveries = received.get(deliveryEpoch);
+         long last;
+         if (closing != null) {
+            Long l = deliveryEpoch < 0 ? null : closing.lastDeliveries.get(deliveryEpoch);
+            last = l == null ? applied : l;
+         } else {
+            last = deliveries == null ? applied : deliveries.stable;
+         }
+
+         if (applied < last) {
+            applied++;
+            PrepareCommand prepare = deliveries == null ? null : deliveries.prepares.remove(applied);
+            if (prepare == null) {
+               log.missingTotalOrderDelivery(applied, deliveryEpoch);
+               continue;
+            }
+            return prepare;
+         }
+
+         if (closing == null) {
+            deliveryScheduled = false;
+            return null;
+         }
+
+         // the current epoch is over, the rest of its deliveries are discarded
+         received.remove(deliveryEpoch);
+         if (deliveryEpoch >= 0) closedEpochs.put(deliveryEpoch, applied);
+         Long next = null;
+         if (deliveryEpoch >= 0) {
+            // the epochs this node has missed the opening of, but may have received deliveries for
+            for (Long e : closing.lastDeliveries.keySet()) {
+               if (e > deliveryEpoch && e < closingEpoch && (next == null || e < next)) next = e;
+            }
+         }
+         applied = 0;
+         if (next != null) {
+            deliveryEpoch = next;
+            continue;
+         }
+
+         closings.remove(closingEpoch);
+         deliveryEpoch = closingEpoch;
+         sequencer = closing.sequencer;
+         received.headMap(deliveryEpoch).clear();
+         if (trace) log.tracef("Opened total order epoch %d, sequenced by %s", deliveryEpoch, sequencer);
+         // transactions sent to the sequencer in older epochs and not applied by now will never be
+         for (Map.Entry<GlobalTransaction, Outcome> e : pendingOutcomes.entrySet()) {
+            if (e.getValue().epoch < deliveryEpoch)
+               e.getValue().complete(new CacheException("Transaction " + e.getKey() + " was not applied before total order epoch "
+                                                              + e.getValue().epoch + " was closed"));
+         }
+         notifyAll();
+      }
+   }
+
+   /**
+    * Applies a stable transaction.  Conflicting transactions are discarded by all the nodes alike, so the failure is
+    * only reported to the originator.  A lock that can't be acquired in time can only be held by a command that is not
+    * part of the total order, so the transaction is retried until it gets it: giving up would make this node's outcome
+    * differ from the others.
+    */
+   private void apply(PrepareCommand prepare) {
+      GlobalTransaction gtx = prepare.getGlobalTransaction();
+      Throwable failure = null;
+      while (true) {
+         try {
+            prepare.setOrigin(gtx.getAddress());
+            commandsFactory.initializeReplicableCommand(prepare, true);
+            prepare.perform(null);
+            break;
+         } catch (TimeoutException e) {
+            discard(gtx);
+            if (!running || Thread.currentThread().isInterrupted()) {
+               failure = e;
+               break;
+            }
+            if (trace) log.tracef(e, "Timed out applying %s, retrying", gtx);
+         } catch (Throwable t) {
+            if (trace) log.tracef(t, "Transaction %s was rolled back", gtx);
+            failure = t;
+            discard(gtx);
+            break;
+         }
+      }
+      Outcome outcome = pendingOutcomes.get(gtx);
+      if (outcome != null) outcome.complete(failure);
+   }
+
+   private PrepareCommand copyForDelivery(PrepareCommand prepare) {
+      // the local transaction keeps its own global transaction, which is not a remote one
+      GlobalTransaction gtx = (GlobalTransaction) prepare.getGlobalTransaction().clone();
+      PrepareCommand copy = commandsFactory.buildPrepareCommand(gtx, Arrays.asList(prepare.getModifications()), true);
+      copy.setVersionsSeen(prepare.getVersionsSeen());
+      return copy;
+   }
+
+   private void discard(GlobalTransaction gtx) {
+      RollbackCommand rollback = commandsFactory.buildRollbackCommand(gtx);
+      commandsFactory.initializeReplicableCommand(rollback, true);
+      rollback.setOrigin(gtx.getAddress());
+      try {
+         rollback.perform(null);
+      } catch (Throwable t) {
+         log.errorRollingBack(t);
+      }
+   }
+
+   private void submit(ExecutorService executor, Runnable task) {
+      if (executor == null) return; // total order not in use, or not started yet
+      try {
+         executor.submit(task);
+      } catch (RejectedExecutionException e) {
+         if (running) throw e;
+      }
+   }
+
+   private static long firstEpochOf(int viewId) {
+      return ((long) viewId) << 32;
+   }
+
+   private static int viewIdOf(long epoch) {
+      return (int) (epoch >>> 32);
+   }
+
+   @Listener
+   public class ViewListener {
+      @Merged
+      @ViewChanged
+      public void viewChanged(ViewChangedEvent e) {
+         submit(sequencerExecutor, openEpochTask);
+      }
+   }
+
+   private class NamedThreadFactory implements ThreadFactory {
+      private final String prefix;
+
+      NamedThreadFactory(String prefix) {
+         this.prefix = prefix;
+      }
+
+      public Thread newThread(Runnable r) {
+         Thread t = new Thread(r);
+         t.setDaemon(true);
+         t.setName(prefix + "," + configuration.getName() + "," + rpcManager.getTransport().getAddress());
+         return t;
+      }
+   }
+
+   private static class Request {
+      final PrepareCommand prepare;
+      final long epoch;
+
+      Request(PrepareCommand prepare, long epoch) {
+         this.prepare = prepare;
+         this.epoch = epoch;
+      }
+   }
+
+   private static class EpochDeliveries {
+      final SortedMap<Long, PrepareCommand> prepares = new TreeMap<Long, PrepareCommand>();
+      long stable;
+   }
+
+   private static class Closing {
+      final Address sequencer;
+      final Map<Long, Long> lastDeliveries;
+
+      Closing(Address sequencer, Map<Long, Long> lastDeliveries) {
+         this.sequencer = sequencer;
+         this.lastDeliveries = lastDeliveries;
+      }
+   }
+
+   private static class Outcome {
+      final long epoch;
+      final CountDownLatch latch = new CountDownLatch(1);
+      volatile Throwable failure;
+
+      Outcome(long epoch) {
+         this.epoch = epoch;
+      }
+
+      synchronized void complete(Throwable failure) {
+         if (latch.getCount() == 0) return;
+         this.failure = failure;
+         latch.countDown();
+      }
+   }
+}
@@ -26,17 +26,24 @@ import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.tx.RollbackCommand;
+import org.infinispan.commands.write.ClearCommand;
 import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.container.entries.ClusteredRepeatableReadEntry;
 import org.infinispan.context.impl.LocalTxInvocationContext;
+import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.util.logging.Log;
+import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.LogFactory;
 
 import javax.transaction.Transaction;
 import javax.transaction.xa.XAException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static javax.transaction.xa.XAResource.XA_OK;
 import static javax.transaction.xa.XAResource.XA_RDONLY;
@@ -57,20 +64,28 @@ public class TransactionCoordinator {
    private InterceptorChain invoker;
    private TransactionTable txTable;
    private Configuration configuration;
+   private DistributionManager distributionManager;
+   private TotalOrderManager totalOrderManager;
 
    boolean trace;
 
    @Inject
    public void init(CommandsFactory commandsFactory, InvocationContextContainer icc, InterceptorChain invoker,
-                    TransactionTable txTable, Configuration configuration) {
+                    TransactionTable txTable, Configuration configuration, DistributionManager distributionManager) {
       this.commandsFactory = commandsFactory;
       this.icc = icc;
       this.invoker = invoker;
       this.txTable = txTable;
       this.configuration = configuration;
+      this.distributionManager = distributionManager;
       trace = log.isTraceEnabled();
    }
 
+   @Inject
+   public void injectTotalOrderManager(TotalOrderManager totalOrderManager) {
+      this.totalOrderManager = totalOrderManager;
+   }
+
    public final int prepare(LocalTransaction localTransaction) throws XAException {
       return prepare(localTransaction, false);
    }
@@ -110,7 +125,104 @@ public class TransactionCoordinator {
       }
    }
 
+   /**
+    * Prepares a transaction for which this cache is the only resource: one the transaction manager commits in one phase,
+    * or one the cache takes part in through a {@link javax.transaction.Synchronization}.  No other resource votes after
+    * this one, so the transaction is committed straight away when a single round is enough, i.e. when it is committed in
+    * total order or when all its writes have the same single owner.  Otherwise it is only prepared, and
+    * {@link #commit(LocalTransaction, boolean)} completes it as usual.
+    * <p/>
+    * This must not be used by an XA prepare that other resources take part in: a transaction committed here can't be
+    * rolled back if another resource votes to roll back.
+    *
+    * @return {@link javax.transaction.xa.XAResource#XA_RDONLY} if there is nothing left to commit
+    */
+   public final int prepareAsOnlyResource(LocalTransaction localTransaction) throws XAException {
+      if (configuration.isTotalOrderCommit()) {
+         validateNotMarkedForRollback(localTransaction);
+         return commitInTotalOrder(localTransaction);
+      }
+      if (!configuration.isOnePhaseCommit() && canCommitInPrepare(localTransaction)) {
+         validateNotMarkedForRollback(localTransaction);
+         return commitInPrepare(localTransaction);
+      }
+      return prepare(localTransaction);
+   }
+
+   /**
+    * With versioned entries the write skew check happens on the owners during prepare, so a transaction whose writes
+    * are all owned by a single node can be committed by that prepare: there is no other owner that could fail to
+    * prepare after this one committed.
+    */
+   private boolean canCommitInPrepare(LocalTransaction localTransaction) {
+      if (!configuration.isUseVersioning() || distributionManager == null || configuration.isTransactionRecoveryEnabled())
+         return false;
+      List<WriteCommand> modifications = localTransaction.getModifications();
+      if (modifications == null || modifications.isEmpty()) return false;
+      Set<Object> affectedKeys = new HashSet<Object>();
+      for (WriteCommand mod : modifications) {
+         if (mod instanceof ClearCommand) return false;
+         affectedKeys.addAll(mod.getAffectedKeys());
+      }
+      return distributionManager.getAffectedNodes(affectedKeys).size() <= 1;
+   }
+
+   private int commitInPrepare(LocalTransaction localTransaction) throws XAException {
+      PrepareCommand command = commandsFactory.buildPrepareCommand(localTransaction.getGlobalTransaction(), localTransaction.getModifications(), true);
+      if (trace) log.tracef("All the keys of %s have the same owner, committing in prepare: %s", localTransaction.getGlobalTransaction(), command);
+
+      LocalTxInvocationContext ctx = icc.createTxInvocationContext();
+      ctx.setLocalTransaction(localTransaction);
+      try {
+         invoker.invoke(ctx, command);
+      } catch (Throwable e) {
+         log.error("Error while processing PrepareCommand", e);
+         rollback(localTransaction);
+         throw new XAException(XAException.XA_RBROLLBACK);
+      }
+      localTransaction.markCommittedInPrepare();
+      txTable.removeLocalTransaction(localTransaction);
+      // nothing left to do at commit time
+      return XA_RDONLY;
+   }
+
+   /**
+    * The transaction is validated and applied by every node in the same order, so the prepare is the commit: once it
+    * has been applied on this node it has been, or will be, applied everywhere with the same outcome.
+    */
+   private int commitInTotalOrder(LocalTransaction localTransaction) throws XAException {
+      List<WriteCommand> modifications = localTransaction.getModifications();
+      if (modifications == null || modifications.isEmpty()) {
+         if (trace) log.tracef("Readonly transaction: %s", localTransaction.getGlobalTransaction());
+         commit(localTransaction, false);
+         return XA_RDONLY;
+      }
+      PrepareCommand command = commandsFactory.buildPrepareCommand(localTransaction.getGlobalTransaction(), modifications, true);
+      command.setVersionsSeen(ClusteredRepeatableReadEntry.collectVersionsSeen(command.getAffectedKeys(), localTransaction.getLookedUpEntries()));
+      if (trace) log.tracef("Committing %s in total order: %s", localTransaction.getGlobalTransaction(), command);
+      try {
+         totalOrderManager.commit(command);
+      } catch (TimeoutException e) {
+         // it may still be applied: neither commit nor roll it back here
+         txTable.failureCompletingTransaction(localTransaction.getTransaction());
+         log.errorProcessing1pcPrepareCommand(e);
+         throw new XAException(XAException.XAER_RMERR);
+      } catch (Throwable e) {
+         log.error("Error while processing PrepareCommand", e);
+         rollback(localTransaction);
+         throw new XAException(XAException.XA_RBROLLBACK);
+      }
+      localTransaction.markCommittedInPrepare();
+      txTable.removeLocalTransaction(localTransaction);
+      // nothing left to do at commit time
+      return XA_RDONLY;
+   }
+
    public void commit(LocalTransaction localTransaction, boolean isOnePhase) throws XAException {
+      if (localTransaction.isCommittedInPrepare()) {
+         if (trace) log.tracef("Transaction %s was committed in prepare", localTransaction.getGlobalTransaction());
+         return;
+      }
       if (trace) log.tracef("Committing transaction %s", localTransaction.getGlobalTransaction());
          LocalTxInvocationContext ctx = icc.createTxInvocationContext();
          ctx.setLocalTransaction(localTransaction);
@@ -142,6 +254,10 @@ public class TransactionCoordinator {
    }
 
    public void rollback(LocalTransaction localTransaction) throws XAException {
+      if (localTransaction.isCommittedInPrepare()) {
+         if (trace) log.tracef("Transaction %s was already committed in prepare, ignoring rollback", localTransaction.getGlobalTransaction());
+         return;
+      }
       if (trace) log.tracef("rollback transaction %s ", localTransaction.getGlobalTransaction());
       RollbackCommand rollbackCommand = commandsFactory.buildRollbackCommand(localTransaction.getGlobalTransaction());
       LocalTxInvocationContext ctx = icc.createTxInvocationContext();
@@ -64,6 +64,9 @@ import static java.util.Collections.emptySet;
 /**
  * Repository for {@link RemoteTransaction} and {@link
  * org.infinispan.transaction.xa.TransactionXaAdapter}s (locally originated transactions).
+ * <p/>
+ * Remote transactions are partitioned by the node they originate on, see {@link RemoteTransactionMap}, so that the
+ * cleanup done when nodes leave the cluster only looks at the transactions of the nodes that left.
  *
  * @author Mircea.Markus@jboss.com
  * @author Galder Zamarreño
@@ -76,7 +79,7 @@ public class TransactionTable {
 
    protected final ConcurrentMap<Transaction, LocalTransaction> localTransactions = new ConcurrentHashMap<Transaction, LocalTransaction>();
 
-   protected final ConcurrentMap<GlobalTransaction, RemoteTransaction> remoteTransactions = new ConcurrentHashMap<GlobalTransaction, RemoteTransaction>();
+   protected final RemoteTransactionMap remoteTransactions = new RemoteTransactionMap();
 
 
    private final Object listener = new StaleTransactionCleanup();
@@ -332,9 +335,10 @@ public class TransactionTable {
    }
 
    protected void updateStateOnNodesLeaving(Collection<Address> leavers) {
+      // only the transactions of the leavers are looked at, however many other transactions are running
       Set<GlobalTransaction> toKill = new HashSet<GlobalTransaction>();
-      for (GlobalTransaction gt : remoteTransactions.keySet()) {
-         if (leavers.contains(gt.getAddress())) toKill.add(gt);
+      for (Address leaver : leavers) {
+         toKill.addAll(remoteTransactions.getTransactionsOriginatedBy(leaver));
       }
 
       if (trace) {
@@ -358,6 +362,10 @@ public class TransactionTable {
          }
       }
 
+      for (Address leaver : leavers) {
+         remoteTransactions.removeOriginatorIfEmpty(leaver);
+      }
+
       if (trace) log.trace("Completed cleaning transactions originating on leavers");
    }
 
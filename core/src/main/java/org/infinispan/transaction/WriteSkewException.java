@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction;
+
+import org.infinispan.CacheException;
+
+/**
+ * Thrown when a transaction tries to commit a write to an entry that another transaction wrote since the first one
+ * read it.
+ *
+ * @since 5.1
+ */
+public class WriteSkewException extends CacheException {
+
+   private static final long serialVersionUID = 3924712584316947815L;
+
+   private final Object key;
+
+   public WriteSkewException(String msg, Object key) {
+      super(msg);
+      this.key = key;
+   }
+
+   /**
+    * @return the key whose entry was written concurrently
+    */
+   public Object getKey() {
+      return key;
+   }
+}
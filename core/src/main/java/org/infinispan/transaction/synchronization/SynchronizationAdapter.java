@@ -57,7 +57,7 @@ public class SynchronizationAdapter implements Synchronization {
          log.tracef("beforeCompletion called for %s", localTransaction);
       }
       try {
-         txCoordinator.prepare(localTransaction);
+         txCoordinator.prepareAsOnlyResource(localTransaction);
       } catch (XAException e) {
          throw new CacheException("Could not prepare. ", e);//todo shall we just swallow this exception?
       }
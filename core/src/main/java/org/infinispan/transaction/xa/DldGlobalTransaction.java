@@ -66,8 +66,9 @@ public class DldGlobalTransaction extends GlobalTransaction {
 
 
    /**
-    * Sets the random number that defines the coin toss. A coin toss is a random number that is used when a deadlock is
-    * detected for deciding which transaction should commit and which should rollback.
+    * Sets the number that defines the coin toss. A coin toss is used when a deadlock is detected for deciding which
+    * transaction should commit and which should rollback. It is made of the creation time of the transaction followed by
+    * random bits, so that younger transactions have larger coin tosses.
     */
    public void setCoinToss(long coinToss) {
       this.coinToss = coinToss;
@@ -119,8 +120,12 @@ public class DldGlobalTransaction extends GlobalTransaction {
       this.localLockIntention = lockIntention;
    }
 
+   /**
+    * Returns true if this transaction should be rolled back rather than the other one when both are part of the same
+    * deadlock, i.e. if this transaction is the younger one.
+    */
    public boolean wouldLose(DldGlobalTransaction other) {
-      return this.coinToss < other.coinToss;
+      return this.coinToss > other.coinToss;
    }
 
    public void setRemoteLockIntention(Collection<Object> remoteLockIntention) {
@@ -232,12 +232,9 @@ public class TransactionFactory {
       public abstract GlobalTransaction newGlobalTransaction(Address addr, boolean remote, ClusterIdGenerator clusterIdGenerator, boolean clustered);
       public abstract GlobalTransaction newGlobalTransaction();
 
-      protected long generateRandomId() {
-         return rnd.nextLong();
-      }
-
       protected GlobalTransaction addCoinToss(DldGlobalTransaction dldGlobalTransaction) {
-         dldGlobalTransaction.setCoinToss(generateRandomId());
+         // the creation time in the high bits orders transactions by age, the random low bits break ties
+         dldGlobalTransaction.setCoinToss((System.currentTimeMillis() << 20) | (rnd.nextInt() & 0xFFFFF));
          return dldGlobalTransaction;
       }
 
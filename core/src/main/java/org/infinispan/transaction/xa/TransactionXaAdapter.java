@@ -107,7 +107,7 @@ public class TransactionXaAdapter implements XAResource {
          //1PC optimization. We run a 2PC though, as running only 1PC has a high chance of leaving the cluster in
          //inconsistent state.
          try {
-            txCoordinator.prepare(localTransaction);
+            txCoordinator.prepareAsOnlyResource(localTransaction);
             txCoordinator.commit(localTransaction, false);
          } catch (XAException e) {
             if (trace) log.tracef("Couldn't commit 1PC transaction %s, trying to rollback.", localTransaction);
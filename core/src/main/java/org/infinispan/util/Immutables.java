@@ -25,6 +25,7 @@ package org.infinispan.util;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.marshall.MarshallUtil;
@@ -501,6 +502,14 @@ public class Immutables {
          return new ImmutableInternalCacheValue(this);
       }
 
+      public EntryVersion getVersion() {
+         return entry.getVersion();
+      }
+
+      public void setVersion(EntryVersion version) {
+         throw new UnsupportedOperationException();
+      }
+
       public void touch() {
          throw new UnsupportedOperationException();
       }
@@ -618,6 +627,10 @@ public class Immutables {
       public InternalCacheEntry toInternalCacheEntry(Object key) {
          return entry;
       }
+
+      public EntryVersion getVersion() {
+         return entry.getVersion();
+      }
    }
 
    private static class ImmutableEntrySetWrapper<K, V> extends ImmutableSetWrapper<Entry<K, V>> {
@@ -34,8 +34,9 @@ package org.infinispan.util.concurrent;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.util.Collections.singletonMap;
@@ -202,6 +203,18 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       return segments[hash >>> segmentShift & segmentMask];
    }
 
+   /**
+    * Replaces an entry of an eviction queue by its clone, keeping its position in the queue.
+    */
+   static <K, V> void replace(List<HashEntry<K, V>> queue, HashEntry<K, V> e, HashEntry<K, V> clone) {
+      for (ListIterator<HashEntry<K, V>> i = queue.listIterator(); i.hasNext();) {
+         if (i.next().equals(e)) {
+            i.set(clone);
+            return;
+         }
+      }
+   }
+
    /* ---------------- Inner Classes -------------- */
 
    /**
@@ -222,6 +235,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       volatile V value;
       final HashEntry<K, V> next;
       volatile Recency state;
+      /**
+       * Weight of the entry as last computed by the {@link Weigher}. Only accessed while holding the
+       * Segment lock.
+       */
+      long weight;
 
       HashEntry(K key, int hash, HashEntry<K, V> next, V value) {
          this.key = key;
@@ -231,6 +249,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          this.state = Recency.HIR_RESIDENT;
       }
 
+      HashEntry(K key, int hash, HashEntry<K, V> next, V value, long weight) {
+         this(key, hash, next, value);
+         this.weight = weight;
+      }
+
       @Override
       public int hashCode() {
          int result = 17;
@@ -288,23 +311,34 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       LRU {
          @Override
          public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
-            return new LRU<K, V>(s,capacity,lf,capacity*10,lf);
+            return new LRU<K, V>(s,capacity,lf,maxBatchSize(capacity),lf);
          }
       },
       LRU_OLD {
          @Override
          public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
-            return new LRUOld<K, V>(s,capacity,lf,capacity*10,lf);
+            return new LRUOld<K, V>(s,capacity,lf,maxBatchSize(capacity),lf);
          }
       },
       LIRS {
          @Override
          public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
-            return new LIRS<K,V>(s,capacity,capacity*10,lf);
+            return new LIRS<K,V>(s,capacity,maxBatchSize(capacity),lf);
+         }
+      },
+      TINY_LFU {
+         @Override
+         public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
+            return new TinyLFU<K,V>(s,capacity,maxBatchSize(capacity),lf);
          }
       };
 
       abstract <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf);
+
+      private static int maxBatchSize(int capacity) {
+         // capacity is Integer.MAX_VALUE for segments bounded by weight only
+         return (int) Math.min(capacity * 10L, Integer.MAX_VALUE);
+      }
    }
 
    public interface EvictionListener<K, V> {
@@ -312,6 +346,15 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       void onEntryChosenForEviction(V internalCacheEntry);
    }
 
+   /**
+    * Computes the weight of a map entry, typically an estimate of the memory it occupies. When a map is
+    * bounded by weight, each Segment evicts entries until the sum of the weights of its entries is within
+    * its share of the maximum weight.
+    */
+   public interface Weigher<K, V> {
+      long weigh(K key, V value);
+   }
+
    static final class NullEvictionListener<K, V> implements EvictionListener<K, V> {
       @Override
       public void onEntryEviction(Map<K, V> evicted) {
@@ -348,11 +391,23 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e);
 
+      /**
+       * Invoked when the total weight of Segment entries exceeds the maximum weight of Segment.
+       * Evicts entries, in the order defined by the eviction algorithm, until the Segment weight is
+       * within bounds again.
+       * <p>
+       * Invoked while holding a lock on Segment.
+       *
+       * @return non null set of evicted entries.
+       */
+      Set<HashEntry<K, V>> onWeightExceeded();
+
       /**
        * Invoked to notify EvictionPolicy implementation that an entry in Segment has been
        * accessed. Returns true if batching threshold has been reached, false otherwise.
        * <p>
-       * Note that this method is potentially invoked without holding a lock on Segment.
+       * Note that this method is potentially invoked without holding a lock on Segment, and must not
+       * block: it is on the path of every read.
        *
        * @return true if batching threshold has been reached, false otherwise.
        *
@@ -370,6 +425,22 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       void onEntryRemove(HashEntry<K, V> e);
 
+      /**
+       * Invoked to notify EvictionPolicy implementation that an entry of Segment has been replaced
+       * by a clone, because an entry following it in its bucket was removed or because the table was
+       * rehashed. The clone maps the
+       * same key to the same value and must take the place of the original entry, without counting
+       * as an access and without evicting anything.
+       * <p>
+       * Invoked while holding a lock on Segment.
+       *
+       * @param e
+       *            replaced entry in Segment
+       * @param clone
+       *            entry replacing e in Segment
+       */
+      void onEntryReplaced(HashEntry<K, V> e, HashEntry<K, V> clone);
+
       /**
        * Invoked to notify EvictionPolicy implementation that all Segment entries have been
        * cleared.
@@ -416,11 +487,21 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return Collections.emptySet();
       }
 
+      @Override
+      public Set<HashEntry<K, V>> onWeightExceeded() {
+         return Collections.emptySet();
+      }
+
       @Override
       public void onEntryRemove(HashEntry<K, V> e) {
          // Do nothing.
       }
 
+      @Override
+      public void onEntryReplaced(HashEntry<K, V> e, HashEntry<K, V> clone) {
+         // Do nothing.
+      }
+
       @Override
       public boolean thresholdExpired() {
          return false;
@@ -433,19 +514,15 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
    }
 
    static final class LRUOld<K, V> implements EvictionPolicy<K, V> {
-      private final ConcurrentLinkedQueue<HashEntry<K, V>> accessQueue;
+      private final AccessBuffer<K, V> accessBuffer;
       private final Segment<K,V> segment;
       private final LinkedList<HashEntry<K, V>> lruQueue;
-      private final int maxBatchQueueSize;
       private final int trimDownSize;
-      private final float batchThresholdFactor;
 
       public LRUOld(Segment<K,V> s, int capacity, float lf, int maxBatchSize, float batchThresholdFactor) {
          this.segment = s;
          this.trimDownSize = capacity;
-         this.maxBatchQueueSize = maxBatchSize > MAX_BATCH_SIZE ? MAX_BATCH_SIZE : maxBatchSize;
-         this.batchThresholdFactor = batchThresholdFactor;
-         this.accessQueue = new ConcurrentLinkedQueue<HashEntry<K, V>>();
+         this.accessBuffer = new AccessBuffer<K, V>(maxBatchSize, batchThresholdFactor);
          this.lruQueue = new LinkedList<HashEntry<K, V>>();
       }
 
@@ -455,20 +532,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          if (isOverflow()) {
             evicted = new HashSet<HashEntry<K, V>>();
          }
-         try {
-            for (HashEntry<K, V> e : accessQueue) {
-               if (lruQueue.remove(e)) {
-                  lruQueue.addFirst(e);
-               }
-            }
-            while (isOverflow()) {
-               HashEntry<K, V> first = lruQueue.getLast();
-               segment.evictionListener.onEntryChosenForEviction(first.value);
-               segment.remove(first.key, first.hash, null);
-               evicted.add(first);
+         for (HashEntry<K, V> e : accessBuffer.drain()) {
+            e = segment.liveEntry(e);
+            if (e != null && lruQueue.remove(e)) {
+               lruQueue.addFirst(e);
             }
-         } finally {
-            accessQueue.clear();
+         }
+         while (isOverflow()) {
+            HashEntry<K, V> first = lruQueue.getLast();
+            segment.evictionListener.onEntryChosenForEviction(first.value);
+            segment.remove(first.key, first.hash, null);
+            evicted.add(first);
          }
          return evicted;
       }
@@ -483,13 +557,24 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return Collections.emptySet();
       }
 
+      @Override
+      public Set<HashEntry<K, V>> onWeightExceeded() {
+         Set<HashEntry<K, V>> evicted = new HashSet<HashEntry<K, V>>(execute());
+         while (segment.isOverweight() && !lruQueue.isEmpty()) {
+            HashEntry<K, V> last = lruQueue.removeLast();
+            segment.evictionListener.onEntryChosenForEviction(last.value);
+            segment.remove(last.key, last.hash, null);
+            evicted.add(last);
+         }
+         return evicted;
+      }
+
       /*
        * Invoked without holding a lock on Segment
        */
       @Override
       public boolean onEntryHit(HashEntry<K, V> e) {
-         accessQueue.add(e);
-         return accessQueue.size() >= maxBatchQueueSize * batchThresholdFactor;
+         return accessBuffer.offer(e);
       }
 
       /*
@@ -497,22 +582,23 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       @Override
       public boolean thresholdExpired() {
-         return accessQueue.size() >= maxBatchQueueSize;
+         return accessBuffer.thresholdExpired();
       }
 
       @Override
       public void onEntryRemove(HashEntry<K, V> e) {
          lruQueue.remove(e);
-         // we could have multiple instances of e in accessQueue; remove them all
-         while (accessQueue.remove(e)) {
-            continue;
-         }
+      }
+
+      @Override
+      public void onEntryReplaced(HashEntry<K, V> e, HashEntry<K, V> clone) {
+         replace(lruQueue, e, clone);
       }
 
       @Override
       public void clear() {
          lruQueue.clear();
-         accessQueue.clear();
+         accessBuffer.clear();
       }
 
       @Override
@@ -526,35 +612,48 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       /** The serialVersionUID */
       private static final long serialVersionUID = -7645068174197717838L;
 
-      private final ConcurrentLinkedQueue<HashEntry<K, V>> accessQueue;
+      private final AccessBuffer<K, V> accessBuffer;
       private final Segment<K,V> segment;
-      private final int maxBatchQueueSize;
       private final int trimDownSize;
-      private final float batchThresholdFactor;
       private final Set<HashEntry<K, V>> evicted;
 
       public LRU(Segment<K,V> s, int capacity, float lf, int maxBatchSize, float batchThresholdFactor) {
-         super(capacity, lf, true);
+         // segments bounded by weight only start small and grow with the segment
+         super(Math.min(capacity, s.table.length), lf, true);
          this.segment = s;
          this.trimDownSize = capacity;
-         this.maxBatchQueueSize = maxBatchSize > MAX_BATCH_SIZE ? MAX_BATCH_SIZE : maxBatchSize;
-         this.batchThresholdFactor = batchThresholdFactor;
-         this.accessQueue = new ConcurrentLinkedQueue<HashEntry<K, V>>();
+         this.accessBuffer = new AccessBuffer<K, V>(maxBatchSize, batchThresholdFactor);
          this.evicted = new HashSet<HashEntry<K, V>>();
       }
 
       @Override
       public Set<HashEntry<K, V>> execute() {
          Set<HashEntry<K, V>> evictedCopy = new HashSet<HashEntry<K, V>>();
-         for (HashEntry<K, V> e : accessQueue) {
-            put(e, e.value);
+         for (HashEntry<K, V> e : accessBuffer.drain()) {
+            // entries evicted while draining must not be put back
+            e = segment.liveEntry(e);
+            if (e != null) {
+               put(e, e.value);
+            }
          }
          evictedCopy.addAll(evicted);
-         accessQueue.clear();
          evicted.clear();
          return evictedCopy;
       }
 
+      @Override
+      public Set<HashEntry<K, V>> onWeightExceeded() {
+         Set<HashEntry<K, V>> evictedCopy = execute();
+         while (segment.isOverweight() && !isEmpty()) {
+            HashEntry<K, V> eldest = keySet().iterator().next();
+            remove(eldest);
+            segment.evictionListener.onEntryChosenForEviction(eldest.value);
+            segment.remove(eldest.key, eldest.hash, null);
+            evictedCopy.add(eldest);
+         }
+         return evictedCopy;
+      }
+
       @Override
       public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
          put(e, e.value);
@@ -573,8 +672,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       @Override
       public boolean onEntryHit(HashEntry<K, V> e) {
-         accessQueue.add(e);
-         return accessQueue.size() >= maxBatchQueueSize * batchThresholdFactor;
+         return accessBuffer.offer(e);
       }
 
       /*
@@ -582,22 +680,26 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       @Override
       public boolean thresholdExpired() {
-         return accessQueue.size() >= maxBatchQueueSize;
+         return accessBuffer.thresholdExpired();
       }
 
       @Override
       public void onEntryRemove(HashEntry<K, V> e) {
          remove(e);
-         // we could have multiple instances of e in accessQueue; remove them all
-         while (accessQueue.remove(e)) {
-            continue;
+      }
+
+      @Override
+      public void onEntryReplaced(HashEntry<K, V> e, HashEntry<K, V> clone) {
+         // the clone equals e, so re-inserting it can't push the map above its threshold
+         if (remove(e) != null) {
+            put(clone, clone.value);
          }
       }
 
       @Override
       public void clear() {
          super.clear();
-         accessQueue.clear();
+         accessBuffer.clear();
       }
 
       @Override
@@ -624,14 +726,12 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
    static final class LIRS<K, V> implements EvictionPolicy<K, V> {
       private final static int MIN_HIR_SIZE = 2;
       private final Segment<K,V> segment;
-      private final ConcurrentLinkedQueue<HashEntry<K, V>> accessQueue;
+      private final AccessBuffer<K, V> accessBuffer;
       private final LinkedHashMap<K, HashEntry<K, V>> stack;
       private final LinkedList<HashEntry<K, V>> queue;
-      private final int maxBatchQueueSize;
       private final int lirSizeLimit;
       private final int hirSizeLimit;
       private int currentLIRSize;
-      private final float batchThresholdFactor;
 
       public LIRS(Segment<K,V> s, int capacity, int maxBatchSize, float batchThresholdFactor) {
          this.segment = s;
@@ -644,9 +744,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             hirSizeLimit = tmpHirSizeLimit;
             lirSizeLimit = tmpLirSize;
          }
-         this.maxBatchQueueSize = maxBatchSize > MAX_BATCH_SIZE ? MAX_BATCH_SIZE : maxBatchSize;
-         this.batchThresholdFactor = batchThresholdFactor;
-         this.accessQueue = new ConcurrentLinkedQueue<HashEntry<K, V>>();
+         this.accessBuffer = new AccessBuffer<K, V>(maxBatchSize, batchThresholdFactor);
          this.stack = new LinkedHashMap<K, HashEntry<K, V>>();
          this.queue = new LinkedList<HashEntry<K, V>>();
       }
@@ -654,20 +752,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       @Override
       public Set<HashEntry<K, V>> execute() {
          Set<HashEntry<K, V>> evicted = new HashSet<HashEntry<K, V>>();
-         try {
-            for (HashEntry<K, V> e : accessQueue) {
-               if (present(e)) {
-                  if (e.recency() == Recency.LIR_RESIDENT) {
-                     handleLIRHit(e, evicted);
-                  } else if (e.recency() == Recency.HIR_RESIDENT) {
-                     handleHIRHit(e, evicted);
-                  }
+         for (HashEntry<K, V> e : accessBuffer.drain()) {
+            e = segment.liveEntry(e);
+            if (e != null && present(e)) {
+               if (e.recency() == Recency.LIR_RESIDENT) {
+                  handleLIRHit(e, evicted);
+               } else if (e.recency() == Recency.HIR_RESIDENT) {
+                  handleHIRHit(e, evicted);
                }
             }
-            removeFromSegment(evicted);
-         } finally {
-            accessQueue.clear();
          }
+         removeFromSegment(evicted);
          return evicted;
       }
 
@@ -738,6 +833,47 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return evicted;
       }
 
+      @Override
+      public Set<HashEntry<K, V>> onWeightExceeded() {
+         Set<HashEntry<K, V>> evicted = execute();
+         while (segment.isOverweight()) {
+            // resident HIR entries go first, then the bottommost LIR entries
+            HashEntry<K, V> victim = queue.isEmpty() ? bottommostLIR() : queue.getFirst();
+            if (victim == null) {
+               break;
+            }
+            segment.evictionListener.onEntryChosenForEviction(victim.value);
+            // Segment.remove notifies onEntryRemove, unless the victim is no longer in the segment
+            if (segment.remove(victim.key, victim.hash, null) == null) {
+               onEntryRemove(victim);
+            }
+            evicted.add(victim);
+         }
+         return evicted;
+      }
+
+      /**
+       * Returns the entry at the bottom of the stack once the stack is pruned. Each entry is pruned
+       * at most once per push, so this is amortized O(1).
+       */
+      private HashEntry<K, V> bottommostLIR() {
+         pruneStack();
+         return stack.isEmpty() ? null : stack.values().iterator().next();
+      }
+
+      /**
+       * Removes the HIR entries from the bottom of the stack, so that the bottommost entry is LIR.
+       * Resident HIR entries stay in the queue.
+       */
+      private void pruneStack() {
+         for (Iterator<HashEntry<K, V>> i = stack.values().iterator(); i.hasNext();) {
+            if (i.next().recency() == Recency.LIR_RESIDENT) {
+               break;
+            }
+            i.remove();
+         }
+      }
+
       private void removeFromSegment(Set<HashEntry<K, V>> evicted) {
          for (HashEntry<K, V> e : evicted) {
             segment.evictionListener.onEntryChosenForEviction(e.value);
@@ -771,8 +907,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       @Override
       public boolean onEntryHit(HashEntry<K, V> e) {
-         accessQueue.add(e);
-         return accessQueue.size() >= maxBatchQueueSize * batchThresholdFactor;
+         return accessBuffer.offer(e);
       }
 
       /*
@@ -780,7 +915,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       @Override
       public boolean thresholdExpired() {
-         return accessQueue.size() >= maxBatchQueueSize;
+         return accessBuffer.thresholdExpired();
       }
 
       @Override
@@ -790,16 +925,22 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             currentLIRSize--;
          }
          queue.remove(e);
-         // we could have multiple instances of e in accessQueue; remove them all
-         while (accessQueue.remove(e)) {
-            continue;
+      }
+
+      @Override
+      public void onEntryReplaced(HashEntry<K, V> e, HashEntry<K, V> clone) {
+         clone.state = e.state;
+         // re-mapping a key keeps its position in the stack
+         if (stack.containsKey(e.key)) {
+            stack.put(e.key, clone);
          }
+         replace(queue, e, clone);
       }
 
       @Override
       public void clear() {
          stack.clear();
-         accessQueue.clear();
+         accessBuffer.clear();
       }
 
       @Override
@@ -808,6 +949,397 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
    }
 
+   /**
+    * Window TinyLFU eviction policy, as described in "TinyLFU: A Highly Efficient Cache Admission
+    * Policy" by Einziger, Friedman and Manes.
+    * <p>
+    * New entries enter a small LRU admission window. Entries leaving the window compete with the
+    * eviction candidate of the main space, which is a segmented LRU made of a probation and a
+    * protected area, and only the one accessed more frequently in the recent past stays. Access
+    * frequencies are estimated with a {@link FrequencySketch}, which periodically ages its counters
+    * so that past popularity fades away. Scans hence only ever flush the admission window and the
+    * probation area, while frequently accessed entries stay in the protected area.
+    */
+   static final class TinyLFU<K, V> implements EvictionPolicy<K, V> {
+      private final Segment<K,V> segment;
+      private final AccessBuffer<K, V> accessBuffer;
+      private final FrequencySketch sketch;
+      final LinkedHashSet<HashEntry<K, V>> window;
+      final LinkedHashSet<HashEntry<K, V>> probation;
+      final LinkedHashSet<HashEntry<K, V>> protectedSpace;
+      private final int windowSizeLimit;
+      private final int mainSizeLimit;
+      private final int protectedSizeLimit;
+
+      public TinyLFU(Segment<K,V> s, int capacity, int maxBatchSize, float batchThresholdFactor) {
+         this.segment = s;
+         this.windowSizeLimit = Math.max(1, capacity / 100);
+         this.mainSizeLimit = Math.max(0, capacity - windowSizeLimit);
+         this.protectedSizeLimit = (int) (mainSizeLimit * 0.8);
+         this.accessBuffer = new AccessBuffer<K, V>(maxBatchSize, batchThresholdFactor);
+         this.sketch = new FrequencySketch(capacity);
+         this.window = new LinkedHashSet<HashEntry<K, V>>();
+         this.probation = new LinkedHashSet<HashEntry<K, V>>();
+         this.protectedSpace = new LinkedHashSet<HashEntry<K, V>>();
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> execute() {
+         for (HashEntry<K, V> e : accessBuffer.drain()) {
+            e = segment.liveEntry(e);
+            if (e != null) {
+               onAccess(e);
+            }
+         }
+         return new HashSet<HashEntry<K, V>>();
+      }
+
+      private void onAccess(HashEntry<K, V> e) {
+         if (window.remove(e)) {
+            sketch.increment(e.hash);
+            window.add(e);
+         } else if (probation.remove(e)) {
+            sketch.increment(e.hash);
+            protectedSpace.add(e);
+            if (protectedSpace.size() > protectedSizeLimit) {
+               // demote the least recently used protected entry
+               HashEntry<K, V> demoted = first(protectedSpace);
+               protectedSpace.remove(demoted);
+               probation.add(demoted);
+            }
+         } else if (protectedSpace.remove(e)) {
+            sketch.increment(e.hash);
+            protectedSpace.add(e);
+         }
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
+         sketch.increment(e.hash);
+         window.add(e);
+         if (window.size() <= windowSizeLimit) {
+            return Collections.emptySet();
+         }
+         HashEntry<K, V> candidate = first(window);
+         window.remove(candidate);
+         if (probation.size() + protectedSpace.size() < mainSizeLimit) {
+            probation.add(candidate);
+            return Collections.emptySet();
+         }
+         HashEntry<K, V> victim = !probation.isEmpty() ? first(probation) : first(protectedSpace);
+         Set<HashEntry<K, V>> evicted = new HashSet<HashEntry<K, V>>();
+         if (victim != null && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+            probation.add(candidate);
+            evict(victim, evicted);
+         } else {
+            evict(candidate, evicted);
+         }
+         return evicted;
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> onWeightExceeded() {
+         Set<HashEntry<K, V>> evicted = execute();
+         while (segment.isOverweight()) {
+            HashEntry<K, V> victim = first(probation);
+            if (victim == null) victim = first(window);
+            if (victim == null) victim = first(protectedSpace);
+            if (victim == null) {
+               break;
+            }
+            evict(victim, evicted);
+         }
+         return evicted;
+      }
+
+      private void evict(HashEntry<K, V> e, Set<HashEntry<K, V>> evicted) {
+         removeFromQueues(e);
+         segment.evictionListener.onEntryChosenForEviction(e.value);
+         segment.remove(e.key, e.hash, null);
+         evicted.add(e);
+      }
+
+      private Set<HashEntry<K, V>> removeFromQueues(HashEntry<K, V> e) {
+         if (window.remove(e)) {
+            return window;
+         } else if (probation.remove(e)) {
+            return probation;
+         } else if (protectedSpace.remove(e)) {
+            return protectedSpace;
+         }
+         return null;
+      }
+
+      private HashEntry<K, V> first(Set<HashEntry<K, V>> queue) {
+         return queue.isEmpty() ? null : queue.iterator().next();
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean onEntryHit(HashEntry<K, V> e) {
+         return accessBuffer.offer(e);
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean thresholdExpired() {
+         return accessBuffer.thresholdExpired();
+      }
+
+      @Override
+      public void onEntryRemove(HashEntry<K, V> e) {
+         removeFromQueues(e);
+      }
+
+      @Override
+      public void onEntryReplaced(HashEntry<K, V> e, HashEntry<K, V> clone) {
+         Set<HashEntry<K, V>> queue = removeFromQueues(e);
+         if (queue != null) {
+            queue.add(clone);
+         }
+      }
+
+      @Override
+      public void clear() {
+         window.clear();
+         probation.clear();
+         protectedSpace.clear();
+         accessBuffer.clear();
+      }
+
+      @Override
+      public Eviction strategy() {
+         return Eviction.TINY_LFU;
+      }
+   }
+
+   /**
+    * A count-min sketch estimating how often keys have been accessed, with four 4-bit counters per
+    * key. Once the number of recorded accesses reaches ten times the capacity, all counters are
+    * halved so that estimates reflect recent history. Not thread safe, only accessed while holding
+    * a lock on Segment.
+    */
+   static final class FrequencySketch {
+      private static final long[] SEEDS = {
+         0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+      private static final long RESET_MASK = 0x7777777777777777L;
+
+      private final long[] table;
+      private final int tableMask;
+      private final int sampleSize;
+      private int size;
+
+      FrequencySketch(int capacity) {
+         int length = 8;
+         while (length < capacity && length < MAXIMUM_CAPACITY) {
+            length <<= 1;
+         }
+         table = new long[length];
+         tableMask = length - 1;
+         sampleSize = capacity <= 0 ? 10 : (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+      }
+
+      /**
+       * Returns the estimated number of accesses of the key with the given hash, at most 15.
+       */
+      int frequency(int hash) {
+         int start = (hash & 3) << 2;
+         int frequency = Integer.MAX_VALUE;
+         for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+         }
+         return frequency;
+      }
+
+      /**
+       * Records an access of the key with the given hash.
+       */
+      void increment(int hash) {
+         int start = (hash & 3) << 2;
+         boolean added = false;
+         for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int offset = (start + i) << 2;
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+               table[index] += 1L << offset;
+               added = true;
+            }
+         }
+         if (added && ++size >= sampleSize) {
+            reset();
+         }
+      }
+
+      private void reset() {
+         for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+         }
+         size >>>= 1;
+      }
+
+      private int indexOf(int hash, int i) {
+         long h = (hash + SEEDS[i]) * SEEDS[i];
+         h += h >>> 32;
+         return (int) h & tableMask;
+      }
+   }
+
+   /**
+    * Records accesses to the entries of a Segment on behalf of its {@link EvictionPolicy}, without
+    * ever blocking readers.
+    * <p>
+    * Accesses are written into one of several bounded ring buffers, chosen by the accessing thread,
+    * by claiming a slot with a CAS on the buffer's write counter. Threads reading the same Segment
+    * hence rarely contend on the same counter, and never on the Segment lock. The buffers are
+    * drained in batches by whichever thread holds the Segment lock. When a ring buffer is full, or
+    * the slot could not be claimed after a retry, the access is simply not recorded: eviction
+    * policies only need a representative sample of the accesses, and losing a few of them is much
+    * cheaper than making readers wait.
+    * <p>
+    * Buffered entries may have been removed, or replaced by a clone, by the time they are drained,
+    * so policies must resolve them with {@link Segment#liveEntry(HashEntry)} before use.
+    */
+   static final class AccessBuffer<K, V> {
+      /**
+       * Number of slots in each ring buffer, must be a power of two
+       */
+      static final int STRIPE_SIZE = 16;
+      static final int MAX_STRIPES = 8;
+      static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+      private final Stripe<K, V>[] stripes;
+      private final int drainThreshold;
+      /**
+       * Drained entries, reused across drains. Only accessed while holding the Segment lock.
+       */
+      private final List<HashEntry<K, V>> batch;
+
+      @SuppressWarnings("unchecked")
+      AccessBuffer(int maxBatchSize, float batchThresholdFactor) {
+         int batchSize = maxBatchSize > EvictionPolicy.MAX_BATCH_SIZE ? EvictionPolicy.MAX_BATCH_SIZE : maxBatchSize;
+         int threshold = (int) (batchSize * batchThresholdFactor);
+         this.drainThreshold = Math.max(1, Math.min(threshold, STRIPE_SIZE / 2));
+         this.stripes = new Stripe[STRIPES];
+         for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe<K, V>();
+         }
+         this.batch = new ArrayList<HashEntry<K, V>>(STRIPES * STRIPE_SIZE);
+      }
+
+      private static int stripes(int processors) {
+         int stripes = 1;
+         while (stripes < processors && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+         }
+         return stripes;
+      }
+
+      /**
+       * Records an access to e. Safe to invoke without holding the Segment lock, never blocks.
+       *
+       * @return true if enough accesses are buffered that they should be drained
+       */
+      boolean offer(HashEntry<K, V> e) {
+         int index = hash((int) Thread.currentThread().getId());
+         int pending = stripes[index & (stripes.length - 1)].offer(e);
+         if (pending < 0) {
+            // lost the race for the slot, try once more on the neighbouring stripe
+            pending = stripes[(index + 1) & (stripes.length - 1)].offer(e);
+         }
+         return pending >= drainThreshold;
+      }
+
+      /**
+       * Returns true if enough accesses are buffered that they should be drained. Safe to invoke
+       * without holding the Segment lock.
+       */
+      boolean thresholdExpired() {
+         int pending = 0;
+         for (Stripe<K, V> stripe : stripes) {
+            pending += stripe.pending();
+         }
+         return pending >= drainThreshold;
+      }
+
+      /**
+       * Removes all buffered accesses. Must be invoked while holding the Segment lock, and the
+       * returned list is only valid until the next invocation.
+       */
+      List<HashEntry<K, V>> drain() {
+         batch.clear();
+         for (Stripe<K, V> stripe : stripes) {
+            stripe.drainTo(batch);
+         }
+         return batch;
+      }
+
+      /**
+       * Discards all buffered accesses. Must be invoked while holding the Segment lock.
+       */
+      void clear() {
+         drain();
+         batch.clear();
+      }
+   }
+
+   /**
+    * A single ring buffer of an {@link AccessBuffer}. Any thread may write to it, only the thread
+    * holding the Segment lock reads from it.
+    */
+   static final class Stripe<K, V> {
+      private final AtomicReferenceArray<HashEntry<K, V>> slots = new AtomicReferenceArray<HashEntry<K, V>>(AccessBuffer.STRIPE_SIZE);
+      private final AtomicLong writeCounter = new AtomicLong();
+      /**
+       * Only written while holding the Segment lock
+       */
+      private volatile long readCounter;
+
+      /**
+       * @return the number of buffered accesses including e, {@link AccessBuffer#STRIPE_SIZE} if
+       *         the buffer is full, or -1 if another thread claimed the slot first
+       */
+      int offer(HashEntry<K, V> e) {
+         long head = readCounter;
+         long tail = writeCounter.get();
+         int size = (int) (tail - head);
+         if (size >= AccessBuffer.STRIPE_SIZE) {
+            return AccessBuffer.STRIPE_SIZE;
+         }
+         if (writeCounter.compareAndSet(tail, tail + 1)) {
+            slots.lazySet((int) tail & (AccessBuffer.STRIPE_SIZE - 1), e);
+            return size + 1;
+         }
+         return -1;
+      }
+
+      int pending() {
+         return (int) (writeCounter.get() - readCounter);
+      }
+
+      void drainTo(List<HashEntry<K, V>> sink) {
+         long head = readCounter;
+         long tail = writeCounter.get();
+         for (; head < tail; head++) {
+            int index = (int) head & (AccessBuffer.STRIPE_SIZE - 1);
+            HashEntry<K, V> e = slots.get(index);
+            if (e == null) {
+               // the slot has been claimed but not written yet, pick it up on the next drain
+               break;
+            }
+            slots.lazySet(index, null);
+            sink.add(e);
+         }
+         readCounter = head;
+      }
+   }
+
    /**
     * Segments are specialized versions of hash tables.  This
     * subclasses from ReentrantLock opportunistically, just to
@@ -888,18 +1420,52 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        */
       final float loadFactor;
 
+      /**
+       * The maximum number of entries in this segment, Integer.MAX_VALUE if it is bounded by weight
+       * only.
+       */
       final int evictCap;
 
+      /**
+       * Whether the table is rehashed as the segment grows. Only segments without eviction, or
+       * bounded by weight only, grow: the table of the others is sized for their maximum number of
+       * entries up front.
+       */
+      final boolean growable;
+
       transient final EvictionPolicy<K, V> eviction;
 
       transient final EvictionListener<K, V> evictionListener;
 
+      /**
+       * Computes entry weights, or null if this segment is bounded by the number of entries only.
+       */
+      transient final Weigher<K, V> weigher;
+
+      /**
+       * The maximum total weight of the entries in this segment.
+       */
+      final long maxWeight;
+
+      /**
+       * The total weight of the entries in this segment. Only modified while holding the lock.
+       */
+      transient volatile long weight;
+
       Segment(int cap, int evictCap, float lf, Eviction es, EvictionListener<K, V> listener) {
+         this(cap, evictCap, lf, es, listener, -1, null);
+      }
+
+      Segment(int cap, int evictCap, float lf, Eviction es, EvictionListener<K, V> listener,
+            long maxWeight, Weigher<K, V> weigher) {
          loadFactor = lf;
          this.evictCap = evictCap;
+         this.growable = es == Eviction.NONE || evictCap == Integer.MAX_VALUE;
+         this.maxWeight = maxWeight;
+         this.weigher = weigher;
+         setTable(HashEntry.<K, V> newArray(cap));
          eviction = es.make(this, evictCap, lf);
          evictionListener = listener;
-         setTable(HashEntry.<K, V> newArray(cap));
       }
 
       @SuppressWarnings("unchecked")
@@ -911,6 +1477,43 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return evictionListener;
       }
 
+      /**
+       * Returns true if the segment is bounded by weight and its entries weigh more than allowed.
+       */
+      boolean isOverweight() {
+         return weigher != null && weight > maxWeight;
+      }
+
+      /**
+       * Recomputes the weight of an entry whose value has been set. Call only while holding lock.
+       */
+      private void reweigh(HashEntry<K, V> e) {
+         if (weigher != null) {
+            long w = weigher.weigh(e.key, e.value);
+            weight += w - e.weight;
+            e.weight = w;
+         }
+      }
+
+      /**
+       * Evicts entries if the segment has grown too heavy. Call only while holding lock.
+       */
+      private Set<HashEntry<K, V>> evictOverweight(Set<HashEntry<K, V>> evicted) {
+         if (!isOverweight()) {
+            return evicted;
+         }
+         Set<HashEntry<K, V>> newlyEvicted = eviction.onWeightExceeded();
+         if (evicted == null || evicted.isEmpty()) {
+            return newlyEvicted;
+         }
+         if (newlyEvicted.isEmpty()) {
+            return evicted;
+         }
+         Set<HashEntry<K, V>> all = new HashSet<HashEntry<K, V>>(evicted);
+         all.addAll(newlyEvicted);
+         return all;
+      }
+
       /**
        * Sets table to new HashEntry array.
        * Call only while holding lock or in constructor.
@@ -928,6 +1531,19 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return tab[hash & tab.length - 1];
       }
 
+      /**
+       * Returns the entry currently mapped to the key of e, which may be a clone of e, or null if
+       * the key is no longer mapped. Must be invoked while holding the lock.
+       */
+      HashEntry<K,V> liveEntry(HashEntry<K,V> e) {
+         for (HashEntry<K,V> p = getFirst(e.hash); p != null; p = p.next) {
+            if (p == e || p.hash == e.hash && e.key.equals(p.key)) {
+               return p;
+            }
+         }
+         return null;
+      }
+
       /**
        * Reads value field of an entry under lock. Called if value
        * field ever appears to be null. This is possible only if a
@@ -1021,9 +1637,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null && oldValue.equals(e.value)) {
                replaced = true;
                e.value = newValue;
+               reweigh(e);
                if (eviction.onEntryHit(e)) {
                   evicted = attemptEviction(true);
                }
+               evicted = evictOverweight(evicted);
             }
             return replaced;
          } finally {
@@ -1045,9 +1663,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null) {
                oldValue = e.value;
                e.value = newValue;
+               reweigh(e);
                if (eviction.onEntryHit(e)) {
                   evicted = attemptEviction(true);
                }
+               evicted = evictOverweight(evicted);
             }
             return oldValue;
          } finally {
@@ -1061,7 +1681,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          Set<HashEntry<K, V>> evicted = null;
          try {
             int c = count;
-            if (c++ > threshold && eviction.strategy() == Eviction.NONE) {
+            if (c++ > threshold && growable) {
                rehash();
             }
             HashEntry<K, V>[] tab = table;
@@ -1077,7 +1697,9 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                oldValue = e.value;
                if (!onlyIfAbsent) {
                   e.value = value;
+                  reweigh(e);
                   eviction.onEntryHit(e);
+                  evicted = evictOverweight(evicted);
                }
             } else {
                oldValue = null;
@@ -1092,6 +1714,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   }
                   // add a new entry
                   tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  reweigh(tab[index]);
                   // notify a miss
                   Set<HashEntry<K, V>> newlyEvicted = eviction.onEntryMiss(tab[index]);
                   if (!newlyEvicted.isEmpty()) {
@@ -1101,6 +1724,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                         evicted = newlyEvicted;
                      }
                   }
+                  evicted = evictOverweight(evicted);
                } else {
                   tab[index] = new HashEntry<K, V>(key, hash, first, value);
                }
@@ -1168,7 +1792,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                      int k = p.hash & sizeMask;
                      HashEntry<K,V> n = newTable[k];
                      newTable[k] = new HashEntry<K,V>(p.key, p.hash,
-                           n, p.value);
+                           n, p.value, p.weight);
+                     eviction.onEntryReplaced(p, newTable[k]);
                   }
                }
             }
@@ -1203,15 +1828,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
                   // e was removed
                   eviction.onEntryRemove(e);
+                  weight -= e.weight;
 
                   HashEntry<K, V> newFirst = e.next;
                   for (HashEntry<K, V> p = first; p != e; p = p.next) {
-                     // TODO A remove operation makes the map behave like all the other keys in the bucket were just added???
-                     // allow p to be GC-ed
-                     eviction.onEntryRemove(p);
-                     newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value);
-                     // and notify eviction algorithm about new hash entries
-                     eviction.onEntryMiss(newFirst);
+                     newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value, p.weight);
+                     // the clone takes the place of p, which can then be GC-ed
+                     eviction.onEntryReplaced(p, newFirst);
                   }
 
                   tab[index] = newFirst;
@@ -1234,6 +1857,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                }
                ++modCount;
                eviction.clear();
+               weight = 0;
                count = 0; // write-volatile
             } finally {
                unlock();
@@ -1243,11 +1867,9 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
       private Set<HashEntry<K, V>> attemptEviction(boolean lockedAlready) {
          Set<HashEntry<K, V>> evicted = null;
-         boolean obtainedLock = !lockedAlready ? tryLock() : true;
-         if (!obtainedLock && eviction.thresholdExpired()) {
-            lock();
-            obtainedLock = true;
-         }
+         // Readers never wait for the lock: if another thread holds it, the accesses stay buffered
+         // until that thread or a later one drains them
+         boolean obtainedLock = lockedAlready || tryLock();
          if (obtainedLock) {
             try {
                if (eviction.thresholdExpired()) {
@@ -1308,22 +1930,78 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
     */
    public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
          Eviction evictionStrategy, EvictionListener<K, V> evictionListener) {
-      if (capacity < 0 || concurrencyLevel <= 0) {
+      this(capacity, concurrencyLevel, evictionStrategy, evictionListener, -1, null);
+   }
+
+   /**
+    * Creates a new, empty map with the specified maximum capacity, maximum weight, concurrency
+    * level and eviction strategy. Entries are evicted when either the number of entries or the
+    * total weight of the entries, as computed by the weigher, exceed the bounds.
+    * <p>
+    * Both bounds are enforced per segment: each segment evicts once it holds more than its share
+    * of the capacity, or once its entries weigh more than its share of the maximum weight, even if
+    * the map as a whole is within bounds.
+    * <p>
+    * A map with a weigher may be bounded by weight only, by passing a capacity that is not
+    * positive. Its segments then start small and grow as entries are added, instead of being sized
+    * for a maximum number of entries up front. The LIRS and TINY_LFU strategies size their regions
+    * by number of entries, so they need a capacity.
+    *
+    * @param capacity
+    *            is the upper bound capacity for the number of elements in this map, or a value
+    *            that is not positive to bound the map by weight only
+    *
+    * @param concurrencyLevel
+    *            the estimated number of concurrently updating threads. The implementation performs
+    *            internal sizing to try to accommodate this many threads.
+    *
+    * @param evictionStrategy
+    *            the algorithm used to evict elements from this map
+    *
+    * @param evictionListener
+    *            the evicton listener callback to be notified about evicted elements
+    *
+    * @param maxWeight
+    *            the upper bound for the total weight of the elements in this map, ignored if the
+    *            weigher is null
+    *
+    * @param weigher
+    *            computes the weight of each element, or null to bound the map by capacity only
+    *
+    * @throws IllegalArgumentException
+    *             if the initial capacity is negative or the load factor or concurrencyLevel are
+    *             nonpositive.
+    */
+   public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
+         Eviction evictionStrategy, EvictionListener<K, V> evictionListener,
+         long maxWeight, Weigher<K, V> weigher) {
+      boolean boundedByWeightOnly = weigher != null && capacity <= 0;
+      if (capacity < 0 && !boundedByWeightOnly || concurrencyLevel <= 0) {
          throw new IllegalArgumentException();
       }
 
-      concurrencyLevel = Math.min(capacity / 2, concurrencyLevel); // concurrencyLevel cannot be > capacity/2
-      concurrencyLevel = Math.max(concurrencyLevel, 1); // concurrencyLevel cannot be less than 1
+      if (boundedByWeightOnly) {
+         if (evictionStrategy == Eviction.LIRS || evictionStrategy == Eviction.TINY_LFU) {
+            throw new IllegalArgumentException(evictionStrategy + " eviction needs a maximum capacity");
+         }
+      } else {
+         concurrencyLevel = Math.min(capacity / 2, concurrencyLevel); // concurrencyLevel cannot be > capacity/2
+         concurrencyLevel = Math.max(concurrencyLevel, 1); // concurrencyLevel cannot be less than 1
 
-      // minimum two elements per segment
-      if (capacity < concurrencyLevel * 2 && capacity != 1) {
-         throw new IllegalArgumentException("Maximum capacity has to be at least twice the concurrencyLevel");
+         // minimum two elements per segment
+         if (capacity < concurrencyLevel * 2 && capacity != 1) {
+            throw new IllegalArgumentException("Maximum capacity has to be at least twice the concurrencyLevel");
+         }
       }
 
       if (evictionStrategy == null || evictionListener == null) {
          throw new IllegalArgumentException();
       }
 
+      if (weigher != null && maxWeight <= 0) {
+         throw new IllegalArgumentException("Maximum weight has to be positive");
+      }
+
       if (concurrencyLevel > MAX_SEGMENTS) {
          concurrencyLevel = MAX_SEGMENTS;
       }
@@ -1339,20 +2017,32 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       segmentMask = ssize - 1;
       this.segments = Segment.newArray(ssize);
 
-      if (capacity > MAXIMUM_CAPACITY) {
-         capacity = MAXIMUM_CAPACITY;
-      }
-      int c = capacity / ssize;
-      if (c * ssize < capacity) {
-         ++c;
-      }
+      int c;
       int cap = 1;
-      while (cap < c / DEFAULT_LOAD_FACTOR) {
-         cap <<= 1;
+      if (boundedByWeightOnly) {
+         // no bound on the number of entries, segments grow from a table of a single bucket
+         c = Integer.MAX_VALUE;
+      } else {
+         if (capacity > MAXIMUM_CAPACITY) {
+            capacity = MAXIMUM_CAPACITY;
+         }
+         c = capacity / ssize;
+         if (c * ssize < capacity) {
+            ++c;
+         }
+         while (cap < c / DEFAULT_LOAD_FACTOR) {
+            cap <<= 1;
+         }
+      }
+
+      long segmentMaxWeight = maxWeight / ssize;
+      if (segmentMaxWeight * ssize < maxWeight) {
+         ++segmentMaxWeight;
       }
 
       for (int i = 0; i < this.segments.length; ++i) {
-         this.segments[i] = new Segment<K, V>(cap, c, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener);
+         this.segments[i] = new Segment<K, V>(cap, c, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener,
+               segmentMaxWeight, weigher);
       }
    }
 
@@ -1518,6 +2208,20 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
    }
 
+   /**
+    * Returns the total weight of the entries in this map, or 0 if this map is not bounded by
+    * weight.
+    *
+    * @return the total weight of the entries in this map
+    */
+   public long weight() {
+      long sum = 0;
+      for (Segment<K, V> segment : segments) {
+         sum += segment.weight;
+      }
+      return sum;
+   }
+
    /**
     * Returns the value to which the specified key is mapped,
     * or {@code null} if this map contains no mapping for the key.
@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link NotifyingFuture} that is completed explicitly, through {@link #set(Object)} or {@link #setException(Throwable)},
+ * by whichever thread produces the result. Listeners are notified by the completing thread, or by the thread attaching
+ * them if the future has already completed.
+ * <p/>
+ * Only the first completion counts; later calls to {@link #set(Object)}, {@link #setException(Throwable)} or
+ * {@link #cancel(boolean)} are ignored and return false.
+ *
+ * @since 5.1
+ */
+public class SettableNotifyingFuture<T> implements NotifyingFuture<T> {
+
+   private static final Log log = LogFactory.getLog(SettableNotifyingFuture.class);
+
+   private final CountDownLatch completion = new CountDownLatch(1);
+   private List<FutureListener<T>> listeners = new LinkedList<FutureListener<T>>();
+   private volatile boolean done;
+   private volatile boolean cancelled;
+   private volatile T value;
+   private volatile Throwable exception;
+
+   /**
+    * Completes the future with the given value.
+    *
+    * @return true if this call completed the future, false if it had already completed
+    */
+   public boolean set(T value) {
+      return complete(value, null, false);
+   }
+
+   /**
+    * Completes the future with a failure, which {@link #get()} rethrows wrapped in an {@link ExecutionException}.
+    *
+    * @return true if this call completed the future, false if it had already completed
+    */
+   public boolean setException(Throwable exception) {
+      return complete(null, exception, false);
+   }
+
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      return complete(null, null, true);
+   }
+
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   public boolean isDone() {
+      return done;
+   }
+
+   public T get() throws InterruptedException, ExecutionException {
+      completion.await();
+      return report();
+   }
+
+   public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+      if (!completion.await(timeout, unit))
+         throw new java.util.concurrent.TimeoutException();
+      return report();
+   }
+
+   public NotifyingFuture<T> attachListener(FutureListener<T> listener) {
+      synchronized (this) {
+         if (!done) {
+            listeners.add(listener);
+            return this;
+         }
+      }
+      notifyListener(listener);
+      return this;
+   }
+
+   private boolean complete(T value, Throwable exception, boolean cancelled) {
+      List<FutureListener<T>> toNotify;
+      synchronized (this) {
+         if (done) return false;
+         this.value = value;
+         this.exception = exception;
+         this.cancelled = cancelled;
+         done = true;
+         toNotify = listeners;
+         listeners = null;
+      }
+      completion.countDown();
+      for (FutureListener<T> l : toNotify) notifyListener(l);
+      return true;
+   }
+
+   private void notifyListener(FutureListener<T> listener) {
+      try {
+         listener.futureDone(this);
+      } catch (RuntimeException e) {
+         log.warnf(e, "Future listener %s failed", listener);
+      }
+   }
+
+   private T report() throws ExecutionException {
+      if (cancelled) throw new CancellationException();
+      if (exception != null) throw new ExecutionException(exception);
+      return value;
+   }
+
+   @Override
+   public String toString() {
+      return "SettableNotifyingFuture{done=" + done + ", cancelled=" + cancelled + ", value=" + value + ", exception=" + exception + "}";
+   }
+}
@@ -22,11 +22,18 @@
  */
 package org.infinispan.util.concurrent.locks;
 
+import org.infinispan.commands.CommandsFactory;
 import org.infinispan.context.InvocationContext;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -34,22 +41,28 @@ import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Lock manager in charge with processing deadlock detections.
- * Implementation notes: if a deadlock is detected, then one of the transactions has to rollback. The transaction that
- * rollbacks is determined by comparing the coin toss from {@link org.infinispan.transaction.xa.DldGlobalTransaction}.
- * A thread calling {@link DeadlockDetectingLockManager#lockAndRecord(Object, org.infinispan.context.InvocationContext)}
- * would run the deadlock detection algorithm only if all of the following take place:
- * - the call is made in the scope of a transaction (either locally originated or remotely originated)
- * - it cannot acquire lock on the given key and the lock owner is another transaction
- * - when comparing coin toss, this thread would loose against the other one - so it's always the potential loser that runs DLD.
- * If deadlock is detected then {@link #lockAndRecord(Object, org.infinispan.context.InvocationContext)} would throw an
+ * Implementation notes: the transactions that cannot acquire a lock right away register themselves in a {@link
+ * WaitForGraph} and block for the whole lock acquisition timeout, without polling. Deadlocks are looked for whenever a
+ * transaction starts waiting and then periodically, every {@link
+ * org.infinispan.config.Configuration#getDeadlockDetectionSpinDuration()} millis. In clustered caches every node
+ * broadcasts the edges of its part of the graph at the same interval, so that cycles spanning several nodes are found
+ * as well.
+ * If a deadlock is detected then one of the transactions has to rollback: this is the youngest transaction of the
+ * cycle, as determined by comparing the coin toss from {@link org.infinispan.transaction.xa.DldGlobalTransaction}.
+ * Its waiting thread is woken up and {@link #lockAndRecord(Object, org.infinispan.context.InvocationContext)} throws an
  * {@link org.infinispan.util.concurrent.locks.DeadlockDetectedException}. This is subsequently handled in
  * in the interceptor chain - locks owned by this tx are released.
+ * Only locks owned by transactions take part in the detection, see {@link #getOverlapWithNotDeadlockAwareLockOwners()}.
  *
  * @author Mircea.Markus@jboss.com
  */
@@ -62,53 +75,91 @@ public class DeadlockDetectingLockManager extends LockManagerImpl {
 
    protected volatile boolean exposeJmxStats;
 
+   protected volatile WaitForGraph waitForGraph;
+
    private AtomicLong localTxStopped = new AtomicLong(0);
 
    private AtomicLong remoteTxStopped = new AtomicLong(0);
 
    private AtomicLong cannotRunDld = new AtomicLong(0);
 
+   private ScheduledExecutorService executor;
+   private RpcManager rpcManager;
+   private CommandsFactory commandsFactory;
+   private ScheduledFuture<?> detectionTask;
+   private volatile boolean edgesBroadcast;
+
+   @Inject
+   public void injectDetectionDependencies(@ComponentName(KnownComponentNames.EVICTION_SCHEDULED_EXECUTOR) ScheduledExecutorService executor,
+                                           RpcManager rpcManager, CommandsFactory commandsFactory) {
+      this.executor = executor;
+      this.rpcManager = rpcManager;
+      this.commandsFactory = commandsFactory;
+   }
+
    @Start
    public void init() {
       spinDuration = configuration.getDeadlockDetectionSpinDuration();
       exposeJmxStats = configuration.isExposeJmxStatistics();
+      // remote edges are refreshed every spinDuration, so missing a few rounds means their sender is gone
+      waitForGraph = new WaitForGraph(this, 3 * spinDuration);
+      if (spinDuration > 0) {
+         detectionTask = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+               runDetectionRound();
+            }
+         }, spinDuration, spinDuration, MILLISECONDS);
+      }
+   }
+
+   @Stop
+   public void stopDetection() {
+      if (detectionTask != null) detectionTask.cancel(true);
    }
 
    public boolean lockAndRecord(Object key, InvocationContext ctx) throws InterruptedException {
       long lockTimeout = getLockAcquisitionTimeout(ctx);
       if (trace) log.tracef("Attempting to lock %s with acquisition timeout of %s millis", key, lockTimeout);
 
-
       if (ctx.isInTxScope()) {
-         if (trace) log.trace("Using early dead lock detection");
-         final long start = System.currentTimeMillis();
+         if (lockContainer.acquireLock(ctx, key, 0, MILLISECONDS) != null) {
+            if (trace) log.tracef("successfully acquired lock on %s, returning ...", key);
+            return true;
+         }
+         if (lockTimeout <= 0) return false;
+
          DldGlobalTransaction thisTx = (DldGlobalTransaction) ctx.getLockOwner();
-         thisTx.setLockIntention(key);
-         if (trace) log.tracef("Setting lock intention to %s for %s (%s)", key, thisTx, System.identityHashCode(thisTx));
-
-         while (System.currentTimeMillis() < (start + lockTimeout)) {
-            if (lockContainer.acquireLock(ctx, key, spinDuration, MILLISECONDS) != null) {
-               thisTx.setLockIntention(null); //clear lock intention
-               if (trace) log.tracef("successfully acquired lock on %s, returning ...", key);
-               return true;
-            } else {
-               Object owner = getOwner(key);
-               if (!(owner instanceof DldGlobalTransaction)) {
-                  if (trace) log.tracef("Not running DLD as lock owner(%s) is not a transaction", owner);
-                  cannotRunDld.incrementAndGet();
-                  continue;
-               }
-               DldGlobalTransaction lockOwnerTx = (DldGlobalTransaction) owner;
-               if (trace) log.tracef("Could not acquire lock as %s is locked by %s (%s)", key, owner, System.identityHashCode(owner));
-               if (isDeadlockAndIAmLoosing(lockOwnerTx, thisTx, key)) {
-                  updateStats(thisTx);
-                  String message = String.format("Deadlock found and we %s shall not continue. Other tx is %s",
-                                                 thisTx, lockOwnerTx);
-                  if (trace) log.trace(message);
-                  throw new DeadlockDetectedException(message);
-               }
-            }
+         Object owner = getOwner(key);
+         if (trace) log.tracef("Could not acquire lock as %s is locked by %s, waiting", key, owner);
+         if (owner != null && !(owner instanceof DldGlobalTransaction)) {
+            if (trace) log.tracef("Not running DLD as lock owner(%s) is not a transaction", owner);
+            cannotRunDld.incrementAndGet();
+         }
+
+         boolean acquired = false;
+         boolean victim;
+         InterruptedException interrupted = null;
+         waitForGraph.startWaiting(thisTx, key);
+         try {
+            acquired = lockContainer.acquireLock(ctx, key, lockTimeout, MILLISECONDS) != null;
+         } catch (InterruptedException e) {
+            interrupted = e;
+         } finally {
+            victim = waitForGraph.stopWaiting(thisTx);
+         }
+         if (victim) {
+            // clear the interrupt that woke us up
+            Thread.interrupted();
+            if (acquired) lockContainer.releaseLock(ctx, key);
+            updateStats(thisTx);
+            String message = String.format("Deadlock found and we %s shall not continue. Other tx is %s", thisTx, owner);
+            if (trace) log.trace(message);
+            throw new DeadlockDetectedException(message);
          }
+         // not interrupted by the deadlock detection
+         if (interrupted != null) throw interrupted;
+         return acquired;
       } else {
          if (lockContainer.acquireLock(ctx, key, lockTimeout, MILLISECONDS) != null) {
             return true;
@@ -118,52 +169,30 @@ public class DeadlockDetectingLockManager extends LockManagerImpl {
       return false;
    }
 
-   private boolean isDeadlockAndIAmLoosing(DldGlobalTransaction lockOwnerTx, DldGlobalTransaction thisTx, Object key) {
-      //run the lose check first as it is cheaper
-      boolean wouldWeLoose = thisTx.wouldLose(lockOwnerTx);
-      if (!wouldWeLoose) {
-         if (trace) log.tracef("We (%s) win against the other (%s) transaction, so no point running rest of DLD", thisTx, lockOwnerTx);
-         return false;
-      }
-      //do we have lock on what other tx intends to acquire?
-      return ownsLocalIntention(thisTx, lockOwnerTx.getLockIntention()) || ownsRemoteIntention(lockOwnerTx, thisTx, key) || isSameKeyDeadlock(key, thisTx, lockOwnerTx);
-   }
-
-   private boolean isSameKeyDeadlock(Object key, DldGlobalTransaction thisTx, DldGlobalTransaction lockOwnerTx) {
-      boolean iHaveRemoteLock = !thisTx.isRemote(); //this relies on the fact that when DLD is enabled a lock is first acquired remotely and then locally 
-      boolean otherHasLocalLock = lockOwnerTx.isRemote();
-
-      //if we are here then 1) the other tx has a lock on this local key AND 2) I have a lock on the same key remotely
-      if (iHaveRemoteLock && otherHasLocalLock) {
-         if (trace) log.tracef("Same key deadlock between %s and %s on key %s.", thisTx, lockOwnerTx, key);
-         return true;
-      }
-      return false;
+   /**
+    * Replaces the wait-for edges of the given node with the ones it has just sent.
+    */
+   public void updateRemoteEdges(Address sender, Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges) {
+      waitForGraph.updateRemoteEdges(sender, edges);
    }
 
    /**
-    * This happens with two nodes replicating same tx at the same time.
+    * Broadcasts the local wait-for edges, if any, and then looks for deadlocks.  An empty set of edges is sent only
+    * once, so that the other nodes forget about our previous edges right away.
     */
-   private boolean ownsRemoteIntention(DldGlobalTransaction lockOwnerTx, DldGlobalTransaction thisTx, Object key) {
-      boolean localLockOwner = !lockOwnerTx.isRemote();
-      if (localLockOwner) {
-         // I've already acquired lock on this key before replicating here, so this mean we are in deadlock. This assumes the fact that
-         // if trying to acquire a remote lock, a tx first acquires a local lock. 
-         if (thisTx.hasLockAtOrigin(lockOwnerTx.getRemoteLockIntention())) {
-            if (trace)
-               log.tracef("Same key deadlock detected: lock owner tries to acquire lock remotely on %s but we have it!", key);
-            return true;
+   protected void runDetectionRound() {
+      try {
+         if (rpcManager != null) {
+            Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges = waitForGraph.getLocalEdges();
+            if (!edges.isEmpty() || edgesBroadcast) {
+               rpcManager.broadcastRpcCommand(commandsFactory.buildWaitForGraphCommand(edges), false);
+               edgesBroadcast = !edges.isEmpty();
+            }
          }
-      } else {
-         if (trace) log.tracef("Lock owner is remote: %s", lockOwnerTx);
+         waitForGraph.detectDeadlocks();
+      } catch (Throwable t) {
+         log.failedDeadlockDetectionRound(t);
       }
-      return false;
-   }
-
-   private boolean ownsLocalIntention(DldGlobalTransaction thisTx, Object lockOwnerTxIntention) {
-      boolean result = lockOwnerTxIntention != null && ownsLock(lockOwnerTxIntention, thisTx);
-      if (trace) log.tracef("Local intention is '%s'. Do we own lock for it? %s, We == %s", lockOwnerTxIntention, result, thisTx);
-      return result;
    }
 
    public void setExposeJmxStats(boolean exposeJmxStats) {
@@ -74,6 +74,7 @@ public class LockManagerImpl implements LockManager {
    public void startLockManager() {
       lockContainer = configuration.isUseLockStriping() ?
       transactionManager == null ? new ReentrantStripedLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantStripedLockContainer(configuration.getConcurrencyLevel()) :
+      configuration.isUseCasLocks() ? new OwnableCasPerEntryLockContainer(configuration.getConcurrencyLevel()) :
       transactionManager == null ? new ReentrantPerEntryLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantPerEntryLockContainer(configuration.getConcurrencyLevel());
    }
 
@@ -134,6 +135,8 @@ public class LockManagerImpl implements LockManager {
 
          if (l instanceof OwnableReentrantLock) {
             return ((OwnableReentrantLock) l).getOwner();
+         } else if (l instanceof OwnableCasLock) {
+            return ((OwnableCasLock) l).getOwner();
          } else {
             // cannot determine owner, JDK Reentrant locks only provide best-effort guesses.
             return ANOTHER_THREAD;
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A lock that, like {@link OwnableReentrantLock}, is reentrant based on an owner object rather than on the current
+ * thread, but that is acquired by a single compare-and-swap of its owner field when it is free.  Only requestors that
+ * find the lock held wait on its monitor, and only releases that find waiting requestors notify them.
+ * <p/>
+ * A lock can be <i>retired</i> by its owner on release, after which it can never be acquired again.  This allows a
+ * {@link org.infinispan.util.concurrent.locks.containers.LockContainer} to keep free locks mapped to their keys and
+ * reuse them, and still safely drop them from its map: a requestor that finds a retired lock looks the key up again.
+ * <p/>
+ * Like {@link OwnableReentrantLock}, this lock only supports nonfair queueing.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+public final class OwnableCasLock implements Lock {
+
+   private static final Object RETIRED = new Object();
+
+   private static final AtomicReferenceFieldUpdater<OwnableCasLock, Object> OWNER =
+         AtomicReferenceFieldUpdater.newUpdater(OwnableCasLock.class, Object.class, "owner");
+
+   private volatile Object owner;
+   /**
+    * Only modified by the owner, and published to the next owner by the write of {@link #owner} that frees the lock.
+    */
+   private volatile int holds;
+   /**
+    * Only modified while holding the monitor of this lock.
+    */
+   private volatile int waiters;
+
+   public OwnableCasLock() {
+   }
+
+   /**
+    * Creates a lock that is already held by the given owner.
+    */
+   public OwnableCasLock(Object owner) {
+      this.holds = 1;
+      this.owner = owner;
+   }
+
+   public boolean tryLock(Object requestor, long time, TimeUnit unit) throws InterruptedException {
+      if (tryAcquire(requestor)) return true;
+      long nanos = unit.toNanos(time);
+      if (nanos <= 0 || owner == RETIRED) return false;
+
+      long deadline = System.nanoTime() + nanos;
+      synchronized (this) {
+         // must be visible before the owner is read again, so that a concurrent release either frees the lock before
+         // the read below or sees this waiter and notifies it
+         waiters++;
+         try {
+            while (true) {
+               if (tryAcquire(requestor)) return true;
+               if (owner == RETIRED) return false;
+               long remaining = deadline - System.nanoTime();
+               if (remaining <= 0) return false;
+               TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+         } finally {
+            waiters--;
+         }
+      }
+   }
+
+   private boolean tryAcquire(Object requestor) {
+      Object current = owner;
+      if (current == null) {
+         if (OWNER.compareAndSet(this, null, requestor)) {
+            holds = 1;
+            return true;
+         }
+         return false;
+      }
+      if (current != RETIRED && current.equals(requestor)) {
+         holds++;
+         return true;
+      }
+      return false;
+   }
+
+   public void unlock(Object requestor) {
+      release(requestor, false);
+   }
+
+   /**
+    * Releases one hold of the lock, if the requestor owns it.
+    *
+    * @param requestor the owner releasing the lock
+    * @param retire    whether the lock should be retired if this release frees it and nobody is waiting for it
+    * @return true if the lock was retired
+    */
+   public boolean release(Object requestor, boolean retire) {
+      Object current = owner;
+      // like OwnableReentrantLock, be quiet about releases by non-owners
+      if (current == null || current == RETIRED || !current.equals(requestor)) return false;
+      int h = holds;
+      if (h > 1) {
+         holds = h - 1;
+         return false;
+      }
+      holds = 0;
+      boolean retired = retire && waiters == 0;
+      owner = retired ? RETIRED : null;
+      // a requestor that started waiting after the check above either sees the lock free or retired, or is notified
+      if (waiters > 0) {
+         synchronized (this) {
+            notifyAll();
+         }
+      }
+      return retired;
+   }
+
+   /**
+    * @return the owner of the lock, or null if it is currently unlocked.
+    */
+   public Object getOwner() {
+      Object current = owner;
+      return current == RETIRED ? null : current;
+   }
+
+   public boolean isLocked() {
+      return getOwner() != null;
+   }
+
+   /**
+    * @return true if the lock was retired and can't be acquired anymore
+    */
+   public boolean isRetired() {
+      return owner == RETIRED;
+   }
+
+   public void lock() {
+      throw new UnsupportedOperationException();
+   }
+
+   public void lockInterruptibly() throws InterruptedException {
+      throw new UnsupportedOperationException();
+   }
+
+   public boolean tryLock() {
+      throw new UnsupportedOperationException();
+   }
+
+   public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      throw new UnsupportedOperationException("Should never get here");
+   }
+
+   public void unlock() {
+      throw new UnsupportedOperationException();
+   }
+
+   public Condition newCondition() {
+      throw new UnsupportedOperationException("Not supported in this implementation!");
+   }
+
+   @Override
+   public String toString() {
+      Object current = owner;
+      return super.toString() + (current == RETIRED ? "[Retired]" : current == null ? "[Unlocked]" : "[Locked by " + current + "]");
+   }
+}
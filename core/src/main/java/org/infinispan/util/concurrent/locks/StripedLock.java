@@ -22,6 +22,9 @@
  */
 package org.infinispan.util.concurrent.locks;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -173,13 +176,22 @@ public class StripedLock {
    }
 
    /**
-    * Acquires locks on keys passed in.  Makes multiple calls to {@link #acquireLock(Object, boolean)}
+    * Acquires locks on keys passed in.  Makes multiple calls to {@link #acquireLock(Object, boolean)}, in the order of
+    * the underlying shared locks, so that threads locking overlapping sets of keys cannot deadlock each other.
     *
     * @param keys      keys to unlock
     * @param exclusive whether locks are exclusive.
     */
    public void acquireAllLocks(List<Object> keys, boolean exclusive) {
-      for (Object k : keys) {
+      List<Object> ordered = new ArrayList<Object>(keys);
+      Collections.sort(ordered, new Comparator<Object>() {
+         @Override
+         public int compare(Object o1, Object o2) {
+            int i1 = hashToIndex(o1), i2 = hashToIndex(o2);
+            return i1 < i2 ? -1 : (i1 == i2 ? 0 : 1);
+         }
+      });
+      for (Object k : ordered) {
         acquireLock(k, exclusive);
     }
    }
@@ -0,0 +1,253 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.xa.DldGlobalTransaction;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The wait-for graph of the transactions blocked on the locks of a node, used by the {@link
+ * DeadlockDetectingLockManager}.
+ * <p/>
+ * The local edges of the graph go from every transaction waiting for a lock on this node to the transaction that
+ * currently owns that lock.  They are computed on demand from the registered waiters, so they never go stale.  The
+ * edges of the other nodes are received periodically and are dropped when they have not been refreshed for a while,
+ * e.g. because their sender left the cluster.
+ * <p/>
+ * A deadlock is a cycle in the union of the local and remote edges, of any length and spanning any number of nodes.
+ * It is resolved by aborting the youngest transaction of the cycle (see {@link DldGlobalTransaction#wouldLose}).
+ * Since every node sees the same cycle, only the node on which the victim is waiting aborts it: the waiting thread is
+ * interrupted and finds itself {@link #stopWaiting(DldGlobalTransaction) marked as victim}.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+public class WaitForGraph {
+
+   private static final Log log = LogFactory.getLog(WaitForGraph.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final LockManager lockManager;
+   private final long remoteEdgesLifespan;
+
+   private final ConcurrentMap<DldGlobalTransaction, Waiter> waiters = new ConcurrentHashMap<DldGlobalTransaction, Waiter>();
+   private final ConcurrentMap<Address, RemoteEdges> remoteEdges = new ConcurrentHashMap<Address, RemoteEdges>();
+
+   /**
+    * @param lockManager         the lock manager used to find the owners of the locks being waited for
+    * @param remoteEdgesLifespan the number of millis after which the edges received from a node are dropped, unless
+    *                            they were refreshed in the meantime
+    */
+   public WaitForGraph(LockManager lockManager, long remoteEdgesLifespan) {
+      this.lockManager = lockManager;
+      this.remoteEdgesLifespan = remoteEdgesLifespan;
+   }
+
+   /**
+    * Registers the current thread as waiting for the lock on the given key on behalf of the given transaction, and
+    * looks for the deadlocks this might have caused.  Must be followed by a call to {@link
+    * #stopWaiting(DldGlobalTransaction)}, normally in a finally block.
+    */
+   public void startWaiting(DldGlobalTransaction tx, Object key) {
+      waiters.put(tx, new Waiter(key, Thread.currentThread()));
+      detectDeadlocks();
+   }
+
+   /**
+    * Unregisters the waiter of the given transaction.  After this method returns the waiting thread is no longer
+    * interrupted by the deadlock detection.
+    *
+    * @return true if the transaction was chosen as the victim of a deadlock, in which case its thread was interrupted
+    *         and the caller is expected to clear the interrupt and roll the transaction back
+    */
+   public boolean stopWaiting(DldGlobalTransaction tx) {
+      Waiter waiter = waiters.remove(tx);
+      if (waiter == null) return false;
+      synchronized (waiter) {
+         waiter.done = true;
+         return waiter.victim;
+      }
+   }
+
+   /**
+    * @return the edges from every transaction waiting on this node to the transaction owning the lock it waits for.
+    *         Locks whose owner is not a transaction do not contribute any edge.
+    */
+   public Map<DldGlobalTransaction, Set<DldGlobalTransaction>> getLocalEdges() {
+      Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges = new HashMap<DldGlobalTransaction, Set<DldGlobalTransaction>>();
+      for (Map.Entry<DldGlobalTransaction, Waiter> e : waiters.entrySet()) {
+         Object owner = lockManager.getOwner(e.getValue().key);
+         if (owner instanceof DldGlobalTransaction && !owner.equals(e.getKey())) {
+            addEdge(edges, e.getKey(), (DldGlobalTransaction) owner);
+         }
+      }
+      return edges;
+   }
+
+   /**
+    * Replaces the edges previously received from the given node.
+    */
+   public void updateRemoteEdges(Address sender, Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges) {
+      if (trace) log.tracef("Received wait-for edges %s from %s", edges, sender);
+      if (edges == null || edges.isEmpty()) {
+         remoteEdges.remove(sender);
+      } else {
+         remoteEdges.put(sender, new RemoteEdges(edges, System.currentTimeMillis()));
+      }
+   }
+
+   /**
+    * Looks for cycles in the wait-for graph that involve at least one transaction waiting on this node, and aborts the
+    * youngest transaction of every cycle found, if it waits on this node.
+    *
+    * @return the number of transactions aborted
+    */
+   public synchronized int detectDeadlocks() {
+      if (waiters.isEmpty()) return 0;
+      Map<DldGlobalTransaction, Set<DldGlobalTransaction>> graph = getLocalEdges();
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Address, RemoteEdges> e : remoteEdges.entrySet()) {
+         RemoteEdges received = e.getValue();
+         if (now - received.timestamp > remoteEdgesLifespan) {
+            if (trace) log.tracef("Dropping the stale wait-for edges of %s", e.getKey());
+            remoteEdges.remove(e.getKey(), received);
+            continue;
+         }
+         for (Map.Entry<DldGlobalTransaction, Set<DldGlobalTransaction>> edge : received.edges.entrySet()) {
+            for (DldGlobalTransaction owner : edge.getValue()) addEdge(graph, edge.getKey(), owner);
+         }
+      }
+
+      int aborted = 0;
+      Set<DldGlobalTransaction> visited = new HashSet<DldGlobalTransaction>();
+      List<DldGlobalTransaction> path = new ArrayList<DldGlobalTransaction>();
+      for (DldGlobalTransaction tx : waiters.keySet()) {
+         if (!visited.contains(tx)) aborted += findCycles(tx, graph, visited, path);
+      }
+      return aborted;
+   }
+
+   private int findCycles(DldGlobalTransaction tx, Map<DldGlobalTransaction, Set<DldGlobalTransaction>> graph,
+                          Set<DldGlobalTransaction> visited, List<DldGlobalTransaction> path) {
+      visited.add(tx);
+      path.add(tx);
+      int aborted = 0;
+      for (DldGlobalTransaction owner : getEdges(graph, tx)) {
+         int cycleStart = path.indexOf(owner);
+         if (cycleStart >= 0) {
+            List<DldGlobalTransaction> cycle = path.subList(cycleStart, path.size());
+            DldGlobalTransaction victim = youngest(cycle);
+            if (trace) log.tracef("Deadlock found between %s, the victim is %s", cycle, victim);
+            if (abort(victim)) aborted++;
+         } else if (!visited.contains(owner)) {
+            aborted += findCycles(owner, graph, visited, path);
+         }
+      }
+      path.remove(path.size() - 1);
+      return aborted;
+   }
+
+   private boolean abort(DldGlobalTransaction victim) {
+      Waiter waiter = waiters.get(victim);
+      if (waiter == null) return false;
+      synchronized (waiter) {
+         if (waiter.done || waiter.victim) return false;
+         waiter.victim = true;
+         waiter.thread.interrupt();
+      }
+      return true;
+   }
+
+   private static DldGlobalTransaction youngest(List<DldGlobalTransaction> cycle) {
+      DldGlobalTransaction youngest = cycle.get(0);
+      for (DldGlobalTransaction tx : cycle) {
+         if (tx.wouldLose(youngest)) youngest = tx;
+      }
+      return youngest;
+   }
+
+   private static Set<DldGlobalTransaction> getEdges(Map<DldGlobalTransaction, Set<DldGlobalTransaction>> graph, DldGlobalTransaction tx) {
+      Set<DldGlobalTransaction> edges = graph.get(tx);
+      return edges == null ? Collections.<DldGlobalTransaction>emptySet() : edges;
+   }
+
+   private static void addEdge(Map<DldGlobalTransaction, Set<DldGlobalTransaction>> graph, DldGlobalTransaction waiter, DldGlobalTransaction owner) {
+      Set<DldGlobalTransaction> edges = graph.get(waiter);
+      if (edges == null) {
+         edges = new HashSet<DldGlobalTransaction>(4);
+         graph.put(waiter, edges);
+      }
+      edges.add(owner);
+   }
+
+   @Override
+   public String toString() {
+      return "WaitForGraph{" +
+            "waiters=" + waiters.keySet() +
+            ", remoteEdges=" + remoteEdges +
+            '}';
+   }
+
+   private static class Waiter {
+      final Object key;
+      final Thread thread;
+      /**
+       * Both guarded by the monitor of this waiter.
+       */
+      boolean victim;
+      boolean done;
+
+      Waiter(Object key, Thread thread) {
+         this.key = key;
+         this.thread = thread;
+      }
+   }
+
+   private static class RemoteEdges {
+      final Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges;
+      final long timestamp;
+
+      RemoteEdges(Map<DldGlobalTransaction, Set<DldGlobalTransaction>> edges, long timestamp) {
+         this.edges = edges;
+         this.timestamp = timestamp;
+      }
+
+      @Override
+      public String toString() {
+         return String.valueOf(edges);
+      }
+   }
+}
@@ -772,4 +772,44 @@ public interface Log extends BasicLogger {
    @LogMessage(level = INFO)
    @Message(value = "Could not instantiate transaction manager", id = 162)
    void couldNotInstantiateTransactionManager(@Cause Exception e);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Log segment %s ends with an incomplete record, truncating it to %d bytes", id = 163)
+   void truncatingLogSegment(File f, long length);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Problems compacting log segment %s", id = 164)
+   void problemsCompactingLogSegment(File f, @Cause Throwable t);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "Failed replicating %d batched commands", id = 165)
+   void failedReplicatingBatch(int size, @Cause Throwable t);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Failed invalidating the L1 copies of keys %s, whose requestors are no longer tracked", id = 166)
+   void failedInvalidatingEvictedRequestors(Collection<Object> keys, @Cause Throwable t);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Failed invalidating the L1 copies of %d keys on %s", id = 167)
+   void failedAsyncL1Invalidation(int keys, Object recipients, @Cause Throwable t);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Failed running a deadlock detection round", id = 168)
+   void failedDeadlockDetectionRound(@Cause Throwable t);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "Total order delivery %d of epoch %d is stable but was never received, skipping it", id = 169)
+   void missingTotalOrderDelivery(long seqno, long epoch);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Timed out waiting for the total order epochs of the views before %d to be closed", id = 170)
+   void timedOutWaitingForTotalOrderEpoch(int viewId);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Failed sealing the total order epochs before view %d, retrying", id = 171)
+   void failedSealingTotalOrderEpochs(int viewId, @Cause Throwable t);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Failed delivering the transactions of total order epoch %d to all the members, starting a new epoch", id = 172)
+   void failedTotalOrderMulticast(long epoch, @Cause Throwable t);
 }
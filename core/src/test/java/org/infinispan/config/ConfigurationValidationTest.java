@@ -26,6 +26,9 @@ import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.infinispan.test.TestingUtil;
 import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.transaction.lookup.DummyTransactionManagerLookup;
+import org.infinispan.util.concurrent.IsolationLevel;
 import org.testng.annotations.Test;
 
 import static org.infinispan.config.Configuration.CacheMode.*;
@@ -101,6 +104,22 @@ public class ConfigurationValidationTest extends AbstractInfinispanTest {
       }
    }
 
+   @Test (expectedExceptions = ConfigurationException.class)
+   public void testVersioningAndL1() {
+      EmbeddedCacheManager ecm = null;
+      try {
+         Configuration c = new Configuration();
+         c.setCacheMode(DIST_SYNC);
+         c.fluent().transaction().transactionManagerLookupClass(DummyTransactionManagerLookup.class)
+               .lockingMode(LockingMode.OPTIMISTIC)
+               .locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true).useVersioning(true);
+         ecm = TestCacheManagerFactory.createClusteredCacheManager(c);
+         ecm.getCache();
+      } finally {
+         TestingUtil.killCacheManagers(ecm);
+      }
+   }
+
    private EmbeddedCacheManager createCacheManager() throws Exception {
       GlobalConfiguration gc = GlobalConfiguration.getNonClusteredDefault();
       Configuration config = new Configuration();
@@ -31,6 +31,7 @@ import java.util.Set;
 
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
 
 public class QueryableDataContainer implements DataContainer {
 	
@@ -74,6 +75,12 @@ public class QueryableDataContainer implements DataContainer {
 		delegate.put(k, v, lifespan, maxIdle);
 	}
 
+	@Override
+	public void put(Object k, Object v, EntryVersion version, long lifespan, long maxIdle) {
+		loggedOperations.add("put(" + k + ", " + v + ", " + version + ", " + lifespan + ", " + maxIdle + ")");
+		delegate.put(k, v, version, lifespan, maxIdle);
+	}
+
 	@Override
 	public boolean containsKey(Object k) {
 		loggedOperations.add("containsKey(" + k + ")" );
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.CompactCacheEntry;
+import org.infinispan.container.entries.CompactInternalEntryFactory;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+@Test(groups = "unit", testName = "container.CompactDataContainerTest")
+public class CompactDataContainerTest extends SimpleDataContainerTest {
+
+   @Override
+   protected DataContainer createContainer() {
+      return DefaultDataContainer.unBoundedDataContainer(16, new CompactInternalEntryFactory());
+   }
+
+   @Override
+   protected Class<? extends InternalCacheEntry> mortaltype() {
+      return CompactCacheEntry.class;
+   }
+
+   @Override
+   protected Class<? extends InternalCacheEntry> immortaltype() {
+      return CompactCacheEntry.class;
+   }
+
+   @Override
+   protected Class<? extends InternalCacheEntry> transienttype() {
+      return CompactCacheEntry.class;
+   }
+
+   @Override
+   protected Class<? extends InternalCacheEntry> transientmortaltype() {
+      return CompactCacheEntry.class;
+   }
+
+   public void testEntriesAreUpdatedInPlace() {
+      dc.put("k", "v", -1, -1);
+      InternalCacheEntry ice = dc.get("k");
+      assert !ice.canExpire();
+
+      dc.put("k", "v2", 6000000, 6000000);
+      assert dc.get("k") == ice;
+      assert ice.canExpire();
+      assert ice.getLifespan() == 6000000;
+      assert ice.getMaxIdle() == 6000000;
+      assert "v2".equals(ice.getValue());
+
+      dc.put("k", "v3", -1, -1);
+      assert dc.get("k") == ice;
+      assert !ice.canExpire();
+      assert ice.getCreated() == -1;
+      assert ice.getLastUsed() == -1;
+   }
+
+   public void testLongDurations() {
+      long lifespan = TimeUnit.DAYS.toMillis(400) + 1;
+      long maxIdle = TimeUnit.DAYS.toMillis(20) + 999;
+      dc.put("k", "v", lifespan, maxIdle);
+      InternalCacheEntry ice = dc.get("k");
+      // durations beyond ~12 days are kept with a precision of a second
+      assert ice.getLifespan() == lifespan - 1 : ice.getLifespan();
+      assert ice.getMaxIdle() == maxIdle - 999 : ice.getMaxIdle();
+      assert ice.getExpiryTime() == ice.getLastUsed() + ice.getMaxIdle();
+      assert !ice.isExpired();
+
+      dc.put("k", "v", 600000, 300000);
+      assert ice.getLifespan() == 600000;
+      assert ice.getMaxIdle() == 300000;
+   }
+}
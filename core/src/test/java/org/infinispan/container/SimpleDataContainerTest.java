@@ -27,6 +27,7 @@ import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.MortalCacheEntry;
 import org.infinispan.container.entries.TransientCacheEntry;
 import org.infinispan.container.entries.TransientMortalCacheEntry;
+import org.infinispan.container.versioning.NumericVersion;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.infinispan.util.Immutables;
 import org.testng.annotations.AfterMethod;
@@ -41,7 +42,7 @@ import static org.testng.AssertJUnit.assertEquals;
 
 @Test(groups = "unit", testName = "container.SimpleDataContainerTest")
 public class SimpleDataContainerTest extends AbstractInfinispanTest {
-   DataContainer dc;
+   protected DataContainer dc;
 
    @BeforeMethod
    public void setUp() {
@@ -92,6 +93,34 @@ public class SimpleDataContainerTest extends AbstractInfinispanTest {
       assert dc.size() == 0;
    }
 
+   public void testPurgeExpiredOnlyRemovesDueEntries() throws InterruptedException {
+      dc.put("immortal", "v", -1, -1);
+      dc.put("mortal", "v", 6000000, -1);
+      dc.put("transient", "v", -1, 6000000);
+      dc.put("expiredMortal", "v", 0, -1);
+      dc.put("expiredTransient", "v", -1, 0);
+      dc.put("madeImmortal", "v", 0, -1);
+      dc.put("madeImmortal", "v", -1, -1);
+      dc.put("madeMortal", "v", -1, -1);
+      dc.put("madeMortal", "v", 0, -1);
+      dc.put("removed", "v", 0, -1);
+      dc.remove("removed");
+      Thread.sleep(10);
+
+      dc.purgeExpired();
+      assert dc.size() == 4 : "Expected 4 entries, found " + dc.keySet();
+      assert dc.containsKey("immortal");
+      assert dc.containsKey("mortal");
+      assert dc.containsKey("transient");
+      assert dc.containsKey("madeImmortal");
+
+      dc.put("mortal", "v", 0, -1);
+      Thread.sleep(10);
+      dc.purgeExpired();
+      assert dc.size() == 3 : "Expected 3 entries, found " + dc.keySet();
+      assert !dc.containsKey("mortal");
+   }
+
    public void testUpdatingLastUsed() throws Exception {
       long idle = 600000;
       dc.put("k", "v", -1, -1);
@@ -173,6 +202,21 @@ public class SimpleDataContainerTest extends AbstractInfinispanTest {
       assertEquals(expectedValue, entry.getValue());
    }
 
+   public void testVersionedPutDoesNotChangeThePreviousEntry() {
+      dc.put("k", "v1", NumericVersion.FIRST, -1, -1);
+      InternalCacheEntry first = dc.get("k");
+      assertEquals(NumericVersion.FIRST, first.getVersion());
+
+      dc.put("k", "v2", NumericVersion.FIRST.increment(), 6000000, -1);
+      // a reader holding the previous entry still sees its value with its version
+      assertEquals("v1", first.getValue());
+      assertEquals(NumericVersion.FIRST, first.getVersion());
+      InternalCacheEntry second = dc.get("k");
+      assertEquals("v2", second.getValue());
+      assertEquals(NumericVersion.FIRST.increment(), second.getVersion());
+      assertEquals(mortaltype(), second.getClass());
+   }
+
    public void testKeySet() {
       dc.put("k1", "v", 6000000, -1);
       dc.put("k2", "v", -1, -1);
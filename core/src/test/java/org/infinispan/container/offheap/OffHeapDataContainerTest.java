@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.offheap;
+
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.SimpleDataContainerTest;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "container.offheap.OffHeapDataContainerTest")
+public class OffHeapDataContainerTest extends SimpleDataContainerTest {
+
+   @Override
+   protected DataContainer createContainer() {
+      return createContainer(-1);
+   }
+
+   private DataContainer createContainer(int maxEntries) {
+      // use small slabs so that a couple of slabs are needed even by these tests
+      OffHeapDataContainer container = new OffHeapDataContainer(16, maxEntries, 256);
+      container.initialize(new TestObjectStreamMarshaller(), null, null);
+      return container;
+   }
+
+   @Override
+   @Test(expectedExceptions = UnsupportedOperationException.class)
+   public void testVersionedPutDoesNotChangeThePreviousEntry() {
+      super.testVersionedPutDoesNotChangeThePreviousEntry();
+   }
+
+   /**
+    * Entries are copies of the off-heap records, so the updated timestamp is only visible on a fresh read.
+    */
+   @Override
+   public void testUpdatingLastUsed() throws Exception {
+      long idle = 600000;
+      dc.put("k", "v", -1, idle);
+      long oldTime = System.currentTimeMillis();
+      Thread.sleep(100); // for time calc granularity
+      InternalCacheEntry ice = dc.get("k");
+      assert ice.getClass().equals(transienttype());
+      assert ice.getLastUsed() > oldTime;
+      assert ice.getMaxIdle() == idle;
+
+      oldTime = System.currentTimeMillis();
+      Thread.sleep(100); // for time calc granularity
+      assert dc.get("k") != null;
+      assert dc.peek("k").getLastUsed() > oldTime;
+   }
+
+   public void testUpdateWithLargerValue() {
+      dc.put("k", "v", -1, -1);
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 1000; i++) sb.append(i);
+      dc.put("k", sb.toString(), -1, -1);
+      assert dc.size() == 1;
+      assert dc.get("k").getValue().equals(sb.toString());
+      dc.put("k", "v2", -1, -1);
+      assert dc.size() == 1;
+      assert dc.get("k").getValue().equals("v2");
+   }
+
+   public void testRemoveAndRehash() {
+      for (int i = 0; i < 1000; i++) dc.put("k" + i, "v" + i, -1, -1);
+      assert dc.size() == 1000;
+      for (int i = 0; i < 1000; i += 2) assert dc.remove("k" + i).getValue().equals("v" + i);
+      assert dc.size() == 500;
+      for (int i = 0; i < 1000; i++) assert dc.containsKey("k" + i) == (i % 2 == 1);
+      dc.clear();
+      assert dc.size() == 0;
+      assert dc.get("k1") == null;
+   }
+
+   public void testLeastRecentlyUsedIsEvicted() {
+      DataContainer bounded = createContainer(2);
+      bounded.put("k1", "v1", -1, -1);
+      bounded.put("k2", "v2", -1, -1);
+      bounded.get("k1");
+      bounded.put("k3", "v3", -1, -1);
+      assert bounded.size() == 2;
+      assert bounded.containsKey("k1");
+      assert !bounded.containsKey("k2");
+      assert bounded.containsKey("k3");
+   }
+}
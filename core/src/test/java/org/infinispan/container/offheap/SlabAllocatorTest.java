@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.offheap;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the reuse of memory by {@link SlabAllocator}.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "container.offheap.SlabAllocatorTest")
+public class SlabAllocatorTest {
+
+   private static final int SLAB_SIZE = 4096;
+
+   public void testChunksDoNotOverlap() {
+      SlabAllocator allocator = new SlabAllocator(SLAB_SIZE);
+      Random random = new Random(7);
+      List<long[]> chunks = new ArrayList<long[]>();
+      for (int i = 0; i < 500; i++) {
+         int size = 1 + random.nextInt(SLAB_SIZE);
+         long address = allocator.allocate(size);
+         allocator.putInt(address, 0, i);
+         allocator.putInt(address, Math.max(0, size - 4), i);
+         chunks.add(new long[]{address, size, i});
+         if (random.nextBoolean()) {
+            long[] chunk = chunks.remove(random.nextInt(chunks.size()));
+            allocator.free(chunk[0], (int) chunk[1]);
+         }
+      }
+      for (long[] chunk : chunks) {
+         assert allocator.getInt(chunk[0], 0) == chunk[2];
+         assert allocator.getInt(chunk[0], Math.max(0, (int) chunk[1] - 4)) == chunk[2];
+      }
+   }
+
+   public void testMemoryIsReusedAcrossSizes() {
+      SlabAllocator allocator = new SlabAllocator(SLAB_SIZE);
+      Random random = new Random(11);
+      List<long[]> chunks = new ArrayList<long[]>();
+      long maxUsed = 0;
+      for (int i = 0; i < 20000; i++) {
+         // keep about 50 live chunks, whose sizes keep changing
+         if (chunks.size() >= 50) {
+            long[] chunk = chunks.remove(random.nextInt(chunks.size()));
+            allocator.free(chunk[0], (int) chunk[1]);
+         }
+         int size = 1 << (5 + random.nextInt(7));
+         chunks.add(new long[]{allocator.allocate(size), size});
+         maxUsed = Math.max(maxUsed, allocator.getUsedBytes());
+      }
+      // freed memory would pile up in the free lists of every size if it couldn't be merged
+      assert allocator.getReservedBytes() <= 4 * maxUsed + SLAB_SIZE : allocator.getReservedBytes();
+
+      for (long[] chunk : chunks) allocator.free(chunk[0], (int) chunk[1]);
+      assert allocator.getUsedBytes() == 0;
+      // only the spare slab is kept
+      assert allocator.getReservedBytes() <= SLAB_SIZE : allocator.getReservedBytes();
+   }
+
+   public void testLargeChunksAreReleased() {
+      SlabAllocator allocator = new SlabAllocator(SLAB_SIZE);
+      long address = allocator.allocate(SLAB_SIZE * 3);
+      assert allocator.getReservedBytes() == SLAB_SIZE * 4;
+      allocator.free(address, SLAB_SIZE * 3);
+      assert allocator.getReservedBytes() == 0;
+   }
+}
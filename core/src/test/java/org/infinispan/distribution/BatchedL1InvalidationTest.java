@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.write.InvalidateL1Command;
+import org.infinispan.config.Configuration;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.RecordingTransport;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that concurrent writes still invalidate every L1 copy when invalidations are batched per node.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.BatchedL1InvalidationTest")
+public class BatchedL1InvalidationTest extends MultipleCacheManagersTest {
+
+   private static final int WRITERS = 4;
+   private static final int KEYS_PER_WRITER = 25;
+
+   protected boolean asyncInvalidation = false;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.fluent().hash().numOwners(1);
+      config.fluent().clustering().l1().invalidationThreshold(-1)
+            .invalidationBatchingLatency(50L).asyncInvalidation(asyncInvalidation);
+      createCluster(config, 3);
+      waitForClusterToForm();
+
+      // queued invalidations are only sent when the one in flight completes, so that the tests control the batches
+      Configuration queued = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      queued.fluent().hash().numOwners(1);
+      queued.fluent().clustering().l1().invalidationThreshold(-1)
+            .invalidationBatchingLatency(60000L).asyncInvalidation(false);
+      for (int i = 0; i < 3; i++) manager(i).defineConfiguration("queued", queued);
+      waitForClusterToForm("queued");
+   }
+
+   public void testConcurrentWritesInvalidateL1() throws Exception {
+      final Cache<MagicKey, String> owner = cache(0);
+      final List<Cache<MagicKey, String>> readers = new ArrayList<Cache<MagicKey, String>>();
+      readers.add(this.<MagicKey, String>cache(1));
+      readers.add(this.<MagicKey, String>cache(2));
+      L1ManagerImpl l1Manager = (L1ManagerImpl) TestingUtil.extractComponent(owner, L1Manager.class);
+      l1Manager.setStatisticsEnabled(true);
+      l1Manager.resetStatistics();
+
+      final List<MagicKey> keys = new ArrayList<MagicKey>();
+      for (int i = 0; i < WRITERS * KEYS_PER_WRITER; i++) {
+         MagicKey k = new MagicKey(owner, "k" + i);
+         keys.add(k);
+         owner.put(k, "v1");
+      }
+      // create the L1 copies
+      for (Cache<MagicKey, String> reader : readers) {
+         for (MagicKey k : keys) assert "v1".equals(reader.get(k));
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+      try {
+         List<Future<Void>> writers = new ArrayList<Future<Void>>();
+         for (int w = 0; w < WRITERS; w++) {
+            final List<MagicKey> ownKeys = keys.subList(w * KEYS_PER_WRITER, (w + 1) * KEYS_PER_WRITER);
+            writers.add(executor.submit(new Callable<Void>() {
+               public Void call() throws Exception {
+                  for (MagicKey k : ownKeys) owner.put(k, "v2");
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> writer : writers) writer.get();
+      } finally {
+         executor.shutdownNow();
+      }
+
+      if (asyncInvalidation) {
+         eventually(new Condition() {
+            public boolean isSatisfied() throws Exception {
+               for (Cache<MagicKey, String> reader : readers) {
+                  for (MagicKey k : keys) {
+                     if (reader.getAdvancedCache().getDataContainer().containsKey(k)) return false;
+                  }
+               }
+               return true;
+            }
+         });
+      } else {
+         for (Cache<MagicKey, String> reader : readers) {
+            for (MagicKey k : keys) {
+               assert !reader.getAdvancedCache().getDataContainer().containsKey(k) : "L1 copy of " + k + " not invalidated on " + reader;
+            }
+         }
+      }
+      for (Cache<MagicKey, String> reader : readers) {
+         for (MagicKey k : keys) assert "v2".equals(reader.get(k));
+      }
+
+      assert l1Manager.getInvalidationRpcs() > 0;
+      assert l1Manager.getInvalidationRpcsPerSecond() > 0;
+   }
+
+   public void testInvalidationsQueuedBehindAnRpcShareOneRpc() throws Exception {
+      final Cache<MagicKey, String> owner = cache(0, "queued");
+      Cache<MagicKey, String> reader = cache(1, "queued");
+      final List<MagicKey> keys = new ArrayList<MagicKey>();
+      for (int i = 0; i < 5; i++) {
+         MagicKey k = new MagicKey(owner, "q" + i);
+         keys.add(k);
+         owner.put(k, "v1");
+         assert "v1".equals(reader.get(k));
+      }
+      L1ManagerImpl l1Manager = (L1ManagerImpl) TestingUtil.extractComponent(owner, L1Manager.class);
+      l1Manager.setStatisticsEnabled(true);
+      l1Manager.resetStatistics();
+
+      RecordingTransport transport = RecordingTransport.install(owner);
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         transport.blockNextCall();
+         Future<Void> first = executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+               owner.put(keys.get(0), "v2");
+               return null;
+            }
+         });
+         transport.awaitBlocked();
+
+         // the owner is the only data owner, so putAsync() returns as soon as the invalidation is queued
+         List<Future<String>> queued = new ArrayList<Future<String>>();
+         for (MagicKey k : keys.subList(1, 5)) queued.add(owner.putAsync(k, "v2"));
+         // read a key again so that the reader is a requestor again, and write it a second time
+         reader.evict(keys.get(1));
+         assert "v2".equals(reader.get(keys.get(1)));
+         queued.add(owner.putAsync(keys.get(1), "v3"));
+         for (Future<String> f : queued) assert !f.isDone() : "Invalidation sent while another one was in flight";
+
+         transport.unblock();
+         first.get(10, TimeUnit.SECONDS);
+         for (Future<String> f : queued) f.get(10, TimeUnit.SECONDS);
+
+         List<InvalidateL1Command> invalidations = new ArrayList<InvalidateL1Command>();
+         for (ReplicableCommand command : transport.getSentCommands()) {
+            if (command instanceof SingleRpcCommand && ((SingleRpcCommand) command).getCommand() instanceof InvalidateL1Command)
+               invalidations.add((InvalidateL1Command) ((SingleRpcCommand) command).getCommand());
+         }
+         assert invalidations.size() == 2 : "Expected 2 invalidation RPCs but sent " + invalidations;
+         Object[] batched = invalidations.get(1).getKeys();
+         // the key written twice is only sent once
+         assert batched.length == 4 : "Expected 4 keys but sent " + Arrays.toString(batched);
+         assert new HashSet<Object>(Arrays.asList(batched)).equals(new HashSet<Object>(keys.subList(1, 5)));
+      } finally {
+         transport.unblock();
+         transport.uninstall();
+         executor.shutdownNow();
+      }
+
+      for (MagicKey k : keys) {
+         assert !reader.getAdvancedCache().getDataContainer().containsKey(k) : "L1 copy of " + k + " not invalidated";
+      }
+      assert l1Manager.getInvalidationRpcs() == 2;
+      assert l1Manager.getAverageKeysPerInvalidationRpc() == 2.5;
+   }
+}
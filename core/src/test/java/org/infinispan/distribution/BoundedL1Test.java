@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.BoundedL1DataContainer;
+import org.infinispan.container.DataContainer;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that L1 entries are kept in a bounded container of their own, and that they are still invalidated when the
+ * owner stops tracking who requested them.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.BoundedL1Test")
+public class BoundedL1Test extends MultipleCacheManagersTest {
+
+   private static final int L1_MAX_ENTRIES = 16;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.fluent().hash().numOwners(1);
+      config.fluent().clustering().l1().maxEntries(L1_MAX_ENTRIES).maxRequestors(8);
+      createCluster(config, 2);
+      waitForClusterToForm();
+   }
+
+   public void testL1DoesNotEvictOwnedEntries() {
+      Cache<MagicKey, String> c0 = cache(0);
+      Cache<MagicKey, String> c1 = cache(1);
+
+      List<MagicKey> ownedByC0 = new ArrayList<MagicKey>();
+      for (int i = 0; i < 50; i++) {
+         MagicKey k = new MagicKey(c0, "owned" + i);
+         ownedByC0.add(k);
+         c0.put(k, "v" + i);
+      }
+
+      List<MagicKey> ownedByC1 = new ArrayList<MagicKey>();
+      for (int i = 0; i < 200; i++) {
+         MagicKey k = new MagicKey(c1, "remote" + i);
+         ownedByC1.add(k);
+         c1.put(k, "v" + i);
+      }
+      for (int i = 0; i < ownedByC1.size(); i++) {
+         assert ("v" + i).equals(c0.get(ownedByC1.get(i)));
+      }
+
+      BoundedL1DataContainer container = (BoundedL1DataContainer) TestingUtil.extractComponent(c0, DataContainer.class);
+      assert container.getL1Entries().size() <= 2 * L1_MAX_ENTRIES : "L1 has " + container.getL1Entries().size() + " entries";
+      assert container.getOwnedEntries().size() == ownedByC0.size();
+      for (MagicKey k : ownedByC0) {
+         assert container.getOwnedEntries().containsKey(k);
+         assert !container.getL1Entries().containsKey(k);
+      }
+
+      // whether the owner still tracks the requestors or not, no stale value must be read from L1
+      for (int i = 0; i < ownedByC1.size(); i++) {
+         c1.put(ownedByC1.get(i), "new" + i);
+      }
+      for (int i = 0; i < ownedByC1.size(); i++) {
+         assert ("new" + i).equals(c0.get(ownedByC1.get(i)));
+      }
+   }
+}
@@ -23,19 +23,24 @@
 package org.infinispan.distribution;
 
 import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.ExperimentalDefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.remoting.transport.Address;
-import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
 import org.infinispan.test.AbstractInfinispanTest;
-import org.infinispan.util.Util;
+import org.infinispan.util.hash.MurmurHash3;
 import org.testng.annotations.Test;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 import static java.lang.Math.*;
 
 /**
- * Tests the uniformity of the distribution hash algo.
+ * Compares the lookup speed and the uniformity of the key distribution of the consistent hash implementations.
+ * <p/>
+ * Each lookup measurement is preceded by a warm-up run over the same hash and the same keys, so that the JIT has
+ * compiled the lookup path before it is timed, and the best of several rounds is reported to filter out GC pauses.
  *
  * @author Manik Surtani
  * @since 4.0
@@ -43,39 +48,96 @@ import static java.lang.Math.*;
 @Test(testName = "distribution.ConsistentHashPerfTest", groups = "manual", description = "Disabled until we can configure Surefire to skip manual tests")
 public class ConsistentHashPerfTest extends AbstractInfinispanTest {
 
+   private static final int NUM_KEYS = 100000;
+   private static final int WARMUP_ROUNDS = 5;
+   private static final int MEASURED_ROUNDS = 10;
+
+   private enum Impl {
+      DEFAULT {
+         ConsistentHash create() {
+            return new DefaultConsistentHash(new MurmurHash3());
+         }
+      },
+      TOPOLOGY_AWARE {
+         ConsistentHash create() {
+            return new TopologyAwareConsistentHash(new MurmurHash3());
+         }
+      },
+      EXPERIMENTAL {
+         ConsistentHash create() {
+            return new ExperimentalDefaultConsistentHash();
+         }
+      },
+      SEGMENTED {
+         ConsistentHash create() {
+            return new SegmentedConsistentHash(new MurmurHash3());
+         }
+      };
+
+      abstract ConsistentHash create();
+   }
+
    private Set<Address> createAddresses(int numNodes) {
       Random r = new Random();
       Set<Address> addresses = new HashSet<Address>(numNodes);
-      while (addresses.size() < numNodes)
-         addresses.add(new JGroupsAddress(new org.jgroups.util.UUID(r.nextLong(), r.nextLong())));
+      while (addresses.size() < numNodes) {
+         // spread the nodes over a few sites, racks and machines so the topology aware hash has some work to do
+         int n = r.nextInt();
+         addresses.add(new TestTopologyAwareAddress(n, "s" + (addresses.size() % 2), "r" + (addresses.size() % 4),
+                                                    "m" + addresses.size()));
+      }
       return addresses;
    }
 
+   private ConsistentHash createConsistentHash(Impl impl, Set<Address> addresses) {
+      ConsistentHash ch = impl.create();
+      ch.setCaches(addresses);
+      return ch;
+   }
+
+   private Object[] createKeys(int numKeys) {
+      Object[] keys = new Object[numKeys];
+      for (int i = 0; i < numKeys; i++) keys[i] = "key" + i;
+      return keys;
+   }
+
    public void testSpeed() {
       int[] numNodes = {1, 2, 3, 4, 10, 100, 1000};
-      int iterations = 100000;
-      // warmup
-      doPerfTest(10, 2, iterations);
+      Object[] keys = createKeys(NUM_KEYS);
 
       for (int numOwners = 1; numOwners < 5; numOwners++) {
-         System.out.println("numOwners=" + numOwners);
-         for (int nn: numNodes) {
-            Long duration = doPerfTest(nn, numOwners, iterations);
-            System.out.println("With "+nn+" cache(s), time to do " + iterations + " lookups was " + Util.prettyPrintTime(TimeUnit.NANOSECONDS.toMillis(duration)));
+         System.out.printf("\nnumOwners=%d, %d lookups per round, best of %d rounds\n", numOwners, NUM_KEYS, MEASURED_ROUNDS);
+         System.out.printf("%8s", "nodes");
+         for (Impl impl : Impl.values()) System.out.printf("%18s", impl);
+         System.out.println();
+         for (int nn : numNodes) {
+            Set<Address> addresses = createAddresses(nn);
+            System.out.printf("%8d", nn);
+            for (Impl impl : Impl.values()) {
+               double nanosPerLookup = doPerfTest(createConsistentHash(impl, addresses), numOwners, keys);
+               System.out.printf("%15.1f ns", nanosPerLookup);
+            }
+            System.out.println();
          }
       }
    }
 
-   private Long doPerfTest(int numNodes, int numOwners, int iterations) {
-      ConsistentHash ch = BaseDistFunctionalTest.createNewConsistentHash(createAddresses(numNodes));
+   private double doPerfTest(ConsistentHash ch, int numOwners, Object[] keys) {
+      int expectedOwners = min(numOwners, ch.getCaches().size());
+      for (int i = 0; i < WARMUP_ROUNDS; i++) timeLookups(ch, numOwners, keys, expectedOwners);
+
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < MEASURED_ROUNDS; i++) best = min(best, timeLookups(ch, numOwners, keys, expectedOwners));
+      return (double) best / keys.length;
+   }
+
+   private long timeLookups(ConsistentHash ch, int numOwners, Object[] keys, int expectedOwners) {
+      // summing the sizes keeps the JIT from eliminating the lookups
       int dummy = 0;
       long start = System.nanoTime();
-      for (int i = 0; i < iterations; i++) {
-         Object key = i;
-         dummy += ch.locate(key, numOwners).size();
-      }
+      for (Object key : keys) dummy += ch.locate(key, numOwners).size();
       long duration = System.nanoTime() - start;
-      assert dummy == iterations * min(numOwners, numNodes);
+      assert dummy == keys.length * expectedOwners;
       return duration;
    }
 
@@ -86,13 +148,15 @@ public class ConsistentHashPerfTest extends AbstractInfinispanTest {
       List<Object> keys = new ArrayList<Object>(numKeys);
       for (int i = 0; i < numKeys; i++) keys.add(i);
 
-      for (int nn : numNodes) {
-         doTestDistribution(numKeys, nn, keys);
+      for (Impl impl : Impl.values()) {
+         for (int nn : numNodes) {
+            doTestDistribution(impl, numKeys, nn, keys);
+         }
       }
    }
 
-   private void doTestDistribution(int numKeys, int numNodes, List<Object> keys) {
-      ConsistentHash ch = BaseDistFunctionalTest.createNewConsistentHash(createAddresses(numNodes));
+   private void doTestDistribution(Impl impl, int numKeys, int numNodes, List<Object> keys) {
+      ConsistentHash ch = createConsistentHash(impl, createAddresses(numNodes));
 
       Map<Address, Integer> distribution = new HashMap<Address, Integer>();
 
@@ -107,7 +171,7 @@ public class ConsistentHashPerfTest extends AbstractInfinispanTest {
       }
 
 
-      System.out.printf("\nTesting distribution with %d keys, %d nodes\n", numKeys, numNodes);
+      System.out.printf("\nTesting distribution of %s with %d keys, %d nodes\n", impl, numKeys, numNodes);
       //System.out.println("" + distribution);
 
       // calc numbers
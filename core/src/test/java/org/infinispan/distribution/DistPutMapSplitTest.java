@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.infinispan.distribution.DistributionTestHelper.isOwner;
+
+/**
+ * Checks that a <tt>putAll</tt> only sends each owner the entries it owns.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.DistPutMapSplitTest")
+public class DistPutMapSplitTest extends BaseDistFunctionalTest {
+
+   private final Map<Cache<?, ?>, RemotePutMapKeysInterceptor> interceptors = new HashMap<Cache<?, ?>, RemotePutMapKeysInterceptor>();
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      super.createCacheManagers();
+      for (Cache<Object, String> c : caches) {
+         RemotePutMapKeysInterceptor interceptor = new RemotePutMapKeysInterceptor();
+         c.getAdvancedCache().addInterceptor(interceptor, 0);
+         interceptors.put(c, interceptor);
+      }
+   }
+
+   public void testEachOwnerOnlyReceivesItsEntries() {
+      Map<Object, String> data = new HashMap<Object, String>();
+      for (int i = 0; i < 50; i++) data.put("k" + i, "v" + i);
+
+      c1.putAll(data);
+
+      for (Map.Entry<Object, String> e : data.entrySet()) {
+         for (Cache<Object, String> c : caches) assert e.getValue().equals(c.get(e.getKey()));
+      }
+
+      for (Cache<Object, String> c : caches) {
+         if (c == c1) continue;
+         Set<Object> received = interceptors.get(c).keys;
+         for (Object k : received) {
+            assert isOwner(c, k) : "Key " + k + " was sent to " + DistributionTestHelper.addressOf(c) + ", which does not own it";
+         }
+         for (Object k : data.keySet()) {
+            if (isOwner(c, k)) assert received.contains(k) : "Owner " + DistributionTestHelper.addressOf(c) + " did not receive " + k;
+         }
+      }
+   }
+
+   static class RemotePutMapKeysInterceptor extends CommandInterceptor {
+      final Set<Object> keys = new ConcurrentHashSet<Object>();
+
+      @Override
+      public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) keys.addAll(command.getMap().keySet());
+         return invokeNextInterceptor(ctx, command);
+      }
+
+      @Override
+      public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) {
+            for (WriteCommand mod : command.getModifications()) {
+               if (mod instanceof PutMapCommand) keys.addAll(((PutMapCommand) mod).getMap().keySet());
+            }
+         }
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+}
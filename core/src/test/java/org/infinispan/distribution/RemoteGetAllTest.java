@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.infinispan.distribution.DistributionTestHelper.assertIsInL1;
+import static org.infinispan.distribution.DistributionTestHelper.isOwner;
+
+/**
+ * Tests {@link Cache#getAll(java.util.Set)} on a distributed cache, where keys owned by different nodes are fetched
+ * with one remote call per owner.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.RemoteGetAllTest")
+public class RemoteGetAllTest extends MultipleCacheManagersTest {
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      createCluster(Configuration.CacheMode.DIST_SYNC, 4);
+      waitForClusterToForm();
+   }
+
+   public void testGetAllFromSeveralOwners() {
+      Cache<Object, String> requester = cache(0);
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 1; i < 4; i++) {
+         for (int j = 0; j < 3; j++) {
+            MagicKey k = new MagicKey(cache(i), "k" + i + "-" + j);
+            cache(i).put(k, "v" + i + "-" + j);
+            keys.add(k);
+         }
+      }
+      keys.add("local");
+      requester.put("local", "local-value");
+      MagicKey missing = new MagicKey(cache(1), "missing");
+      keys.add(missing);
+
+      Map<Object, String> result = requester.getAll(keys);
+
+      assert result.size() == keys.size() - 1 : "Expected all keys but the missing one, got " + result;
+      assert !result.containsKey(missing);
+      assert "local-value".equals(result.get("local"));
+      for (Object k : keys) {
+         if (!(k instanceof MagicKey) || k.equals(missing)) continue;
+         String name = ((MagicKey) k).name;
+         assert ("v" + name.substring(1)).equals(result.get(k)) : "Unexpected value for " + k + ": " + result.get(k);
+         if (!isOwner(requester, k)) assertIsInL1(requester, k);
+      }
+   }
+
+   public void testGetAllOfNonexistentKeys() {
+      Set<Object> keys = new HashSet<Object>();
+      keys.add("__ doesn't exist ___");
+      keys.add(new MagicKey(cache(2), "does not exist"));
+      keys.add(new MagicKey(cache(0), "does not exist either"));
+      Map<Object, String> result = this.<Object, String>cache(0).getAll(keys);
+      assert result.isEmpty() : "Should get an empty map, got " + result;
+   }
+
+   public void testGetAllOfEmptySet() {
+      Map<Object, Object> result = cache(0).getAll(new HashSet<Object>());
+      assert result.isEmpty();
+   }
+}
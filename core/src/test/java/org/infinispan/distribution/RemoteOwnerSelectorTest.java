@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Test(groups = "unit", testName = "distribution.RemoteOwnerSelectorTest")
+public class RemoteOwnerSelectorTest {
+
+   private final Address self = new TestTopologyAwareAddress(0, "s0", "r0", "m0");
+   private final Address sameMachine = new TestTopologyAwareAddress(1, "s0", "r0", "m0");
+   private final Address sameRack = new TestTopologyAwareAddress(2, "s0", "r0", "m1");
+   private final Address sameSite = new TestTopologyAwareAddress(3, "s0", "r1", "m2");
+   private final Address otherSite = new TestTopologyAwareAddress(4, "s1", "r2", "m3");
+
+   public void testNearest() {
+      RemoteOwnerSelector selector = new RemoteOwnerSelector(self, RemoteReadStrategy.NEAREST);
+      for (int i = 0; i < 10; i++) {
+         List<Address> owners = new ArrayList<Address>(Arrays.asList(otherSite, sameSite, sameRack, sameMachine));
+         selector.sort(owners);
+         assert owners.equals(Arrays.asList(sameMachine, sameRack, sameSite, otherSite)) : owners;
+      }
+   }
+
+   public void testNearestSharesLoadBetweenEquallyNearOwners() {
+      RemoteOwnerSelector selector = new RemoteOwnerSelector(self, RemoteReadStrategy.NEAREST);
+      Address sameRack2 = new TestTopologyAwareAddress(5, "s0", "r0", "m4");
+      int firstCount = 0;
+      for (int i = 0; i < 1000; i++) {
+         List<Address> owners = new ArrayList<Address>(Arrays.asList(otherSite, sameRack, sameRack2));
+         selector.sort(owners);
+         assert owners.get(2) == otherSite : owners;
+         if (owners.get(0) == sameRack) firstCount++;
+      }
+      assert firstCount > 100 && firstCount < 900 : "Owners in the same rack were picked unevenly: " + firstCount;
+   }
+
+   public void testLeastOutstanding() {
+      RemoteOwnerSelector selector = new RemoteOwnerSelector(self, RemoteReadStrategy.LEAST_OUTSTANDING);
+      selector.requestSent(sameMachine);
+      selector.requestSent(sameMachine);
+      selector.requestSent(sameRack);
+      List<Address> owners = new ArrayList<Address>(Arrays.asList(sameMachine, sameRack, otherSite));
+      selector.sort(owners);
+      assert owners.equals(Arrays.asList(otherSite, sameRack, sameMachine)) : owners;
+
+      selector.requestCompleted(sameMachine);
+      selector.requestCompleted(sameMachine);
+      assert selector.getOutstanding(sameMachine) == 0;
+      selector.sort(owners);
+      assert owners.get(2) == sameRack : owners;
+   }
+
+   public void testRetainAll() {
+      RemoteOwnerSelector selector = new RemoteOwnerSelector(self, RemoteReadStrategy.LEAST_OUTSTANDING);
+      selector.requestSent(sameRack);
+      selector.requestSent(otherSite);
+      selector.retainAll(Arrays.asList(self, sameRack));
+      assert selector.getOutstanding(sameRack) == 1;
+      assert selector.getOutstanding(otherSite) == 0;
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.hash.MurmurHash3;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "distribution.SegmentedConsistentHashTest")
+public class SegmentedConsistentHashTest extends AbstractInfinispanTest {
+
+   private SegmentedConsistentHash createConsistentHash(int numNodes, int numVirtualNodes, int numSegments) {
+      SegmentedConsistentHash ch = new SegmentedConsistentHash(new MurmurHash3());
+      ch.setNumVirtualNodes(numVirtualNodes);
+      ch.setNumSegments(numSegments);
+      Set<Address> addresses = new HashSet<Address>();
+      for (int i = 0; i < numNodes; i++) addresses.add(new TestAddress(i * 100));
+      ch.setCaches(addresses);
+      return ch;
+   }
+
+   public void testOwners() {
+      for (int numVirtualNodes : new int[]{1, 10}) {
+         SegmentedConsistentHash ch = createConsistentHash(5, numVirtualNodes, 64);
+         for (int numOwners = 1; numOwners <= 7; numOwners++) {
+            for (int i = 0; i < 1000; i++) {
+               List<Address> owners = ch.locate("k" + i, numOwners);
+               assert owners.size() == Math.min(numOwners, 5) : owners;
+               assert new HashSet<Address>(owners).size() == owners.size() : "Duplicate owners " + owners;
+               for (Address a : ch.getCaches())
+                  assert ch.isKeyLocalToAddress(a, "k" + i, numOwners) == owners.contains(a);
+            }
+         }
+      }
+   }
+
+   public void testKeysInTheSameSegmentHaveTheSameOwners() {
+      SegmentedConsistentHash ch = createConsistentHash(10, 1, 16);
+      Map<Integer, List<Address>> segmentOwners = new HashMap<Integer, List<Address>>();
+      for (int i = 0; i < 1000; i++) {
+         Object key = "k" + i;
+         int segment = ch.getSegment(key);
+         assert segment >= 0 && segment < 16;
+         List<Address> owners = ch.locate(key, 2);
+         List<Address> previous = segmentOwners.put(segment, owners);
+         assert previous == null || previous.equals(owners);
+         // the lookup must not allocate a new list
+         assert ch.locate(key, 2) == owners;
+      }
+   }
+
+   public void testPrimaryOwnerIsAlsoTheFirstBackupOwner() {
+      SegmentedConsistentHash ch = createConsistentHash(10, 3, 256);
+      for (int i = 0; i < 1000; i++) {
+         List<Address> owners = ch.locate("k" + i, 3);
+         assert ch.locate("k" + i, 1).equals(owners.subList(0, 1));
+         assert ch.locate("k" + i, 2).equals(owners.subList(0, 2));
+      }
+   }
+
+   @Test(expectedExceptions = UnsupportedOperationException.class)
+   public void testOwnersAreImmutable() {
+      SegmentedConsistentHash ch = createConsistentHash(3, 1, 8);
+      ch.locate("k", 2).clear();
+   }
+
+   public void testChangingTheMembersRebuildsTheOwners() {
+      SegmentedConsistentHash ch = createConsistentHash(3, 1, 8);
+      assert ch.locate("k", 5).size() == 3;
+      Set<Address> caches = new HashSet<Address>(ch.getCaches());
+      caches.add(new TestAddress(1000));
+      ch.setCaches(caches);
+      assert ch.locate("k", 5).size() == 4;
+   }
+}
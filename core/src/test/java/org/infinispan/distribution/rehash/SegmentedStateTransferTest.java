@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.rehash;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests that a join moves the right keys when the state is transferred segment by segment, in chunks smaller than
+ * the number of keys that have to move.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.rehash.SegmentedStateTransferTest")
+public class SegmentedStateTransferTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_KEYS = 500;
+
+   private Configuration configuration;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      configuration = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      configuration.fluent().clustering().hash()
+            .consistentHashClass(SegmentedConsistentHash.class)
+            .numOwners(2);
+      configuration.fluent().stateRetrieval().chunkSize(10);
+      configuration.fluent().clustering().l1().disable();
+      createClusteredCaches(3, "segmented", configuration);
+   }
+
+   public void testJoin() {
+      Cache<String, String> c1 = cache(0, "segmented");
+      for (int i = 0; i < NUM_KEYS; i++) c1.put("k" + i, "v" + i);
+
+      EmbeddedCacheManager joinerManager = addClusterEnabledCacheManager();
+      joinerManager.defineConfiguration("segmented", configuration);
+      Cache<String, String> joiner = joinerManager.getCache("segmented");
+      List<Cache<String, String>> caches = caches("segmented");
+      TestingUtil.blockUntilViewsReceived(60000, caches.toArray(new Cache[caches.size()]));
+      TestingUtil.waitForRehashToComplete(caches);
+
+      ConsistentHash ch = TestingUtil.extractComponent(joiner, DistributionManager.class).getConsistentHash();
+      assert ch instanceof SegmentedConsistentHash;
+      for (int i = 0; i < NUM_KEYS; i++) {
+         String key = "k" + i;
+         List<Address> owners = ch.locate(key, 2);
+         for (Cache<String, String> c : caches) {
+            Address address = c.getCacheManager().getAddress();
+            boolean stored = c.getAdvancedCache().getDataContainer().containsKey(key);
+            assert stored == owners.contains(address) : key + " stored=" + stored + " on " + address + ", owners are " + owners;
+            assert ("v" + i).equals(c.get(key));
+         }
+      }
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+@Test(groups = "functional", testName = "eviction.MemoryBoundedEvictionFunctionalTest")
+public class MemoryBoundedEvictionFunctionalTest extends SingleCacheManagerTest {
+
+   private static final long MAX_MEMORY = 64 * 1024;
+
+   /**
+    * The memory bound is enforced per segment of the data container, each segment holding at most MAX_MEMORY /
+    * SEGMENTS. With two segments, the small entries of testSmallEntriesAreNotEvicted fit even if they all hash to the
+    * same segment.
+    */
+   private static final int SEGMENTS = 2;
+
+   /**
+    * Estimated size of the entries of testSmallEntriesAreNotEvicted, according to the DefaultEntrySizeCalculator
+    */
+   private static final int SMALL_ENTRY_SIZE = 224;
+
+   protected EvictionStrategy getEvictionStrategy() {
+      return EvictionStrategy.LRU;
+   }
+
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration cfg = new Configuration().fluent()
+         .eviction().strategy(getEvictionStrategy()).maxMemory(MAX_MEMORY)
+         .locking().concurrencyLevel(SEGMENTS)
+         .build();
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(cfg);
+      cache = cm.getCache();
+      return cm;
+   }
+
+   public void testEvictionBoundedByMemory() {
+      for (int i = 0; i < 512; i++) {
+         cache.put("key-" + i, new byte[1024]);
+      }
+      int size = cache.getAdvancedCache().getDataContainer().size();
+      assert size > 0;
+      assert size * 1024 <= MAX_MEMORY : "cache size too big: " + size;
+   }
+
+   public void testSmallEntriesAreNotEvicted() {
+      assert 100 * SMALL_ENTRY_SIZE <= MAX_MEMORY / SEGMENTS;
+      for (int i = 0; i < 100; i++) {
+         cache.put("key-" + i, "value-" + i);
+      }
+      assert cache.getAdvancedCache().getDataContainer().size() == 100;
+   }
+
+   public void testUpdateToLargerValueEvicts() {
+      for (int i = 0; i < 32; i++) {
+         cache.put("key-" + i, "value-" + i);
+      }
+      cache.put("key-0", new byte[(int) MAX_MEMORY]);
+      assert cache.getAdvancedCache().getDataContainer().size() < 32;
+   }
+}
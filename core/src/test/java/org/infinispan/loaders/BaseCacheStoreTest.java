@@ -285,6 +285,24 @@ public abstract class BaseCacheStoreTest extends AbstractInfinispanTest {
       assert cs.containsKey("k3");
    }
 
+   public void testWriteBatch() throws CacheLoaderException {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+
+      List<InternalCacheEntry> toStore = new ArrayList<InternalCacheEntry>();
+      toStore.add(InternalEntryFactory.create("k2", "v2-updated"));
+      toStore.add(InternalEntryFactory.create("k3", "v3"));
+      cs.writeBatch(toStore, Collections.<Object>singleton("k1"));
+
+      assert !cs.containsKey("k1");
+      assert cs.load("k2").getValue().equals("v2-updated");
+      assert cs.load("k3").getValue().equals("v3");
+      assert cs.loadAll().size() == 2;
+
+      cs.writeBatch(Collections.<InternalCacheEntry>emptyList(), Collections.<Object>emptySet());
+      assert cs.loadAll().size() == 2;
+   }
+
    public void testTwoPhaseCommit() throws CacheLoaderException {
       List<Modification> mods = new ArrayList<Modification>();
       mods.add(new Store(InternalEntryFactory.create("k1", "v1")));
@@ -453,6 +471,37 @@ public abstract class BaseCacheStoreTest extends AbstractInfinispanTest {
       assert expected.size() == 1;
    }
 
+   public void testProcess() throws CacheLoaderException {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      cs.store(InternalEntryFactory.create("k3", "v3"));
+
+      final Set<Object> keys = new HashSet<Object>();
+      CacheLoaderTask collecting = new CacheLoaderTask() {
+         @Override
+         public boolean processEntry(InternalCacheEntry entry) {
+            assert keys.add(entry.getKey());
+            return true;
+         }
+      };
+      cs.process(-1, collecting);
+      assertEquals(new HashSet<Object>(Arrays.asList("k1", "k2", "k3")), keys);
+
+      keys.clear();
+      cs.process(2, collecting);
+      assertEquals(2, keys.size());
+
+      keys.clear();
+      cs.process(-1, new CacheLoaderTask() {
+         @Override
+         public boolean processEntry(InternalCacheEntry entry) {
+            keys.add(entry.getKey());
+            return false;
+         }
+      });
+      assertEquals(1, keys.size());
+   }
+
    public void testStoreAndRemoveAll() throws CacheLoaderException {
       cs.store(InternalEntryFactory.create("k1", "v1"));
       cs.store(InternalEntryFactory.create("k2", "v2"));
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logstructured;
+
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.BaseCacheStoreTest;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+@Test(groups = "unit", testName = "loaders.logstructured.LogStructuredCacheStoreTest")
+public class LogStructuredCacheStoreTest extends BaseCacheStoreTest {
+
+   LogStructuredCacheStore lcs;
+   String tmpDirectory;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass
+   protected void clearTempDir() {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      new File(tmpDirectory).mkdirs();
+   }
+
+   @Override
+   protected CacheStore createCacheStore() throws CacheLoaderException {
+      clearTempDir();
+      lcs = new LogStructuredCacheStore();
+      LogStructuredCacheStoreConfig cfg = new LogStructuredCacheStoreConfig()
+         .location(tmpDirectory)
+         .maxSegmentSize(4096)
+         .memoryMappedReads(isMemoryMappedReads())
+         .purgeSynchronously(true); // for more accurate unit testing
+      lcs.init(cfg, getCache(), getMarshaller());
+      lcs.start();
+      return lcs;
+   }
+
+   protected boolean isMemoryMappedReads() {
+      return false;
+   }
+
+   private String[] segmentFiles() {
+      String[] files = lcs.getRoot().list();
+      return files == null ? new String[0] : files;
+   }
+
+   public void testCompactionReclaimsOverwrittenSegments() throws Exception {
+      for (int i = 0; i < 2000; i++) cs.store(InternalEntryFactory.create("k" + (i % 10), "v" + i));
+      for (int i = 0; i < 100 && segmentFiles().length > 5; i++) Thread.sleep(100);
+      assert segmentFiles().length <= 5 : "Expected overwritten segments to be compacted, found " + segmentFiles().length;
+      for (int i = 0; i < 10; i++) assert cs.load("k" + i).getValue().equals("v" + (1990 + i));
+   }
+
+   public void testRemovalsSurviveRestartAndCompaction() throws Exception {
+      for (int i = 0; i < 500; i++) cs.store(InternalEntryFactory.create("k" + i, "v" + i));
+      for (int i = 0; i < 500; i += 2) cs.remove("k" + i);
+      // Stopping waits for any running compaction
+      cs.stop();
+      cs.start();
+      assert cs.loadAllKeys(null).size() == 250;
+      for (int i = 0; i < 500; i++) assert cs.containsKey("k" + i) == (i % 2 == 1) : "Unexpected state for k" + i;
+   }
+
+   public void testIncompleteRecordIsTruncatedOnStart() throws Exception {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      cs.stop();
+
+      File last = null;
+      for (File f : lcs.getRoot().listFiles()) {
+         if (last == null || LogSegment.idOf(f) > LogSegment.idOf(last)) last = f;
+      }
+      RandomAccessFile raf = new RandomAccessFile(last, "rw");
+      try {
+         raf.setLength(raf.length() - 1);
+      } finally {
+         raf.close();
+      }
+
+      cs.start();
+      assert cs.load("k1").getValue().equals("v1");
+      assert cs.load("k2") == null;
+      cs.store(InternalEntryFactory.create("k3", "v3"));
+      cs.stop();
+      cs.start();
+      assert cs.load("k3").getValue().equals("v3");
+   }
+}
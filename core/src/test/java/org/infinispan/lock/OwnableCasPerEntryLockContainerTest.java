@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lock;
+
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.locks.OwnableCasLock;
+import org.infinispan.util.concurrent.locks.containers.OwnableCasPerEntryLockContainer;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Tests the acquisition, reentrancy and retirement of the locks of {@link OwnableCasPerEntryLockContainer}.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "lock.OwnableCasPerEntryLockContainerTest")
+public class OwnableCasPerEntryLockContainerTest extends AbstractInfinispanTest {
+
+   public void testReentrantAcquisition() throws Exception {
+      OwnableCasPerEntryLockContainer container = new OwnableCasPerEntryLockContainer(4);
+      InvocationContext ctx = new NonTxInvocationContext();
+      OwnableCasLock lock = container.acquireLock(ctx, "k", 0, MILLISECONDS);
+      assert lock != null;
+      assert container.acquireLock(ctx, "k", 0, MILLISECONDS) == lock;
+      assert container.ownsLock("k", Thread.currentThread());
+
+      container.releaseLock(ctx, "k");
+      assert container.isLocked("k") : "Still held once";
+      container.releaseLock(ctx, "k");
+      assert !container.isLocked("k");
+      assert container.getNumLocksHeld() == 0;
+      assert container.acquireLock(ctx, "k", 0, MILLISECONDS) == lock : "Released locks should be reused";
+      container.releaseLock(ctx, "k");
+   }
+
+   public void testWaiterAcquiresOnRelease() throws Exception {
+      final OwnableCasPerEntryLockContainer container = new OwnableCasPerEntryLockContainer(4);
+      InvocationContext ctx = new NonTxInvocationContext();
+      assert container.acquireLock(ctx, "k", 0, MILLISECONDS) != null;
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         Callable<Boolean> acquire = new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+               InvocationContext other = new NonTxInvocationContext();
+               boolean locked = container.acquireLock(other, "k", 10, TimeUnit.SECONDS) != null;
+               if (locked) container.releaseLock(other, "k");
+               return locked;
+            }
+         };
+         Future<Boolean> timedOut = executor.submit(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+               return container.acquireLock(new NonTxInvocationContext(), "k", 100, MILLISECONDS) != null;
+            }
+         });
+         assert !timedOut.get() : "The lock is held by another owner";
+
+         Future<Boolean> waiter = executor.submit(acquire);
+         Thread.sleep(200);
+         container.releaseLock(ctx, "k");
+         assert waiter.get(10, TimeUnit.SECONDS);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   public void testLocksAboveRetentionLimitAreRetired() throws Exception {
+      OwnableCasPerEntryLockContainer container = new OwnableCasPerEntryLockContainer(1);
+      InvocationContext ctx = new NonTxInvocationContext();
+      for (int i = 0; i < 100; i++) {
+         assert container.acquireLock(ctx, "k" + i, 0, MILLISECONDS) != null;
+      }
+      for (int i = 0; i < 100; i++) container.releaseLock(ctx, "k" + i);
+      assert container.getNumLocksHeld() == 0;
+      assert container.size() <= 32 : "Expected at most 32 retained locks but there are " + container.size();
+
+      // a retired lock is never handed out again
+      for (int i = 0; i < 100; i++) {
+         OwnableCasLock lock = container.acquireLock(ctx, "k" + i, 0, MILLISECONDS);
+         assert lock != null && !lock.isRetired();
+         container.releaseLock(ctx, "k" + i);
+      }
+   }
+
+   public void testLookupsDoNotMapLocks() throws Exception {
+      OwnableCasPerEntryLockContainer container = new OwnableCasPerEntryLockContainer(1);
+      for (int i = 0; i < 100; i++) {
+         OwnableCasLock lock = container.getLock("k" + i);
+         assert lock.getOwner() == null;
+         container.getLockId("k" + i);
+      }
+      assert container.size() == 0 : "Looking locks up should not map them, but " + container.size() + " are mapped";
+
+      InvocationContext ctx = new NonTxInvocationContext();
+      OwnableCasLock held = container.acquireLock(ctx, "k", 0, MILLISECONDS);
+      assert container.getLock("k") == held;
+      container.releaseLock(ctx, "k");
+   }
+}
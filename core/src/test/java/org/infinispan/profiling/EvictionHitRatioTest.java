@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.profiling;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a key trace against {@link BoundedConcurrentHashMap} with each eviction policy and reports the hit
+ * ratio. By default a synthetic trace is used, made of a Zipf-like hot set interleaved with periodic one-off scans;
+ * a real trace can be supplied through the <tt>infinispan.test.trace</tt> system property, naming a file with one
+ * key per line.
+ *
+ * @since 5.1
+ */
+@Test(groups = "profiling", enabled = false, testName = "profiling.EvictionHitRatioTest", description = "Disabled by default, designed to be run manually.")
+public class EvictionHitRatioTest extends AbstractInfinispanTest {
+
+   private static final String TRACE_PROPERTY = "infinispan.test.trace";
+
+   // adjust these values
+   int capacity = 10000;
+   int numKeys = 100000;
+   int traceLength = 2000000;
+   int scanInterval = 100000;
+   int scanLength = 20000;
+   double skew = 0.9;
+
+   public void testHitRatio() throws IOException {
+      List<String> trace = loadTrace();
+      System.out.printf("Replaying %d accesses against caches of %d entries\n", trace.size(), capacity);
+      for (Eviction eviction : new Eviction[]{Eviction.LRU, Eviction.LIRS, Eviction.TINY_LFU}) {
+         Map<String, String> map = new BoundedConcurrentHashMap<String, String>(capacity, 1, eviction);
+         long hits = 0;
+         for (String key : trace) {
+            if (map.get(key) != null)
+               hits++;
+            else
+               map.put(key, key);
+         }
+         System.out.printf("Policy %-10s  HitRatio %6.2f%%\n", eviction, 100d * hits / trace.size());
+      }
+   }
+
+   private List<String> loadTrace() throws IOException {
+      String file = System.getProperty(TRACE_PROPERTY);
+      if (file == null)
+         return syntheticTrace();
+
+      List<String> trace = new ArrayList<String>();
+      BufferedReader reader = new BufferedReader(new FileReader(file));
+      try {
+         String line;
+         while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.length() > 0)
+               trace.add(line);
+         }
+      } finally {
+         reader.close();
+      }
+      return trace;
+   }
+
+   private List<String> syntheticTrace() {
+      // cumulative distribution of a Zipf law over numKeys ranks
+      double[] cdf = new double[numKeys];
+      double sum = 0;
+      for (int i = 0; i < numKeys; i++) {
+         sum += 1 / Math.pow(i + 1, skew);
+         cdf[i] = sum;
+      }
+
+      Random r = new Random(17);
+      List<String> trace = new ArrayList<String>(traceLength);
+      int scanKey = 0;
+      while (trace.size() < traceLength) {
+         if (trace.size() > 0 && trace.size() % scanInterval == 0) {
+            for (int i = 0; i < scanLength && trace.size() < traceLength; i++)
+               trace.add("scan" + scanKey++);
+         } else {
+            int rank = binarySearch(cdf, r.nextDouble() * sum);
+            trace.add("key" + rank);
+         }
+      }
+      return trace;
+   }
+
+   private static int binarySearch(double[] cdf, double value) {
+      int low = 0, high = cdf.length - 1;
+      while (low < high) {
+         int mid = (low + high) >>> 1;
+         if (cdf[mid] < value)
+            low = mid + 1;
+         else
+            high = mid;
+      }
+      return low;
+   }
+}
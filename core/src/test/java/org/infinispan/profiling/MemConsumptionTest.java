@@ -25,6 +25,7 @@ package org.infinispan.profiling;
 import org.infinispan.Cache;
 import org.infinispan.CacheException;
 import org.infinispan.config.Configuration;
+import org.infinispan.container.DefaultDataContainer;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.infinispan.test.TestingUtil;
 import org.infinispan.test.fwk.TestCacheManagerFactory;
@@ -42,6 +43,7 @@ public class MemConsumptionTest extends AbstractInfinispanTest {
    int payloadSize = 60; // bytes
    int keySize = 10; // bytes
    PayloadType payloadType = PayloadType.STRINGS;
+   boolean compactEntries = false; // store entries as CompactCacheEntry instances
 
    enum PayloadType {
       STRINGS, BYTE_ARRAYS
@@ -55,7 +57,11 @@ public class MemConsumptionTest extends AbstractInfinispanTest {
       int kBytesCached = (bytesPerCharacter * numEntries * (payloadSize + keySize)) / 1024;
       System.out.println("Bytes to be cached: " + NumberFormat.getIntegerInstance().format(kBytesCached) + " kb");
 
-      Cache c = TestCacheManagerFactory.createCacheManager(new Configuration()).getCache();
+      Configuration cfg = new Configuration();
+      if (compactEntries) {
+         cfg.fluent().dataContainer().addProperty(DefaultDataContainer.COMPACT_ENTRIES, "true");
+      }
+      Cache c = TestCacheManagerFactory.createCacheManager(cfg).getCache();
       for (int i = 0; i < numEntries; i++) {
          switch (payloadType) {
             case STRINGS:
@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.replication;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.MultipleRpcCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.CustomInterceptorConfigTest;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.RecordingTransport;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that writes sent through the RPC batcher are replicated, and that each write still sees its own outcome.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "replication.BatchedReplTest")
+public class BatchedReplTest extends MultipleCacheManagersTest {
+
+   private static final int THREADS = 10;
+   private static final int WRITES = 100;
+   private static final int QUEUED = 4;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration cfg = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      cfg.fluent().clustering().sync().batchingLatency(10L).batchingMaxCommands(20);
+      createClusteredCaches(2, "batched", cfg);
+
+      // batches are only sent once full, so that the tests control their content
+      Configuration queued = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      queued.fluent().clustering().sync().batchingLatency(60000L).batchingMaxCommands(QUEUED);
+      for (int i = 0; i < 2; i++) manager(i).defineConfiguration("queued", queued);
+      waitForClusterToForm("queued");
+   }
+
+   public void testConcurrentWrites() throws Exception {
+      final Cache<String, String> cache1 = cache(0, "batched");
+      Cache<String, String> cache2 = cache(1, "batched");
+
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      try {
+         List<Future<Void>> futures = new ArrayList<Future<Void>>();
+         for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() throws Exception {
+                  for (int i = 0; i < WRITES; i++) cache1.put("k-" + thread + "-" + i, "v" + i);
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> f : futures) f.get();
+      } finally {
+         executor.shutdownNow();
+      }
+
+      assert cache2.size() == THREADS * WRITES;
+      for (int t = 0; t < THREADS; t++)
+         for (int i = 0; i < WRITES; i++)
+            assert ("v" + i).equals(cache2.get("k-" + t + "-" + i));
+   }
+
+   public void testConditionalWrites() {
+      Cache<String, String> cache1 = cache(0, "batched");
+      Cache<String, String> cache2 = cache(1, "batched");
+
+      cache1.put("conditional", "v1");
+      assert "v1".equals(cache1.putIfAbsent("conditional", "v2"));
+      assert "v1".equals(cache2.get("conditional"));
+      assert cache1.replace("conditional", "v1", "v3");
+      assert "v3".equals(cache2.get("conditional"));
+      cache2.remove("conditional");
+      assert cache1.get("conditional") == null;
+   }
+
+   public void testWritesQueuedBehindAnRpcShareOneRpc() throws Exception {
+      Cache<String, String> cache1 = cache(0, "queued");
+      Cache<String, String> cache2 = cache(1, "queued");
+      RecordingTransport transport = RecordingTransport.install(cache1);
+      ExecutorService executor = Executors.newFixedThreadPool(QUEUED + 1);
+      try {
+         transport.blockNextCall();
+         Future<String> first = executor.submit(put(cache1, "first"));
+         transport.awaitBlocked();
+
+         List<Future<String>> queued = new ArrayList<Future<String>>();
+         for (int i = 0; i < QUEUED; i++) queued.add(executor.submit(put(cache1, "queued-" + i)));
+         // the batch is full, so it goes out while the first RPC is still in flight
+         for (Future<String> f : queued) f.get(10, TimeUnit.SECONDS);
+         transport.unblock();
+         first.get(10, TimeUnit.SECONDS);
+
+         List<ReplicableCommand> sent = transport.getSentCommands();
+         assert sent.size() == 2 : "Expected 2 RPCs but sent " + sent;
+         assert sent.get(1) instanceof MultipleRpcCommand : "Expected a batch but sent " + sent.get(1);
+         assert ((MultipleRpcCommand) sent.get(1)).getCommands().length == QUEUED;
+      } finally {
+         transport.unblock();
+         transport.uninstall();
+         executor.shutdownNow();
+      }
+
+      assert "first".equals(cache2.get("first"));
+      for (int i = 0; i < QUEUED; i++) assert ("queued-" + i).equals(cache2.get("queued-" + i));
+   }
+
+   public void testFailedCommandOnlyFailsItsOwnCaller() throws Exception {
+      Cache<String, String> cache1 = cache(0, "queued");
+      Cache<String, String> cache2 = cache(1, "queued");
+      cache2.getAdvancedCache().addInterceptor(new CustomInterceptorConfigTest.DummyInterceptor() {
+         @Override
+         public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+            if (!ctx.isOriginLocal() && "fail".equals(command.getKey())) throw new IllegalStateException("Induced failure");
+            return super.visitPutKeyValueCommand(ctx, command);
+         }
+      }, 0);
+      RecordingTransport transport = RecordingTransport.install(cache1);
+      ExecutorService executor = Executors.newFixedThreadPool(QUEUED + 1);
+      try {
+         transport.blockNextCall();
+         Future<String> first = executor.submit(put(cache1, "before-batch"));
+         transport.awaitBlocked();
+
+         List<Future<String>> queued = new ArrayList<Future<String>>();
+         for (int i = 0; i < QUEUED - 1; i++) queued.add(executor.submit(put(cache1, "ok-" + i)));
+         Future<String> failing = executor.submit(put(cache1, "fail"));
+         for (Future<String> f : queued) f.get(10, TimeUnit.SECONDS);
+         try {
+            failing.get(10, TimeUnit.SECONDS);
+            assert false : "The failure of the remote put should have been reported";
+         } catch (ExecutionException expected) {
+         }
+         transport.unblock();
+         first.get(10, TimeUnit.SECONDS);
+
+         List<ReplicableCommand> sent = transport.getSentCommands();
+         assert sent.size() == 2 && sent.get(1) instanceof MultipleRpcCommand : "Expected a batch but sent " + sent;
+      } finally {
+         transport.unblock();
+         transport.uninstall();
+         executor.shutdownNow();
+      }
+
+      assert cache2.get("fail") == null;
+      for (int i = 0; i < QUEUED - 1; i++) assert ("ok-" + i).equals(cache2.get("ok-" + i));
+   }
+
+   public void testWritesToOneKeyKeepTheirOrderAcrossDestinations() {
+      Cache<String, String> cache1 = cache(0, "queued");
+      Cache<String, String> cache2 = cache(1, "queued");
+      RecordingTransport transport = RecordingTransport.install(cache1);
+      try {
+         // asynchronous messages stay in flight for the batching latency, so the putAll is queued behind the put
+         cache1.getAdvancedCache().withFlags(Flag.FORCE_ASYNCHRONOUS).put("ordered", "async-put");
+         cache1.getAdvancedCache().withFlags(Flag.FORCE_ASYNCHRONOUS).putAll(Collections.singletonMap("ordered", "async-putAll"));
+         assert transport.getSentCommands().size() == 1;
+         // the synchronous put has other queues, but must not overtake the queued putAll
+         cache1.put("ordered", "sync-put");
+
+         List<ReplicableCommand> sent = transport.getSentCommands();
+         assert sent.size() == 3 : "Expected 3 RPCs but sent " + sent;
+         assert ((SingleRpcCommand) sent.get(1)).getCommand() instanceof PutMapCommand : "Expected the putAll but sent " + sent.get(1);
+         assert ((SingleRpcCommand) sent.get(2)).getCommand() instanceof PutKeyValueCommand : "Expected the put but sent " + sent.get(2);
+      } finally {
+         transport.uninstall();
+      }
+
+      assert "sync-put".equals(cache1.get("ordered"));
+      assert "sync-put".equals(cache2.get("ordered"));
+   }
+
+   private static Callable<String> put(final Cache<String, String> cache, final String key) {
+      return new Callable<String>() {
+         @Override
+         public String call() {
+            cache.put(key, key);
+            return key;
+         }
+      };
+   }
+}
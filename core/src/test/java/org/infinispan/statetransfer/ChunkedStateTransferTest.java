@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests that joiners of a replicated cache receive the whole state when it is streamed in chunks much smaller than
+ * the state itself.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "statetransfer.ChunkedStateTransferTest")
+public class ChunkedStateTransferTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_KEYS = 500;
+
+   private Configuration configuration;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      configuration = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      configuration.fluent().stateRetrieval().fetchInMemoryState(true).chunkSize(7);
+      createClusteredCaches(2, "chunked", configuration);
+   }
+
+   public void testJoin() {
+      Cache<String, String> c1 = cache(0, "chunked");
+      for (int i = 0; i < NUM_KEYS; i++) c1.put("k" + i, "v" + i);
+
+      // two joiners, so the same chunks are multicast to both of them
+      for (int j = 0; j < 2; j++) {
+         EmbeddedCacheManager joinerManager = addClusterEnabledCacheManager();
+         joinerManager.defineConfiguration("chunked", configuration);
+         joinerManager.getCache("chunked");
+      }
+      List<Cache<String, String>> caches = caches("chunked");
+      TestingUtil.blockUntilViewsReceived(60000, caches.toArray(new Cache[caches.size()]));
+      TestingUtil.waitForRehashToComplete(caches);
+
+      for (Cache<String, String> c : caches) {
+         assert c.getAdvancedCache().getDataContainer().size() == NUM_KEYS : c + " has " + c.getAdvancedCache().getDataContainer().size() + " keys";
+         for (int i = 0; i < NUM_KEYS; i++) {
+            assert ("v" + i).equals(c.get("k" + i));
+         }
+      }
+   }
+}
@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+
+/**
+ * Tests that {@link BaseStateTransferTask.StatePusher} doesn't announce a completed segment while a chunk sent earlier
+ * to the same nodes, which may hold entries of that segment, is still waiting for an acknowledgement.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "statetransfer.StatePusherTest")
+public class StatePusherTest extends AbstractInfinispanTest {
+
+   private static final int CHUNK_SIZE = 2;
+
+   private final Address a = new TestAddress(1);
+   private final Address b = new TestAddress(2);
+
+   public void testCompletionWaitsForEarlierChunks() throws Exception {
+      RecordingStateTransferManager stm = new RecordingStateTransferManager();
+      final BaseStateTransferTask.StatePusher pusher = newTask(stm).new StatePusher();
+      final List<Address> targets = Collections.singletonList(a);
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         Future<Void> pushing = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               // 3 entries of segment 0, the first chunk of 2 goes out when the third entry arrives
+               for (int i = 0; i < 3; i++) pusher.push(targets, entry("s0-" + i));
+               pusher.segmentCompleted(targets, 0);
+               // the second chunk is full with the first entry of segment 1 and is sent with the second one
+               for (int i = 0; i < 2; i++) pusher.push(targets, entry("s1-" + i));
+               return null;
+            }
+         });
+
+         // the first chunk is still in flight, so the chunk completing segment 0 must not be sent yet
+         stm.awaitPushes(1);
+         Thread.sleep(500);
+         assert stm.pushes.size() == 1 : "Segment 0 announced before its first chunk was acknowledged";
+         assert !pushing.isDone();
+
+         // the receiver acknowledges the first chunk, so the completion can follow
+         stm.acknowledge(0);
+         pushing.get(10, TimeUnit.SECONDS);
+         assert stm.pushes.size() == 2;
+         Push completing = stm.pushes.get(1);
+         assert completing.completedSegments.equals(Collections.singletonList(0)) : completing.completedSegments;
+         assert completing.keys().equals(Arrays.asList("s0-2", "s1-0"));
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   public void testCompletionDoesNotWaitForChunksToOtherNodes() throws Exception {
+      RecordingStateTransferManager stm = new RecordingStateTransferManager();
+      BaseStateTransferTask.StatePusher pusher = newTask(stm).new StatePusher();
+      List<Address> toA = Collections.singletonList(a);
+      List<Address> toB = Collections.singletonList(b);
+
+      for (int i = 0; i < CHUNK_SIZE + 1; i++) pusher.push(toA, entry("a-" + i));
+      pusher.push(toB, entry("b-0"));
+      pusher.segmentCompleted(toB, 1);
+      for (int i = 1; i < CHUNK_SIZE + 1; i++) pusher.push(toB, entry("b-" + i));
+
+      // the chunk to a is still in flight, but it can't hold any entry b is waiting for
+      assert stm.pushes.size() == 2;
+      assert stm.pushes.get(1).targets.equals(toB);
+      assert stm.pushes.get(1).completedSegments.equals(Collections.singletonList(1));
+   }
+
+   private BaseStateTransferTask newTask(BaseStateTransferManagerImpl stm) {
+      RpcManager rpcManager = createNiceMock(RpcManager.class);
+      replay(rpcManager);
+      return new BaseStateTransferTask(stm, rpcManager, null, null, new Configuration(), null,
+                                       Arrays.asList(a, b), 1, null, null, false) {
+         @Override
+         protected void performRehash() {
+         }
+
+         @Override
+         protected int getChunkSize() {
+            return CHUNK_SIZE;
+         }
+      };
+   }
+
+   private static InternalCacheEntry entry(String key) {
+      return InternalEntryFactory.create(key, "v");
+   }
+
+   private static class Push {
+      final Collection<Address> targets;
+      final List<InternalCacheEntry> state;
+      final List<Integer> completedSegments;
+      final SettableNotifyingFuture<Map<Address, Response>> ack = new SettableNotifyingFuture<Map<Address, Response>>();
+
+      Push(Collection<Address> targets, Collection<InternalCacheEntry> state, Collection<Integer> completedSegments) {
+         this.targets = targets;
+         this.state = new ArrayList<InternalCacheEntry>(state);
+         this.completedSegments = completedSegments == null ? Collections.<Integer>emptyList()
+               : new ArrayList<Integer>(completedSegments);
+      }
+
+      List<Object> keys() {
+         List<Object> keys = new ArrayList<Object>();
+         for (InternalCacheEntry ice : state) keys.add(ice.getKey());
+         return keys;
+      }
+   }
+
+   /**
+    * Records the chunks instead of sending them, and leaves them unacknowledged until the test says otherwise.
+    */
+   private static class RecordingStateTransferManager extends BaseStateTransferManagerImpl {
+      final List<Push> pushes = new CopyOnWriteArrayList<Push>();
+
+      @Override
+      public NotifyingFuture<Map<Address, Response>> pushStateToNodes(int viewId, Collection<Address> targets,
+                                                                      Collection<InternalCacheEntry> state,
+                                                                      Collection<Integer> completedSegments) {
+         Push push = new Push(targets, state, completedSegments);
+         pushes.add(push);
+         return push.ack;
+      }
+
+      void acknowledge(int push) {
+         pushes.get(push).ack.set(Collections.<Address, Response>emptyMap());
+      }
+
+      void awaitPushes(int count) throws InterruptedException {
+         long deadline = System.currentTimeMillis() + 10000;
+         while (pushes.size() < count) {
+            if (System.currentTimeMillis() > deadline) throw new IllegalStateException("Only pushed " + pushes);
+            Thread.sleep(10);
+         }
+      }
+
+      @Override
+      protected ConsistentHash createConsistentHash(List<Address> members) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public CacheStore getCacheStoreForStateTransfer() {
+         return null;
+      }
+
+      @Override
+      protected BaseStateTransferTask createStateTransferTask(int viewId, List<Address> members, boolean initialView) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean isLocationInDoubt(Object key) {
+         return false;
+      }
+   }
+}
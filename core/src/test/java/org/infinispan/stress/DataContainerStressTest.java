@@ -23,10 +23,16 @@
 package org.infinispan.stress;
 
 import org.infinispan.container.*;
+import org.infinispan.container.offheap.OffHeapDataContainer;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.testng.annotations.Test;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -58,6 +64,18 @@ public class DataContainerStressTest {
       doTest(DefaultDataContainer.unBoundedDataContainer(5000));
    }
 
+   public void testOffHeapDataContainer() throws InterruptedException {
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createLocalCacheManager(false);
+      try {
+         OffHeapDataContainer dc = (OffHeapDataContainer) OffHeapDataContainer.unBoundedDataContainer(
+               5000, OffHeapDataContainer.DEFAULT_SLAB_SIZE);
+         dc.initialize(TestingUtil.extractGlobalMarshaller(cm), null, null);
+         doTest(dc);
+      } finally {
+         TestingUtil.killCacheManagers(cm);
+      }
+   }
+
    private void doTest(final DataContainer dc) throws InterruptedException {
       doTest(dc, true);
       doTest(dc, false);
@@ -116,6 +134,7 @@ public class DataContainerStressTest {
       };
 
       Thread[] threads = {getter, putter, remover};
+      long gcStart = gcTimeMillis();
       for (Thread t : threads) t.start();
       latch.countDown();
 
@@ -123,6 +142,7 @@ public class DataContainerStressTest {
       Thread.sleep(warmup ? WARMUP_TIME_MILLIS : RUN_TIME_MILLIS);
       run.set(false);
       for (Thread t : threads) t.join();
+      perf.put("GC", (gcTimeMillis() - gcStart) + " ms");
       if (!warmup) log.warnf("%s: Performance: %s", dc.getClass().getSimpleName(), perf);
    }
 
@@ -134,6 +154,14 @@ public class DataContainerStressTest {
       }
    }
 
+   private long gcTimeMillis() {
+      long total = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+         total += Math.max(0, gc.getCollectionTime());
+      }
+      return total;
+   }
+
    private String opsPerMS(long nanos, int ops) {
       long totalMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
       if (totalMillis > 0)
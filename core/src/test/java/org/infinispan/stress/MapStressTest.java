@@ -123,11 +123,20 @@ public class MapStressTest {
       };
    }
 
+   @DataProvider(name = "readScalability")
+   public Object[][] readScalabilityParams() {
+      return new Object[][]{
+            new Object[]{CAPACITY, CAPACITY / 2, 32},
+            new Object[]{CAPACITY, CAPACITY / 2, 4},
+      };
+   }
+
    private Map<String, Map<String, Integer>> createMaps(int capacity, int numKeys, int concurrency) {
       Map<String, Map<String, Integer>> maps = new TreeMap<String, Map<String, Integer>>();
       maps.put("BCHM:LRU_OLD", new BoundedConcurrentHashMap<String, Integer>(capacity, concurrency, BoundedConcurrentHashMap.Eviction.LRU_OLD));
       maps.put("BCHM:LRU", new BoundedConcurrentHashMap<String, Integer>(capacity, concurrency, BoundedConcurrentHashMap.Eviction.LRU));
       maps.put("BCHM:LIRS", new BoundedConcurrentHashMap<String, Integer>(capacity, concurrency, BoundedConcurrentHashMap.Eviction.LIRS));
+      maps.put("BCHM:TINY_LFU", new BoundedConcurrentHashMap<String, Integer>(capacity, concurrency, BoundedConcurrentHashMap.Eviction.TINY_LFU));
       // CHM doesn't have eviction, so we size it to the total number of keys to avoid resizing
       maps.put("CHM", new ConcurrentHashMap<String, Integer>(numKeys, MAP_LOAD_FACTOR, concurrency));
       maps.put("SLHM", synchronizedLinkedHashMap(capacity, MAP_LOAD_FACTOR));
@@ -302,6 +311,42 @@ public class MapStressTest {
       return perf;
    }
 
+   @Test(dataProvider = "readScalability", enabled = false)
+   public void testReadScalability(int capacity, int numKeys, int concurrency) throws Exception {
+      int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+      System.out.printf("Testing read scalability with capacity %d, keys %d, concurrency level %d, up to %d threads\n",
+            capacity, numKeys, concurrency, maxThreads);
+
+      generateKeyList(numKeys);
+      Map<String, Map<String, Integer>> maps = createMaps(capacity, numKeys, concurrency);
+
+      for (Entry<String, Map<String, Integer>> e : maps.entrySet()) {
+         Map<String, Integer> map = e.getValue();
+         // only hits, so that nothing but the access bookkeeping is measured
+         for (String key : keys) {
+            map.put(key, 0);
+         }
+         for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            mapTestReadScalability(e.getKey(), map, threads);
+         }
+         e.setValue(null);
+      }
+   }
+
+   private void mapTestReadScalability(String name, Map<String, Integer> map, int threads) throws Exception {
+      // warm up for 1 second
+      runMapTestReadWriteRemove(map, threads, 0, 0, 1000);
+
+      // real test
+      TotalStats perf = runMapTestReadWriteRemove(map, threads, 0, 0, RUNNING_TIME);
+
+      System.out.printf("Container %-12s  ", name);
+      System.out.printf("Threads %3d  ", threads);
+      System.out.printf("Gets/s %12.2f  ", perf.getOpsPerSec("GET") * threads);
+      System.out.printf("Gets/s/thread %12.2f  ", perf.getOpsPerSec("GET"));
+      System.out.printf("HitRatio %10.2f\n", perf.getTotalHitRatio() * 100);
+   }
+
    private double computeStdDev(Map<String, Integer> map, int numKeys) {
       // The keys closest to the mean are suposed to be accessed more often
       // So we score each map by the standard deviation of the keys in the map
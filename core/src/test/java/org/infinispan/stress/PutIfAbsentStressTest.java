@@ -80,6 +80,32 @@ public class PutIfAbsentStressTest {
       }
    }
 
+   /**
+    * Testing putIfAbsent's behaviour on a Local cache using lock striping, to compare with the per-entry containers.
+    */
+   public void testonInfinispanLocalLockStriping() throws Exception {
+      System.out.println("Running test on Infinispan, LOCAL, lock striping:");
+      testConcurrentLockingOnLocalCache(new Configuration().fluent().locking().useLockStriping(true).build());
+   }
+
+   /**
+    * Testing putIfAbsent's behaviour on a Local cache using compare-and-swap locks.
+    */
+   public void testonInfinispanLocalCasLocks() throws Exception {
+      System.out.println("Running test on Infinispan, LOCAL, CAS locks:");
+      testConcurrentLockingOnLocalCache(new Configuration().fluent().locking().useCasLocks(true).build());
+   }
+
+   private void testConcurrentLockingOnLocalCache(Configuration cfg) throws Exception {
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(cfg);
+      ConcurrentMap<String, String> map = cm.getCache();
+      try {
+         testConcurrentLocking(map);
+      } finally {
+         TestingUtil.killCacheManagers(cm);
+      }
+   }
+
    /**
     * Testing putIfAbsent's behaviour in DIST_SYNC cache.
     */
@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.test;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
+import org.infinispan.remoting.InboundInvocationHandler;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.rpc.ResponseFilter;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.rpc.RpcManagerImpl;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A transport that records the commands a cache sends, and can hold back the next call until told to let it go.
+ * Typical usage: <code> RecordingTransport t = RecordingTransport.install(cache); // ... t.getSentCommands();
+ * t.uninstall(); </code>
+ *
+ * @since 5.1
+ */
+public class RecordingTransport implements Transport {
+
+   private final Transport delegate;
+   private final RpcManager rpcManager;
+   private final List<ReplicableCommand> sent = new ArrayList<ReplicableCommand>();
+   private final AtomicBoolean blockNext = new AtomicBoolean();
+   private volatile CountDownLatch blocked;
+   private volatile CountDownLatch release;
+
+   private RecordingTransport(Transport delegate, RpcManager rpcManager) {
+      this.delegate = delegate;
+      this.rpcManager = rpcManager;
+   }
+
+   /**
+    * Replaces the transport the RpcManager of the cache sends its commands through.
+    */
+   public static RecordingTransport install(Cache<?, ?> cache) {
+      RpcManager rpcManager = TestingUtil.extractComponent(cache, RpcManager.class);
+      RecordingTransport transport = new RecordingTransport(rpcManager.getTransport(), rpcManager);
+      TestingUtil.replaceField(transport, "t", rpcManager, RpcManagerImpl.class);
+      return transport;
+   }
+
+   /**
+    * Gives the RpcManager its original transport back.
+    */
+   public void uninstall() {
+      TestingUtil.replaceField(delegate, "t", rpcManager, RpcManagerImpl.class);
+   }
+
+   /**
+    * @return the commands sent so far, in the order they were sent
+    */
+   public List<ReplicableCommand> getSentCommands() {
+      synchronized (sent) {
+         return new ArrayList<ReplicableCommand>(sent);
+      }
+   }
+
+   public void clear() {
+      synchronized (sent) {
+         sent.clear();
+      }
+   }
+
+   /**
+    * Holds back the next call, in the thread making it, until {@link #unblock()} is invoked.
+    */
+   public void blockNextCall() {
+      release = new CountDownLatch(1);
+      blocked = new CountDownLatch(1);
+      blockNext.set(true);
+   }
+
+   /**
+    * Waits until the call held back by {@link #blockNextCall()} has been made.
+    */
+   public void awaitBlocked() throws InterruptedException {
+      if (!blocked.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("No call was made");
+   }
+
+   public void unblock() {
+      release.countDown();
+   }
+
+   private void record(ReplicableCommand command) {
+      synchronized (sent) {
+         sent.add(command);
+      }
+      if (blockNext.compareAndSet(true, false)) {
+         blocked.countDown();
+         try {
+            release.await(10, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   @Override
+   public Map<Address, Response> invokeRemotely(Collection<Address> recipients, ReplicableCommand rpcCommand, ResponseMode mode, long timeout,
+                                                boolean usePriorityQueue, ResponseFilter responseFilter, boolean supportReplay) throws Exception {
+      record(rpcCommand);
+      return delegate.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, supportReplay);
+   }
+
+   @Override
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                      long timeout, boolean flowControl) throws Exception {
+      record(rpcCommand);
+      return delegate.invokeRemotelyAsync(recipients, rpcCommand, timeout, flowControl);
+   }
+
+   @Override
+   public void setConfiguration(GlobalConfiguration gc) {
+      delegate.setConfiguration(gc);
+   }
+
+   @Override
+   public void initialize(StreamingMarshaller marshaller, ExecutorService asyncExecutor, InboundInvocationHandler handler,
+                          CacheManagerNotifier notifier) {
+      delegate.initialize(marshaller, asyncExecutor, handler, notifier);
+   }
+
+   @Override
+   public boolean isCoordinator() {
+      return delegate.isCoordinator();
+   }
+
+   @Override
+   public Address getCoordinator() {
+      return delegate.getCoordinator();
+   }
+
+   @Override
+   public Address getAddress() {
+      return delegate.getAddress();
+   }
+
+   @Override
+   public List<Address> getPhysicalAddresses() {
+      return delegate.getPhysicalAddresses();
+   }
+
+   @Override
+   public List<Address> getMembers() {
+      return delegate.getMembers();
+   }
+
+   @Override
+   public boolean isMulticastCapable() {
+      return delegate.isMulticastCapable();
+   }
+
+   @Override
+   public void start() {
+      delegate.start();
+   }
+
+   @Override
+   public void stop() {
+      delegate.stop();
+   }
+
+   @Override
+   public int getViewId() {
+      return delegate.getViewId();
+   }
+
+   @Override
+   public Log getLog() {
+      return delegate.getLog();
+   }
+}
@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx;
+
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.transaction.RemoteTransaction;
+import org.infinispan.transaction.RemoteTransactionMap;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests {@link RemoteTransactionMap}.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "tx.RemoteTransactionMapTest")
+public class RemoteTransactionMapTest extends AbstractInfinispanTest {
+
+   private final Address a = new TestAddress(1);
+   private final Address b = new TestAddress(2);
+
+   public void testPartitionedByOriginator() {
+      RemoteTransactionMap map = new RemoteTransactionMap();
+      GlobalTransaction a1 = newGlobalTransaction(a), a2 = newGlobalTransaction(a), b1 = newGlobalTransaction(b);
+      RemoteTransaction ra1 = new RemoteTransaction(a1);
+      map.put(a1, ra1);
+      map.put(a2, new RemoteTransaction(a2));
+      assert map.putIfAbsent(b1, new RemoteTransaction(b1)) == null;
+      assert map.putIfAbsent(a1, new RemoteTransaction(a1)) == ra1;
+
+      assert map.size() == 3;
+      assert map.get(a1) == ra1;
+      assert map.containsKey(b1);
+      assert !map.containsKey(newGlobalTransaction(b));
+      assert map.getTransactionsOriginatedBy(a).equals(asSet(a1, a2));
+      assert map.getTransactionsOriginatedBy(b).equals(asSet(b1));
+      assert map.getTransactionsOriginatedBy(new TestAddress(3)).isEmpty();
+      assert map.keySet().equals(asSet(a1, a2, b1));
+   }
+
+   public void testRemoveOriginator() {
+      RemoteTransactionMap map = new RemoteTransactionMap();
+      GlobalTransaction a1 = newGlobalTransaction(a), b1 = newGlobalTransaction(b);
+      map.put(a1, new RemoteTransaction(a1));
+      map.put(b1, new RemoteTransaction(b1));
+
+      map.removeOriginatorIfEmpty(a);
+      assert map.containsKey(a1);
+
+      assert map.remove(a1) != null;
+      map.removeOriginatorIfEmpty(a);
+      assert map.getTransactionsOriginatedBy(a).isEmpty();
+      assert map.size() == 1;
+      assert !map.isEmpty();
+   }
+
+   public void testIteratorRemove() {
+      RemoteTransactionMap map = new RemoteTransactionMap();
+      GlobalTransaction a1 = newGlobalTransaction(a), b1 = newGlobalTransaction(b);
+      map.put(a1, new RemoteTransaction(a1));
+      map.put(b1, new RemoteTransaction(b1));
+
+      for (Iterator<Map.Entry<GlobalTransaction, RemoteTransaction>> it = map.entrySet().iterator(); it.hasNext();) {
+         it.next();
+         it.remove();
+      }
+      assert map.isEmpty();
+      assert map.size() == 0;
+   }
+
+   public void testInsertionsSurviveConcurrentRemoveOriginator() throws Exception {
+      final RemoteTransactionMap map = new RemoteTransactionMap();
+      final AtomicBoolean done = new AtomicBoolean();
+      Thread remover = fork(new Runnable() {
+         public void run() {
+            while (!done.get()) map.removeOriginatorIfEmpty(a);
+         }
+      }, false);
+      try {
+         for (int i = 0; i < 100000; i++) {
+            GlobalTransaction gtx = newGlobalTransaction(a);
+            map.put(gtx, new RemoteTransaction(gtx));
+            assert map.containsKey(gtx) : "Lost the insertion of " + gtx + " in round " + i;
+            assert map.remove(gtx) != null;
+         }
+      } finally {
+         done.set(true);
+      }
+      remover.join(10000);
+      assert !remover.isAlive();
+   }
+
+   private static GlobalTransaction newGlobalTransaction(Address origin) {
+      return TransactionFactory.TxFactoryEnum.NODLD_NORECOVERY_XA.newGlobalTransaction(origin, true, null, false);
+   }
+
+   private static Set<GlobalTransaction> asSet(GlobalTransaction... gtxs) {
+      Set<GlobalTransaction> set = new HashSet<GlobalTransaction>();
+      for (GlobalTransaction gtx : gtxs) set.add(gtx);
+      return set;
+   }
+}
@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TransportFlags;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests that transactions committed in total order reach the same outcome on every node.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "tx.TotalOrderCommitTest")
+public class TotalOrderCommitTest extends MultipleCacheManagersTest {
+
+   public TotalOrderCommitTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC, true);
+      config.fluent().transaction().lockingMode(LockingMode.OPTIMISTIC).totalOrderCommit(true).useSynchronization(true)
+            .locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true).useVersioning(true);
+      for (int i = 0; i < 3; i++) {
+         // failure detection, so that a crashed coordinator is removed from the view
+         addClusterEnabledCacheManager(config, new TransportFlags().withFD(true));
+      }
+      waitForClusterToForm();
+   }
+
+   public void testCommitFromEveryNode() throws Exception {
+      for (int i = 0; i < caches().size(); i++) {
+         tm(i).begin();
+         cache(i).put("k" + i, "v" + i);
+         tm(i).commit();
+      }
+      for (int i = 0; i < caches().size(); i++) {
+         for (Cache<Object, Object> c : caches()) assert ("v" + i).equals(c.get("k" + i));
+         assertSameVersionEverywhere("k" + i);
+      }
+   }
+
+   public void testConflictingTransactionRolledBackEverywhere() throws Exception {
+      cache(0).put("skew", "v0");
+
+      tm(2).begin();
+      assert "v0".equals(cache(2).get("skew"));
+      Transaction tx = tm(2).suspend();
+
+      tm(1).begin();
+      assert "v0".equals(cache(1).get("skew"));
+      cache(1).put("skew", "v1");
+      tm(1).commit();
+
+      tm(2).resume(tx);
+      cache(2).put("skew", "v2");
+      try {
+         tm(2).commit();
+         assert false : "The write skew should have been detected";
+      } catch (RollbackException expected) {
+      }
+
+      for (Cache<Object, Object> c : caches()) {
+         assert "v1".equals(c.get("skew"));
+         assert TestingUtil.extractLockManager(c).getNumberOfLocksHeld() == 0;
+      }
+      assertSameVersionEverywhere("skew");
+   }
+
+   public void testConcurrentConflictingTransactions() throws Exception {
+      final int keys = 3;
+      final int txPerThread = 30;
+      final AtomicInteger[] commits = new AtomicInteger[keys];
+      for (int k = 0; k < keys; k++) {
+         cache(0).put("counter" + k, 0);
+         commits[k] = new AtomicInteger();
+      }
+
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int i = 0; i < caches().size(); i++) {
+         for (int t = 0; t < 2; t++) {
+            final int node = i;
+            threads.add(fork(new Runnable() {
+               public void run() {
+                  try {
+                     for (int n = 0; n < txPerThread; n++) {
+                        int k = (node + n) % keys;
+                        if (increment(node, "counter" + k)) commits[k].incrementAndGet();
+                     }
+                  } catch (Throwable t) {
+                     failure.compareAndSet(null, t);
+                  }
+               }
+            }, false));
+         }
+      }
+      for (Thread t : threads) t.join(60000);
+      assert failure.get() == null : failure.get();
+
+      for (int k = 0; k < keys; k++) {
+         for (Cache<Object, Object> c : caches()) {
+            assert commits[k].get() == (Integer) c.get("counter" + k) :
+                  "Expected " + commits[k].get() + " commits of counter" + k + " on " + address(c) + ", found " + c.get("counter" + k);
+         }
+         assertSameVersionEverywhere("counter" + k, caches());
+      }
+      for (Cache<Object, Object> c : caches()) {
+         assert TestingUtil.extractLockManager(c).getNumberOfLocksHeld() == 0;
+      }
+   }
+
+   public void testCoordinatorCrashWhileCommitting() throws Exception {
+      assert manager(0).isCoordinator();
+      cache(1).put("counter", 0);
+
+      final AtomicBoolean stop = new AtomicBoolean();
+      final AtomicInteger attempts = new AtomicInteger();
+      final AtomicInteger commits = new AtomicInteger();
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int i = 1; i < caches().size(); i++) {
+         final int node = i;
+         threads.add(fork(new Runnable() {
+            public void run() {
+               try {
+                  while (!stop.get()) {
+                     attempts.incrementAndGet();
+                     if (increment(node, "counter")) commits.incrementAndGet();
+                  }
+               } catch (Throwable t) {
+                  failure.compareAndSet(null, t);
+               }
+            }
+         }, false));
+      }
+
+      TestingUtil.sleepThread(500);
+      // the coordinator, and with it the sequencer, stops responding with commits in flight
+      TestingUtil.getDiscardForCache(cache(0)).setDiscardAll(true);
+      TestingUtil.blockUntilViewsChanged(60000, 2, cache(1), cache(2));
+      TestingUtil.sleepThread(500);
+      stop.set(true);
+      for (Thread t : threads) t.join(60000);
+      assert failure.get() == null : failure.get();
+
+      // the new sequencer commits transactions from both survivors
+      assert increment(1, "counter");
+      assert increment(2, "counter");
+      commits.addAndGet(2);
+      attempts.addAndGet(2);
+
+      List<Cache<Object, Object>> survivors = Arrays.asList(cache(1), cache(2));
+      int value = (Integer) cache(1).get("counter");
+      assert value == (Integer) cache(2).get("counter") : "The survivors disagree on the counter";
+      // transactions whose commit failed because of the crash may or may not have been applied, but everywhere alike
+      assert value >= commits.get() && value <= attempts.get() :
+            "Counter is " + value + " after " + commits.get() + " commits out of " + attempts.get() + " attempts";
+      assertSameVersionEverywhere("counter", survivors);
+      for (Cache<Object, Object> c : survivors) {
+         assert TestingUtil.extractLockManager(c).getNumberOfLocksHeld() == 0;
+      }
+   }
+
+   /**
+    * @return true if the transaction committed, false if it was rolled back
+    */
+   private boolean increment(int node, Object key) throws Exception {
+      tm(node).begin();
+      try {
+         cache(node).put(key, (Integer) cache(node).get(key) + 1);
+      } catch (Exception e) {
+         tm(node).rollback();
+         throw e;
+      }
+      try {
+         tm(node).commit();
+         return true;
+      } catch (RollbackException e) {
+         return false;
+      }
+   }
+
+   private void assertSameVersionEverywhere(Object key) {
+      assertSameVersionEverywhere(key, caches());
+   }
+
+   private void assertSameVersionEverywhere(Object key, List<Cache<Object, Object>> caches) {
+      EntryVersion version = null;
+      for (Cache<Object, Object> c : caches) {
+         EntryVersion v = TestingUtil.extractComponent(c, DataContainer.class).peek(key).getVersion();
+         assert v != null;
+         if (version == null) version = v;
+         else assert version.equals(v) : "Nodes disagree on the version of " + key + ": " + version + " and " + v;
+      }
+   }
+}
@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.tx.CommitCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.MagicKey;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.RecordingTransport;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+
+/**
+ * Tests that the owners of a key detect write skews by comparing entry versions at prepare.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "tx.VersionedWriteSkewTest")
+public class VersionedWriteSkewTest extends MultipleCacheManagersTest {
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC, true);
+      config.fluent().transaction().lockingMode(LockingMode.OPTIMISTIC)
+            .locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true).useVersioning(true)
+            .clustering().hash().numOwners(2)
+            .clustering().l1().disable();
+      createCluster(config, 3);
+      waitForClusterToForm();
+
+      // every key has a single owner, and the cache is the only resource of its transactions
+      Configuration single = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC, true);
+      single.fluent().transaction().lockingMode(LockingMode.OPTIMISTIC).useSynchronization(true)
+            .locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true).useVersioning(true)
+            .clustering().hash().numOwners(1)
+            .clustering().l1().disable();
+      for (int i = 0; i < 3; i++) manager(i).defineConfiguration("single", single);
+      waitForClusterToForm("single");
+   }
+
+   public void testConcurrentWriteIsDetectedByOwners() throws Exception {
+      MagicKey k = new MagicKey(cache(0), "skew");
+      cache(0).put(k, "v0");
+      Cache<Object, Object> nonOwner = nonOwner(k);
+
+      tm(nonOwner).begin();
+      assert "v0".equals(nonOwner.get(k));
+      Transaction tx = tm(nonOwner).suspend();
+
+      tm(0).begin();
+      assert "v0".equals(cache(0).get(k));
+      cache(0).put(k, "v1");
+      tm(0).commit();
+
+      tm(nonOwner).resume(tx);
+      nonOwner.put(k, "v2");
+      try {
+         tm(nonOwner).commit();
+         assert false : "The write skew should have been detected";
+      } catch (RollbackException expected) {
+      }
+
+      for (Cache<Object, Object> c : caches()) assert "v1".equals(c.get(k));
+      assertSameVersionOnOwners(k);
+   }
+
+   public void testRemoveAndRecreateIsDetected() throws Exception {
+      MagicKey k = new MagicKey(cache(0), "aba");
+      cache(0).put(k, "v0");
+      EntryVersion beforeRemove = assertSameVersionOnOwners(k);
+      Cache<Object, Object> nonOwner = nonOwner(k);
+
+      tm(nonOwner).begin();
+      assert "v0".equals(nonOwner.get(k));
+      Transaction tx = tm(nonOwner).suspend();
+
+      // the entry gets as many writes as before, but it is a new entry
+      cache(0).remove(k);
+      cache(0).put(k, "v1");
+      EntryVersion recreated = assertSameVersionOnOwners(k);
+      assert !recreated.equals(beforeRemove) : "The recreated entry got back the version " + beforeRemove;
+
+      tm(nonOwner).resume(tx);
+      nonOwner.put(k, "v2");
+      try {
+         tm(nonOwner).commit();
+         assert false : "The write skew should have been detected";
+      } catch (RollbackException expected) {
+      }
+
+      for (Cache<Object, Object> c : caches()) assert "v1".equals(c.get(k));
+   }
+
+   public void testConcurrentInsertsAreDetected() throws Exception {
+      MagicKey k = new MagicKey(cache(0), "insert");
+      Cache<Object, Object> nonOwner = nonOwner(k);
+
+      tm(nonOwner).begin();
+      assert nonOwner.get(k) == null;
+      nonOwner.put(k, "v1");
+      Transaction tx = tm(nonOwner).suspend();
+
+      tm(0).begin();
+      assert cache(0).get(k) == null;
+      cache(0).put(k, "v0");
+      tm(0).commit();
+
+      tm(nonOwner).resume(tx);
+      try {
+         tm(nonOwner).commit();
+         assert false : "The key was created by another transaction after it was read as absent";
+      } catch (RollbackException expected) {
+      }
+
+      for (Cache<Object, Object> c : caches()) assert "v0".equals(c.get(k));
+      assertSameVersionOnOwners(k);
+   }
+
+   public void testInsertOfAbsentKeyCommits() throws Exception {
+      MagicKey k = new MagicKey(cache(1), "absent");
+      Cache<Object, Object> nonOwner = nonOwner(k);
+
+      tm(nonOwner).begin();
+      assert nonOwner.get(k) == null;
+      nonOwner.put(k, "v0");
+      tm(nonOwner).commit();
+
+      for (Cache<Object, Object> c : caches()) assert "v0".equals(c.get(k));
+      assertSameVersionOnOwners(k);
+   }
+
+   public void testVersionIncrementedOnEveryOwner() throws Exception {
+      MagicKey k = new MagicKey(cache(1), "increment");
+      cache(1).put(k, "v0");
+      EntryVersion first = assertSameVersionOnOwners(k);
+
+      Cache<Object, Object> nonOwner = nonOwner(k);
+      tm(nonOwner).begin();
+      assert "v0".equals(nonOwner.get(k));
+      nonOwner.put(k, "v1");
+      tm(nonOwner).commit();
+
+      EntryVersion second = assertSameVersionOnOwners(k);
+      assert second.equals(first.increment()) : "Expected " + first.increment() + " but was " + second;
+   }
+
+   public void testSingleOwnerCommitsInPrepare() throws Exception {
+      Cache<Object, Object> owner = cache(0, "single");
+      Cache<Object, Object> originator = cache(1, "single");
+      MagicKey k = new MagicKey(owner, "single");
+      owner.put(k, "v0");
+
+      RecordingTransport transport = RecordingTransport.install(originator);
+      try {
+         tm(originator).begin();
+         assert "v0".equals(originator.get(k));
+         originator.put(k, "v1");
+         tm(originator).commit();
+
+         int prepares = 0;
+         for (ReplicableCommand command : transport.getSentCommands()) {
+            assert !(command instanceof CommitCommand) : "The transaction should have been committed in prepare";
+            if (command instanceof PrepareCommand) {
+               assert ((PrepareCommand) command).isOnePhaseCommit();
+               prepares++;
+            }
+         }
+         assert prepares == 1 : "Sent " + transport.getSentCommands();
+      } finally {
+         transport.uninstall();
+      }
+      assert "v1".equals(owner.get(k));
+   }
+
+   public void testSingleOwnerDetectsWriteSkew() throws Exception {
+      Cache<Object, Object> owner = cache(0, "single");
+      Cache<Object, Object> originator = cache(1, "single");
+      MagicKey k = new MagicKey(owner, "single-skew");
+      owner.put(k, "v0");
+
+      tm(originator).begin();
+      assert "v0".equals(originator.get(k));
+      Transaction tx = tm(originator).suspend();
+
+      owner.put(k, "v1");
+
+      tm(originator).resume(tx);
+      originator.put(k, "v2");
+      try {
+         tm(originator).commit();
+         assert false : "The write skew should have been detected";
+      } catch (RollbackException expected) {
+      }
+      assert "v1".equals(owner.get(k));
+   }
+
+   private boolean isOwner(Cache<?, ?> c, Object key) {
+      return TestingUtil.extractComponent(c, DistributionManager.class).getLocality(key).isLocal();
+   }
+
+   private Cache<Object, Object> nonOwner(Object key) {
+      for (Cache<Object, Object> c : caches()) {
+         if (!isOwner(c, key)) return c;
+      }
+      throw new IllegalStateException("Every cache owns " + key);
+   }
+
+   private EntryVersion assertSameVersionOnOwners(Object key) {
+      EntryVersion version = null;
+      for (Cache<Object, Object> c : caches()) {
+         if (!isOwner(c, key)) continue;
+         EntryVersion v = TestingUtil.extractComponent(c, DataContainer.class).peek(key).getVersion();
+         assert v != null;
+         if (version == null) version = v;
+         else assert version.equals(v) : "Owners disagree on the version of " + key + ": " + version + " and " + v;
+      }
+      return version;
+   }
+}
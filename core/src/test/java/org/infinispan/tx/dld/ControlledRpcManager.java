@@ -32,6 +32,7 @@ import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -173,6 +174,26 @@ import java.util.concurrent.CountDownLatch;
       realOne.invokeRemotelyInFuture(recipients, rpc, usePriorityQueue, future, timeout);
    }
 
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout) {
+      log.trace("ControlledRpcManager.invokeRemotelyAsync");
+      waitFirst(rpc);
+      return realOne.invokeRemotelyAsync(recipients, rpc, timeout);
+   }
+
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout,
+                                                                      boolean flowControl) {
+      log.trace("ControlledRpcManager.invokeRemotelyAsync");
+      waitFirst(rpc);
+      return realOne.invokeRemotelyAsync(recipients, rpc, timeout, flowControl);
+   }
+
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(Collection<Address> recipients, ReplicableCommand rpc, long timeout,
+                                                                      boolean usePriorityQueue, boolean flowControl) {
+      log.trace("ControlledRpcManager.invokeRemotelyAsync");
+      waitFirst(rpc);
+      return realOne.invokeRemotelyAsync(recipients, rpc, timeout, usePriorityQueue, flowControl);
+   }
+
    public Transport getTransport() {
       return realOne.getTransport();
    }
@@ -26,15 +26,18 @@ import org.infinispan.config.Configuration;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.LocalTxInvocationContext;
 import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.distribution.TestAddress;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
 import org.infinispan.transaction.xa.TransactionFactory;
 import org.infinispan.util.concurrent.locks.DeadlockDetectedException;
 import org.infinispan.util.concurrent.locks.DeadlockDetectingLockManager;
+import org.infinispan.util.concurrent.locks.WaitForGraph;
 import org.infinispan.util.concurrent.locks.containers.LockContainer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -82,34 +85,34 @@ public class DeadlockDetectingLockManagerTest extends AbstractInfinispanTest {
       InvocationContext localTxContext = buildLocalTxIc(new DldGlobalTransaction());
 
       //this makes sure that we cannot acquire lock from the first try
-      expect(lc.acquireLock(localTxContext, "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(null);
+      expect(lc.acquireLock(localTxContext, "k", 0, TimeUnit.MILLISECONDS)).andReturn(null);
       lockManager.setOwner(Thread.currentThread() );
-      //next lock acquisition will succeed
+      //waiting for the lock will succeed
       Lock mockLock = createNiceMock(Lock.class);
-      expect(lc.acquireLock(localTxContext, "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(mockLock);
+      expect(lc.acquireLock(localTxContext, "k", config.getLockAcquisitionTimeout(), TimeUnit.MILLISECONDS)).andReturn(mockLock);
       replay(lc);
 
       assert lockManager.lockAndRecord("k", localTxContext);
       assert lockManager.getOverlapWithNotDeadlockAwareLockOwners() == 1;
    }
 
-   public void testLocalDeadlock() throws Exception {
+   public void testDeadlock() throws Exception {
       final DldGlobalTransaction ddgt = (DldGlobalTransaction) TransactionFactory.TxFactoryEnum.DLD_NORECOVERY_XA.newGlobalTransaction();
 
       InvocationContext localTxContext = buildLocalTxIc(ddgt);
 
-      ddgt.setCoinToss(0);
-      lockOwner.setCoinToss(1);
+      ddgt.setCoinToss(1);
+      lockOwner.setCoinToss(0);
       assert ddgt.wouldLose(lockOwner);
 
       //this makes sure that we cannot acquire lock from the first try
-      expect(lc.acquireLock(localTxContext, "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(null);
+      expect(lc.acquireLock(localTxContext, "k", 0, TimeUnit.MILLISECONDS)).andReturn(null);
       Lock mockLock = createNiceMock(Lock.class);
-      expect(lc.acquireLock(localTxContext, "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(mockLock);
-      lockOwner.setRemote(false);
-      lockOwner.setLockIntention("k");
+      expect(lc.acquireLock(localTxContext, "k", config.getLockAcquisitionTimeout(), TimeUnit.MILLISECONDS)).andReturn(mockLock);
+      lc.releaseLock(localTxContext, "k");
       lockManager.setOwner(lockOwner);
-      lockManager.setOwnsLock(true);
+      //the lock owner waits on another node for a lock we own
+      lockManager.updateRemoteEdges(new TestAddress(1), Collections.singletonMap(lockOwner, Collections.singleton(ddgt)));
       replay(lc);
       try {
          lockManager.lockAndRecord("k", localTxContext);
@@ -117,9 +120,31 @@ public class DeadlockDetectingLockManagerTest extends AbstractInfinispanTest {
       } catch (DeadlockDetectedException e) {
          //expected
       }
+      assert !Thread.currentThread().isInterrupted();
       assertEquals(1l,lockManager.getDetectedLocalDeadlocks());
    }
 
+   public void testNoDeadlockForTheOlderTransaction() throws Exception {
+      final DldGlobalTransaction ddgt = (DldGlobalTransaction) TransactionFactory.TxFactoryEnum.DLD_NORECOVERY_XA.newGlobalTransaction();
+
+      InvocationContext localTxContext = buildLocalTxIc(ddgt);
+
+      ddgt.setCoinToss(0);
+      lockOwner.setCoinToss(1);
+      assert !ddgt.wouldLose(lockOwner);
+
+      expect(lc.acquireLock(localTxContext, "k", 0, TimeUnit.MILLISECONDS)).andReturn(null);
+      Lock mockLock = createNiceMock(Lock.class);
+      expect(lc.acquireLock(localTxContext, "k", config.getLockAcquisitionTimeout(), TimeUnit.MILLISECONDS)).andReturn(mockLock);
+      lockManager.setOwner(lockOwner);
+      //the younger lock owner is the one to be rolled back, by the node it waits on
+      lockManager.updateRemoteEdges(new TestAddress(1), Collections.singletonMap(lockOwner, Collections.singleton(ddgt)));
+      replay(lc);
+
+      assert lockManager.lockAndRecord("k", localTxContext);
+      assertEquals(0l,lockManager.getDetectedLocalDeadlocks());
+   }
+
    private InvocationContext buildLocalTxIc(final DldGlobalTransaction ddgt) {
       InvocationContext localTxContext = new LocalTxInvocationContext() {
          @Override
@@ -140,6 +165,7 @@ public class DeadlockDetectingLockManagerTest extends AbstractInfinispanTest {
          this.exposeJmxStats = exposeJmxStats;
          super.lockContainer = lockContainer;
          this.configuration = configuration;
+         this.waitForGraph = new WaitForGraph(this, 3 * spinDuration);
       }
 
       public void setOwner(Object owner) {
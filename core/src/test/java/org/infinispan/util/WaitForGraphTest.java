@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util;
+
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.transaction.xa.DldGlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.infinispan.util.concurrent.locks.LockManager;
+import org.infinispan.util.concurrent.locks.WaitForGraph;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ * Tests the cycle detection of {@link WaitForGraph}.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "util.WaitForGraphTest")
+public class WaitForGraphTest extends AbstractInfinispanTest {
+
+   private LockManager lockManager;
+   private DldGlobalTransaction tx1, tx2, tx3;
+
+   @BeforeMethod
+   public void setUp() {
+      tx1 = newTransaction(1);
+      tx2 = newTransaction(2);
+      tx3 = newTransaction(3);
+      lockManager = createMock(LockManager.class);
+      // the lock waited for is always owned by tx2
+      expect(lockManager.getOwner("k")).andStubReturn(tx2);
+      replay(lockManager);
+   }
+
+   @AfterMethod
+   public void clearInterrupt() {
+      Thread.interrupted();
+   }
+
+   public void testNoCycle() {
+      WaitForGraph graph = new WaitForGraph(lockManager, 60000);
+      graph.updateRemoteEdges(new TestAddress(1), Collections.singletonMap(tx2, Collections.singleton(tx1)));
+      graph.startWaiting(tx3, "k");
+      assert graph.getLocalEdges().equals(Collections.singletonMap(tx3, Collections.singleton(tx2)));
+      assert !graph.stopWaiting(tx3);
+      assert !Thread.interrupted();
+      assert graph.getLocalEdges().isEmpty();
+   }
+
+   public void testCycleAcrossNodesAbortsYoungestTransaction() {
+      WaitForGraph graph = new WaitForGraph(lockManager, 60000);
+      graph.updateRemoteEdges(new TestAddress(1), Collections.singletonMap(tx2, Collections.singleton(tx1)));
+      graph.updateRemoteEdges(new TestAddress(2), Collections.singletonMap(tx1, Collections.singleton(tx3)));
+      // tx3 -> tx2 -> tx1 -> tx3, and tx3 is the youngest
+      graph.startWaiting(tx3, "k");
+      assert graph.stopWaiting(tx3);
+      assert Thread.interrupted();
+   }
+
+   public void testVictimWaitingOnAnotherNodeIsNotAbortedHere() {
+      WaitForGraph graph = new WaitForGraph(lockManager, 60000);
+      graph.updateRemoteEdges(new TestAddress(1), Collections.singletonMap(tx2, Collections.singleton(tx3)));
+      graph.updateRemoteEdges(new TestAddress(2), Collections.singletonMap(tx3, Collections.singleton(tx1)));
+      // tx1 -> tx2 -> tx3 -> tx1, but tx3 waits on another node
+      graph.startWaiting(tx1, "k");
+      assert graph.detectDeadlocks() == 0;
+      assert !graph.stopWaiting(tx1);
+      assert !Thread.interrupted();
+   }
+
+   public void testStaleRemoteEdgesAreDropped() throws Exception {
+      WaitForGraph graph = new WaitForGraph(lockManager, 10);
+      graph.updateRemoteEdges(new TestAddress(1), Collections.singletonMap(tx2, Collections.singleton(tx3)));
+      Thread.sleep(50);
+      graph.startWaiting(tx3, "k");
+      assert !graph.stopWaiting(tx3);
+      assert !Thread.interrupted();
+   }
+
+   private static DldGlobalTransaction newTransaction(long coinToss) {
+      DldGlobalTransaction tx = (DldGlobalTransaction) TransactionFactory.TxFactoryEnum.DLD_NORECOVERY_XA.newGlobalTransaction();
+      tx.setCoinToss(coinToss);
+      return tx;
+   }
+}
@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.AccessBuffer;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.HashEntry;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests the lock-free ring buffers that record the accesses of a BoundedConcurrentHashMap segment.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "util.concurrent.AccessBufferTest")
+public class AccessBufferTest extends AbstractInfinispanTest {
+
+   private static final int RECORDERS = 4;
+   private static final int ACCESSES_PER_RECORDER = 20000;
+
+   public void testDrainReturnsAccessesInOrder() {
+      AccessBuffer<Integer, Integer> buffer = new AccessBuffer<Integer, Integer>(64, 0.75f);
+      List<HashEntry<Integer, Integer>> offered = new ArrayList<HashEntry<Integer, Integer>>();
+      for (int i = 0; i < 8; i++) {
+         HashEntry<Integer, Integer> e = entry(i);
+         boolean expired = buffer.offer(e);
+         // the drain threshold is capped at half a stripe
+         assert expired == (i == 7) : "Unexpected threshold at access " + i;
+         offered.add(e);
+      }
+      assert buffer.thresholdExpired();
+
+      assert buffer.drain().equals(offered);
+      assert !buffer.thresholdExpired();
+      assert buffer.drain().isEmpty();
+   }
+
+   public void testOverflowDropsAccessesUntilDrained() {
+      AccessBuffer<Integer, Integer> buffer = new AccessBuffer<Integer, Integer>(64, 0.75f);
+      List<HashEntry<Integer, Integer>> offered = new ArrayList<HashEntry<Integer, Integer>>();
+      for (int i = 0; i < AccessBuffer.STRIPE_SIZE * 10; i++) {
+         HashEntry<Integer, Integer> e = entry(i);
+         offered.add(e);
+         assert buffer.offer(e) == (i >= 7);
+      }
+      // a single thread always records in the same stripe, which keeps its oldest accesses
+      assert buffer.drain().equals(offered.subList(0, AccessBuffer.STRIPE_SIZE));
+
+      HashEntry<Integer, Integer> e = entry(-1);
+      assert !buffer.offer(e);
+      assert buffer.drain().equals(Collections.singletonList(e));
+
+      buffer.offer(entry(-2));
+      buffer.clear();
+      assert buffer.drain().isEmpty();
+   }
+
+   public void testDrainsRacingWithRecorders() throws Exception {
+      final AccessBuffer<Integer, Integer> buffer = new AccessBuffer<Integer, Integer>(64, 0.75f);
+      final Set<HashEntry<Integer, Integer>> offered = Collections.newSetFromMap(new IdentityHashMap<HashEntry<Integer, Integer>, Boolean>());
+      final List<List<HashEntry<Integer, Integer>>> perRecorder = new ArrayList<List<HashEntry<Integer, Integer>>>();
+      for (int r = 0; r < RECORDERS; r++) {
+         List<HashEntry<Integer, Integer>> entries = new ArrayList<HashEntry<Integer, Integer>>(ACCESSES_PER_RECORDER);
+         for (int i = 0; i < ACCESSES_PER_RECORDER; i++) entries.add(entry(r * ACCESSES_PER_RECORDER + i));
+         offered.addAll(entries);
+         perRecorder.add(entries);
+      }
+
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Thread> recorders = new ArrayList<Thread>();
+      for (int r = 0; r < RECORDERS; r++) {
+         final List<HashEntry<Integer, Integer>> entries = perRecorder.get(r);
+         Thread t = new Thread("Recorder-" + r) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               for (HashEntry<Integer, Integer> e : entries) buffer.offer(e);
+            }
+         };
+         t.start();
+         recorders.add(t);
+      }
+
+      // only the thread holding the segment lock drains, so a single drainer is enough
+      final AtomicBoolean recording = new AtomicBoolean(true);
+      final Set<HashEntry<Integer, Integer>> drained = Collections.newSetFromMap(new IdentityHashMap<HashEntry<Integer, Integer>, Boolean>());
+      final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+      Thread drainer = new Thread("Drainer") {
+         @Override
+         public void run() {
+            boolean last = false;
+            while (!last) {
+               last = !recording.get();
+               for (HashEntry<Integer, Integer> e : buffer.drain()) {
+                  if (e == null) failures.add("Drained a null access");
+                  else if (!offered.contains(e)) failures.add("Drained an access never recorded: " + e.key);
+                  else if (!drained.add(e)) failures.add("Drained the access twice: " + e.key);
+               }
+            }
+         }
+      };
+      drainer.start();
+      start.countDown();
+      for (Thread t : recorders) t.join();
+      recording.set(false);
+      drainer.join();
+
+      assert failures.isEmpty() : failures;
+      assert !drained.isEmpty();
+      assert !buffer.thresholdExpired();
+      assert buffer.drain().isEmpty();
+   }
+
+   private static HashEntry<Integer, Integer> entry(int i) {
+      return new HashEntry<Integer, Integer>(i, i, null, i);
+   }
+}
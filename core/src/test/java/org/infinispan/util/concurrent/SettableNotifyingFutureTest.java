@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test(testName = "util.concurrent.SettableNotifyingFutureTest", groups = "unit")
+public class SettableNotifyingFutureTest extends AbstractInfinispanTest {
+
+   public void testListenersNotifiedOnCompletion() throws Exception {
+      SettableNotifyingFuture<String> future = new SettableNotifyingFuture<String>();
+      CountingListener before = new CountingListener();
+      future.attachListener(before);
+      assert !future.isDone();
+      assert before.count.get() == 0;
+
+      assert future.set("v");
+      assert future.isDone();
+      assert "v".equals(future.get());
+      assert before.count.get() == 1;
+
+      CountingListener after = new CountingListener();
+      future.attachListener(after);
+      assert after.count.get() == 1 : "A listener attached to a completed future must be notified straight away";
+   }
+
+   public void testOnlyFirstCompletionCounts() throws Exception {
+      SettableNotifyingFuture<String> future = new SettableNotifyingFuture<String>();
+      CountingListener listener = new CountingListener();
+      future.attachListener(listener);
+
+      assert future.set("first");
+      assert !future.set("second");
+      assert !future.setException(new Exception());
+      assert !future.cancel(true);
+      assert "first".equals(future.get(10, TimeUnit.MILLISECONDS));
+      assert listener.count.get() == 1;
+   }
+
+   public void testException() throws Exception {
+      SettableNotifyingFuture<String> future = new SettableNotifyingFuture<String>();
+      Exception cause = new Exception();
+      future.setException(cause);
+      try {
+         future.get();
+         assert false : "Should have failed";
+      } catch (ExecutionException e) {
+         assert e.getCause() == cause;
+      }
+   }
+
+   public void testCancel() throws Exception {
+      SettableNotifyingFuture<String> future = new SettableNotifyingFuture<String>();
+      assert future.cancel(false);
+      assert future.isCancelled();
+      assert future.isDone();
+      try {
+         future.get();
+         assert false : "Should have failed";
+      } catch (CancellationException expected) {
+      }
+   }
+
+   public void testGetTimesOut() throws Exception {
+      SettableNotifyingFuture<String> future = new SettableNotifyingFuture<String>();
+      try {
+         future.get(10, TimeUnit.MILLISECONDS);
+         assert false : "Should have timed out";
+      } catch (java.util.concurrent.TimeoutException expected) {
+      }
+   }
+
+   private static class CountingListener implements FutureListener<String> {
+      final AtomicInteger count = new AtomicInteger();
+
+      public void futureDone(Future<String> future) {
+         count.incrementAndGet();
+      }
+   }
+}
@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.FrequencySketch;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.HashEntry;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.NullEvictionListener;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.TinyLFU;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+
+/**
+ * Tests the frequency sketch, the admission policy and the bookkeeping of the TinyLFU eviction policy of
+ * BoundedConcurrentHashMap.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "util.concurrent.TinyLFUTest")
+public class TinyLFUTest extends AbstractInfinispanTest {
+
+   public void testSketchCountsAccesses() {
+      FrequencySketch sketch = new FrequencySketch(64);
+      int hash = spread(1);
+      assert sketch.frequency(hash) == 0;
+      for (int i = 0; i < 5; i++) sketch.increment(hash);
+      assert sketch.frequency(hash) == 5 : "Expected 5 accesses but got " + sketch.frequency(hash);
+      for (int i = 0; i < 20; i++) sketch.increment(hash);
+      assert sketch.frequency(hash) == 15 : "Counters should saturate at 15 but got " + sketch.frequency(hash);
+   }
+
+   public void testSketchAgesCounters() {
+      // ages once 10 * 8 accesses have been recorded
+      FrequencySketch sketch = new FrequencySketch(8);
+      int hot = spread(0);
+      for (int i = 0; i < 15; i++) sketch.increment(hot);
+      for (int i = 1; i < 65; i++) sketch.increment(spread(i));
+      assert sketch.frequency(hot) == 15;
+      sketch.increment(spread(65));
+      assert sketch.frequency(hot) == 7 : "Expected the counters to be halved but got " + sketch.frequency(hot);
+   }
+
+   public void testScanDoesNotEvictFrequentEntries() {
+      BoundedConcurrentHashMap<Integer, Integer> map = newMap(100);
+      for (int i = 0; i < 50; i++) map.put(i, i);
+      for (int round = 0; round < 10; round++) {
+         for (int i = 0; i < 50; i++) map.get(i);
+      }
+      for (int i = 1000; i < 6000; i++) map.put(i, i);
+
+      assert map.size() <= 100;
+      for (int i = 0; i < 50; i++) {
+         assert map.containsKey(i) : "Frequently accessed key " + i + " was evicted by a scan";
+      }
+   }
+
+   public void testFrequentCandidateIsAdmitted() {
+      BoundedConcurrentHashMap<Integer, Integer> map = newMap(100);
+      for (int i = 0; i < 100; i++) map.put(i, i);
+      // removed entries keep their frequency in the sketch
+      for (int i = 0; i < 5; i++) {
+         map.put(-1, -1);
+         map.remove(-1);
+      }
+      map.put(-1, -1);
+      // pushes -1 out of the admission window
+      map.put(-2, -2);
+      assert map.containsKey(-1) : "A candidate more frequent than the victim should be admitted";
+      assert map.size() <= 100;
+   }
+
+   public void testClonesKeepTheirPlace() {
+      BoundedConcurrentHashMap<CollidingKey, String> map = newMap(100);
+      TinyLFU<CollidingKey, String> policy = policyOf(map);
+      for (int i = 0; i < 10; i++) map.put(new CollidingKey(i), "v" + i);
+      for (int i = 0; i < 16; i++) map.get(new CollidingKey(5));
+      assert contains(policy.protectedSpace, 5);
+      assert contains(policy.window, 9);
+
+      // all the other keys share the bucket and are inserted before key 0, so removing it clones them
+      map.remove(new CollidingKey(0));
+      assert contains(policy.protectedSpace, 5) : "A clone should stay protected";
+      assert contains(policy.window, 9) : "A clone should stay in the admission window";
+      for (int i = 1; i < 9; i++) {
+         if (i != 5) assert contains(policy.probation, i) : "Key " + i + " should still be on probation";
+      }
+      assert policy.window.size() + policy.probation.size() + policy.protectedSpace.size() == 9;
+   }
+
+   public void testRemovedEntryPutBackIsNew() {
+      BoundedConcurrentHashMap<CollidingKey, String> map = newMap(100);
+      TinyLFU<CollidingKey, String> policy = policyOf(map);
+      for (int i = 0; i < 10; i++) map.put(new CollidingKey(i), "v" + i);
+      for (int i = 0; i < 16; i++) map.get(new CollidingKey(5));
+      assert contains(policy.protectedSpace, 5);
+
+      String value = map.remove(new CollidingKey(5));
+      map.put(new CollidingKey(5), value);
+      assert contains(policy.window, 5) : "A removed entry put back should enter the admission window";
+      assert !contains(policy.protectedSpace, 5);
+   }
+
+   private static <K, V> BoundedConcurrentHashMap<K, V> newMap(int capacity) {
+      return new BoundedConcurrentHashMap<K, V>(capacity, 1, Eviction.TINY_LFU, new NullEvictionListener<K, V>());
+   }
+
+   @SuppressWarnings("unchecked")
+   private static <K, V> TinyLFU<K, V> policyOf(BoundedConcurrentHashMap<K, V> map) {
+      return (TinyLFU<K, V>) map.segments[0].eviction;
+   }
+
+   private static boolean contains(Set<HashEntry<CollidingKey, String>> queue, int id) {
+      for (HashEntry<CollidingKey, String> e : queue) {
+         if (e.key.id == id) return true;
+      }
+      return false;
+   }
+
+   private static int spread(int i) {
+      return i * 0x9E3779B9;
+   }
+
+   private static class CollidingKey {
+      final int id;
+
+      CollidingKey(int id) {
+         this.id = id;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+      }
+
+      @Override
+      public int hashCode() {
+         return 42;
+      }
+   }
+}
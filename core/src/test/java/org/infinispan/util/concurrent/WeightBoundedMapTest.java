@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.LRU;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.NullEvictionListener;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Weigher;
+import org.testng.annotations.Test;
+
+/**
+ * Tests BoundedConcurrentHashMaps bounded by the weight of their entries only.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "util.concurrent.WeightBoundedMapTest")
+public class WeightBoundedMapTest extends AbstractInfinispanTest {
+
+   private static final Weigher<Integer, byte[]> WEIGHER = new Weigher<Integer, byte[]>() {
+      public long weigh(Integer key, byte[] value) {
+         return value.length;
+      }
+   };
+
+   public void testGrowsUntilOverweight() {
+      BoundedConcurrentHashMap<Integer, byte[]> map = newMap(Eviction.LRU, 100000);
+      assert map.segments[0].table.length == 1 : "The table should not be sized up front";
+      for (int i = 0; i < 20000; i++) map.put(i, new byte[1]);
+      assert map.size() == 20000 : "Light entries should not be bounded by number, but only " + map.size() + " are left";
+      assert map.segments[0].table.length >= 20000 / BoundedConcurrentHashMap.DEFAULT_LOAD_FACTOR;
+      assert map.weight() == 20000;
+
+      for (int i = 0; i < 20; i++) map.put(-i - 1, new byte[10000]);
+      assert map.weight() <= 100000 : "Weight " + map.weight() + " is above the bound";
+   }
+
+   public void testPolicyFollowsRehashedEntries() {
+      BoundedConcurrentHashMap<Integer, byte[]> map = newMap(Eviction.LRU, 1000);
+      for (int i = 0; i < 500; i++) map.put(i, new byte[1]);
+      LRU<Integer, byte[]> lru = (LRU<Integer, byte[]>) map.segments[0].eviction;
+      assert lru.size() == 500;
+      for (Object e : lru.keySet()) {
+         assert map.segments[0].liveEntry((BoundedConcurrentHashMap.HashEntry<Integer, byte[]>) e) == e
+               : "The eviction policy holds an entry replaced by a rehash";
+      }
+
+      // evicts the least recently used entries, every one of them still mapped
+      for (int i = 500; i < 1500; i++) map.put(i, new byte[1]);
+      assert map.size() == 1000;
+      assert lru.size() == 1000;
+      assert map.weight() == 1000;
+   }
+
+   public void testLIRSNeedsCapacity() {
+      try {
+         newMap(Eviction.LIRS, 1000);
+         assert false : "LIRS should need a capacity";
+      } catch (IllegalArgumentException expected) {
+      }
+   }
+
+   private static BoundedConcurrentHashMap<Integer, byte[]> newMap(Eviction eviction, long maxWeight) {
+      return new BoundedConcurrentHashMap<Integer, byte[]>(-1, 1, eviction,
+            new NullEvictionListener<Integer, byte[]>(), maxWeight, WEIGHER);
+   }
+}
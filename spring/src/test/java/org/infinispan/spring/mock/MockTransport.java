@@ -33,6 +33,7 @@ import org.infinispan.remoting.rpc.ResponseFilter;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.logging.Log;
 
 import java.util.Collection;
@@ -60,6 +61,12 @@ public final class MockTransport implements Transport {
       return null;
    }
 
+   @Override
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyAsync(final Collection<Address> recipients,
+            final ReplicableCommand rpcCommand, final long timeout, final boolean flowControl) throws Exception {
+      return null;
+   }
+
    @Override
    public boolean isCoordinator() {
       return false;